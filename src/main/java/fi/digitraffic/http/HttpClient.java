@@ -36,6 +36,10 @@ public class HttpClient {
             .newBuilder()
             //.cache(...)
             //.interceptor(...)
+            // multiplexes concurrent requests to the same host over one connection when the server supports it
+            .version(java.net.http.HttpClient.Version.HTTP_2)
+            // content encoding is negotiated and decoded by callers, so they can tell wire bytes from decoded bytes
+            .autoAcceptEncoding(false)
             .connectTimeout(configuration.connectionTimeout())
             .requestTimeout(configuration.requestTimeout())
             .headersTimeout(configuration.headersTimeout())
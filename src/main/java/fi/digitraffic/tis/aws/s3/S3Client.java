@@ -1,14 +1,34 @@
 package fi.digitraffic.tis.aws.s3;
 
+import fi.digitraffic.tis.utilities.Streams;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectTaggingResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.services.s3.model.Tagging;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.CompletedCopy;
 import software.amazon.awssdk.transfer.s3.model.CompletedDirectoryDownload;
@@ -20,11 +40,19 @@ import software.amazon.awssdk.transfer.s3.model.FileDownload;
 import software.amazon.awssdk.transfer.s3.model.UploadDirectoryRequest;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class S3Client {
 
@@ -34,25 +62,148 @@ public class S3Client {
 
     private final software.amazon.awssdk.services.s3.S3Client awsS3Client;
 
+    private final S3Presigner s3Presigner;
+
     private final VacoProperties vacoProperties;
 
+    private final Executor executor;
+
+    /**
+     * @param executor Executor for running blocking transfers. Should not be the common pool.
+     */
     public S3Client(VacoProperties vacoProperties,
                     S3TransferManager s3TransferManager,
-                    software.amazon.awssdk.services.s3.S3Client awsS3Client) {
+                    software.amazon.awssdk.services.s3.S3Client awsS3Client,
+                    S3Presigner s3Presigner,
+                    Executor executor) {
         this.s3TransferManager = Objects.requireNonNull(s3TransferManager);
         this.vacoProperties = Objects.requireNonNull(vacoProperties);
         this.awsS3Client = Objects.requireNonNull(awsS3Client);
+        this.s3Presigner = Objects.requireNonNull(s3Presigner);
+        this.executor = Objects.requireNonNull(executor);
     }
 
     public CompletableFuture<PutObjectResponse> uploadFile(String bucketName, S3Path targetPath, Path sourcePath) {
-        return CompletableFuture.supplyAsync(() -> {
+        return InstrumentedExecutor.supplyAsync(() -> {
             logger.info("Uploading file from {} to s3://{}/{}", sourcePath, bucketName, targetPath);
             PutObjectRequest request = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(targetPath.toString())
                 .build();
             return awsS3Client.putObject(request, sourcePath);
-        });
+        }, executor);
+    }
+
+    /**
+     * Store given small in-memory content as an object. Larger content should be uploaded from file or streamed.
+     */
+    public void putObject(String bucketName, S3Path targetPath, byte[] content) {
+        awsS3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(targetPath.toString())
+                .build(),
+            RequestBody.fromBytes(content));
+    }
+
+    /**
+     * Read entire content of given small object into memory.
+     *
+     * @return Content of the object, empty if the object doesn't exist.
+     */
+    public Optional<byte[]> getObject(String bucketName, S3Path key) {
+        try {
+            ResponseBytes<GetObjectResponse> response = awsS3Client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key.toString())
+                .build());
+            return Optional.of(response.asByteArray());
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Delete given object. Deleting an object which doesn't exist is not an error.
+     */
+    public void deleteObject(String bucketName, S3Path key) {
+        awsS3Client.deleteObject(DeleteObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key.toString())
+            .build());
+    }
+
+    /**
+     * List all objects under given prefix.
+     *
+     * @param filter Predicate for full keys of objects to include.
+     * @return Matching objects in key order.
+     */
+    public List<S3Object> listObjects(String bucketName, S3Path prefix, Predicate<String> filter) {
+        return awsS3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix.toString())
+                .build())
+            .contents()
+            .stream()
+            .filter(s3Object -> filter.test(s3Object.key()))
+            .toList();
+    }
+
+    /**
+     * Open content of given object for reading directly from S3. The returned stream must be closed, closing it before
+     * reading the whole content aborts the transfer.
+     */
+    public ResponseInputStream<GetObjectResponse> openObject(String bucketName, String key) {
+        return openObject(bucketName, key, null, null);
+    }
+
+    /**
+     * Open content of given object conditionally and/or partially, with the semantics of HTTP headers of same name.
+     *
+     * @param range Byte range to read, <code>null</code> for entire object.
+     * @param ifNoneMatch ETag of a copy the caller already has, <code>null</code> to read unconditionally.
+     * @throws S3Exception with status code 304 if the object matches <code>ifNoneMatch</code>, or 416 if the range is
+     *                     not satisfiable.
+     * @see #openObject(String, String)
+     */
+    public ResponseInputStream<GetObjectResponse> openObject(String bucketName, String key, String range, String ifNoneMatch) {
+        return awsS3Client.getObject(GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .range(range)
+            .ifNoneMatch(ifNoneMatch)
+            .build());
+    }
+
+    /**
+     * Create a URL which allows downloading given object directly from S3 without credentials for limited time.
+     *
+     * @param ttl How long the URL is valid for.
+     * @param contentDisposition Content-Disposition header S3 responds with.
+     */
+    public URI presignGetObject(String bucketName, String key, Duration ttl, String contentDisposition) {
+        PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+            .signatureDuration(ttl)
+            .getObjectRequest(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .responseContentDisposition(contentDisposition)
+                .build())
+            .build());
+        try {
+            return presigned.url().toURI();
+        } catch (URISyntaxException e) {
+            throw new AwsS3Exception("Presigned URL for s3://" + bucketName + "/" + key + " is not a valid URI", e);
+        }
+    }
+
+    /**
+     * Open a stream which uploads everything written to it into given key. Nothing is stored unless the returned stream
+     * is {@link S3UploadStream#complete() completed} before closing it.
+     */
+    public S3UploadStream openUpload(String bucketName, S3Path targetPath) {
+        logger.info("Opening streaming upload to s3://{}/{}", bucketName, targetPath);
+        return new S3UploadStream(awsS3Client, executor, bucketName, targetPath);
     }
 
     public CompletableFuture<CompletedDirectoryUpload> uploadDirectory(Path localSourcePath, String bucketName, S3Path s3TargetPath) {
@@ -130,6 +281,17 @@ public class S3Client {
             .completionFuture();
     }
 
+    /**
+     * Read metadata of given object, including its checksum if it was stored with one.
+     */
+    public CompletableFuture<HeadObjectResponse> describeObject(String bucketName, S3Path key) {
+        return InstrumentedExecutor.supplyAsync(() -> awsS3Client.headObject(HeadObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key.toString())
+            .checksumMode(ChecksumMode.ENABLED)
+            .build()), executor);
+    }
+
     private HeadObjectResponse headObject(String bucketName, String key) {
         HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
             .bucket(bucketName)
@@ -138,6 +300,34 @@ public class S3Client {
         return awsS3Client.headObject(headObjectRequest);
     }
 
+    /**
+     * Replace tags of given object. Tags are copied along with the object by {@link #copyFile(String, S3Path, String, S3Path)}.
+     */
+    public void tagObject(String bucketName, S3Path key, Map<String, String> tags) {
+        awsS3Client.putObjectTagging(PutObjectTaggingRequest.builder()
+            .bucket(bucketName)
+            .key(key.toString())
+            .tagging(Tagging.builder()
+                .tagSet(Streams.map(tags.entrySet(), t -> Tag.builder().key(t.getKey()).value(t.getValue()).build()).toList())
+                .build())
+            .build());
+    }
+
+    /**
+     * @return Tags of given object, empty if the object doesn't exist.
+     */
+    public Map<String, String> objectTags(String bucketName, S3Path key) {
+        try {
+            GetObjectTaggingResponse response = awsS3Client.getObjectTagging(GetObjectTaggingRequest.builder()
+                .bucket(bucketName)
+                .key(key.toString())
+                .build());
+            return response.tagSet().stream().collect(Collectors.toMap(Tag::key, Tag::value, (a, b) -> b));
+        } catch (NoSuchKeyException e) {
+            return Map.of();
+        }
+    }
+
     public boolean keyExists(String bucketName, String key) {
         try {
             HeadObjectResponse head = headObject(bucketName, key);
@@ -0,0 +1,201 @@
+package fi.digitraffic.tis.aws.s3;
+
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Uploads everything written to it to S3 as a multipart upload while the data is still being produced.
+ * <p>
+ * Written bytes are buffered into parts of {@link #PART_SIZE} which are uploaded in the background, at most
+ * {@link #MAX_PARTS_IN_FLIGHT} at a time; writers are blocked while the limit is reached. Content smaller than a single
+ * part is sent with a plain <code>PutObject</code> instead.
+ * <p>
+ * Nothing becomes visible in S3 until {@link #complete()} is called. Closing the stream without completing it aborts the
+ * upload and discards all uploaded parts, so the caller can decide to throw the content away after inspecting it.
+ *
+ * @see S3Client#openUpload(String, S3Path)
+ */
+public class S3UploadStream extends OutputStream {
+
+    /**
+     * S3 requires all parts but the last to be at least 5 MiB.
+     */
+    static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private static final int MAX_PARTS_IN_FLIGHT = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final software.amazon.awssdk.services.s3.S3Client awsS3Client;
+    private final Executor executor;
+    private final String bucketName;
+    private final S3Path key;
+
+    private final Semaphore inFlight = new Semaphore(MAX_PARTS_IN_FLIGHT);
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+    private byte[] buffer = new byte[PART_SIZE];
+    private int position;
+    private String uploadId;
+    private boolean completed;
+    private boolean closed;
+
+    S3UploadStream(software.amazon.awssdk.services.s3.S3Client awsS3Client, Executor executor, String bucketName, S3Path key) {
+        this.awsS3Client = Objects.requireNonNull(awsS3Client);
+        this.executor = Objects.requireNonNull(executor);
+        this.bucketName = Objects.requireNonNull(bucketName);
+        this.key = Objects.requireNonNull(key);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (position == buffer.length) {
+            flushPart();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            if (position == buffer.length) {
+                flushPart();
+            }
+            int n = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Upload remaining buffered content and make the object visible in S3.
+     */
+    public void complete() throws IOException {
+        ensureOpen();
+        if (uploadId == null) {
+            logger.debug("Uploading {} bytes to s3://{}/{} with single request", position, bucketName, key);
+            awsS3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key.toString())
+                    .build(),
+                RequestBody.fromBytes(Arrays.copyOf(buffer, position)));
+        } else {
+            if (position > 0) {
+                flushPart();
+            }
+            List<CompletedPart> completedParts = awaitParts();
+            awsS3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key.toString())
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+            logger.debug("Completed multipart upload of {} parts to s3://{}/{}", completedParts.size(), bucketName, key);
+        }
+        completed = true;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer = null;
+        if (!completed && uploadId != null) {
+            logger.info("Aborting incomplete multipart upload to s3://{}/{}", bucketName, key);
+            CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).handle((v, t) -> null).join();
+            try {
+                awsS3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key.toString())
+                    .uploadId(uploadId)
+                    .build());
+            } catch (SdkException e) {
+                // bucket lifecycle rules clean up whatever is left behind, so this isn't worth failing the caller for
+                logger.warn("Failed to abort multipart upload {} to s3://{}/{}", uploadId, bucketName, key, e);
+            }
+        }
+    }
+
+    private void flushPart() throws IOException {
+        if (uploadId == null) {
+            uploadId = awsS3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key.toString())
+                .build()).uploadId();
+            logger.debug("Started multipart upload {} to s3://{}/{}", uploadId, bucketName, key);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for part upload slot", e);
+        }
+        int partNumber = parts.size() + 1;
+        byte[] part = buffer;
+        int length = position;
+        parts.add(InstrumentedExecutor.supplyAsync(() -> {
+            try {
+                String etag = awsS3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key.toString())
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build(),
+                    RequestBody.fromBytes(length == part.length ? part : Arrays.copyOf(part, length))).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+            } finally {
+                inFlight.release();
+            }
+        }, executor));
+        buffer = new byte[PART_SIZE];
+        position = 0;
+    }
+
+    private List<CompletedPart> awaitParts() throws IOException {
+        try {
+            return parts.stream()
+                .map(CompletableFuture::join)
+                .sorted(Comparator.comparing(CompletedPart::partNumber))
+                .toList();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to upload part to s3://" + bucketName + "/" + key, e.getCause());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Upload to s3://" + bucketName + "/" + key + " is already closed");
+        }
+        if (completed) {
+            throw new IOException("Upload to s3://" + bucketName + "/" + key + " is already completed");
+        }
+    }
+}
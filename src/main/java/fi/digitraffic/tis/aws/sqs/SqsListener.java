@@ -3,45 +3,179 @@ package fi.digitraffic.tis.aws.sqs;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
+import fi.digitraffic.tis.vaco.configuration.SqsConsumer;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
 import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.services.sqs.model.SqsException;
+import org.springframework.context.SmartLifecycle;
+import software.amazon.awssdk.services.sqs.model.Message;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
-public class SqsListener {
+/**
+ * Base class for long polling SQS consumers.
+ * <p>
+ * Subclasses register one poll cycle per queue with {@link #consume(String, Runnable)}. On startup each registered queue
+ * gets {@link SqsConsumer#pollers()} dedicated loops which repeatedly long poll the queue, process the received batch
+ * and acknowledge it with a single batch delete. Messages are deleted only after their processing has completed
+ * successfully, failed messages become visible again after their visibility timeout and are eventually moved to dead
+ * letter queue by the queue's redrive policy.
+ */
+public class SqsListener implements SmartLifecycle {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private static final int MAX_MESSAGES = 10;
+    private static final Duration ERROR_BACKOFF = Duration.ofSeconds(1);
+
     protected final MessagingService messagingService;
     private final ObjectMapper objectMapper;
+    private final SqsConsumer consumer;
+    private final Map<String, Runnable> consumers = new LinkedHashMap<>();
+    private final List<Thread> pollers = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
 
-    public SqsListener(MessagingService messagingService, ObjectMapper objectMapper) {
+    public SqsListener(MessagingService messagingService, ObjectMapper objectMapper, SqsConsumer consumer) {
         this.messagingService = Objects.requireNonNull(messagingService);
         this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.consumer = Objects.requireNonNull(consumer);
+    }
+
+    /**
+     * Register a poll cycle for given queue. The cycle is run continuously while this listener is running.
+     */
+    protected void consume(String queueName, Runnable pollCycle) {
+        consumers.put(queueName, pollCycle);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        consumers.forEach((queueName, pollCycle) -> {
+            for (int i = 0; i < consumer.pollers(); i++) {
+                pollers.add(Thread.ofPlatform()
+                    .daemon()
+                    .name("sqs-" + queueName + "-" + i)
+                    .start(() -> poll(queueName, pollCycle)));
+            }
+        });
+        logger.info("Started {} SQS pollers for queues {}", pollers.size(), consumers.keySet());
+    }
+
+    private void poll(String queueName, Runnable pollCycle) {
+        while (running) {
+            try {
+                pollCycle.run();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to process messages from queue {}", queueName, e);
+                try {
+                    Thread.sleep(ERROR_BACKOFF);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops polling. Pollers finish their current batch in the background; messages not acknowledged by then are
+     * redelivered after their visibility timeout.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        pollers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
 
+    @Override
+    public boolean isAutoStartup() {
+        return consumer.enabled();
     }
 
+    /**
+     * Run one receive-process-acknowledge cycle for given queue.
+     */
     protected <M, R> void listen(String queueName, Function<String, M> read, Function<M, CompletableFuture<R>> process) {
-        try {
-            messagingService.readMessages(queueName)
-                .map(m -> {
-                    try {
-                        logger.trace("Processing message {}", m);
-                        M message = read.apply(m.body());
-                        return process.apply(message);
-                    } finally {
-                        logger.trace("Deleting message {}", m);
-                        messagingService.deleteMessage(queueName, m);
-                    }
-                })
-                .map(CompletableFuture::join)
-                .toList();
-        } catch (SqsException e) {
-            logger.warn("Failed to process messages from queue {}", queueName, e);
+        List<Message> messages = messagingService.receiveMessages(queueName, MAX_MESSAGES, consumer.waitTime());
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        List<Message> acknowledged = new ArrayList<>();
+        Map<Message, CompletableFuture<R>> inFlight = new LinkedHashMap<>();
+        for (Message m : messages) {
+            logger.trace("Processing message {}", m);
+            M message;
+            try {
+                message = read.apply(m.body());
+            } catch (RuntimeException e) {
+                // unreadable message will never succeed, so there's no point in retrying it
+                logger.error("Discarding unreadable message {} from queue {}", m.messageId(), queueName, e);
+                acknowledged.add(m);
+                continue;
+            }
+            try {
+                inFlight.put(m, process.apply(message));
+            } catch (RuntimeException e) {
+                inFlight.put(m, CompletableFuture.failedFuture(e));
+            }
+        }
+
+        awaitCompletion(queueName, inFlight);
+
+        inFlight.forEach((m, result) -> {
+            if (result.isDone() && !result.isCompletedExceptionally()) {
+                acknowledged.add(m);
+            } else {
+                logger.warn("Message {} from queue {} was not processed successfully, leaving it for redelivery", m.messageId(), queueName);
+            }
+        });
+        logger.trace("Acknowledging {} messages", acknowledged.size());
+        messagingService.deleteMessages(queueName, acknowledged);
+    }
+
+    /**
+     * Wait for all in-flight messages to complete, extending the visibility timeout of still incomplete messages
+     * periodically so that they won't be redelivered to another consumer while still being processed.
+     */
+    private <R> void awaitCompletion(String queueName, Map<Message, CompletableFuture<R>> inFlight) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(inFlight.values().toArray(CompletableFuture[]::new));
+        long heartbeatMillis = Math.max(1, consumer.visibilityTimeout().toMillis() / 2);
+        while (true) {
+            try {
+                all.get(heartbeatMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                List<Message> pending = inFlight.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isDone())
+                    .map(Map.Entry::getKey)
+                    .toList();
+                logger.debug("Extending visibility of {} messages in queue {}", pending.size(), queueName);
+                messagingService.changeMessageVisibility(queueName, pending, consumer.visibilityTimeout());
+            } catch (ExecutionException e) {
+                // individual failures are inspected by caller
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
@@ -1,15 +1,21 @@
 package fi.digitraffic.tis.utilities;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
 
 public class Archiver {
 
+    /**
+     * Files larger than this are compressed while streaming instead of in parallel.
+     */
+    private static final int MAX_BUFFERED_FILE_SIZE = 8 * 1024 * 1024;
+
     private Archiver() {}
 
     /**
@@ -19,13 +25,28 @@ public class Archiver {
      * @throws IOException If operation could not be completed succesfully.
      */
     public static void createZip(Path sourceFolder, Path targetFile) throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(targetFile.toFile());
-             ZipOutputStream zipOut = new ZipOutputStream(fos)) {
-            addItemToZip(sourceFolder, sourceFolder, zipOut);
+        createZip(sourceFolder, targetFile, Runnable::run, Deflater.DEFAULT_COMPRESSION, 1);
+    }
+
+    /**
+     * Recursively creates a ZIP archive from given directory to given file path, compressing files in parallel.
+     * @param sourceFolder Directory to archive.
+     * @param targetFile Resulting file.
+     * @param executor Executor to compress files with.
+     * @param level Deflate level from 0 (store) to 9 (best), or -1 for default. Already compressed files are always
+     *              stored.
+     * @param parallelism Maximum number of files compressed at once.
+     * @throws IOException If operation could not be completed succesfully.
+     * @see ParallelZipWriter
+     */
+    public static void createZip(Path sourceFolder, Path targetFile, Executor executor, int level, int parallelism) throws IOException {
+        try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(targetFile));
+             ParallelZipWriter zipOut = new ParallelZipWriter(out, executor, level, parallelism, MAX_BUFFERED_FILE_SIZE)) {
+            addItemToZip(sourceFolder, sourceFolder, zipOut, level);
         }
     }
 
-    private static void addItemToZip(Path root, Path itemToZip, ZipOutputStream zipOut) throws IOException {
+    private static void addItemToZip(Path root, Path itemToZip, ParallelZipWriter zipOut, int level) throws IOException {
         Path relativized = root.relativize(itemToZip);
 
         if (Files.isDirectory(itemToZip)) {
@@ -33,20 +54,19 @@ public class Archiver {
             // Avoiding root "downloads" folder being included in the zip's file structure
             boolean isRootFolder = folderName.isBlank();
             if (!isRootFolder) {
-                zipOut.putNextEntry(new ZipEntry(folderName + "/"));
-                zipOut.closeEntry();
+                zipOut.addEntry(folderName + "/", Files.getLastModifiedTime(itemToZip), InputStream.nullInputStream(), ParallelZipWriter.STORE);
             }
             File[] folderContents = itemToZip.toFile().listFiles();
             if (folderContents != null) {
                 for (File file : folderContents) {
-                    addItemToZip(root, file.toPath(), zipOut);
+                    addItemToZip(root, file.toPath(), zipOut, level);
                 }
             }
         } else {
-            ZipEntry zipEntry = new ZipEntry(relativized.toString());
-            zipOut.putNextEntry(zipEntry);
-            Files.copy(itemToZip, zipOut);
-            zipOut.closeEntry();
+            String name = relativized.toString();
+            try (InputStream content = Files.newInputStream(itemToZip)) {
+                zipOut.addEntry(name, Files.getLastModifiedTime(itemToZip), content, ParallelZipWriter.levelFor(name, level));
+            }
         }
     }
 }
@@ -0,0 +1,463 @@
+package fi.digitraffic.tis.utilities;
+
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive to a stream while compressing its entries in parallel.
+ * <p>
+ * Entries up to a configurable size are read into a scatter buffer and deflated concurrently in the given executor.
+ * Compressed entries are gathered back into the archive in the order they were added, so the output is identical to
+ * what a sequential writer would produce. At most <code>parallelism</code> entries are buffered at once, which bounds
+ * memory use and makes {@link #addEntry(String, FileTime, InputStream, int)} block the producer when compression falls
+ * behind. Larger entries are deflated on the calling thread while streaming, once all entries before them are written.
+ * <p>
+ * Compression level is chosen per entry: {@link #STORE} writes the content as is, which is what already compressed
+ * content such as nested archives should use. Buffered entries are also stored as is whenever deflating them would not
+ * make them smaller. The output is readable by both {@link java.util.zip.ZipFile} and
+ * {@link java.util.zip.ZipInputStream}, and uses ZIP64 extensions only for entries compressed while streaming and when
+ * the archive grows past their limits.
+ */
+public class ParallelZipWriter implements Closeable {
+
+    /**
+     * Compression level for storing content without compression.
+     */
+    public static final int STORE = Deflater.NO_COMPRESSION;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+        "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "jar", "png", "jpg", "jpeg", "gif", "webp", "pdf", "pbf");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END = 0x06054b50;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CountingOutputStream out;
+    private final Executor executor;
+    private final int defaultLevel;
+    private final int parallelism;
+    private final int maxBufferedEntrySize;
+
+    private final Deque<CompletableFuture<Entry>> pending = new ArrayDeque<>();
+    private final List<Entry> written = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private boolean finished;
+    private boolean failed;
+
+    /**
+     * @param out Stream to write the archive to.
+     * @param executor Executor for compressing buffered entries. Must not be an executor the caller itself is waiting
+     *                 in, as the caller blocks until compression catches up.
+     * @param defaultLevel Compression level for entries which don't specify one, from {@link #STORE} to
+     *                     {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param parallelism Maximum number of entries buffered and compressed at once.
+     * @param maxBufferedEntrySize Entries larger than this are compressed while streaming instead of buffered.
+     */
+    public ParallelZipWriter(OutputStream out, Executor executor, int defaultLevel, int parallelism, int maxBufferedEntrySize) {
+        this.out = new CountingOutputStream(Objects.requireNonNull(out));
+        this.executor = Objects.requireNonNull(executor);
+        this.defaultLevel = checkLevel(defaultLevel);
+        this.parallelism = Math.max(1, parallelism);
+        this.maxBufferedEntrySize = Math.clamp(maxBufferedEntrySize, 0, Integer.MAX_VALUE - 16);
+    }
+
+    /**
+     * @return {@link #STORE} for files which by their name are already compressed, given level otherwise.
+     */
+    public static int levelFor(String name, int level) {
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        return COMPRESSED_EXTENSIONS.contains(extension) ? STORE : level;
+    }
+
+    /**
+     * Add entry compressed with the default level of this writer.
+     *
+     * @see #addEntry(String, FileTime, InputStream, int)
+     */
+    public void addEntry(String name, FileTime lastModified, InputStream content) throws IOException {
+        addEntry(name, lastModified, content, defaultLevel);
+    }
+
+    /**
+     * Add entry with given content. Content is read completely before returning, but may still be compressed and
+     * written later. The content stream is not closed.
+     *
+     * @param name Name of the entry, directories end with <code>/</code> and have no content.
+     * @param lastModified Modification time of the entry, current time if <code>null</code>.
+     * @param content Content of the entry.
+     * @param level Compression level, see {@link #ParallelZipWriter(OutputStream, Executor, int, int, int)}.
+     * @throws ZipException if an entry with the same name has already been added
+     */
+    public void addEntry(String name, FileTime lastModified, InputStream content, int level) throws IOException {
+        ensureOpen();
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+        checkLevel(level);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long dosTime = dosTime(lastModified != null ? lastModified : FileTime.fromMillis(System.currentTimeMillis()));
+        try {
+            byte[] head = content.readNBytes(maxBufferedEntrySize + 1);
+            if (head.length <= maxBufferedEntrySize) {
+                pending.add(InstrumentedExecutor.supplyAsync(() -> compress(nameBytes, dosTime, head, level), executor));
+                while (pending.size() > parallelism) {
+                    writeBuffered(pending.poll());
+                }
+            } else {
+                flushPending();
+                writeStreamed(nameBytes, dosTime, new SequenceInputStream(new ByteArrayInputStream(head), content), level);
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Write all remaining entries and the central directory. The underlying stream is left open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        ensureOpen();
+        try {
+            flushPending();
+            writeCentralDirectory();
+            out.flush();
+            finished = true;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Finish the archive unless writing it has failed, and close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!failed) {
+                finish();
+            }
+        } finally {
+            finished = true;
+            pending.clear();
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished || failed) {
+            throw new IOException("ZIP archive has already been " + (failed ? "failed" : "finished"));
+        }
+    }
+
+    private static int checkLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        return level;
+    }
+
+    private void flushPending() throws IOException {
+        while (!pending.isEmpty()) {
+            writeBuffered(pending.poll());
+        }
+    }
+
+    private static Entry compress(byte[] name, long dosTime, byte[] content, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        Entry entry = new Entry(name, dosTime, crc.getValue(), content.length);
+        if (level != STORE && content.length > 0) {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (!deflater.finished() && deflated.size() < content.length) {
+                    int length = deflater.deflate(buffer);
+                    deflated.write(buffer, 0, length);
+                }
+                if (deflater.finished() && deflated.size() < content.length) {
+                    entry.method = METHOD_DEFLATED;
+                    entry.data = deflated.toByteArray();
+                    entry.compressedSize = entry.data.length;
+                    return entry;
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        // incompressible content is stored as is
+        entry.method = METHOD_STORED;
+        entry.data = content;
+        entry.compressedSize = content.length;
+        return entry;
+    }
+
+    private void writeBuffered(CompletableFuture<Entry> future) throws IOException {
+        Entry entry = future.join();
+        entry.offset = out.count();
+        writeLocalHeader(entry, 0);
+        out.write(entry.data);
+        entry.data = null;
+        written.add(entry);
+    }
+
+    /**
+     * Deflate entry of unknown size on the fly. Sizes and checksum are known only afterwards, so they follow the content
+     * in a data descriptor. Stored entries cannot have a data descriptor, so stored content is deflated without
+     * compression instead.
+     * <p>
+     * As the final size isn't known when the local header is written, streamed entries are always in ZIP64 format: the
+     * local header has a ZIP64 extra field and the data descriptor has 8 byte sizes, which readers recognize from the
+     * header before reaching the descriptor.
+     */
+    private void writeStreamed(byte[] name, long dosTime, InputStream content, int level) throws IOException {
+        Entry entry = new Entry(name, dosTime, 0, 0);
+        entry.method = METHOD_DEFLATED;
+        entry.offset = out.count();
+        writeLocalHeader(entry, FLAG_DATA_DESCRIPTOR);
+
+        CRC32 crc = new CRC32();
+        Deflater deflater = new Deflater(level, true);
+        long start = out.count();
+        long size = 0;
+        try {
+            byte[] input = new byte[BUFFER_SIZE];
+            byte[] output = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(input)) != -1) {
+                crc.update(input, 0, read);
+                size += read;
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    out.write(output, 0, deflater.deflate(output));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(output, 0, deflater.deflate(output));
+            }
+        } finally {
+            deflater.end();
+        }
+        entry.crc = crc.getValue();
+        entry.size = size;
+        entry.compressedSize = out.count() - start;
+
+        writeInt(DATA_DESCRIPTOR);
+        writeInt(entry.crc);
+        writeLong(entry.compressedSize);
+        writeLong(entry.size);
+        written.add(entry);
+    }
+
+    /**
+     * Entries with a data descriptor get a ZIP64 extra field with zero sizes, while sizes of the header itself are set
+     * to mark them as being in ZIP64 format.
+     */
+    private void writeLocalHeader(Entry entry, int flags) throws IOException {
+        entry.flags = FLAG_UTF8 | flags;
+        boolean descriptor = (flags & FLAG_DATA_DESCRIPTOR) != 0;
+        writeInt(LOCAL_HEADER);
+        writeShort(descriptor ? VERSION_ZIP64 : VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(descriptor ? 0 : entry.crc);
+        writeInt(descriptor ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(descriptor ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(descriptor ? 20 : 0);
+        out.write(entry.name);
+        if (descriptor) {
+            writeShort(0x0001);
+            writeShort(16);
+            writeLong(0);
+            writeLong(0);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.count();
+        for (Entry entry : written) {
+            boolean zip64Size = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+            boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+            int extraLength = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+            boolean directory = entry.name.length > 0 && entry.name[entry.name.length - 1] == '/';
+            int version = extraLength > 0 || (entry.flags & FLAG_DATA_DESCRIPTOR) != 0 ? VERSION_ZIP64 : VERSION;
+
+            writeInt(CENTRAL_HEADER);
+            writeShort(version);
+            writeShort(version);
+            writeShort(entry.flags);
+            writeShort(entry.method);
+            writeInt(entry.dosTime);
+            writeInt(entry.crc);
+            writeInt(zip64Size ? ZIP64_MAGIC : entry.compressedSize);
+            writeInt(zip64Size ? ZIP64_MAGIC : entry.size);
+            writeShort(entry.name.length);
+            writeShort(extraLength > 0 ? extraLength + 4 : 0);
+            writeShort(0);  // comment
+            writeShort(0);  // disk number
+            writeShort(0);  // internal attributes
+            writeInt(directory ? 0x10 : 0);  // MS-DOS directory attribute
+            writeInt(zip64Offset ? ZIP64_MAGIC : entry.offset);
+            out.write(entry.name);
+            if (extraLength > 0) {
+                writeShort(0x0001);
+                writeShort(extraLength);
+                if (zip64Size) {
+                    writeLong(entry.size);
+                    writeLong(entry.compressedSize);
+                }
+                if (zip64Offset) {
+                    writeLong(entry.offset);
+                }
+            }
+        }
+        long end = out.count();
+        long size = end - start;
+        int count = written.size();
+
+        if (count >= ZIP64_MAGIC_COUNT || size >= ZIP64_MAGIC || start >= ZIP64_MAGIC) {
+            writeInt(ZIP64_END);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(size);
+            writeLong(start);
+
+            writeInt(ZIP64_LOCATOR);
+            writeInt(0);
+            writeLong(end);
+            writeInt(1);
+        }
+
+        writeInt(END);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(size, ZIP64_MAGIC));
+        writeInt(Math.min(start, ZIP64_MAGIC));
+        writeShort(0);
+    }
+
+    private static long dosTime(FileTime time) {
+        LocalDateTime local = LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+        if (local.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (long) (local.getYear() - 1980) << 25
+            | (long) local.getMonthValue() << 21
+            | (long) local.getDayOfMonth() << 16
+            | (long) local.getHour() << 11
+            | (long) local.getMinute() << 5
+            | (long) local.getSecond() >> 1;
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & 0xFFFFFFFFL);
+        writeInt(value >>> 32);
+    }
+
+    private static final class Entry {
+        private final byte[] name;
+        private final long dosTime;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private int method;
+        private int flags;
+        private long offset;
+        private byte[] data;
+
+        private Entry(byte[] name, long dosTime, long crc, long size) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        private long count() {
+            return count;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import fi.digitraffic.http.HttpClientConfiguration;
 import fi.digitraffic.http.ImmutableHttpClientConfiguration;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.vaco.caching.CachingService;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
 import fi.digitraffic.tis.vaco.configuration.JaxbHttpMessageConverter;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.credentials.CredentialsService;
@@ -12,7 +13,9 @@ import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
 import fi.digitraffic.tis.vaco.fintrafficid.FintrafficIdService;
 import fi.digitraffic.tis.vaco.fintrafficid.MsGraphBackedFintrafficIdService;
+import fi.digitraffic.tis.vaco.http.HostLimiter;
 import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.ValidatorCache;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
@@ -25,6 +28,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.reactive.function.client.WebClient;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import java.time.Clock;
 import java.time.LocalDate;
@@ -43,19 +47,23 @@ public class VacoConfiguration {
                                      String gitCommitIdAbbreviation,
                                      CredentialsService credentialsService,
                                      EntryService entryService,
-                                     FeatureFlagsService featureFlagsService) {
+                                     FeatureFlagsService featureFlagsService,
+                                     ValidatorCache validatorCache,
+                                     HostLimiter hostLimiter) {
         HttpClientConfiguration configuration = ImmutableHttpClientConfiguration.builder()
             .baseUri(vacoProperties.baseUrl())
             .userAgentExtension("VACO/" + ((gitCommitIdAbbreviation != null) ? gitCommitIdAbbreviation : vacoProperties.environment()))
             .build();
-        return new VacoHttpClient(new HttpClient(configuration), credentialsService, entryService, featureFlagsService);
+        return new VacoHttpClient(new HttpClient(configuration), credentialsService, entryService, featureFlagsService, validatorCache, vacoProperties, hostLimiter);
     }
 
     @Bean
     public S3Client s3ClientUtility(VacoProperties vacoProperties,
                                     software.amazon.awssdk.services.s3.S3Client awsS3Client,
-                                    S3TransferManager s3TransferManager) {
-        return new S3Client(vacoProperties, s3TransferManager,awsS3Client);
+                                    S3Presigner s3Presigner,
+                                    S3TransferManager s3TransferManager,
+                                    VacoExecutors vacoExecutors) {
+        return new S3Client(vacoProperties, s3TransferManager, awsS3Client, s3Presigner, vacoExecutors.s3());
     }
 
     @ConditionalOnProperty(name = "vaco.ms-graph.client-secret")
@@ -0,0 +1,212 @@
+package fi.digitraffic.tis.vaco.archives;
+
+import fi.digitraffic.tis.vaco.archives.model.ArchiveReport;
+import fi.digitraffic.tis.vaco.archives.model.EntryVerification;
+import fi.digitraffic.tis.vaco.archives.model.ImmutableArchiveReport;
+import fi.digitraffic.tis.vaco.archives.model.ImmutableEntryVerification;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.ArchiveVerification;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Verifies integrity of ZIP archives by inflating every entry and comparing the result against the CRC and size
+ * recorded in the archive's central directory.
+ * <p>
+ * Entries are split into chunks which are verified in parallel, each chunk reading the archive through its own
+ * {@link ZipFile} so that chunks don't contend on a shared file handle. Verification is bounded by
+ * {@link ArchiveVerification} limits: the archive is rejected as soon as the total inflated size exceeds the byte
+ * budget or a single entry inflates beyond its allowed compression ratio, which protects the service from zip bombs.
+ */
+@Component
+public class ArchiveVerifier {
+
+    /**
+     * Entries smaller than this are not subject to compression ratio limit.
+     */
+    private static final long RATIO_THRESHOLD = 4L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ArchiveVerification limits;
+    private final VacoExecutors vacoExecutors;
+
+    public ArchiveVerifier(VacoProperties vacoProperties, VacoExecutors vacoExecutors) {
+        this.limits = Objects.requireNonNull(vacoProperties.archiveVerification());
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+    }
+
+    public ArchiveReport verify(Path archive) {
+        long start = System.nanoTime();
+        ImmutableArchiveReport.Builder report = ImmutableArchiveReport.builder();
+        try {
+            List<ZipEntry> entries = readCentralDirectory(archive);
+            report.addAllEntries(verifyEntries(archive, entries));
+        } catch (IOException e) {
+            logger.info("Archive {} failed verification: {}", archive, e.getMessage());
+            report.error(Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName()));
+        }
+        ArchiveReport result = report.duration(Duration.ofNanos(System.nanoTime() - start)).build();
+        if (logger.isDebugEnabled()) {
+            result.entries().stream()
+                .sorted(Comparator.comparing(EntryVerification::duration).reversed())
+                .limit(10)
+                .forEach(e -> logger.debug("Verified {} ({} -> {} bytes) in {}ms", e.name(), e.compressedSize(), e.size(), e.duration().toMillis()));
+        }
+        logger.info("Verified {} entries, {} bytes of archive {} in {}ms", result.entries().size(), result.uncompressedSize(), archive, result.duration().toMillis());
+        return result;
+    }
+
+    /**
+     * Read entries from central directory and reject archives which are known to exceed the limits based on declared
+     * sizes alone, before inflating anything.
+     */
+    private List<ZipEntry> readCentralDirectory(Path archive) throws IOException {
+        List<ZipEntry> entries;
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            entries = zipFile.stream()
+                .filter(e -> !e.isDirectory())
+                .map(e -> (ZipEntry) e)
+                .toList();
+        }
+        if (entries.size() > limits.maxEntries()) {
+            throw new ZipException("Archive has " + entries.size() + " entries, at most " + limits.maxEntries() + " allowed");
+        }
+        long declared = 0;
+        for (ZipEntry entry : entries) {
+            if (entry.getSize() > 0) {
+                checkRatio(entry, entry.getSize());
+                declared += entry.getSize();
+            }
+        }
+        if (declared > limits.maxUncompressedSize().toBytes()) {
+            throw new ZipException("Archive declares " + declared + " bytes of content, at most " + limits.maxUncompressedSize().toBytes() + " allowed");
+        }
+        return entries;
+    }
+
+    private List<EntryVerification> verifyEntries(Path archive, List<ZipEntry> entries) throws IOException {
+        AtomicLong budget = new AtomicLong(limits.maxUncompressedSize().toBytes());
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        List<CompletableFuture<List<EntryVerification>>> chunks = chunk(entries).stream()
+            .map(chunk -> InstrumentedExecutor.supplyAsync(() -> {
+                try {
+                    return verifyChunk(archive, chunk, budget, failed);
+                } catch (IOException e) {
+                    failed.set(true);
+                    throw new CompletionException(e);
+                }
+            }, vacoExecutors.verification()))
+            .toList();
+
+        List<EntryVerification> verified = new ArrayList<>();
+        IOException failure = null;
+        for (CompletableFuture<List<EntryVerification>> chunk : chunks) {
+            try {
+                verified.addAll(chunk.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return verified;
+    }
+
+    /**
+     * Distribute entries into chunks of roughly equal compressed size, largest entries first.
+     */
+    private List<List<ZipEntry>> chunk(List<ZipEntry> entries) {
+        int chunkCount = Math.max(1, Math.min(vacoExecutors.verification().maxConcurrency(), entries.size()));
+        List<List<ZipEntry>> chunks = new ArrayList<>(chunkCount);
+        long[] sizes = new long[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new ArrayList<>());
+        }
+        entries.stream()
+            .sorted(Comparator.comparingLong(ZipEntry::getCompressedSize).reversed())
+            .forEach(entry -> {
+                int smallest = 0;
+                for (int i = 1; i < chunkCount; i++) {
+                    if (sizes[i] < sizes[smallest]) {
+                        smallest = i;
+                    }
+                }
+                chunks.get(smallest).add(entry);
+                sizes[smallest] += Math.max(1, entry.getCompressedSize());
+            });
+        return chunks;
+    }
+
+    private List<EntryVerification> verifyChunk(Path archive, List<ZipEntry> chunk, AtomicLong budget, AtomicBoolean failed) throws IOException {
+        List<EntryVerification> verified = new ArrayList<>(chunk.size());
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            for (ZipEntry entry : chunk) {
+                if (failed.get()) {
+                    // another chunk already rejected the archive, no point in continuing
+                    break;
+                }
+                verified.add(verifyEntry(zipFile, entry, buffer, budget));
+            }
+        }
+        return verified;
+    }
+
+    private EntryVerification verifyEntry(ZipFile zipFile, ZipEntry entry, byte[] buffer, AtomicLong budget) throws IOException {
+        long start = System.nanoTime();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                size += read;
+                checkRatio(entry, size);
+                if (budget.addAndGet(-read) < 0) {
+                    throw new ZipException("Archive content exceeds " + limits.maxUncompressedSize().toBytes() + " bytes when inflated");
+                }
+            }
+        }
+        if (entry.getSize() != -1 && entry.getSize() != size) {
+            throw new ZipException("Entry " + entry.getName() + " has size " + size + ", expected " + entry.getSize());
+        }
+        if (entry.getCrc() != -1 && entry.getCrc() != crc.getValue()) {
+            throw new ZipException("Entry " + entry.getName() + " has invalid CRC");
+        }
+        return ImmutableEntryVerification.of(entry.getName(), entry.getCompressedSize(), size, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void checkRatio(ZipEntry entry, long size) throws ZipException {
+        long compressed = Math.max(1, entry.getCompressedSize());
+        if (size > RATIO_THRESHOLD && size / compressed > limits.maxCompressionRatio()) {
+            throw new ZipException("Entry " + entry.getName() + " exceeds maximum compression ratio of " + limits.maxCompressionRatio());
+        }
+    }
+}
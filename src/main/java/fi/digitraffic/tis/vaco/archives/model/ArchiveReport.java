@@ -0,0 +1,30 @@
+package fi.digitraffic.tis.vaco.archives.model;
+
+import org.immutables.value.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@Value.Immutable
+public interface ArchiveReport {
+    /**
+     * Entries which were fully verified. Might not contain all entries if verification failed.
+     */
+    List<EntryVerification> entries();
+
+    /**
+     * Reason for the archive being rejected, empty for valid archives.
+     */
+    Optional<String> error();
+
+    Duration duration();
+
+    default boolean valid() {
+        return error().isEmpty();
+    }
+
+    default long uncompressedSize() {
+        return entries().stream().mapToLong(EntryVerification::size).sum();
+    }
+}
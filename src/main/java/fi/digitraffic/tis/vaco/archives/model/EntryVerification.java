@@ -0,0 +1,23 @@
+package fi.digitraffic.tis.vaco.archives.model;
+
+import org.immutables.value.Value;
+
+import java.time.Duration;
+
+@Value.Immutable
+public interface EntryVerification {
+    @Value.Parameter
+    String name();
+
+    @Value.Parameter
+    long compressedSize();
+
+    /**
+     * Number of bytes actually inflated from the entry.
+     */
+    @Value.Parameter
+    long size();
+
+    @Value.Parameter
+    Duration duration();
+}
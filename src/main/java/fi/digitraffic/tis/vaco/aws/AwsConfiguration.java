@@ -28,6 +28,7 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.SesClientBuilder;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
@@ -155,6 +156,21 @@ public class AwsConfiguration {
         return b.httpClient(sdkAsyncHttpClient).build();
     }
 
+    /**
+     * Presigned URLs are signed locally, so no HTTP client is needed.
+     */
+    @Bean
+    public S3Presigner s3Presigner(VacoProperties vacoProperties,
+                                   AwsCredentialsProvider credentialsProvider) {
+        S3Presigner.Builder b = S3Presigner.builder()
+            .region(Region.of(vacoProperties.aws().region()))
+            .credentialsProvider(credentialsProvider);
+        if (vacoProperties.aws().s3() != null) {
+            b = b.endpointOverride(URI.create(vacoProperties.aws().s3().endpoint()));
+        }
+        return b.build();
+    }
+
     @Bean
     public S3TransferManager s3TransferManager(S3AsyncClient s3AsyncClient) {
         S3TransferManager.Builder b = S3TransferManager.builder();
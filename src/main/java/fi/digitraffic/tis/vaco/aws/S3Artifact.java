@@ -9,6 +9,8 @@ public final class S3Artifact {
 
     static final String TASKS_ROOT = ENTRY_ROOT + "/tasks/%s";
 
+    static final String REFERENCE_ROOT = "reference/%s/%s";
+
     private S3Artifact() {}
 
     /**
@@ -29,4 +31,22 @@ public final class S3Artifact {
             .addPath("rules", ruleName)
             .build();
     }
+
+    /**
+     * Pattern: reference/{dataset}/{sha256}/{fileName}
+     * <p>
+     * Reference datasets are shared by all entries, the content digest in path makes each version of a dataset its own
+     * immutable object.
+     *
+     * @param dataset Name of the dataset
+     * @param sha256 Hex encoded SHA-256 digest of dataset content
+     * @param fileName Name of the dataset file
+     * @return Content addressed path of dataset
+     */
+    public static S3Path getReferenceDatasetPath(String dataset, String sha256, String fileName) {
+        return ImmutableS3Path.builder()
+            .from(S3Path.of(String.format(REFERENCE_ROOT, dataset, sha256)))
+            .addPath(fileName)
+            .build();
+    }
 }
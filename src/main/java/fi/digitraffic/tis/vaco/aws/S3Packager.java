@@ -1,26 +1,44 @@
 package fi.digitraffic.tis.vaco.aws;
 
-import com.google.common.annotations.VisibleForTesting;
 import fi.digitraffic.tis.aws.s3.AwsS3Exception;
 import fi.digitraffic.tis.aws.s3.ImmutableS3Path;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
-import fi.digitraffic.tis.utilities.Archiver;
-import fi.digitraffic.tis.utilities.TempFiles;
+import fi.digitraffic.tis.aws.s3.S3UploadStream;
+import fi.digitraffic.tis.utilities.ParallelZipWriter;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.Packaging;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
+/**
+ * Produces ZIP packages of S3 contents by streaming: objects are read from the source prefix and written through a
+ * {@link ParallelZipWriter} directly into a multipart upload, without storing anything locally.
+ * <p>
+ * Small objects are fetched into memory in parallel ahead of the one being written, which hides the per-object latency
+ * of packages with lots of small files, and compressed in parallel. Larger objects are read directly from S3 once it is
+ * their turn to be written. Writing to the upload blocks while too many parts are in flight, which in turn stops reading further objects, so
+ * memory use stays constant regardless of package size.
+ */
 @Component
 public class S3Packager {
 
@@ -28,25 +46,14 @@ public class S3Packager {
 
     private final S3Client s3Client;
     private final VacoProperties vacoProperties;
+    private final VacoExecutors vacoExecutors;
 
     public S3Packager(S3Client s3Client,
-                      VacoProperties vacoProperties) {
+                      VacoProperties vacoProperties,
+                      VacoExecutors vacoExecutors) {
         this.s3Client = Objects.requireNonNull(s3Client);
         this.vacoProperties = Objects.requireNonNull(vacoProperties);
-    }
-
-    /**
-     * After the zip  is uploaded to its final destination, time to clean up local folder
-     */
-    @VisibleForTesting
-    void cleanup(File itemToBeDeleted) throws IOException {
-        File[] contents = itemToBeDeleted.listFiles();
-        if (contents != null) {
-            for (File file : contents) {
-                cleanup(file);
-            }
-        }
-        Files.delete(itemToBeDeleted.toPath());
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
     }
 
     public CompletableFuture<Void> producePackage(Entry entry,
@@ -54,47 +61,95 @@ public class S3Packager {
                                                   S3Path s3TargetPath,
                                                   String zipFileName,
                                                   Predicate<String> filter) {
-        return CompletableFuture.runAsync(() -> {
-            Path localArtifactTemp = TempFiles.getArtifactDownloadDirectory(vacoProperties, entry);
-            Path localTargetFile = TempFiles.getArtifactPackagingFile(vacoProperties, entry, zipFileName);
-            logger.debug("Starting to package s3://{}/{} into {}", vacoProperties.s3ProcessingBucket(), s3SourcePath, localTargetFile);
-            try {
-                s3Client.downloadDirectory(vacoProperties.s3ProcessingBucket(), s3SourcePath, localArtifactTemp, filter).join();
-                Archiver.createZip(localArtifactTemp, localTargetFile);
-                S3Path
-                    s3FullTargetPath = ImmutableS3Path.builder()
-                    .from(s3TargetPath)
-                    .addPath(zipFileName)
-                    .build();
-                s3Client.uploadFile(vacoProperties.s3PackagesBucket(), s3FullTargetPath, localTargetFile).join();
-                logger.info("Successfully completed packaging s3://{}/{} via {} into {}", vacoProperties.s3ProcessingBucket(), s3SourcePath, localArtifactTemp, s3FullTargetPath);
+        return InstrumentedExecutor.runAsync(() -> {
+            String sourceBucket = vacoProperties.s3ProcessingBucket();
+            S3Path s3FullTargetPath = ImmutableS3Path.builder()
+                .from(s3TargetPath)
+                .addPath(zipFileName)
+                .build();
+            logger.debug("Starting to package s3://{}/{} into {} for entry {}", sourceBucket, s3SourcePath, s3FullTargetPath, entry.publicId());
+
+            Packaging packaging = vacoProperties.packaging();
+            // keys ending with delimiter are directory placeholders without content
+            List<S3Object> objects = s3Client.listObjects(sourceBucket, s3SourcePath, filter).stream()
+                .filter(s3Object -> !s3Object.key().endsWith("/"))
+                .toList();
+            Iterator<S3Object> remaining = objects.iterator();
+            Deque<PendingObject> pending = new ArrayDeque<>();
+            Set<String> directories = new HashSet<>();
+            long bytes = 0;
+
+            try (S3UploadStream upload = s3Client.openUpload(vacoProperties.s3PackagesBucket(), s3FullTargetPath);
+                 ParallelZipWriter zip = new ParallelZipWriter(
+                     upload,
+                     vacoExecutors.compression(),
+                     packaging.compressionLevel(),
+                     vacoProperties.concurrency().compression(),
+                     (int) packaging.maxBufferedObjectSize().toBytes())) {
+                while (remaining.hasNext() || !pending.isEmpty()) {
+                    while (pending.size() < Math.max(1, packaging.prefetchObjects()) && remaining.hasNext()) {
+                        pending.add(prefetch(sourceBucket, remaining.next(), packaging));
+                    }
+                    PendingObject next = pending.poll();
+                    String name = entryName(s3SourcePath, next.object().key());
+                    addDirectories(name, directories, zip);
+                    FileTime lastModified = next.object().lastModified() != null ? FileTime.from(next.object().lastModified()) : null;
+                    try (InputStream content = next.content() != null
+                        ? next.content().join()
+                        : s3Client.openObject(sourceBucket, next.object().key())) {
+                        zip.addEntry(name, lastModified, content, ParallelZipWriter.levelFor(name, packaging.compressionLevel()));
+                    }
+                    bytes += next.object().size() != null ? next.object().size() : 0;
+                }
+                zip.finish();
+                upload.complete();
+                logger.info("Successfully completed packaging {} objects ({} bytes) from s3://{}/{} into {}", objects.size(), bytes, sourceBucket, s3SourcePath, s3FullTargetPath);
             } catch (IOException e) {
                 throw new AwsS3Exception(String.format("Encountered IOException while packaging %s into %s", s3SourcePath, zipFileName), e);
-            } finally {
-               if (Files.exists(localArtifactTemp)) {
-                   try {
-                       cleanup(localArtifactTemp.toFile());
-                       cleanUpTempArtifactPathFile(entry, localTargetFile);
-                   } catch (IOException e) {
-                       logger.error("S3Packager has failed cleaning up the temp directory {} produced during packaging {} into {}", localArtifactTemp, s3SourcePath, zipFileName, e);
-                   }
-               }
             }
-        });
+        }, vacoExecutors.packaging());
     }
+
     /**
-     * Deletes the temporary artifact file.
-     *
-     * @param entry the related entry
-     * @param localArtifactPathFile path to the temp file to remove
+     * Start fetching given object into memory if it is small enough, larger objects are left to be read when written.
      */
-    private void cleanUpTempArtifactPathFile(Entry entry, Path localArtifactPathFile) {
-        try {
-            Files.deleteIfExists(localArtifactPathFile); // remove downloaded temp file
-            logger.info("Deleted local artifact path files for EntryId {} from {}", entry.publicId(), localArtifactPathFile);
+    private PendingObject prefetch(String bucket, S3Object object, Packaging packaging) {
+        if (object.size() == null || object.size() > packaging.maxBufferedObjectSize().toBytes()) {
+            return new PendingObject(object, null);
         }
-        catch (Exception e) {
-            logger.error("Failed to delete local artifact path files for EntryId {} from {}", entry.publicId(),localArtifactPathFile, e);
+        return new PendingObject(object, InstrumentedExecutor.supplyAsync(() -> {
+            try (InputStream content = s3Client.openObject(bucket, object.key())) {
+                return new ByteArrayInputStream(content.readAllBytes());
+            } catch (IOException e) {
+                throw new AwsS3Exception("Failed to read s3://" + bucket + "/" + object.key(), e);
+            }
+        }, vacoExecutors.s3()));
+    }
+
+    /**
+     * Path of object relative to packaged prefix, same as it would have when downloaded as a directory.
+     */
+    private static String entryName(S3Path prefix, String key) {
+        String name = key.substring(Math.min(prefix.toString().length(), key.length()));
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    /**
+     * Add explicit entries for parent directories of given entry which haven't been added yet.
+     */
+    private static void addDirectories(String name, Set<String> directories, ParallelZipWriter zip) throws IOException {
+        int separator = name.indexOf('/');
+        while (separator > 0) {
+            String directory = name.substring(0, separator + 1);
+            if (directories.add(directory)) {
+                zip.addEntry(directory, null, InputStream.nullInputStream(), ParallelZipWriter.STORE);
+            }
+            separator = name.indexOf('/', separator + 1);
         }
     }
+
+    /**
+     * @param content Prefetched content, <code>null</code> if the object is too large to be prefetched.
+     */
+    private record PendingObject(S3Object object, CompletableFuture<InputStream> content) {}
 }
@@ -7,7 +7,11 @@ import fi.digitraffic.tis.vaco.caching.model.CacheSummaryStatistics;
 import fi.digitraffic.tis.vaco.db.model.CompanyRecord;
 import fi.digitraffic.tis.vaco.db.model.ContextRecord;
 import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.http.model.CachedResponse;
+import fi.digitraffic.tis.vaco.packages.model.Package;
+import fi.digitraffic.tis.vaco.process.model.Task;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
 import fi.digitraffic.tis.vaco.ruleset.model.Ruleset;
 import fi.digitraffic.tis.vaco.ui.model.MyDataEntrySummary;
 import org.slf4j.Logger;
@@ -19,12 +23,21 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 /**
  * Centralized caching control for entire application.
@@ -44,6 +57,9 @@ public class CachingService {
     private final Cache<String, ClassPathResource> classPathResourceCache;
     private final Cache<String, List<MyDataEntrySummary>> myDataSummariesCache;
     private final Cache<String, Object> msGraphCache;
+    private final Cache<String, CachedResponse> httpValidatorCache;
+    private final Cache<String, Boolean> packageAvailabilityCache;
+    private final Cache<String, Instant> delegationFallbackCache;
     private final CacheStatsMapper cacheStatsMapper;
 
     // *Record caches are database specific and should only be accesssed from *Repositories
@@ -62,6 +78,9 @@ public class CachingService {
         this.companyRecordCache = genericCache(300);
         this.myDataSummariesCache = genericCache(500);
         this.msGraphCache = genericCache(500, Duration.ofMinutes(5));
+        this.httpValidatorCache = genericCache(1000);
+        this.packageAvailabilityCache = genericCache(10000);
+        this.delegationFallbackCache = genericCache(3000, Duration.ofHours(1));
     }
 
     public Optional<Ruleset> cacheRuleset(String key, Function<String, Ruleset> loader) {
@@ -106,6 +125,84 @@ public class CachingService {
         invalidateStatus(entry);
     }
 
+    /**
+     * Apply changed tasks to the cached entry in place instead of invalidating it, so that the next lookup doesn't need
+     * to rebuild the whole entry.
+     * <p>
+     * Each task's latest lifecycle timestamp acts as its version stamp: a change older than the cached copy of the task
+     * is ignored, so deltas applied out of order won't roll the cache back. If the cached entry doesn't know one of the
+     * changed tasks, it is invalidated and rebuilt on next lookup as before.
+     *
+     * @param publicId Entry the tasks belong to.
+     * @param changed Tasks as returned by the database after the change.
+     * @param packages Replacement packages per task id for tasks whose packages may have changed. Packages of other
+     *                 tasks are kept as is.
+     */
+    public void updateEntryTasks(String publicId, List<Task> changed, Map<Long, List<Package>> packages) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        entryCache.asMap().computeIfPresent(publicId, (key, cached) -> patchTasks(cached, changed, packages));
+        invalidateStatus(publicId);
+        changed.forEach(t -> invalidateStatus(publicId + "/" + t.name()));
+    }
+
+    public boolean isEntryCached(String publicId) {
+        return entryCache.getIfPresent(publicId) != null;
+    }
+
+    private Entry patchTasks(Entry cached, List<Task> changed, Map<Long, List<Package>> packages) {
+        if (cached.tasks() == null) {
+            return null;
+        }
+        Map<Long, Task> changedById = new HashMap<>();
+        changed.forEach(t -> changedById.put(t.id(), t));
+        Set<Long> cachedIds = new HashSet<>();
+        List<Task> tasks = new ArrayList<>(cached.tasks().size());
+        for (Task current : cached.tasks()) {
+            cachedIds.add(current.id());
+            Task update = changedById.get(current.id());
+            tasks.add(update != null && !isOlder(update, current) ? update : current);
+        }
+        if (!cachedIds.containsAll(changedById.keySet())) {
+            logger.debug("Cached entry {} is missing some of the changed tasks, invalidating", cached.publicId());
+            return null;
+        }
+        ImmutableEntry patched = ImmutableEntry.copyOf(cached).withTasks(tasks);
+        if (!packages.isEmpty()) {
+            List<Package> merged = new ArrayList<>();
+            if (cached.packages() != null) {
+                cached.packages().stream()
+                    .filter(p -> p.task() == null || !packages.containsKey(p.task().id()))
+                    .forEach(merged::add);
+            }
+            packages.values().forEach(merged::addAll);
+            patched = patched.withPackages(merged);
+        }
+        return patched;
+    }
+
+    private static boolean isOlder(Task update, Task current) {
+        ZonedDateTime updateVersion = version(update);
+        ZonedDateTime currentVersion = version(current);
+        return updateVersion != null && currentVersion != null && updateVersion.isBefore(currentVersion);
+    }
+
+    private static ZonedDateTime version(Task task) {
+        return Stream.of(task.started(), task.updated(), task.completed())
+            .filter(Objects::nonNull)
+            .max(Comparator.naturalOrder())
+            .orElse(null);
+    }
+
+    /**
+     * Update status of cached entry in place.
+     */
+    public void updateEntryStatus(String publicId, Status status) {
+        entryCache.asMap().computeIfPresent(publicId, (key, cached) -> ImmutableEntry.copyOf(cached).withStatus(status));
+        invalidateStatus(publicId);
+    }
+
     public Optional<Status> cacheStatus(String key, Function<String, Status> loader) {
         return Optional.ofNullable(statusCache.get(key, loader));
     }
@@ -135,6 +232,58 @@ public class CachingService {
         return Optional.ofNullable((T) msGraphCache.get(key, loader));
     }
 
+    public Optional<CachedResponse> cacheHttpValidators(String key, Function<String, CachedResponse> loader) {
+        return Optional.ofNullable(httpValidatorCache.get(key, loader));
+    }
+
+    public void updateHttpValidators(String key, CachedResponse value) {
+        httpValidatorCache.put(key, value);
+    }
+
+    public void invalidateHttpValidators(String key) {
+        httpValidatorCache.invalidate(key);
+    }
+
+    /**
+     * Availability of package file in S3. Eventually consistent, updated by registering packages and reconciling the
+     * packages against S3.
+     *
+     * @param key Path of the package file.
+     * @return Known availability of the package, empty if not cached.
+     */
+    public Optional<Boolean> packageAvailability(String key) {
+        return Optional.ofNullable(packageAvailabilityCache.getIfPresent(key));
+    }
+
+    public void updatePackageAvailability(String key, boolean available) {
+        packageAvailabilityCache.put(key, available);
+    }
+
+    /**
+     * Reserve scheduling of a delayed delegation fallback for given entry. Only one fallback per entry is pending at a
+     * time, further reservations are refused until the pending one is due.
+     *
+     * @param key Public id of the entry.
+     * @param due When the fallback will be delivered.
+     * @return <code>true</code> if the fallback should be scheduled, <code>false</code> if one is already pending.
+     */
+    public boolean reserveDelegationFallback(String key, Instant due) {
+        Instant now = Instant.now();
+        AtomicBoolean reserved = new AtomicBoolean(false);
+        delegationFallbackCache.asMap().compute(key, (k, pending) -> {
+            if (pending != null && pending.isAfter(now)) {
+                return pending;
+            }
+            reserved.set(true);
+            return due;
+        });
+        return reserved.get();
+    }
+
+    public void releaseDelegationFallback(String key) {
+        delegationFallbackCache.invalidate(key);
+    }
+
     private Cache<String, String> sqsQueueUrlCache() {
         return Caffeine.newBuilder()
             .recordStats()
@@ -173,16 +322,19 @@ public class CachingService {
     }
 
     public Map<String, CacheSummaryStatistics> getStats() {
-        return Map.of(
-            "rulesets", cacheStatsMapper.toCacheSummaryStatistics(rulesetCache),
-            "SQS queue URLs", cacheStatsMapper.toCacheSummaryStatistics(sqsQueueUrlCache),
-            "local temporary file paths", cacheStatsMapper.toCacheSummaryStatistics(localPathCache),
-            "entries", cacheStatsMapper.toCacheSummaryStatistics(entryCache),
-            "statuses", cacheStatsMapper.toCacheSummaryStatistics(classPathResourceCache),
-            "classpath resources", cacheStatsMapper.toCacheSummaryStatistics(classPathResourceCache),
-            "DB/context records", cacheStatsMapper.toCacheSummaryStatistics(contextRecordCache),
-            "DB/company records", cacheStatsMapper.toCacheSummaryStatistics(companyRecordCache),
-            "UI/MyData summaries", cacheStatsMapper.toCacheSummaryStatistics(myDataSummariesCache));
+        return Map.ofEntries(
+            Map.entry("rulesets", cacheStatsMapper.toCacheSummaryStatistics(rulesetCache)),
+            Map.entry("SQS queue URLs", cacheStatsMapper.toCacheSummaryStatistics(sqsQueueUrlCache)),
+            Map.entry("local temporary file paths", cacheStatsMapper.toCacheSummaryStatistics(localPathCache)),
+            Map.entry("entries", cacheStatsMapper.toCacheSummaryStatistics(entryCache)),
+            Map.entry("statuses", cacheStatsMapper.toCacheSummaryStatistics(classPathResourceCache)),
+            Map.entry("classpath resources", cacheStatsMapper.toCacheSummaryStatistics(classPathResourceCache)),
+            Map.entry("DB/context records", cacheStatsMapper.toCacheSummaryStatistics(contextRecordCache)),
+            Map.entry("DB/company records", cacheStatsMapper.toCacheSummaryStatistics(companyRecordCache)),
+            Map.entry("UI/MyData summaries", cacheStatsMapper.toCacheSummaryStatistics(myDataSummariesCache)),
+            Map.entry("HTTP validators", cacheStatsMapper.toCacheSummaryStatistics(httpValidatorCache)),
+            Map.entry("package availability", cacheStatsMapper.toCacheSummaryStatistics(packageAvailabilityCache)),
+            Map.entry("delegation fallbacks", cacheStatsMapper.toCacheSummaryStatistics(delegationFallbackCache)));
     }
 
     public Optional<ContextRecord> cacheContextRecord(String key, Function<String, ContextRecord> loader) {
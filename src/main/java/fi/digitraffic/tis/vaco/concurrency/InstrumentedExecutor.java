@@ -0,0 +1,205 @@
+package fi.digitraffic.tis.vaco.concurrency;
+
+import fi.digitraffic.tis.vaco.concurrency.model.ExecutorStatistics;
+import fi.digitraffic.tis.vaco.concurrency.model.ImmutableExecutorStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, named executor which keeps track of its own throughput.
+ * <p>
+ * Platform thread variant is a fixed size thread pool with a bounded work queue. When the queue fills up, the
+ * submitting thread runs the task itself which acts as natural back-pressure instead of rejecting work.
+ * <p>
+ * Virtual thread variant starts a new virtual thread for each task, but only allows <code>maxConcurrency</code> tasks to
+ * run at the same time. Waiting virtual threads are cheap, so there is no separate queue limit.
+ * <p>
+ * {@link CompletableFuture#supplyAsync(Supplier, Executor)} and {@link CompletableFuture#runAsync(Runnable, Executor)}
+ * catch failures of the submitted work internally, so those would always be counted as completed. Asynchronous work
+ * should be submitted with {@link #supplyAsync(Supplier, Executor)} and {@link #runAsync(Runnable, Executor)} instead,
+ * which count failures from the outcome of the returned future.
+ */
+public class InstrumentedExecutor implements Executor, AutoCloseable {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+    private final int maxConcurrency;
+    private final boolean virtualThreads;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private InstrumentedExecutor(String name, int maxConcurrency, boolean virtualThreads, ExecutorService delegate) {
+        this.name = Objects.requireNonNull(name);
+        this.maxConcurrency = maxConcurrency;
+        this.virtualThreads = virtualThreads;
+        this.delegate = Objects.requireNonNull(delegate);
+        this.permits = virtualThreads ? new Semaphore(maxConcurrency, true) : null;
+    }
+
+    public static InstrumentedExecutor platformThreads(String name, int maxConcurrency, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            maxConcurrency,
+            maxConcurrency,
+            60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+            namedThreads(name),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new InstrumentedExecutor(name, maxConcurrency, false, pool);
+    }
+
+    public static InstrumentedExecutor virtualThreads(String name, int maxConcurrency) {
+        ThreadFactory factory = Thread.ofVirtual().name(name + "-", 0).factory();
+        return new InstrumentedExecutor(name, maxConcurrency, true, Executors.newThreadPerTaskExecutor(factory));
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Same as {@link CompletableFuture#supplyAsync(Supplier, Executor)}, but counts failures of the supplier when
+     * executor is an {@link InstrumentedExecutor}.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        Objects.requireNonNull(supplier);
+        if (!(executor instanceof InstrumentedExecutor instrumented)) {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        instrumented.submit(() -> {
+            try {
+                future.complete(supplier.get());
+                return true;
+            } catch (Throwable t) {
+                // wrapped the same way as CompletableFuture does to keep dependent stages seeing identical exceptions
+                future.completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+                return false;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Same as {@link CompletableFuture#runAsync(Runnable, Executor)}, but counts failures of the runnable when executor
+     * is an {@link InstrumentedExecutor}.
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        Objects.requireNonNull(runnable);
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Objects.requireNonNull(command);
+        submit(() -> {
+            command.run();
+            return true;
+        });
+    }
+
+    /**
+     * @param task Work to run, returns <code>false</code> if it failed without throwing.
+     */
+    private void submit(BooleanSupplier task) {
+        submitted.increment();
+        waiting.incrementAndGet();
+        long enqueued = System.nanoTime();
+        delegate.execute(() -> {
+            if (permits != null) {
+                permits.acquireUninterruptibly();
+            }
+            long started = System.nanoTime();
+            waiting.decrementAndGet();
+            totalWaitNanos.add(started - enqueued);
+            active.incrementAndGet();
+            try {
+                if (task.getAsBoolean()) {
+                    completed.increment();
+                } else {
+                    failed.increment();
+                }
+            } catch (RuntimeException | Error e) {
+                failed.increment();
+                throw e;
+            } finally {
+                active.decrementAndGet();
+                totalRunNanos.add(System.nanoTime() - started);
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public ExecutorStatistics statistics() {
+        long done = completed.sum() + failed.sum();
+        return ImmutableExecutorStatistics.builder()
+            .name(name)
+            .virtualThreads(virtualThreads)
+            .maxConcurrency(maxConcurrency)
+            .active(active.get())
+            .waiting(waiting.get())
+            .submitted(submitted.sum())
+            .completed(completed.sum())
+            .failed(failed.sum())
+            .averageWaitMillis(done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / done))
+            .averageRunMillis(done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.sum() / done))
+            .build();
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Executor {} did not terminate in time, {} tasks still active", name, active.get());
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delegate.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package fi.digitraffic.tis.vaco.concurrency;
+
+import fi.digitraffic.tis.vaco.concurrency.model.ExecutorStatistics;
+import fi.digitraffic.tis.vaco.configuration.Concurrency;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Dedicated executors for each blocking processing stage.
+ * <p>
+ * All asynchronous work which does blocking I/O (JDBC, S3, HTTP) must run in one of these instead of the common
+ * {@link java.util.concurrent.ForkJoinPool}, so that a slow stage cannot starve the others. The stages are kept
+ * separate also because they nest: rules and result listeners produce packages and packaging does S3 transfers, and
+ * waiting for a task in the same bounded executor could otherwise deadlock.
+ * <p>
+ * This is intentionally not exposed as {@link java.util.concurrent.Executor} beans to avoid Spring Boot backing off
+ * from its own task executor auto-configuration.
+ */
+@Component
+public class VacoExecutors implements AutoCloseable {
+
+    private final InstrumentedExecutor rules;
+    private final InstrumentedExecutor packaging;
+    private final InstrumentedExecutor s3;
+    private final InstrumentedExecutor listeners;
+    private final InstrumentedExecutor verification;
+    private final InstrumentedExecutor polling;
+    private final InstrumentedExecutor compression;
+
+    public VacoExecutors(VacoProperties vacoProperties) {
+        Concurrency concurrency = vacoProperties.concurrency();
+        this.rules = create("vaco-rules", concurrency.rules(), concurrency);
+        this.packaging = create("vaco-packaging", concurrency.packaging(), concurrency);
+        this.s3 = create("vaco-s3", concurrency.s3(), concurrency);
+        this.listeners = create("vaco-listeners", concurrency.listeners(), concurrency);
+        this.verification = create("vaco-verification", concurrency.verification(), concurrency);
+        this.polling = create("vaco-polling", concurrency.polling(), concurrency);
+        this.compression = create("vaco-compression", concurrency.compression(), concurrency);
+    }
+
+    private static InstrumentedExecutor create(String name, int maxConcurrency, Concurrency concurrency) {
+        int size = Math.max(1, maxConcurrency);
+        return concurrency.virtualThreads()
+            ? InstrumentedExecutor.virtualThreads(name, size)
+            : InstrumentedExecutor.platformThreads(name, size, concurrency.queueCapacity());
+    }
+
+    /**
+     * Internal rules, e.g. {@link fi.digitraffic.tis.vaco.rules.internal.DownloadRule}
+     */
+    public InstrumentedExecutor rules() {
+        return rules;
+    }
+
+    /**
+     * Package production from S3 contents.
+     */
+    public InstrumentedExecutor packaging() {
+        return packaging;
+    }
+
+    /**
+     * Single S3 transfers.
+     */
+    public InstrumentedExecutor s3() {
+        return s3;
+    }
+
+    /**
+     * Processing of messages from result, error and dead letter queues.
+     */
+    public InstrumentedExecutor listeners() {
+        return listeners;
+    }
+
+    /**
+     * CPU bound archive integrity verification.
+     */
+    public InstrumentedExecutor verification() {
+        return verification;
+    }
+
+    /**
+     * Conditional requests checking registered feeds for changes.
+     */
+    public InstrumentedExecutor polling() {
+        return polling;
+    }
+
+    /**
+     * CPU bound compression of archive entries.
+     */
+    public InstrumentedExecutor compression() {
+        return compression;
+    }
+
+    public Map<String, ExecutorStatistics> getStats() {
+        return List.of(rules, packaging, s3, listeners, verification, polling, compression).stream()
+            .collect(Collectors.toMap(InstrumentedExecutor::name, InstrumentedExecutor::statistics, (a, b) -> a));
+    }
+
+    @Override
+    public void close() {
+        // close in reverse order of nesting so that outer stages can still complete their inner work
+        listeners.close();
+        rules.close();
+        packaging.close();
+        s3.close();
+        verification.close();
+        polling.close();
+        compression.close();
+    }
+}
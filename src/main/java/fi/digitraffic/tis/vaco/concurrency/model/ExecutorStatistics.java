@@ -0,0 +1,34 @@
+package fi.digitraffic.tis.vaco.concurrency.model;
+
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+@Value.Immutable
+@JsonSerialize(as = ImmutableExecutorStatistics.class)
+@JsonDeserialize(as = ImmutableExecutorStatistics.class)
+public interface ExecutorStatistics {
+
+    String name();
+
+    boolean virtualThreads();
+
+    int maxConcurrency();
+
+    int active();
+
+    /**
+     * Tasks which have been submitted but are not yet running.
+     */
+    int waiting();
+
+    long submitted();
+
+    long completed();
+
+    long failed();
+
+    long averageWaitMillis();
+
+    long averageRunMillis();
+}
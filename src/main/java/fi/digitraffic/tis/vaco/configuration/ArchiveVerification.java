@@ -0,0 +1,18 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Limits for verifying downloaded archives before they are accepted for processing.
+ *
+ * @param maxUncompressedSize Maximum total size of all entries in an archive once inflated.
+ * @param maxCompressionRatio Maximum allowed ratio between inflated and compressed size of a single entry. Applies only
+ *                            to entries larger than a few megabytes, as small highly repetitive files are common in
+ *                            legitimate feeds.
+ * @param maxEntries Maximum number of entries in an archive.
+ * @see fi.digitraffic.tis.vaco.archives.ArchiveVerifier
+ */
+public record ArchiveVerification(DataSize maxUncompressedSize,
+                                  int maxCompressionRatio,
+                                  int maxEntries) {
+}
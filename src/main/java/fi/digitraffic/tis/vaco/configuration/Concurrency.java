@@ -0,0 +1,28 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+/**
+ * Sizing of the dedicated executors used for each processing stage.
+ *
+ * @param virtualThreads Run stage work on virtual threads instead of platform thread pools. Concurrency limits are
+ *                       still enforced.
+ * @param rules Maximum number of concurrently executing internal rules.
+ * @param packaging Maximum number of concurrently produced S3 packages.
+ * @param s3 Maximum number of concurrent S3 transfers.
+ * @param listeners Maximum number of concurrently processed rule result, error and dead letter messages.
+ * @param verification Maximum number of concurrently verified chunks of archive entries.
+ * @param polling Maximum number of concurrently polled feeds.
+ * @param compression Maximum number of archive entries compressed at once.
+ * @param queueCapacity Number of tasks allowed to wait for each platform thread pool before submitter starts running
+ *                      the task itself. Has no effect with virtual threads.
+ * @see fi.digitraffic.tis.vaco.concurrency.VacoExecutors
+ */
+public record Concurrency(boolean virtualThreads,
+                          int rules,
+                          int packaging,
+                          int s3,
+                          int listeners,
+                          int verification,
+                          int polling,
+                          int compression,
+                          int queueCapacity) {
+}
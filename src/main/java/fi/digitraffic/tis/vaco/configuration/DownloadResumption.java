@@ -0,0 +1,14 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls resuming of interrupted downloads with range requests.
+ *
+ * @param maxAttempts How many times a single download may be resumed. Zero disables resuming.
+ * @param backoff Delay before first resume attempt, doubled for each following attempt.
+ * @see fi.digitraffic.tis.vaco.http.VacoHttpClient
+ */
+public record DownloadResumption(int maxAttempts,
+                                 Duration backoff) {
+}
@@ -0,0 +1,22 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Polling of registered feeds for changed content.
+ *
+ * @param defaultInterval How often feeds are polled unless overridden.
+ * @param intervals Per feed polling intervals keyed by feed public id.
+ * @see fi.digitraffic.tis.vaco.feeds.FeedPoller
+ */
+public record FeedPolling(Duration defaultInterval,
+                          Map<String, Duration> intervals) {
+    public FeedPolling {
+        intervals = intervals != null ? Map.copyOf(intervals) : Map.of();
+    }
+
+    public Duration interval(String feedPublicId) {
+        return intervals.getOrDefault(feedPublicId, defaultInterval);
+    }
+}
@@ -0,0 +1,17 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Assembly of GBFS snapshot archives from the feeds listed in a GBFS discovery file.
+ *
+ * @param maxConcurrentFeeds Maximum number of feeds requested ahead of the one being written to the archive. Never
+ *                           exceeds {@link HostLimits#maxConcurrentRequests()}, as all feeds usually share a host.
+ * @param feedTimeout Time allowed for receiving response headers of a single feed, and separately for reading its body.
+ * @param compressionLevel Deflate level from 0 (store) to 9 (best), or -1 for default.
+ * @see fi.digitraffic.tis.vaco.rules.internal.GbfsSnapshotAssembler
+ */
+public record GbfsSnapshots(int maxConcurrentFeeds,
+                            Duration feedTimeout,
+                            int compressionLevel) {
+}
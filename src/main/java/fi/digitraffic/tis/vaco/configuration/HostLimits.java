@@ -0,0 +1,18 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Limits for outbound requests to a single host, shared by all feed downloads.
+ *
+ * @param maxConcurrentRequests Maximum number of requests in progress at once, including reading of response body.
+ * @param requestsPerSecond Sustained rate at which new requests may be started.
+ * @param burst Number of requests which may be started at once after an idle period.
+ * @param maxWait How long to wait for a free request slot before giving up on the request.
+ * @see fi.digitraffic.tis.vaco.http.HostLimiter
+ */
+public record HostLimits(int maxConcurrentRequests,
+                         double requestsPerSecond,
+                         int burst,
+                         Duration maxWait) {
+}
@@ -0,0 +1,14 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls caching of validators of downloaded content for conditional requests.
+ *
+ * @param enabled Whether downloads are cached at all.
+ * @param maxAge How long cached content may be revalidated before it is downloaded again unconditionally.
+ * @see fi.digitraffic.tis.vaco.http.ValidatorCache
+ */
+public record HttpCaching(boolean enabled,
+                          Duration maxAge) {
+}
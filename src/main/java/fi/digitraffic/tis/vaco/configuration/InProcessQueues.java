@@ -0,0 +1,21 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * In-process replacement for SQS for single node installations and performance testing. Only the internal job queues
+ * are replaced, queues shared with external rule workers always use SQS.
+ *
+ * @param enabled Use in-memory queues instead of SQS for internal job queues.
+ * @param capacity Maximum number of messages held per queue, including messages currently being processed.
+ * @param maxReceiveCount How many times a message is delivered before it is moved to dead letter queue, same as SQS
+ *                        redrive policy's <code>maxReceiveCount</code>.
+ * @param sendTimeout How long a sender waits for room in a full queue before the send fails.
+ * @see fi.digitraffic.tis.vaco.messaging.InProcessQueueTransport
+ * @see fi.digitraffic.tis.vaco.messaging.RoutingQueueTransport
+ */
+public record InProcessQueues(boolean enabled,
+                              int capacity,
+                              int maxReceiveCount,
+                              Duration sendTimeout) {
+}
@@ -0,0 +1,15 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Serving of package files to API and UI clients.
+ *
+ * @param redirect Whether clients are redirected to download packages directly from S3 instead of streaming them
+ *                 through the application.
+ * @param presignedUrlTtl How long redirect URLs are valid for.
+ * @see fi.digitraffic.tis.vaco.packages.PackageDownloadHandler
+ */
+public record PackageDownloads(boolean redirect,
+                               Duration presignedUrlTtl) {
+}
@@ -0,0 +1,24 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Production of ZIP packages from S3 contents.
+ *
+ * @param prefetchObjects Number of objects fetched ahead of the one currently being written to the package.
+ * @param maxBufferedObjectSize Objects up to this size are fetched ahead into memory, larger objects are only opened
+ *                              ahead and read when written.
+ * @param compressionLevel Deflate level from 0 (store) to 9 (best), or -1 for default. Already compressed objects are
+ *                         always stored.
+ * @param reconciliationWindow Packages of entries created within this duration are periodically checked for still
+ *                             existing in S3.
+ * @see fi.digitraffic.tis.vaco.aws.S3Packager
+ * @see fi.digitraffic.tis.vaco.packages.PackagesService#reconcilePackageAvailability()
+ */
+public record Packaging(int prefetchObjects,
+                        DataSize maxBufferedObjectSize,
+                        int compressionLevel,
+                        Duration reconciliationWindow) {
+}
@@ -0,0 +1,13 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.util.Set;
+
+/**
+ * Hand-off of earlier tasks' results to rules.
+ *
+ * @param manifestOnlyRules Rules which read their inputs directly from the objects listed in the job message's manifest.
+ *                          Inputs of other rules are also copied into the rule's own input directory.
+ * @see fi.digitraffic.tis.vaco.validation.RulesetSubmissionService
+ */
+public record RuleInputs(Set<String> manifestOnlyRules) {
+}
@@ -0,0 +1,19 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the long polling SQS consumers.
+ *
+ * @param enabled Start consumer loops on application startup.
+ * @param pollers Number of concurrent long polling loops per queue. Each loop processes one received batch at a time.
+ * @param waitTime Long poll wait time. Must stay below the SQS client's socket and API call timeouts.
+ * @param visibilityTimeout Visibility timeout applied to messages still being processed. Extended on every half of
+ *                          this duration until processing completes.
+ * @see fi.digitraffic.tis.aws.sqs.SqsListener
+ */
+public record SqsConsumer(boolean enabled,
+                          int pollers,
+                          Duration waitTime,
+                          Duration visibilityTimeout) {
+}
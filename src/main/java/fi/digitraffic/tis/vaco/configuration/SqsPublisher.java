@@ -0,0 +1,12 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Tuning of outgoing SQS message batching.
+ *
+ * @param linger How long messages are buffered per queue before sending them as a batch. Zero disables buffering.
+ * @see fi.digitraffic.tis.vaco.messaging.BatchingPublisher
+ */
+public record SqsPublisher(Duration linger) {
+}
@@ -0,0 +1,14 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Ownership of tasks claimed for execution by delegation.
+ *
+ * @param lease How long a claimed task may go without progress before it is considered abandoned, e.g. because the
+ *              node which claimed it died, and can be claimed again. Must be longer than the slowest rule is expected
+ *              to run.
+ * @see fi.digitraffic.tis.vaco.db.repositories.TaskRepository#claimAvailableTasksToExecute(fi.digitraffic.tis.vaco.queuehandler.model.Entry, Duration)
+ */
+public record TaskClaims(Duration lease) {
+}
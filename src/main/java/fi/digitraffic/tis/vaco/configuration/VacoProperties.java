@@ -20,7 +20,22 @@ public record VacoProperties(@DefaultValue("local") String environment,
                              @NestedConfigurationProperty Email email,
                              @NestedConfigurationProperty Cleanup cleanup,
                              @NestedConfigurationProperty MsGraph msGraph,
-                             @NestedConfigurationProperty EncryptionKeys encryptionKeys) {
+                             @NestedConfigurationProperty EncryptionKeys encryptionKeys,
+                             @NestedConfigurationProperty Concurrency concurrency,
+                             @NestedConfigurationProperty SqsConsumer sqsConsumer,
+                             @NestedConfigurationProperty SqsPublisher sqsPublisher,
+                             @NestedConfigurationProperty InProcessQueues inProcessQueues,
+                             @NestedConfigurationProperty ArchiveVerification archiveVerification,
+                             @NestedConfigurationProperty ValidationMemoization validationMemoization,
+                             @NestedConfigurationProperty FeedPolling feedPolling,
+                             @NestedConfigurationProperty HttpCaching httpCaching,
+                             @NestedConfigurationProperty DownloadResumption downloadResumption,
+                             @NestedConfigurationProperty HostLimits hostLimits,
+                             @NestedConfigurationProperty GbfsSnapshots gbfsSnapshots,
+                             @NestedConfigurationProperty Packaging packaging,
+                             @NestedConfigurationProperty PackageDownloads packageDownloads,
+                             @NestedConfigurationProperty RuleInputs ruleInputs,
+                             @NestedConfigurationProperty TaskClaims taskClaims) {
     @Override
     public String temporaryDirectory() {
         return temporaryDirectory != null ? temporaryDirectory : System.getProperty("java.io.tmpdir");
@@ -0,0 +1,15 @@
+package fi.digitraffic.tis.vaco.configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls reuse of earlier rule results for unchanged input data.
+ *
+ * @param enabled Whether results may be reused at all.
+ * @param maxAge How old results may be reused. Keeps results of rules which have been updated in the meantime from
+ *               lingering indefinitely.
+ * @see fi.digitraffic.tis.vaco.validation.ValidationMemoizer
+ */
+public record ValidationMemoization(boolean enabled,
+                                    Duration maxAge) {
+}
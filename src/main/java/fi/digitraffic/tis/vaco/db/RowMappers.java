@@ -28,6 +28,7 @@ import fi.digitraffic.tis.vaco.db.model.ImmutableEntryRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableFeatureFlagRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableFeedRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableFindingRecord;
+import fi.digitraffic.tis.vaco.db.model.ImmutablePackageLocationRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutablePackageRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutablePartnershipRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableRulesetRecord;
@@ -35,6 +36,7 @@ import fi.digitraffic.tis.vaco.db.model.ImmutableStatisticsRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableSummaryRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableTaskRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableValidationInputRecord;
+import fi.digitraffic.tis.vaco.db.model.PackageLocationRecord;
 import fi.digitraffic.tis.vaco.db.model.PackageRecord;
 import fi.digitraffic.tis.vaco.db.model.PartnershipRecord;
 import fi.digitraffic.tis.vaco.db.model.RulesetRecord;
@@ -134,6 +136,12 @@ public final class RowMappers {
         .path(rs.getString("path"))
         .build();
 
+    public static final RowMapper<PackageLocationRecord> PACKAGE_LOCATION_RECORD = (rs, rowNum) -> ImmutablePackageLocationRecord.builder()
+        .entryPublicId(rs.getString("entry_public_id"))
+        .taskName(rs.getString("task_name"))
+        .path(rs.getString("path"))
+        .build();
+
     public static final RowMapper<CompanyRecord> COMPANY_RECORD = (rs, rowNum) -> ImmutableCompanyRecord.builder()
         .id(rs.getLong("id"))
         .businessId(rs.getString("business_id"))
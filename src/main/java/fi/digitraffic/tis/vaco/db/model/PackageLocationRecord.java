@@ -0,0 +1,15 @@
+package fi.digitraffic.tis.vaco.db.model;
+
+import org.immutables.value.Value;
+
+/**
+ * Package with the entry and task needed for resolving the bucket it is stored in.
+ */
+@Value.Immutable
+public interface PackageLocationRecord {
+    String entryPublicId();
+
+    String taskName();
+
+    String path();
+}
@@ -7,6 +7,7 @@ import fi.digitraffic.tis.vaco.db.RowMappers;
 import fi.digitraffic.tis.vaco.db.model.ContextRecord;
 import fi.digitraffic.tis.vaco.db.model.CredentialsRecord;
 import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.feeds.model.FeedPollingState;
 import fi.digitraffic.tis.vaco.queuehandler.model.ConversionInput;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.db.model.EntryRecord;
@@ -22,6 +23,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -170,14 +172,18 @@ public class EntryRepository {
                 entry.publicId());
     }
 
-    public void completeEntryProcessing(Entry entry) {
-        jdbc.update("""
+    /**
+     * @return <code>true</code> if this call completed the entry, <code>false</code> if it was already completed.
+     */
+    public boolean completeEntryProcessing(Entry entry) {
+        return jdbc.update("""
                 UPDATE entry
                    SET updated=NOW(),
                        completed=NOW()
                  WHERE public_id = ?
+                   AND completed IS NULL
                 """,
-                entry.publicId());
+                entry.publicId()) == 1;
     }
 
     public void markStatus(Entry entry, Status status) {
@@ -283,6 +289,140 @@ public class EntryRepository {
         }
     }
 
+    /**
+     * @return Most recently created entry in given context regardless of its processing status.
+     */
+    public Optional<EntryRecord> findNewestForBusinessIdAndContext(String businessId, String context) {
+        try {
+            return Optional.ofNullable(jdbc.queryForObject(
+                """
+                SELECT *
+                  FROM entry e
+                 WHERE e.business_id = ?
+                   AND e.context_id = (SELECT id
+                                         FROM context c
+                                        WHERE c.company_id = (SELECT id
+                                                                FROM company co
+                                                               WHERE co.business_id = e.business_id)
+                                          AND c.context = ?)
+                 ORDER BY created DESC
+                 LIMIT 1
+                """,
+                RowMappers.PERSISTENT_ENTRY.apply(objectMapper),
+                businessId,
+                context));
+        } catch (EmptyResultDataAccessException erdae) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Claim polling slot of a feed on the feed's newest entry. The claim is a single conditional update of the entry's
+     * metadata, so exactly one node succeeds per slot and no connection is held while the feed is being polled.
+     *
+     * @param entry Newest entry of the feed.
+     * @param slot Start of the polling slot.
+     * @return <code>true</code> if the slot was claimed, <code>false</code> if it was already claimed by someone else.
+     * @see FeedPollingState#SLOT_METADATA_KEY
+     */
+    public boolean claimPollingSlot(EntryRecord entry, Instant slot) {
+        return jdbc.update(
+            """
+            UPDATE entry
+               SET metadata = jsonb_set(COALESCE(metadata, '{}'::jsonb), '{%1$s}', to_jsonb(?::text))
+             WHERE id = ?
+               AND (metadata->>'%1$s' IS NULL OR (metadata->>'%1$s')::timestamptz < ?::timestamptz)
+            """.formatted(FeedPollingState.SLOT_METADATA_KEY),
+            slot.toString(),
+            entry.id(),
+            slot.toString()) == 1;
+    }
+
+    /**
+     * Give up claim of a polling slot, if it is still held, so that the slot may be polled again.
+     *
+     * @param entry Entry the slot was claimed on.
+     * @param slot Start of the claimed polling slot.
+     */
+    public void releasePollingSlot(EntryRecord entry, Instant slot) {
+        jdbc.update(
+            """
+            UPDATE entry
+               SET metadata = metadata - '%1$s'
+             WHERE id = ?
+               AND metadata->>'%1$s' = ?
+            """.formatted(FeedPollingState.SLOT_METADATA_KEY),
+            entry.id(),
+            slot.toString());
+    }
+
+    /**
+     * @param entry Newest entry of the feed.
+     * @param state Outcome of the latest poll.
+     * @see FeedPollingState#METADATA_KEY
+     */
+    public void updatePollingState(EntryRecord entry, FeedPollingState state) {
+        jdbc.update(
+            """
+            UPDATE entry
+               SET metadata = jsonb_set(COALESCE(metadata, '{}'::jsonb), '{%s}', ?)
+             WHERE id = ?
+            """.formatted(FeedPollingState.METADATA_KEY),
+            RowMappers.writeJson(objectMapper, state),
+            entry.id());
+    }
+
+    /**
+     * Find other entries in the same context which have completed given task with a result, newest first. Tasks which
+     * reused results of some earlier task are skipped so that results are always taken from the original run.
+     *
+     * @param entry Entry to find candidates for.
+     * @param taskName Name of the task which should have been completed.
+     * @param memoizedFinding Finding message marking tasks which reused earlier results.
+     * @param maxAge How recently the task must have been run.
+     * @param limit Maximum number of candidates to return.
+     * @return Public id:s of matching entries.
+     */
+    public List<String> findMemoizationCandidates(Entry entry, String taskName, String memoizedFinding, Duration maxAge, int limit) {
+        try {
+            return jdbc.queryForList(
+                """
+                SELECT e.public_id
+                  FROM entry e
+                  JOIN task t ON t.entry_id = e.id
+                 WHERE e.business_id = ?
+                   AND e.public_id != ?
+                   AND e.context_id = (SELECT id
+                                         FROM context c
+                                        WHERE c.company_id = (SELECT id
+                                                                FROM company co
+                                                               WHERE co.business_id = e.business_id)
+                                          AND c.context = ?)
+                   AND t.name = ?
+                   AND t.completed IS NOT NULL
+                   AND t.status IN ('success', 'warnings', 'errors')
+                   AND t.started > NOW() - ?
+                   AND NOT EXISTS (SELECT 1
+                                     FROM finding f
+                                    WHERE f.task_id = t.id
+                                      AND f.message = ?)
+                 ORDER BY t.started DESC
+                 LIMIT ?
+                """,
+                String.class,
+                entry.businessId(),
+                entry.publicId(),
+                entry.context(),
+                taskName,
+                RowMappers.writeInterval(maxAge),
+                memoizedFinding,
+                limit);
+        } catch (DataAccessException dae) {
+            logger.warn("Failed to find memoization candidates for entry {}, returning empty list", entry.publicId(), dae);
+            return List.of();
+        }
+    }
+
     public boolean updateEtag(Entry entry, String etag) {
         return jdbc.update(
             """
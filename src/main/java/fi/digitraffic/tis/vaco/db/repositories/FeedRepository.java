@@ -82,6 +82,17 @@ public class FeedRepository {
 
     }
 
+    public List<FeedRecord> findProcessingEnabledFeeds() {
+        return jdbc.query(
+            """
+            SELECT *
+              FROM feed
+             WHERE processing_enabled = TRUE
+            """,
+            RowMappers.FEED.apply(objectMapper));
+    }
+
+
     public boolean deleteByPublicId(String publicId) {
         return jdbc.update("DELETE FROM feed WHERE public_id = ?", publicId) > 0;
     }
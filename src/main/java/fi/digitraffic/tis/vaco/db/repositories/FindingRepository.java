@@ -108,6 +108,22 @@ public class FindingRepository {
         }
     }
 
+    /**
+     * Copy all findings of one task to another within the database, without transferring them through the service.
+     *
+     * @return Number of copied findings.
+     */
+    public int copyFindings(Long fromTaskId, Long toTaskId) {
+        return jdbc.update("""
+            INSERT INTO finding (task_id, ruleset_id, source, message, severity, raw)
+                 SELECT ?, ruleset_id, source, message, severity, raw
+                   FROM finding
+                  WHERE task_id = ?
+            """,
+            toTaskId,
+            fromTaskId);
+    }
+
     public Map<String, Long> getSeverityCounts(Task task) {
         List<Map<String, Object>> mapList = jdbc.queryForList("""
                   SELECT severity,
@@ -1,6 +1,7 @@
 package fi.digitraffic.tis.vaco.db.repositories;
 
 import fi.digitraffic.tis.vaco.db.RowMappers;
+import fi.digitraffic.tis.vaco.db.model.PackageLocationRecord;
 import fi.digitraffic.tis.vaco.db.model.PackageRecord;
 import fi.digitraffic.tis.vaco.db.model.TaskRecord;
 import fi.digitraffic.tis.vaco.packages.model.Package;
@@ -9,6 +10,7 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -64,4 +66,22 @@ public class PackageRepository {
             return List.of();
         }
     }
+
+    /**
+     * @param newerThan How recently created entries to include.
+     * @return Locations of all packages of entries created within given duration.
+     */
+    public List<PackageLocationRecord> findPackageLocations(Duration newerThan) {
+        return jdbc.query("""
+            SELECT e.public_id AS entry_public_id,
+                   t.name AS task_name,
+                   p.path
+              FROM package p
+              JOIN task t ON t.id = p.task_id
+              JOIN entry e ON e.id = t.entry_id
+             WHERE e.created > NOW() - ?
+            """,
+            RowMappers.PACKAGE_LOCATION_RECORD,
+            RowMappers.writeInterval(newerThan));
+    }
 }
@@ -38,6 +38,20 @@ public class SummaryRepository {
             summary.raw());
     }
 
+    /**
+     * @return Number of copied summaries.
+     */
+    public int copySummaries(Long fromTaskId, Long toTaskId) {
+        return jdbc.update("""
+            INSERT INTO summary (task_id, name, renderer_type, raw)
+                 SELECT ?, name, renderer_type, raw
+                   FROM summary
+                  WHERE task_id = ?
+            """,
+            toTaskId,
+            fromTaskId);
+    }
+
     public List<SummaryRecord> findSummaryByTaskId(Long taskId) {
         try {
             return jdbc.query(
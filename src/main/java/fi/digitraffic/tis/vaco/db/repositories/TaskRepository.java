@@ -8,6 +8,7 @@ import fi.digitraffic.tis.vaco.db.model.TaskRecord;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.process.model.TaskTransition;
 import fi.digitraffic.tis.vaco.queuehandler.model.ConversionInput;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.queuehandler.model.ValidationInput;
@@ -21,9 +22,14 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Repository
 public class TaskRepository {
@@ -66,42 +72,35 @@ public class TaskRepository {
         );
     }
 
-    public Task startTask(Task task) {
-        Task started = jdbc.queryForObject(
-            """
-                 UPDATE task
-                    SET started = NOW()
-                  WHERE id = ?
-              RETURNING id, entry_id, public_id, name, priority, created, started, updated, completed, status
-            """,
-            RowMappers.TASK,
-            task.id());
-        return markStatus(started, Status.PROCESSING);
-    }
-
-    public Task updateTask(Task task) {
-        return jdbc.queryForObject(
+    /**
+     * Apply given state transition to all given tasks with a single statement.
+     *
+     * @return Updated tasks in the same order as given, tasks which no longer exist are omitted.
+     */
+    public List<Task> transitionTasks(List<Task> tasks, TaskTransition transition) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = Streams.map(tasks, Task::id).toList();
+        List<Task> updated = namedJdbc.query(
             """
                  UPDATE task
-                    SET updated = NOW()
-                  WHERE id = ?
+                    SET started = CASE WHEN :markStarted THEN NOW() ELSE started END,
+                        updated = CASE WHEN :markUpdated THEN NOW() ELSE updated END,
+                        completed = CASE WHEN :markCompleted THEN NOW() ELSE completed END,
+                        status = COALESCE(CAST(:status AS status), status)
+                  WHERE id IN (:ids)
               RETURNING id, entry_id, public_id, name, priority, created, started, updated, completed, status
             """,
-            RowMappers.TASK,
-            task.id());
-
-    }
-
-    public Task completeTask(Task task) {
-        return jdbc.queryForObject("""
-                 UPDATE task
-                    SET updated = NOW(),
-                        completed = NOW()
-                  WHERE id = ?
-              RETURNING id, entry_id, public_id, name, priority, created, started, updated, completed, status
-            """,
-            RowMappers.TASK,
-            task.id());
+            new MapSqlParameterSource()
+                .addValue("markStarted", transition.markStarted())
+                .addValue("markUpdated", transition.markUpdated())
+                .addValue("markCompleted", transition.markCompleted())
+                .addValue("status", transition.status() != null ? transition.status().fieldName() : null, Types.VARCHAR)
+                .addValue("ids", ids),
+            RowMappers.TASK);
+        Map<Long, Task> byId = Streams.collect(updated, Task::id, Function.identity());
+        return Streams.filter(ids, byId::containsKey).map(byId::get).toList();
     }
 
     public List<Task> findTasks(String publicId) {
@@ -202,23 +201,28 @@ public class TaskRepository {
     }
 
     /**
-     * Returns a list of tasks which are at the time of querying ready to be executed as determined by not being started.
+     * Atomically claims the tasks which are at the time of querying ready to be executed by marking them as started.
+     * <p>
+     * The list of tasks is divided into priority groups based on flooring the priority to nearest hundred. If within
+     * this group there are non-started tasks, those are claimed. Additionally the last completed task is checked to
+     * make sure that the next priority group isn't started too eagerly, as the following priority group is awaiting for
+     * results from the previous priority group. This check is done by making sure that the priority group of first
+     * non-completed task is within the same group as the one to execute.
      * <p>
-     * More specifically, the list of tasks is divided into priority groups based on flooring the priority to nearest
-     * hundred. If within this group there are non-started tasks, those are returned. Additionally the last completed
-     * task is checked to make sure that the next priority group isn't started too eagerly, as the following priority
-     * group is awaiting for results from the previous priority group. This check is done by making sure that the
-     * priority group of first non-completed task is within the same group as the one to execute.
+     * Rows locked by a concurrent claim are skipped, so each task is returned to exactly one caller even when multiple
+     * nodes process delegation messages for the same entry at the same time. Caller owns the returned tasks and must
+     * either run them or {@link #releaseTask(Task) release} them.
      * <p>
-     * Caller of this method should synchronously mark one or more of the tasks as started before allowing further
-     * processing to occur.
+     * Claims are leased: a claimed task which hasn't completed nor progressed within the lease is considered abandoned,
+     * e.g. by a node which died while running it, and is claimable again.
      *
-     * @param entry
-     * @return
+     * @param entry Entry whose tasks to claim.
+     * @param lease How long claimed tasks are owned by their claimer without progress.
+     * @return Claimed tasks ordered by priority, empty if there is nothing to run or other workers own the tasks.
      * @see TaskService#createTasks(EntryRecord)
      */
-    public List<TaskRecord> findAvailableTasksToExecute(Entry entry) {
-        return namedJdbc.query(
+    public List<TaskRecord> claimAvailableTasksToExecute(Entry entry, Duration lease) {
+        List<TaskRecord> claimed = namedJdbc.query(
               """
               WITH entry AS (SELECT id
                                FROM entry
@@ -226,7 +230,8 @@ public class TaskRepository {
                    first_available AS (SELECT FLOOR(priority / 100) AS priority_group
                                          FROM task, entry
                                         WHERE entry_id = entry.id
-                                          AND started IS NULL
+                                          AND (started IS NULL
+                                               OR (completed IS NULL AND GREATEST(started, updated) < NOW() - :lease))
                                         ORDER BY priority ASC
                                         LIMIT 1),
                    first_incomplete AS (SELECT FLOOR(priority / 100) AS priority_group
@@ -234,23 +239,74 @@ public class TaskRepository {
                                          WHERE entry_id = entry.id
                                            AND completed IS NULL
                                          ORDER BY priority ASC
-                                         LIMIT 1)
-            SELECT first_available.priority_group,
-                   first_incomplete.priority_group,
-                   t.*
-              FROM task t,
-                   entry e,
-                   first_available,
-                   first_incomplete
-             WHERE FLOOR(t.priority / 100) = first_available.priority_group
-               AND FLOOR(t.priority / 100) = first_incomplete.priority_group
-               AND t.entry_id = e.id
-               AND t.started IS NULL
-             ORDER BY priority ASC
+                                         LIMIT 1),
+                   claimable AS (SELECT t.id
+                                   FROM task t,
+                                        entry e,
+                                        first_available,
+                                        first_incomplete
+                                  WHERE FLOOR(t.priority / 100) = first_available.priority_group
+                                    AND FLOOR(t.priority / 100) = first_incomplete.priority_group
+                                    AND t.entry_id = e.id
+                                    AND (t.started IS NULL
+                                         OR (t.completed IS NULL AND GREATEST(t.started, t.updated) < NOW() - :lease))
+                                    FOR UPDATE OF t SKIP LOCKED)
+               UPDATE task
+                  SET started = NOW(),
+                      status = 'processing'::status
+                 FROM claimable
+                WHERE task.id = claimable.id
+            RETURNING task.id, task.entry_id, task.public_id, task.name, task.priority, task.created, task.started, task.updated, task.completed, task.status
             """,
             new MapSqlParameterSource()
-                .addValue("publicId", entry.publicId()),
+                .addValue("publicId", entry.publicId())
+                .addValue("lease", RowMappers.writeInterval(lease)),
         RowMappers.TASK_RECORD);
+        return claimed.stream()
+            .sorted(Comparator.comparingInt(TaskRecord::priority))
+            .toList();
+    }
+
+    /**
+     * @param lease How long claimed tasks are owned by their claimer without progress.
+     * @return Public ids of unfinished entries which have claimed tasks past their lease.
+     * @see #claimAvailableTasksToExecute(Entry, Duration)
+     */
+    public List<String> findEntriesWithExpiredClaims(Duration lease) {
+        return jdbc.queryForList("""
+            SELECT DISTINCT e.public_id
+              FROM task t
+              JOIN entry e ON e.id = t.entry_id
+             WHERE e.completed IS NULL
+               AND t.started IS NOT NULL
+               AND t.completed IS NULL
+               AND GREATEST(t.started, t.updated) < NOW() - ?
+            """,
+            String.class,
+            RowMappers.writeInterval(lease));
+    }
+
+    /**
+     * Return claimed but not yet completed task back to the pool of tasks available for execution.
+     *
+     * @return Released task or empty if the task was already completed.
+     */
+    public Optional<Task> releaseTask(Task task) {
+        try {
+            return Optional.ofNullable(jdbc.queryForObject("""
+                     UPDATE task
+                        SET started = NULL,
+                            updated = NOW(),
+                            status = 'received'::status
+                      WHERE id = ?
+                        AND completed IS NULL
+                  RETURNING id, entry_id, public_id, name, priority, created, started, updated, completed, status
+                """,
+                RowMappers.TASK,
+                task.id()));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
     }
 
     public boolean areAllTasksCompleted(Entry entry) {
@@ -1,16 +1,16 @@
 package fi.digitraffic.tis.vaco.delegator;
 
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.entries.EntryService;
-import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
 import fi.digitraffic.tis.vaco.messaging.SqsListenerBase;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.messaging.model.QueueNames;
 import fi.digitraffic.tis.vaco.notifications.NotificationsService;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.process.model.TaskTransition;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
 import fi.digitraffic.tis.vaco.rules.internal.StopsAndQuaysRule;
@@ -19,7 +19,6 @@ import fi.digitraffic.tis.vaco.ruleset.model.RulesetType;
 import fi.digitraffic.tis.vaco.validation.RulesetSubmissionService;
 import fi.digitraffic.tis.vaco.validation.model.ImmutableRulesetSubmissionConfiguration;
 import fi.digitraffic.tis.vaco.validation.model.ImmutableValidationJobMessage;
-import io.awspring.cloud.sqs.annotation.SqsListener;
 import io.awspring.cloud.sqs.listener.acknowledgement.Acknowledgement;
 import org.springframework.stereotype.Component;
 
@@ -60,59 +59,80 @@ public class DelegationJobQueueSqsListener extends SqsListenerBase<ImmutableDele
         this.notificationsService = Objects.requireNonNull(notificationsService);
     }
 
-    @SqsListener(QueueNames.VACO_JOBS)
     public void listen(ImmutableDelegationJobMessage message, Acknowledgement acknowledgement) {
         handle(message, message.entry().publicId(), acknowledgement, (exhaustedRetries ->
-            entryService.markComplete(exhaustedRetries.entry())));
+            entryService.findEntry(exhaustedRetries.entry()).ifPresent(entryService::markComplete)));
     }
 
     @Override
     protected void runTask(ImmutableDelegationJobMessage message) {
-        Entry entry = message.entry();
+        Optional<Entry> resolved = entryService.findEntry(message.entry());
+        if (resolved.isEmpty()) {
+            logger.warn("Entry {} referenced by job message no longer exists, skipping processing", message.entry().publicId());
+            return;
+        }
+        Entry entry = resolved.get();
+        if (entry.completed() != null) {
+            // e.g. delayed fallback for a parked task arriving after the entry was already finished
+            logger.debug("Entry {} referenced by job message is already complete, skipping processing", entry.publicId());
+            return;
+        }
         if (entry.started() == null) {
             entryService.markStarted(entry);
         } else {
             entryService.markUpdated(entry);
         }
-        List<Task> tasksToRun = nextTaskGroupToRun(message).orElse(List.of());
+        List<Task> tasksToRun = nextTaskGroupToRun(entry).orElse(List.of());
 
         logger.info("Entry {} next tasks to run {}", entry.publicId(), tasksToRun);
         if (!tasksToRun.isEmpty()) {
             tasksToRun.forEach(task -> {
                 logger.info("Running task for entryId {} :> {}", entry.publicId(), task);
-                String name = task.name();
-
-                if (name.equals(DownloadRule.PREPARE_DOWNLOAD_TASK)) {
-                    logger.debug("Internal rule {} detected for entryId {}, delegating...", name, entry.publicId());
-                    messagingService.sendMessage(QueueNames.VACO_RULES_RESULTS, downloadRule.execute(entry).join());
-                } else if (name.equals(StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK)) {
-                    logger.debug("Internal rule {} detected for entryId {}, delegating...", name, entry.publicId());
-                    messagingService.sendMessage(QueueNames.VACO_RULES_RESULTS, stopsAndQuaysRule.execute(entry).join());
-                } else if (knownExternalRules.contains(name)) {
-                    logger.debug("External rule {} detected for entryId {}, submitting to processing queue...", name, entry.publicId());
-                    submitExternalRule(task, entry);
-                } else {
-                    logger.info("Unknown task for entryId {}, marking it as complete to avoid infinite looping {} / {}", entry.publicId(), task, message);
-                    taskService.trackTask(entry, task, ProcessingState.START);
-                    taskService.trackTask(entry, task, ProcessingState.COMPLETE);
-                    taskService.markStatus(entry, task, Status.CANCELLED);
+                try {
+                    runClaimedTask(message, entry, task);
+                } catch (RuntimeException e) {
+                    // return the task to the pool so that the retried message can claim it again
+                    taskService.releaseTask(entry, task);
+                    throw e;
                 }
             });
         } else {
             if (taskService.areAllTasksCompleted(entry)) {
-                logger.debug("Job for entry {} complete!", entry.publicId());
-                entryService.markComplete(entry);
-                entryService.updateStatus(entry);
-                notificationsService.notifyEntryComplete(entry);
+                // completing is conditional, so concurrent messages for the same entry notify only once
+                if (entryService.markComplete(entry)) {
+                    logger.debug("Job for entry {} complete!", entry.publicId());
+                    entryService.updateStatus(entry);
+                    notificationsService.notifyEntryComplete(entry);
+                } else {
+                    logger.debug("Entry {} was already completed by another job message", entry.publicId());
+                }
             } else {
                 logger.info("Entry {} still has tasks running, will wait for completion", entry.publicId());
             }
         }
     }
 
+    private void runClaimedTask(ImmutableDelegationJobMessage message, Entry entry, Task task) {
+        String name = task.name();
+
+        if (name.equals(DownloadRule.PREPARE_DOWNLOAD_TASK)) {
+            logger.debug("Internal rule {} detected for entryId {}, delegating...", name, entry.publicId());
+            messagingService.sendMessage(QueueNames.VACO_RULES_RESULTS, downloadRule.execute(entry).join());
+        } else if (name.equals(StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK)) {
+            logger.debug("Internal rule {} detected for entryId {}, delegating...", name, entry.publicId());
+            messagingService.sendMessage(QueueNames.VACO_RULES_RESULTS, stopsAndQuaysRule.execute(entry).join());
+        } else if (knownExternalRules.contains(name)) {
+            logger.debug("External rule {} detected for entryId {}, submitting to processing queue...", name, entry.publicId());
+            submitExternalRule(task, entry);
+        } else {
+            logger.info("Unknown task for entryId {}, marking it as complete to avoid infinite looping {} / {}", entry.publicId(), task, message);
+            taskService.transitionTask(entry, task, TaskTransition.cancelled());
+        }
+    }
+
     public void submitExternalRule(Task task, Entry entry) {
         ImmutableValidationJobMessage validationJob = ImmutableValidationJobMessage.builder()
-            .entry(entry)
+            .entry(EntryReference.of(entry))
             .configuration(ImmutableRulesetSubmissionConfiguration
                 .of(RulesetType.VALIDATION_SYNTAX, task.publicId()))
             .retryStatistics(ImmutableRetryStatistics.of(5))
@@ -120,8 +140,8 @@ public class DelegationJobQueueSqsListener extends SqsListenerBase<ImmutableDele
         rulesetSubmissionService.submit(validationJob);
     }
 
-    private Optional<List<Task>> nextTaskGroupToRun(ImmutableDelegationJobMessage jobDescription) {
-        List<Task> availableForExecuting = taskService.findTasksToExecute(jobDescription.entry());
+    private Optional<List<Task>> nextTaskGroupToRun(Entry entry) {
+        List<Task> availableForExecuting = taskService.claimTasksToExecute(entry);
 
         return availableForExecuting.isEmpty()
             ? Optional.empty()
@@ -0,0 +1,61 @@
+package fi.digitraffic.tis.vaco.delegator;
+
+import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutableEntryReference;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
+import fi.digitraffic.tis.vaco.process.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resubmits entries whose claimed tasks were abandoned to delegation, which then claims the tasks again.
+ * <p>
+ * Without this an entry would stall if the node running one of its tasks dies, as the redelivered job message can't
+ * claim the task before its lease has expired and retries of the message run out well before that.
+ *
+ * @see fi.digitraffic.tis.vaco.configuration.TaskClaims
+ */
+@Component
+public class ExpiredClaimRecovery {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final TaskService taskService;
+    private final MessagingService messagingService;
+
+    public ExpiredClaimRecovery(TaskService taskService,
+                                MessagingService messagingService) {
+        this.taskService = Objects.requireNonNull(taskService);
+        this.messagingService = Objects.requireNonNull(messagingService);
+    }
+
+    @Scheduled(cron = "${vaco.scheduling.expired-claim-recovery.cron}")
+    public void scheduledRecovery() {
+        try {
+            recoverExpiredClaims();
+        } catch (Exception e) {
+            logger.warn("Failed to recover expired task claims", e);
+        }
+    }
+
+    /**
+     * @return Public ids of resubmitted entries.
+     */
+    public List<String> recoverExpiredClaims() {
+        List<String> entries = taskService.findEntriesWithExpiredClaims();
+        entries.forEach(publicId -> {
+            logger.warn("Entry {} has tasks with expired claims, resubmitting it to delegation", publicId);
+            messagingService.submitProcessingJob(ImmutableDelegationJobMessage.builder()
+                .entry(ImmutableEntryReference.of(publicId, null))
+                .retryStatistics(ImmutableRetryStatistics.of(5))
+                .build()).join();
+        });
+        return entries;
+    }
+}
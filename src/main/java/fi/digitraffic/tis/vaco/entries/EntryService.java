@@ -10,6 +10,7 @@ import fi.digitraffic.tis.vaco.db.repositories.ContextRepository;
 import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
 import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.packages.PackagesService;
 import fi.digitraffic.tis.vaco.packages.model.Package;
 import fi.digitraffic.tis.vaco.process.TaskService;
@@ -61,10 +62,17 @@ public class EntryService {
         this.credentialsRepository = Objects.requireNonNull(credentialsRepository);
     }
 
-    public void markComplete(Entry entry) {
-        entryRepository.completeEntryProcessing(entry);
+    /**
+     * Mark entry as completed unless it already is. Completion timestamp of already completed entry is kept as is.
+     *
+     * @param entry Entry to complete
+     * @return <code>true</code> if this call completed the entry, <code>false</code> if it was already completed.
+     */
+    public boolean markComplete(Entry entry) {
+        boolean completed = entryRepository.completeEntryProcessing(entry);
         cachingService.invalidateEntry(entry.publicId());
         cachingService.invalidateEntrySummaries(entry.businessId());
+        return completed;
     }
 
     public void markStarted(Entry entry) {
@@ -90,7 +98,7 @@ public class EntryService {
         Optional<EntryRecord> entryRecord = entryRepository.findByPublicId(entry.publicId());
         Status status = resolveStatus(entryRecord);
         entryRepository.markStatus(entry, status);
-        cachingService.invalidateEntry(entry.publicId());
+        cachingService.updateEntryStatus(entry.publicId(), status);
     }
 
     private Status resolveStatus(Optional<EntryRecord> entryRecord) {
@@ -179,7 +187,7 @@ public class EntryService {
      */
     private Entry buildCompleteEntry(EntryRecord entry) {
         List<Task> tasks = taskService.findTasks(entry);
-        List<Package> packages = Streams.flatten(tasks, task -> packagesService.findAvailablePackages(task, entry.publicId())).toList();
+        List<Package> packages = Streams.flatten(tasks, packagesService::findAvailablePackages).toList();
         Optional<ContextRecord> context = contextRepository.find(entry);
         Optional<CredentialsRecord> credentials = credentialsRepository.findForEntry(entry);
         return recordMapper.toEntryBuilder(entry, context, credentials)
@@ -197,10 +205,22 @@ public class EntryService {
                 .orElse(null));
     }
 
-    // TODO: this is horrible in both concept and practice
-    public Entry reload(Entry entry) {
-        cachingService.invalidateEntry(entry.publicId());
-        return findEntry(entry.publicId()).get();
+    /**
+     * Resolve current state of referenced entry. Cached entry is used unless it is older than the reference, in which
+     * case it is reloaded from database.
+     */
+    public Optional<Entry> findEntry(EntryReference reference) {
+        Optional<Entry> entry = findEntry(reference.publicId());
+        if (entry.isPresent() && isStale(entry.get(), reference)) {
+            cachingService.invalidateEntry(reference.publicId());
+            return findEntry(reference.publicId());
+        }
+        return entry;
+    }
+
+    private static boolean isStale(Entry entry, EntryReference reference) {
+        return reference.updated() != null
+            && (entry.updated() == null || entry.updated().isBefore(reference.updated()));
     }
 
     public Optional<Entry> findLatestEntryForContext(String businessId, String context) {
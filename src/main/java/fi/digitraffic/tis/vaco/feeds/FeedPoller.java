@@ -0,0 +1,291 @@
+package fi.digitraffic.tis.vaco.feeds;
+
+import com.google.common.annotations.VisibleForTesting;
+import fi.digitraffic.tis.utilities.Streams;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.FeedPolling;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.db.model.CompanyRecord;
+import fi.digitraffic.tis.vaco.db.model.EntryRecord;
+import fi.digitraffic.tis.vaco.db.model.FeedRecord;
+import fi.digitraffic.tis.vaco.db.repositories.CompanyRepository;
+import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
+import fi.digitraffic.tis.vaco.db.repositories.FeedRepository;
+import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
+import fi.digitraffic.tis.vaco.feeds.model.FeedPollingState;
+import fi.digitraffic.tis.vaco.feeds.model.FeedUri;
+import fi.digitraffic.tis.vaco.feeds.model.ImmutableFeedPollingState;
+import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.model.ConditionalResponse;
+import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
+import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableValidationInput;
+import fi.digitraffic.tis.vaco.ruleset.RulesetService;
+import fi.digitraffic.tis.vaco.ruleset.model.Ruleset;
+import fi.digitraffic.tis.vaco.ruleset.model.RulesetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Polls feeds with processing enabled for changes and creates a new entry for each feed whose content has changed.
+ * <p>
+ * Each feed is polled once per its {@link FeedPolling#interval(String) interval} at a fixed offset within the interval
+ * derived from the feed's public id, which spreads the polls of feeds sharing an interval evenly over time instead of
+ * all of them firing at once. Polling uses conditional requests with the <code>ETag</code> and
+ * <code>Last-Modified</code> validators of the feed's previous poll, so unchanged content is never transferred.
+ * <p>
+ * Polling state is persisted on the feed's entries: all entries of a feed are created into a dedicated context, and the
+ * newest entry of that context holds the {@link FeedPollingState outcome of the latest poll}, including unchanged and
+ * failed polls, which provides the validators for the next poll. This makes polling safe to run on multiple nodes:
+ * before sending the request, a node claims the current slot on the newest entry with a single conditional update and
+ * skips the feed if another node already claimed it, so no database connection is held while waiting for the response.
+ * A failed poll releases its claim. Feeds without any entries yet have nothing to claim on and are polled by every node
+ * until their first entry exists.
+ */
+@Service
+public class FeedPoller {
+
+    public static final String FEATURE_FLAG = "scheduledTasks.feedPolling";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final FeedPolling feedPolling;
+    private final FeedRepository feedRepository;
+    private final CompanyRepository companyRepository;
+    private final EntryRepository entryRepository;
+    private final RulesetService rulesetService;
+    private final QueueHandlerService queueHandlerService;
+    private final VacoHttpClient httpClient;
+    private final FeatureFlagsService featureFlagsService;
+    private final VacoExecutors vacoExecutors;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    /**
+     * End of the previous polling round. Polling slots which ended after this are due in the next round.
+     */
+    private Instant previousRound;
+
+    public FeedPoller(VacoProperties vacoProperties,
+                      FeedRepository feedRepository,
+                      CompanyRepository companyRepository,
+                      EntryRepository entryRepository,
+                      RulesetService rulesetService,
+                      QueueHandlerService queueHandlerService,
+                      VacoHttpClient httpClient,
+                      FeatureFlagsService featureFlagsService,
+                      VacoExecutors vacoExecutors,
+                      ObjectMapper objectMapper,
+                      Clock clock) {
+        this.feedPolling = Objects.requireNonNull(vacoProperties.feedPolling());
+        this.feedRepository = Objects.requireNonNull(feedRepository);
+        this.companyRepository = Objects.requireNonNull(companyRepository);
+        this.entryRepository = Objects.requireNonNull(entryRepository);
+        this.rulesetService = Objects.requireNonNull(rulesetService);
+        this.queueHandlerService = Objects.requireNonNull(queueHandlerService);
+        this.httpClient = Objects.requireNonNull(httpClient);
+        this.featureFlagsService = Objects.requireNonNull(featureFlagsService);
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+        this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.clock = Objects.requireNonNull(clock);
+        this.previousRound = clock.instant();
+    }
+
+    @Scheduled(cron = "${vaco.scheduling.feed-polling.cron}")
+    public void scheduledPolling() {
+        if (featureFlagsService.isFeatureFlagEnabled(FEATURE_FLAG)) {
+            pollDueFeeds();
+        } else {
+            logger.debug("Feature flag '{}' is currently disabled, will not poll feeds", FEATURE_FLAG);
+        }
+    }
+
+    /**
+     * Poll all feeds whose polling slot started since previous round.
+     *
+     * @return Public ids of entries created for changed feeds.
+     */
+    public synchronized List<String> pollDueFeeds() {
+        Instant from = previousRound;
+        Instant to = clock.instant();
+        previousRound = to;
+
+        List<CompletableFuture<Optional<Entry>>> polls = Streams.filter(feedRepository.findProcessingEnabledFeeds(), feed -> currentSlot(feed, to).isAfter(from))
+            .map(feed -> InstrumentedExecutor.supplyAsync(() -> pollSafely(feed, currentSlot(feed, to)), vacoExecutors.polling()))
+            .toList();
+
+        List<String> created = polls.stream()
+            .map(CompletableFuture::join)
+            .flatMap(Optional::stream)
+            .map(Entry::publicId)
+            .toList();
+        if (!polls.isEmpty()) {
+            logger.info("Polled {} feeds, created entries {}", polls.size(), created);
+        }
+        return created;
+    }
+
+    /**
+     * @return Start of the latest polling slot of given feed at or before given time.
+     */
+    @VisibleForTesting
+    Instant currentSlot(FeedRecord feed, Instant at) {
+        long interval = Math.max(1, feedPolling.interval(feed.publicId()).toSeconds());
+        long offset = Math.floorMod(feed.publicId().hashCode(), interval);
+        long now = at.getEpochSecond();
+        return Instant.ofEpochSecond(now - Math.floorMod(now - offset, interval));
+    }
+
+    private Optional<Entry> pollSafely(FeedRecord feed, Instant slot) {
+        try {
+            return poll(feed, slot);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to poll feed {} at {}", feed.publicId(), feed.uri().uri(), e);
+            return Optional.empty();
+        }
+    }
+
+    @VisibleForTesting
+    Optional<Entry> poll(FeedRecord feed, Instant slot) {
+        if (!"GET".equalsIgnoreCase(feed.uri().httpMethod())) {
+            logger.debug("Feed {} uses HTTP method {}, only GET feeds can be polled", feed.publicId(), feed.uri().httpMethod());
+            return Optional.empty();
+        }
+        CompanyRecord owner = companyRepository.findById(feed.ownerId());
+        String context = context(feed);
+        Optional<EntryRecord> latest = entryRepository.findNewestForBusinessIdAndContext(owner.businessId(), context);
+
+        if (latest.isPresent()) {
+            if (Status.isNotCompleted(latest.get().status())) {
+                logger.debug("Feed {} entry {} is still being processed, skipping poll", feed.publicId(), latest.get().publicId());
+                return Optional.empty();
+            }
+            if (!entryRepository.claimPollingSlot(latest.get(), slot)) {
+                logger.debug("Feed {} polling slot {} already claimed", feed.publicId(), slot);
+                return Optional.empty();
+            }
+        }
+
+        Optional<FeedPollingState> previous = latest.flatMap(e -> pollingState(e.metadata()));
+        String etag = previous.isPresent() ? previous.get().etag() : latest.map(EntryRecord::etag).orElse(null);
+        String lastModified = previous.isPresent() ? previous.get().lastModified() : latest.flatMap(e -> lastModified(e.metadata())).orElse(null);
+
+        String url = url(feed.uri());
+        ConditionalResponse response;
+        try {
+            response = httpClient.checkForChanges(url, owner.businessId(), etag, lastModified).join();
+        } catch (RuntimeException e) {
+            // failed poll doesn't use up the slot
+            latest.ifPresent(l -> {
+                entryRepository.updatePollingState(l, ImmutableFeedPollingState.builder()
+                    .polled(clock.instant())
+                    .error(String.valueOf(e.getCause() != null ? e.getCause() : e))
+                    .etag(etag)
+                    .lastModified(lastModified)
+                    .build());
+                entryRepository.releasePollingSlot(l, slot);
+            });
+            throw e;
+        }
+
+        if (!response.modified()) {
+            logger.debug("Feed {} not changed (HTTP {})", feed.publicId(), response.statusCode());
+            latest.ifPresent(l -> entryRepository.updatePollingState(l, ImmutableFeedPollingState.builder()
+                .polled(clock.instant())
+                .statusCode(response.statusCode())
+                .etag(etag)
+                .lastModified(lastModified)
+                .build()));
+            return Optional.empty();
+        }
+
+        Set<Ruleset> rulesets = rulesetService.selectRulesets(owner.businessId(), RulesetType.VALIDATION_SYNTAX, feed.format(), Set.of());
+        ObjectNode metadata = objectMapper.createObjectNode().put("feed", feed.publicId());
+        response.lastModified().ifPresent(lm -> metadata.put(LAST_MODIFIED, lm));
+        // new entry becomes the newest one of the feed, so it carries the claim and the validators for the next poll
+        metadata.put(FeedPollingState.SLOT_METADATA_KEY, slot.toString());
+        metadata.set(FeedPollingState.METADATA_KEY, objectMapper.valueToTree(ImmutableFeedPollingState.builder()
+            .polled(clock.instant())
+            .statusCode(response.statusCode())
+            .etag(response.etag().orElse(null))
+            .lastModified(response.lastModified().orElse(null))
+            .build()));
+
+        Entry entry = ImmutableEntry.builder()
+            .publicId(Entry.NON_PERSISTED_PUBLIC_ID)
+            .name(feed.format().fieldName() + " " + feed.publicId())
+            .format(feed.format().fieldName())
+            .url(url)
+            .businessId(owner.businessId())
+            .metadata(metadata)
+            .context(context)
+            .validations(Streams.map(rulesets, r -> ImmutableValidationInput.of(r.identifyingName())).toList())
+            .build();
+
+        Optional<Entry> created = queueHandlerService.processQueueEntry(entry);
+        if (created.isPresent()) {
+            logger.info("Feed {} changed, created entry {}", feed.publicId(), created.get().publicId());
+        } else {
+            // keep previous validators so that the change is picked up on next poll
+            latest.ifPresent(l -> entryRepository.updatePollingState(l, ImmutableFeedPollingState.builder()
+                .polled(clock.instant())
+                .statusCode(response.statusCode())
+                .error("Failed to create entry for changed content")
+                .etag(etag)
+                .lastModified(lastModified)
+                .build()));
+        }
+        return created;
+    }
+
+    private Optional<FeedPollingState> pollingState(JsonNode metadata) {
+        if (metadata == null || !metadata.has(FeedPollingState.METADATA_KEY)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.treeToValue(metadata.get(FeedPollingState.METADATA_KEY), FeedPollingState.class));
+        } catch (JacksonException e) {
+            logger.warn("Ignoring unreadable feed polling state {}", metadata.get(FeedPollingState.METADATA_KEY), e);
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<String> lastModified(JsonNode metadata) {
+        return Optional.ofNullable(metadata)
+            .filter(m -> m.has(LAST_MODIFIED))
+            .map(m -> m.get(LAST_MODIFIED).asString());
+    }
+
+    /**
+     * @return Context into which all entries of given feed are created.
+     */
+    public static String context(FeedRecord feed) {
+        return "feed:" + feed.publicId();
+    }
+
+    private static String url(FeedUri uri) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(uri.uri());
+        uri.queryParams().forEach(builder::queryParam);
+        return builder.build(true).toUriString();
+    }
+}
@@ -0,0 +1,57 @@
+package fi.digitraffic.tis.vaco.feeds.model;
+
+import jakarta.annotation.Nullable;
+import org.immutables.value.Value;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+
+/**
+ * Outcome of the latest completed poll of a feed, including polls which found the feed unchanged or failed. Stored in
+ * the metadata of the feed's newest entry under {@link #METADATA_KEY}.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableFeedPollingState.class)
+@JsonDeserialize(as = ImmutableFeedPollingState.class)
+public interface FeedPollingState {
+
+    /**
+     * Entry metadata field holding the polling state.
+     */
+    String METADATA_KEY = "polling";
+
+    /**
+     * Entry metadata field holding the start of the latest claimed polling slot.
+     */
+    String SLOT_METADATA_KEY = "pollingSlot";
+
+    /**
+     * @return When the feed was polled.
+     */
+    Instant polled();
+
+    /**
+     * @return HTTP status code of the poll, <code>null</code> if no response was received.
+     */
+    @Nullable
+    Integer statusCode();
+
+    /**
+     * @return Reason the poll failed, <code>null</code> if a response was received.
+     */
+    @Nullable
+    String error();
+
+    /**
+     * @return <code>ETag</code> validator to use for the next poll.
+     */
+    @Nullable
+    String etag();
+
+    /**
+     * @return <code>Last-Modified</code> validator to use for the next poll.
+     */
+    @Nullable
+    String lastModified();
+}
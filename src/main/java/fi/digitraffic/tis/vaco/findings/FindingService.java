@@ -44,6 +44,10 @@ public class FindingService {
         }).toList());
     }
 
+    public int copyFindings(Task from, Task to) {
+        return findingRepository.copyFindings(from.id(), to.id());
+    }
+
     public Map<String, Long> summarizeFindingsSeverities(Task task) {
         return findingRepository.getSeverityCounts(task);
     }
@@ -0,0 +1,57 @@
+package fi.digitraffic.tis.vaco.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming decoding of HTTP content codings supported by the platform.
+ */
+final class ContentEncodings {
+
+    /**
+     * Value for <code>Accept-Encoding</code> request header listing the codings {@link #decode(String, InputStream)}
+     * understands.
+     */
+    static final String ACCEPTED = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentEncodings() {}
+
+    /**
+     * Wrap given stream so that reading it produces content decoded from given <code>Content-Encoding</code>.
+     *
+     * @param contentEncoding Value of <code>Content-Encoding</code> response header, <code>null</code> if absent.
+     * @param body Encoded body.
+     * @return Decoded body.
+     * @throws IOException if the coding is not supported or the body doesn't start with valid header for the coding
+     */
+    static InputStream decode(String contentEncoding, InputStream body) throws IOException {
+        String coding = contentEncoding != null ? contentEncoding.trim().toLowerCase(Locale.ROOT) : "identity";
+        return switch (coding) {
+            case "", "identity" -> body;
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, BUFFER_SIZE);
+            case "deflate" -> inflating(body);
+            default -> throw new IOException("Unsupported Content-Encoding " + contentEncoding);
+        };
+    }
+
+    private static InputStream inflating(InputStream body) {
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(body, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // custom inflater is not released by the stream itself
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package fi.digitraffic.tis.vaco.http;
+
+import fi.digitraffic.tis.vaco.configuration.HostLimits;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.http.model.HostStatistics;
+import fi.digitraffic.tis.vaco.http.model.ImmutableHostStatistics;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits concurrency and rate of outbound requests per host, so that a single publisher with lots of feeds is neither
+ * overwhelmed by us nor able to slow down downloads from other publishers.
+ * <p>
+ * Each host has its own fair queue: requests to a host are admitted in arrival order, and waiting for one host never
+ * delays requests to another. A request is admitted once the host's token bucket allows starting a new request and
+ * there are fewer than {@link HostLimits#maxConcurrentRequests()} requests in progress.
+ * <p>
+ * Callers holding permits of their own while asking for more, e.g. to read several responses from the same host one
+ * after another, must use {@link #tryAcquire(String)} so that two such callers can't end up waiting for each other.
+ */
+@Service
+public class HostLimiter {
+
+    private final HostLimits hostLimits;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public HostLimiter(VacoProperties vacoProperties) {
+        this.hostLimits = Objects.requireNonNull(vacoProperties.hostLimits());
+    }
+
+    /**
+     * Wait until a request to given URI may be started.
+     *
+     * @param uri URI about to be requested
+     * @return Permit which must be closed once the request, including reading of its body, is complete.
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if no request slot became free within {@link HostLimits#maxWait()}
+     */
+    public Permit acquire(String uri) throws InterruptedException, TimeoutException {
+        Host host = hosts.computeIfAbsent(host(uri), h -> new Host());
+        long start = System.nanoTime();
+        host.waiting.incrementAndGet();
+        try {
+            long delay = host.reserveToken();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            if (!host.permits.tryAcquire(hostLimits.maxWait().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("No request slot for " + host(uri) + " became free within " + hostLimits.maxWait());
+            }
+        } finally {
+            host.waiting.decrementAndGet();
+        }
+        return admit(host, start);
+    }
+
+    /**
+     * Take a permit for request to given URI only if one is free right away. The request rate is still limited, so
+     * this may wait for the host's token bucket, but never for other requests to complete.
+     *
+     * @param uri URI about to be requested
+     * @return Permit which must be closed once the request, including reading of its body, is complete, empty if all
+     *         request slots of the host are taken.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Optional<Permit> tryAcquire(String uri) throws InterruptedException {
+        Host host = hosts.computeIfAbsent(host(uri), h -> new Host());
+        if (!host.permits.tryAcquire()) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        long delay = host.reserveToken();
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                host.permits.release();
+                throw e;
+            }
+        }
+        return Optional.of(admit(host, start));
+    }
+
+    private Permit admit(Host host, long start) {
+        long waited = System.nanoTime() - start;
+        host.requests.incrementAndGet();
+        host.totalWaitNanos.addAndGet(waited);
+        host.maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return new Permit(host);
+    }
+
+    public Map<String, HostStatistics> getStats() {
+        Map<String, HostStatistics> stats = new TreeMap<>();
+        hosts.forEach((name, host) -> {
+            long requests = host.requests.get();
+            long activeNanos = host.activeNanos.get();
+            stats.put(name, ImmutableHostStatistics.builder()
+                .host(name)
+                .active(hostLimits.maxConcurrentRequests() - host.permits.availablePermits())
+                .waiting(host.waiting.get())
+                .requests(requests)
+                .bytes(host.bytes.get())
+                .decodedBytes(host.decodedBytes.get())
+                .averageWaitMillis(requests > 0 ? TimeUnit.NANOSECONDS.toMillis(host.totalWaitNanos.get() / requests) : 0)
+                .maxWaitMillis(TimeUnit.NANOSECONDS.toMillis(host.maxWaitNanos.get()))
+                .bytesPerSecond(activeNanos > 0 ? (long) (host.bytes.get() / (activeNanos / 1_000_000_000.0)) : 0)
+                .build());
+        });
+        return stats;
+    }
+
+    static String host(String uri) {
+        String host = UriComponentsBuilder.fromUriString(uri).build().getHost();
+        if (host == null) {
+            // scheme-less URIs such as www.example.fi/feed.zip are parsed as paths
+            int end = uri.indexOf('/');
+            host = end > 0 ? uri.substring(0, end) : uri;
+        }
+        return host.toLowerCase();
+    }
+
+    /**
+     * Admission to make one request. Closing the permit lets the next request to the same host proceed.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final Host host;
+        private final long started = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(Host host) {
+            this.host = host;
+        }
+
+        /**
+         * Record amount of content received with this permit for throughput statistics.
+         *
+         * @param wireBytes Number of bytes received over the wire.
+         * @param decodedBytes Number of bytes after decoding content encoding, same as wire bytes for unencoded content.
+         */
+        public void received(long wireBytes, long decodedBytes) {
+            host.bytes.addAndGet(wireBytes);
+            host.decodedBytes.addAndGet(decodedBytes);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                host.activeNanos.addAndGet(System.nanoTime() - started);
+                host.permits.release();
+            }
+        }
+    }
+
+    private final class Host {
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong activeNanos = new AtomicLong();
+
+        private final double nanosPerToken;
+        private final double maxTokens;
+        private double tokens;
+        private long refilled;
+
+        private Host() {
+            this.permits = new Semaphore(Math.max(1, hostLimits.maxConcurrentRequests()), true);
+            this.nanosPerToken = 1_000_000_000.0 / Math.max(hostLimits.requestsPerSecond(), 0.001);
+            this.maxTokens = Math.max(1, hostLimits.burst());
+            this.tokens = maxTokens;
+            this.refilled = System.nanoTime();
+        }
+
+        /**
+         * Take one token from the bucket, going into debt if there are none left. Debt is paid back by waiting, which
+         * keeps requests in reservation order.
+         *
+         * @return Nanoseconds to wait before the reserved token is available.
+         */
+        private synchronized long reserveToken() {
+            long now = System.nanoTime();
+            tokens = Math.min(maxTokens, tokens + (now - refilled) / nanosPerToken);
+            refilled = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fi.digitraffic.tis.vaco.http;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import fi.digitraffic.tis.vaco.DataVisibility;
+import fi.digitraffic.tis.vaco.api.model.Resource;
+import fi.digitraffic.tis.vaco.http.model.HostStatistics;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.Objects;
+
+import static fi.digitraffic.tis.vaco.api.model.Resource.resource;
+import static org.springframework.http.ResponseEntity.ok;
+
+@RestController
+@RequestMapping("/admin/hosts")
+@PreAuthorize("hasAuthority('vaco.apiuser') and hasAuthority('vaco.company_admin')")
+@Hidden
+public class HostLimiterController {
+
+    private final HostLimiter hostLimiter;
+
+    public HostLimiterController(HostLimiter hostLimiter) {
+        this.hostLimiter = Objects.requireNonNull(hostLimiter);
+    }
+
+    @GetMapping(path = "/statistics")
+    @JsonView(DataVisibility.Public.class)
+    public ResponseEntity<Resource<Map<String, HostStatistics>>> listAllHostStatistics() {
+        return ok(resource(hostLimiter.getStats()));
+    }
+}
@@ -0,0 +1,103 @@
+package fi.digitraffic.tis.vaco.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Response body as received over the wire, which transparently continues from where it was interrupted by asking the
+ * {@link Resumer} for the rest of the body. Counts the received bytes, which is also the offset to resume from.
+ */
+class ResumableInputStream extends InputStream {
+
+    /**
+     * Requests rest of an interrupted response body.
+     */
+    @FunctionalInterface
+    interface Resumer {
+        /**
+         * @param offset Number of bytes already received.
+         * @param cause Failure which interrupted the body.
+         * @return Body from given offset onwards.
+         * @throws IOException if the body cannot be resumed
+         */
+        InputStream resume(long offset, IOException cause) throws IOException;
+    }
+
+    static final Resumer NOT_RESUMABLE = (offset, cause) -> {
+        throw cause;
+    };
+
+    private final Resumer resumer;
+
+    private InputStream current;
+
+    private long offset;
+
+    private volatile boolean closed;
+
+    ResumableInputStream(InputStream body, Resumer resumer) {
+        this(body, resumer, 0);
+    }
+
+    /**
+     * @param offset Number of bytes received before the body, for bodies which continue an earlier interrupted body.
+     */
+    ResumableInputStream(InputStream body, Resumer resumer, long offset) {
+        this.current = Objects.requireNonNull(body);
+        this.resumer = Objects.requireNonNull(resumer);
+        this.offset = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            int read;
+            try {
+                read = current.read(b, off, len);
+            } catch (IOException e) {
+                closeQuietly(current);
+                if (closed) {
+                    throw e;
+                }
+                current = resumer.resume(offset, e);
+                continue;
+            }
+            if (read > 0) {
+                offset += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * @return Number of bytes received so far.
+     */
+    long offset() {
+        return offset;
+    }
+
+    /**
+     * Close the body. Closing is allowed from another thread to abort a blocked read, which is then not resumed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        current.close();
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            /* ignored on purpose */
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package fi.digitraffic.tis.vaco.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Response whose body is read directly from the connection instead of being stored first.
+ * <p>
+ * The response holds its host's {@link HostLimiter} permit until closed, so it must always be closed, also when the
+ * body isn't needed.
+ *
+ * @see VacoHttpClient#openStream(String, fi.digitraffic.tis.vaco.queuehandler.model.Entry)
+ */
+public final class StreamedResponse implements AutoCloseable {
+
+    private final int statusCode;
+    private final ResumableInputStream wire;
+    private final InputStream body;
+    private final HostLimiter.Permit permit;
+    private long decodedBytes;
+    private boolean closed;
+
+    StreamedResponse(int statusCode, ResumableInputStream wire, InputStream decoded, HostLimiter.Permit permit) {
+        this.statusCode = statusCode;
+        this.wire = Objects.requireNonNull(wire);
+        this.permit = Objects.requireNonNull(permit);
+        this.body = new FilterInputStream(Objects.requireNonNull(decoded)) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    decodedBytes++;
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    decodedBytes += read;
+                }
+                return read;
+            }
+        };
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return Body with content encoding already decoded. Interrupted body is resumed transparently if the server
+     * supports it.
+     */
+    public InputStream body() {
+        return body;
+    }
+
+    /**
+     * @return Number of bytes received over the wire so far.
+     */
+    public long wireBytes() {
+        return wire.offset();
+    }
+
+    /**
+     * Close the body, cancelling the transfer if it wasn't read completely, and release the host permit.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            body.close();
+        } finally {
+            permit.received(wire.offset(), decodedBytes);
+            permit.close();
+        }
+    }
+}
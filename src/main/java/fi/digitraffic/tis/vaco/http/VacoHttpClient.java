@@ -3,39 +3,61 @@ package fi.digitraffic.tis.vaco.http;
 import com.google.common.annotations.VisibleForTesting;
 import fi.digitraffic.http.HttpClient;
 import fi.digitraffic.http.HttpClientException;
+import fi.digitraffic.tis.vaco.configuration.DownloadResumption;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.credentials.CredentialsService;
 import fi.digitraffic.tis.vaco.credentials.model.Credentials;
 import fi.digitraffic.tis.vaco.credentials.model.HttpBasicAuthenticationDetails;
 import fi.digitraffic.tis.vaco.db.model.CredentialsRecord;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
+import fi.digitraffic.tis.vaco.http.model.CachedResponse;
+import fi.digitraffic.tis.vaco.http.model.ConditionalResponse;
 import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutableConditionalResponse;
 import fi.digitraffic.tis.vaco.http.model.ImmutableDownloadResponse;
 import fi.digitraffic.tis.vaco.http.model.ImmutableNotificationResponse;
 import fi.digitraffic.tis.vaco.http.model.NotificationResponse;
+import fi.digitraffic.tis.vaco.http.model.PartialDownload;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * VACO service's internal HTTP client with service specific specializations.
  */
 public class VacoHttpClient {
 
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final HttpClient httpClient;
@@ -46,19 +68,153 @@ public class VacoHttpClient {
 
     private final FeatureFlagsService featureFlagsService;
 
+    private final ValidatorCache validatorCache;
+
+    private final VacoProperties vacoProperties;
+
+    private final HostLimiter hostLimiter;
+
     public VacoHttpClient(HttpClient httpClient,
                           CredentialsService credentialsService,
                           EntryService entryService,
-                          FeatureFlagsService featureFlagsService) {
+                          FeatureFlagsService featureFlagsService,
+                          ValidatorCache validatorCache,
+                          VacoProperties vacoProperties,
+                          HostLimiter hostLimiter) {
         this.httpClient = Objects.requireNonNull(httpClient);
         this.credentialsService = Objects.requireNonNull(credentialsService);
         this.entryService = Objects.requireNonNull(entryService);
         this.featureFlagsService = Objects.requireNonNull(featureFlagsService);
+        this.validatorCache = Objects.requireNonNull(validatorCache);
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+        this.hostLimiter = Objects.requireNonNull(hostLimiter);
     }
 
+    /**
+     * Download given URI into local file. A body interrupted midway is resumed with range requests; if that fails too,
+     * the unencoded content received so far is stored with {@link ValidatorCache#storePartial(String, String, String, Path)}
+     * and the next download of the same request continues from it instead of starting over.
+     *
+     * @param targetFilePath Local file to write the content to.
+     * @param uri URI to download
+     * @param entry Entry the download belongs to
+     * @return Download response with content digest and size.
+     */
     public CompletableFuture<DownloadResponse> downloadFile(Path targetFilePath,
                                                             String uri,
                                                             Entry entry) {
+        return download(targetFilePath, uri, entry, OutputStream.nullOutputStream(), false);
+    }
+
+    /**
+     * Download an archive file while simultaneously writing the received content to given mirror stream, e.g. an
+     * upload to S3. Once the whole body has been received, the archive's central directory is validated and the outcome
+     * is recorded in {@link DownloadResponse#archiveError()}.
+     * <p>
+     * The mirror is not closed, so the caller can decide whether the mirrored content should be kept based on the
+     * response.
+     *
+     * @param targetFilePath Local file to write the content to.
+     * @param uri URI to download
+     * @param entry Entry the download belongs to
+     * @param mirror Stream to which every received byte is also written to.
+     * @return Download response with content digest, size and archive validation result.
+     */
+    public CompletableFuture<DownloadResponse> downloadArchive(Path targetFilePath,
+                                                               String uri,
+                                                               Entry entry,
+                                                               OutputStream mirror) {
+        return download(targetFilePath, uri, entry, mirror, true);
+    }
+
+    /**
+     * Open response body of given URI for reading directly from the connection, without storing it locally. The body
+     * is decoded and resumed on interruption the same way as in {@link #downloadFile(Path, String, Entry)}. There is no
+     * stored copy to revalidate, so the validator cache isn't used.
+     * <p>
+     * Waits for a {@link HostLimiter} permit before sending the request. The permit is held until the returned response
+     * is closed, so callers already holding open responses to the same host must use
+     * {@link #tryOpenStream(String, Entry)} instead.
+     *
+     * @param uri URI to request
+     * @param entry Entry the request belongs to
+     * @return Response which must be closed after use, completes once the response headers have been received.
+     */
+    public CompletableFuture<StreamedResponse> openStream(String uri, Entry entry) {
+        HostLimiter.Permit permit;
+        try {
+            permit = acquirePermit(uri);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return openStream(uri, entry, permit);
+    }
+
+    /**
+     * Same as {@link #openStream(String, Entry)}, but only if the host has a free request slot right away.
+     *
+     * @param uri URI to request
+     * @param entry Entry the request belongs to
+     * @return Response which must be closed after use, empty if the request wasn't sent because the host is busy.
+     * @see HostLimiter#tryAcquire(String)
+     */
+    public Optional<CompletableFuture<StreamedResponse>> tryOpenStream(String uri, Entry entry) {
+        try {
+            return hostLimiter.tryAcquire(uri).map(permit -> openStream(uri, entry, permit));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.of(CompletableFuture.failedFuture(new InterruptedIOException("Interrupted while waiting to request " + uri)));
+        }
+    }
+
+    private CompletableFuture<StreamedResponse> openStream(String uri, Entry entry, HostLimiter.Permit permit) {
+        logger.info("Streaming {}/{}", entry.publicId(), uri);
+
+        Map<String, String> requestHeaders = new HashMap<>();
+        requestHeaders.put("Accept", "*/*");
+        requestHeaders.put("Accept-Encoding", ContentEncodings.ACCEPTED);
+        requestHeaders.putAll(authorizationHeaders(uri, entry));
+
+        try {
+            HttpRequest request = httpClient.get(uri, requestHeaders);
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    logger.debug("Response for streamed {} resulted in HTTP status {}", uri, response.statusCode());
+                    ResumableInputStream wire = new ResumableInputStream(response.body(), resumer(uri, requestHeaders, response));
+                    try {
+                        InputStream decoded = ContentEncodings.decode(response.headers().firstValue("Content-Encoding").orElse(null), wire);
+                        return new StreamedResponse(response.statusCode(), wire, decoded, permit);
+                    } catch (IOException e) {
+                        closeQuietly(wire);
+                        throw new CompletionException(e);
+                    }
+                })
+                .whenComplete((r, t) -> {
+                    if (t != null) {
+                        permit.close();
+                    }
+                });
+        } catch (HttpClientException e) {
+            permit.close();
+            logger.warn("HTTP execution failure for %s".formatted(uri), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<DownloadResponse> download(Path targetFilePath,
+                                                         String uri,
+                                                         Entry entry,
+                                                         OutputStream mirror,
+                                                         boolean validateArchive) {
+        return download(targetFilePath, uri, entry, mirror, validateArchive, true);
+    }
+
+    private CompletableFuture<DownloadResponse> download(Path targetFilePath,
+                                                         String uri,
+                                                         Entry entry,
+                                                         OutputStream mirror,
+                                                         boolean validateArchive,
+                                                         boolean useCache) {
         logger.info("Downloading {}/{} to {} (eTag {})", entry.publicId(), uri, targetFilePath, entry.etag());
 
         try {
@@ -66,39 +222,125 @@ public class VacoHttpClient {
             Map<String, String> requestHeaders = new HashMap<>();
 
             requestHeaders.put("Accept", "*/*");
+            requestHeaders.put("Accept-Encoding", ContentEncodings.ACCEPTED);
 
+            boolean entryEtag = false;
             if (!featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")) {
                 logger.debug("Skipping If-None-Match header setting for {}/{} due to feature flag 'tasks.prepareDownload.skipDownloadOnStaleETag' being disabled", entry.publicId(), uri);
             } else if (entry.etag() != null && !entry.etag().isEmpty()) {
                 requestHeaders.put("If-None-Match", entry.etag());
+                entryEtag = true;
             }
 
-            if (entry.credentials() != null) {
-                requestHeaders.putAll(addAuthorizationHeader(entry.credentials()));
-            } else {
-                requestHeaders.putAll(addAuthorizationHeaderAutomatically(entry.businessId(), uri, entry));
-            }
+            requestHeaders.putAll(authorizationHeaders(uri, entry));
+
+            // entry's own ETag means the caller wants to skip unchanged content altogether, cache is for everything else
+            String cacheKey = validatorCache.key(uri, requestHeaders);
+            Optional<CachedResponse> cached = useCache && !entryEtag ? validatorCache.find(cacheKey) : Optional.empty();
+            cached.ifPresent(c -> {
+                c.etag().ifPresent(etag -> requestHeaders.put("If-None-Match", etag));
+                c.lastModified().ifPresent(lastModified -> requestHeaders.put("If-Modified-Since", lastModified));
+            });
+
+            // continue from where an earlier download of the same request was interrupted
+            Path received = targetFilePath.resolveSibling(targetFilePath.getFileName() + ".partial");
+            Optional<PartialDownload> partial = useCache
+                ? validatorCache.findPartial(cacheKey).filter(p -> validatorCache.restorePartial(p, received))
+                : Optional.empty();
+            partial.ifPresent(p -> {
+                requestHeaders.put("Range", "bytes=" + p.offset() + "-");
+                requestHeaders.put("If-Range", p.validator());
+            });
 
             HttpRequest request = httpClient.get(uri, requestHeaders);
             HttpResponse.BodyHandler<InputStream> bodyHandler = HttpResponse.BodyHandlers.ofInputStream();
 
             ImmutableDownloadResponse.Builder resp = ImmutableDownloadResponse.builder();
 
-            return httpClient.send(request, bodyHandler).thenApply(response -> {
+            HostLimiter.Permit permit;
+            try {
+                permit = acquirePermit(uri);
+            } catch (IOException e) {
+                logger.warn("Could not request {}", uri, e);
+                return CompletableFuture.completedFuture(ImmutableDownloadResponse.builder().result(DownloadResponse.Result.FAILED_DOWNLOAD).build());
+            }
 
-                response.headers().firstValue("ETag").ifPresent(resp::etag);
+            return httpClient.send(request, bodyHandler).thenCompose(response -> {
 
-                logger.info("Response for {} with ETag {} resulted in HTTP status {}", uri, entry.etag(), response.statusCode());
+                response.headers().firstValue("ETag").ifPresent(resp::etag);
 
-                if (response.statusCode() == 304) {
-                    return resp.result(DownloadResponse.Result.NOT_MODIFIED).build();
+                logger.info("Response for {} with ETag {} resulted in HTTP status {}", uri, requestHeaders.get("If-None-Match"), response.statusCode());
+
+                if (response.statusCode() == 304 && cached.isPresent()) {
+                    discard(response.body(), uri);
+                    cached.get().etag().ifPresent(resp::etag);
+                    if (restoreCached(cached.get(), targetFilePath, mirror, resp)) {
+                        logger.info("Content of {} not modified, using cached copy downloaded at {}", uri, cached.get().downloaded());
+                        if (validateArchive) {
+                            validateArchive(targetFilePath).ifPresent(resp::archiveError);
+                        }
+                        return CompletableFuture.completedFuture(resp.result(DownloadResponse.Result.OK).body(targetFilePath).build());
+                    }
+                    // retry needs a permit of its own
+                    permit.close();
+                    return download(targetFilePath, uri, entry, mirror, validateArchive, false);
+                } else if (response.statusCode() == 304) {
+                    return CompletableFuture.completedFuture(resp.result(DownloadResponse.Result.NOT_MODIFIED).build());
                 } else {
+                    String contentEncoding = response.headers().firstValue("Content-Encoding").orElse(null);
+                    Path prefix = null;
+                    if (partial.isPresent()) {
+                        if (response.statusCode() != 206) {
+                            // representation has changed since the interruption, received bytes are worthless
+                            validatorCache.discardPartial(cacheKey);
+                        } else if (contentEncoding == null
+                            && response.headers().firstValue("Content-Range").orElse("").startsWith("bytes " + partial.get().offset() + "-")) {
+                            logger.info("Continuing interrupted download of {} from offset {}", uri, partial.get().offset());
+                            prefix = received;
+                        } else {
+                            discard(response.body(), uri);
+                            validatorCache.discardPartial(cacheKey);
+                            // retry needs a permit of its own
+                            permit.close();
+                            return download(targetFilePath, uri, entry, mirror, validateArchive, false);
+                        }
+                    }
+                    ResumableInputStream.Resumer resumer = resumer(uri, requestHeaders, response);
+                    long wireSize;
                     try {
-                        Files.copy(response.body(), targetFilePath);
+                        wireSize = writeBody(response.body(), resumer, contentEncoding, prefix, targetFilePath, mirror, resp);
                     } catch (IOException e) {
+                        // only unencoded content is stored as received over the wire, encoded content can't be continued
+                        if (resumer != ResumableInputStream.NOT_RESUMABLE && contentEncoding == null) {
+                            rangeValidator(response)
+                                .or(() -> partial.map(PartialDownload::validator))
+                                .ifPresent(validator -> validatorCache.storePartial(cacheKey, uri, validator, targetFilePath));
+                        }
                         throw new RuleExecutionException("Failed to write download stream of " + entry.publicId() + "/" + uri + " into file " + targetFilePath, e);
                     }
-                    return resp.result(DownloadResponse.Result.OK).body(targetFilePath).build();
+                    if (prefix != null) {
+                        validatorCache.discardPartial(cacheKey);
+                    }
+                    if (validateArchive) {
+                        validateArchive(targetFilePath).ifPresent(resp::archiveError);
+                    }
+                    response.headers().firstValue("Last-Modified").ifPresent(resp::lastModified);
+                    if (isSuccessful(response.statusCode())) {
+                        resp.cacheKey(cacheKey);
+                    }
+                    DownloadResponse downloaded = resp.result(DownloadResponse.Result.OK).body(targetFilePath).build();
+                    permit.received(wireSize, downloaded.size().orElse(0L));
+                    if (contentEncoding != null) {
+                        logger.info("Received {} bytes of {} encoded content from {}, {} bytes decoded", wireSize, contentEncoding, uri, downloaded.size().orElse(0L));
+                    }
+                    return CompletableFuture.completedFuture(downloaded);
+                }
+            }).whenComplete((r, t) -> {
+                permit.close();
+                try {
+                    Files.deleteIfExists(received);
+                } catch (IOException ignored) {
+                    /* ignored on purpose */
                 }
             });
         } catch (HttpClientException e) {
@@ -107,6 +349,285 @@ public class VacoHttpClient {
         }
     }
 
+    /**
+     * Wait for permission to send a request to given URI.
+     *
+     * @return Permit to close once the request is complete.
+     * @throws IOException if interrupted or no permit was given in time
+     */
+    private HostLimiter.Permit acquirePermit(String uri) throws IOException {
+        try {
+            return hostLimiter.acquire(uri);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to request " + uri);
+        } catch (TimeoutException e) {
+            throw new IOException("Gave up waiting to request " + uri, e);
+        }
+    }
+
+    /**
+     * Restore cached content into target file and mirror. Restored content is first fetched to a separate file, so
+     * nothing is written to the mirror unless the whole content is available.
+     */
+    private boolean restoreCached(CachedResponse cached,
+                                  Path targetFilePath,
+                                  OutputStream mirror,
+                                  ImmutableDownloadResponse.Builder resp) {
+        Path restored = targetFilePath.resolveSibling(targetFilePath.getFileName() + ".cached");
+        try {
+            if (!validatorCache.restore(cached, restored)) {
+                return false;
+            }
+            writeBody(Files.newInputStream(restored), ResumableInputStream.NOT_RESUMABLE, null, null, targetFilePath, mirror, resp);
+            return true;
+        } catch (IOException e) {
+            throw new RuleExecutionException("Failed to write cached content of " + cached.uri() + " into file " + targetFilePath, e);
+        } finally {
+            try {
+                Files.deleteIfExists(restored);
+            } catch (IOException ignored) {
+                /* ignored on purpose */
+            }
+        }
+    }
+
+    private void discard(InputStream body, String uri) {
+        // closing the stream without reading it cancels the transfer
+        try (InputStream ignored = body) {
+            logger.trace("Discarding response body of {}", uri);
+        } catch (IOException e) {
+            logger.debug("Failed to discard response body of {}", uri, e);
+        }
+    }
+
+    private static boolean isSuccessful(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Check whether the resource at given URI has changed since the given validators were received. A changed resource
+     * is not downloaded, its response body is discarded as soon as the headers have been received.
+     *
+     * @param uri URI to check
+     * @param businessId Business id of the resource owner, used for looking up matching credentials.
+     * @param etag <code>ETag</code> of the previously seen content, if any.
+     * @param lastModified <code>Last-Modified</code> of the previously seen content, if any.
+     * @return Response status and the current validators of the resource.
+     */
+    public CompletableFuture<ConditionalResponse> checkForChanges(String uri,
+                                                                  String businessId,
+                                                                  @Nullable String etag,
+                                                                  @Nullable String lastModified) {
+        Map<String, String> requestHeaders = new HashMap<>();
+        requestHeaders.put("Accept", "*/*");
+        if (etag != null && !etag.isEmpty()) {
+            requestHeaders.put("If-None-Match", etag);
+        }
+        if (lastModified != null && !lastModified.isEmpty()) {
+            requestHeaders.put("If-Modified-Since", lastModified);
+        }
+        credentialsService.findMatchingCredentials(businessId, uri)
+            .ifPresent(credentials -> requestHeaders.putAll(setHeaders(credentials)));
+
+        try {
+            HttpRequest request = httpClient.get(uri, requestHeaders);
+            HostLimiter.Permit permit;
+            try {
+                permit = acquirePermit(uri);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).thenApply(response -> {
+                discard(response.body(), uri);
+                logger.debug("Checked {} for changes (ETag {}, Last-Modified {}), resulted in HTTP status {}", uri, etag, lastModified, response.statusCode());
+                ImmutableConditionalResponse.Builder resp = ImmutableConditionalResponse.builder().statusCode(response.statusCode());
+                response.headers().firstValue("ETag").ifPresent(resp::etag);
+                response.headers().firstValue("Last-Modified").ifPresent(resp::lastModified);
+                return resp.build();
+            }).whenComplete((r, t) -> permit.close());
+        } catch (HttpClientException e) {
+            logger.warn("HTTP execution failure for %s".formatted(uri), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Single pass over the response body which decodes it and writes it to local file and mirror while computing digest
+     * and size. If reading the body fails midway, the rest of the body is requested with given resumer and appended to
+     * what was already received, so nothing is written twice to the mirror.
+     *
+     * @param prefix Unencoded content received by an earlier interrupted download which the body continues, if any.
+     * @return Number of bytes received over the wire.
+     */
+    private long writeBody(InputStream body,
+                           ResumableInputStream.Resumer resumer,
+                           @Nullable String contentEncoding,
+                           @Nullable Path prefix,
+                           Path targetFilePath,
+                           OutputStream mirror,
+                           ImmutableDownloadResponse.Builder resp) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long prefixSize = prefix != null ? Files.size(prefix) : 0;
+        ResumableInputStream wire = new ResumableInputStream(body, resumer, prefixSize);
+        try (wire;
+             InputStream in = prefix != null
+                 ? new SequenceInputStream(Files.newInputStream(prefix), wire)
+                 : ContentEncodings.decode(contentEncoding, wire);
+             OutputStream out = Files.newOutputStream(targetFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                mirror.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        resp.sha256(HexFormat.of().formatHex(digest.digest()))
+            .size(size);
+        return wire.offset() - prefixSize;
+    }
+
+    /**
+     * Create resumer for given response. Resuming is possible only if the server advertises support for byte ranges and
+     * provides a validator with which the resumed part can be ensured to belong to the same representation.
+     */
+    private ResumableInputStream.Resumer resumer(String uri, Map<String, String> requestHeaders, HttpResponse<?> response) {
+        DownloadResumption resumption = vacoProperties.downloadResumption();
+        boolean acceptsRanges = response.statusCode() == 206
+            || response.headers().allValues("Accept-Ranges").stream().anyMatch(v -> v.toLowerCase().contains("bytes"));
+        Optional<String> validator = rangeValidator(response);
+        if (resumption == null || resumption.maxAttempts() <= 0 || !acceptsRanges || validator.isEmpty()) {
+            return ResumableInputStream.NOT_RESUMABLE;
+        }
+        return new RangeResumer(uri, requestHeaders, validator.get(), response.headers().firstValue("Content-Encoding"), resumption);
+    }
+
+    /**
+     * @return Validator of the response usable in <code>If-Range</code>, if any.
+     */
+    private static Optional<String> rangeValidator(HttpResponse<?> response) {
+        return response.headers().firstValue("ETag")
+            .filter(etag -> !etag.startsWith("W/"))  // weak ETags are not allowed in If-Range
+            .or(() -> response.headers().firstValue("Last-Modified"));
+    }
+
+    /**
+     * Resumes a body with range requests validated with <code>If-Range</code>. Attempts are counted over the whole
+     * body, not per interruption.
+     */
+    private final class RangeResumer implements ResumableInputStream.Resumer {
+        private final String uri;
+        private final Map<String, String> requestHeaders;
+        private final String validator;
+        private final Optional<String> contentEncoding;
+        private final DownloadResumption resumption;
+        private int attempts;
+
+        private RangeResumer(String uri,
+                             Map<String, String> requestHeaders,
+                             String validator,
+                             Optional<String> contentEncoding,
+                             DownloadResumption resumption) {
+            this.uri = uri;
+            this.requestHeaders = requestHeaders;
+            this.validator = validator;
+            this.contentEncoding = contentEncoding;
+            this.resumption = resumption;
+        }
+
+        @Override
+        public InputStream resume(long offset, IOException cause) throws IOException {
+            while (attempts < resumption.maxAttempts()) {
+                attempts++;
+                logger.warn("Download of {} interrupted after {} bytes ({}), resuming {}/{}", uri, offset, cause.getMessage(), attempts, resumption.maxAttempts());
+                try {
+                    Thread.sleep(resumption.backoff().multipliedBy(1L << Math.min(attempts - 1, 16)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw cause;
+                }
+
+                Map<String, String> headers = new HashMap<>(requestHeaders);
+                headers.remove("If-None-Match");
+                headers.remove("If-Modified-Since");
+                headers.put("Range", "bytes=" + offset + "-");
+                headers.put("If-Range", validator);
+                HttpResponse<InputStream> resumed;
+                try {
+                    resumed = httpClient.send(httpClient.get(uri, headers), HttpResponse.BodyHandlers.ofInputStream()).join();
+                } catch (HttpClientException | CompletionException e) {
+                    cause.addSuppressed(e);
+                    continue;
+                }
+
+                String contentRange = resumed.headers().firstValue("Content-Range").orElse("");
+                // ranges are offsets into encoded content, so the remainder must have the same encoding
+                if (resumed.statusCode() == 206
+                    && contentRange.startsWith("bytes " + offset + "-")
+                    && contentEncoding.equals(resumed.headers().firstValue("Content-Encoding"))) {
+                    return resumed.body();
+                }
+                // anything but the requested range means the representation has changed, received bytes are worthless
+                closeQuietly(resumed.body());
+                throw new IOException("Could not resume download of " + uri + " from offset " + offset
+                    + ", server responded with HTTP " + resumed.statusCode() + " " + contentRange, cause);
+            }
+            throw cause;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            /* ignored on purpose */
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+
+    /**
+     * Ensure the downloaded file is a valid ZIP file, e.g. not partial, corrupted or complete nonsense. Only the central
+     * directory and local entry headers are read, entry contents are left for the actual consumers.
+     *
+     * @return Reason for the archive being invalid, empty if the archive is valid.
+     */
+    private Optional<String> validateArchive(Path archive) {
+        try (ZipFile zipfile = new ZipFile(archive.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipfile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry ze = entries.nextElement();
+                // if it throws an exception fetching any of the following then we know the file is corrupted.
+                try (InputStream ignored = zipfile.getInputStream(ze)) {
+                    ze.getCrc();
+                    ze.getCompressedSize();
+                    ze.getName();
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.info("Downloaded file {} is not a valid archive: {}", archive, e.getMessage());
+            return Optional.of(Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName()));
+        }
+    }
+
+    private Map<String, String> authorizationHeaders(String uri, Entry entry) {
+        if (entry.credentials() != null) {
+            return addAuthorizationHeader(entry.credentials());
+        } else {
+            return addAuthorizationHeaderAutomatically(entry.businessId(), uri, entry);
+        }
+    }
+
     @VisibleForTesting
     protected Map<String, String> addAuthorizationHeader(String credentials) {
 
@@ -0,0 +1,288 @@
+package fi.digitraffic.tis.vaco.http;
+
+import fi.digitraffic.tis.aws.s3.ImmutableS3Path;
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.vaco.caching.CachingService;
+import fi.digitraffic.tis.vaco.configuration.HttpCaching;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.http.model.CachedResponse;
+import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutableCachedResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutablePartialDownload;
+import fi.digitraffic.tis.vaco.http.model.PartialDownload;
+import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Persistent cache of <code>ETag</code> and <code>Last-Modified</code> validators of downloaded content, which allows
+ * every download to be a conditional request, and a <code>304 Not Modified</code> response to be served from the
+ * package the content was previously stored as.
+ * <p>
+ * Cached responses are keyed by request URI and a fingerprint of the credentials used, so content is never shared
+ * between requests made with different credentials. Only validators and a pointer to the downloaded package are cached,
+ * the content itself is never copied: the package is tagged with the digest of its content, which is compared to the
+ * cached digest before the package is used. Validators are stored in S3, which makes the cache survive restarts and
+ * shared by all nodes, and each key has exactly one cached response which is replaced on change; validators are
+ * additionally kept in a bounded in-memory cache.
+ * <p>
+ * Beginnings of downloads which failed midway are stored next to the validators, so that the next download of the same
+ * request may continue from where the previous one was interrupted, also on another node.
+ *
+ * @see DownloadRule#CONTENT_DIGEST_TAG
+ */
+@Service
+public class ValidatorCache {
+
+    private static final String CACHE_PREFIX = "http-cache";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final VacoProperties vacoProperties;
+    private final S3Client s3Client;
+    private final CachingService cachingService;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public ValidatorCache(VacoProperties vacoProperties,
+                          S3Client s3Client,
+                          CachingService cachingService,
+                          ObjectMapper objectMapper,
+                          Clock clock) {
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+        this.s3Client = Objects.requireNonNull(s3Client);
+        this.cachingService = Objects.requireNonNull(cachingService);
+        this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * @param uri Requested URI
+     * @param requestHeaders Headers of the request, used for fingerprinting credentials.
+     * @return Cache key for given request.
+     */
+    public String key(String uri, Map<String, String> requestHeaders) {
+        String authorization = Objects.requireNonNullElse(requestHeaders.get("Authorization"), "");
+        return sha256(uri + '\n' + authorization);
+    }
+
+    /**
+     * @return Cached response which may still be revalidated, empty if there's none or caching is disabled.
+     */
+    public Optional<CachedResponse> find(String key) {
+        HttpCaching httpCaching = vacoProperties.httpCaching();
+        if (httpCaching == null || !httpCaching.enabled()) {
+            return Optional.empty();
+        }
+        return cachingService.cacheHttpValidators(key, this::load)
+            .filter(cached -> cached.downloaded().plus(httpCaching.maxAge()).isAfter(clock.instant()));
+    }
+
+    private CachedResponse load(String key) {
+        return s3Client.getObject(vacoProperties.s3PackagesBucket(), validatorsPath(key))
+            .map(json -> {
+                try {
+                    return objectMapper.readValue(json, CachedResponse.class);
+                } catch (JacksonException e) {
+                    logger.warn("Discarding unreadable cached validators {}", key, e);
+                    return null;
+                }
+            })
+            .orElse(null);
+    }
+
+    /**
+     * Store validators of a downloaded response together with a pointer to the package holding its content. Responses
+     * without any validators cannot be revalidated and are not stored.
+     *
+     * @param uri Downloaded URI
+     * @param response Downloaded response, stored only if it has a {@link DownloadResponse#cacheKey() cache key}.
+     * @param content Path of the package in packages bucket holding the downloaded content, tagged with its digest.
+     */
+    public void store(String uri, DownloadResponse response, S3Path content) {
+        HttpCaching httpCaching = vacoProperties.httpCaching();
+        if (httpCaching == null
+            || !httpCaching.enabled()
+            || response.cacheKey().isEmpty()
+            || response.sha256().isEmpty()
+            || (response.etag().isEmpty() && response.lastModified().isEmpty())) {
+            return;
+        }
+        String key = response.cacheKey().get();
+        CachedResponse cached = ImmutableCachedResponse.builder()
+            .key(key)
+            .uri(uri)
+            .etag(response.etag())
+            .lastModified(response.lastModified())
+            .contentLength(response.size().orElse(0L))
+            .sha256(response.sha256().get())
+            .content(content.toString())
+            .downloaded(clock.instant())
+            .build();
+        try {
+            s3Client.putObject(vacoProperties.s3PackagesBucket(), validatorsPath(key), objectMapper.writeValueAsBytes(cached));
+            cachingService.updateHttpValidators(key, cached);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to cache validators of {}", uri, e);
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Copy content of a revalidated response from the package it was stored as to given local file.
+     *
+     * @return <code>true</code> if the complete content was restored, <code>false</code> if the package is no longer
+     * available or holds different content, in which case the cached response is invalidated.
+     */
+    public boolean restore(CachedResponse cached, Path target) {
+        String bucket = vacoProperties.s3PackagesBucket();
+        S3Path content = S3Path.of(cached.content());
+        try {
+            String digest = s3Client.objectTags(bucket, content).get(DownloadRule.CONTENT_DIGEST_TAG);
+            if (!cached.sha256().equals(digest)) {
+                logger.warn("Package s3://{}/{} of {} has digest {} instead of expected {}", bucket, content, cached.uri(), digest, cached.sha256());
+            } else {
+                long size = s3Client.downloadFile(bucket, content, target);
+                if (size == cached.contentLength() && Files.size(target) == cached.contentLength()) {
+                    return true;
+                }
+                logger.warn("Cached content of {} has {} bytes instead of expected {}", cached.uri(), size, cached.contentLength());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to restore cached content of {}", cached.uri(), e);
+        }
+        invalidate(cached.key());
+        return false;
+    }
+
+    /**
+     * Forget in-memory copy of given cached response. Persisted copy is left to be replaced by the next successful
+     * unconditional download.
+     */
+    public void invalidate(String key) {
+        cachingService.invalidateHttpValidators(key);
+    }
+
+    /**
+     * Store beginning of a response body received before the download failed. Replaces any previously stored partial
+     * download of the same request.
+     *
+     * @param key Cache key of the request.
+     * @param uri Downloaded URI
+     * @param validator Strong validator of the received representation.
+     * @param received Local file holding the received bytes as they were sent over the wire.
+     */
+    public void storePartial(String key, String uri, String validator, Path received) {
+        HttpCaching httpCaching = vacoProperties.httpCaching();
+        if (httpCaching == null || !httpCaching.enabled()) {
+            return;
+        }
+        try {
+            long offset = Files.size(received);
+            if (offset == 0) {
+                return;
+            }
+            String bucket = vacoProperties.s3PackagesBucket();
+            s3Client.uploadFile(bucket, partialContentPath(key), received).join();
+            PartialDownload partial = ImmutablePartialDownload.builder()
+                .key(key)
+                .uri(uri)
+                .validator(validator)
+                .offset(offset)
+                .interrupted(clock.instant())
+                .build();
+            s3Client.putObject(bucket, partialPath(key), objectMapper.writeValueAsBytes(partial));
+            logger.info("Stored {} bytes of interrupted download of {} to be continued later", offset, uri);
+        } catch (Exception e) {
+            logger.warn("Failed to store partial download of {}", uri, e);
+        }
+    }
+
+    /**
+     * @return Partial download of given request to continue from, empty if there's none, it is older than the maximum
+     * age of cached responses or caching is disabled.
+     */
+    public Optional<PartialDownload> findPartial(String key) {
+        HttpCaching httpCaching = vacoProperties.httpCaching();
+        if (httpCaching == null || !httpCaching.enabled()) {
+            return Optional.empty();
+        }
+        try {
+            return s3Client.getObject(vacoProperties.s3PackagesBucket(), partialPath(key))
+                .map(json -> objectMapper.readValue(json, PartialDownload.class))
+                .filter(partial -> partial.interrupted().plus(httpCaching.maxAge()).isAfter(clock.instant()));
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring unreadable partial download {}", key, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Copy received bytes of a partial download to given local file.
+     *
+     * @return <code>true</code> if all received bytes were restored, <code>false</code> otherwise, in which case the
+     * partial download is discarded.
+     */
+    public boolean restorePartial(PartialDownload partial, Path target) {
+        try {
+            long size = s3Client.downloadFile(vacoProperties.s3PackagesBucket(), partialContentPath(partial.key()), target);
+            if (size == partial.offset() && Files.size(target) == partial.offset()) {
+                return true;
+            }
+            logger.warn("Partial download of {} has {} bytes instead of expected {}", partial.uri(), size, partial.offset());
+        } catch (Exception e) {
+            logger.warn("Failed to restore partial download of {}", partial.uri(), e);
+        }
+        discardPartial(partial.key());
+        return false;
+    }
+
+    /**
+     * Forget partial download of given request, e.g. once it has been completed or can no longer be continued.
+     */
+    public void discardPartial(String key) {
+        String bucket = vacoProperties.s3PackagesBucket();
+        try {
+            s3Client.deleteObject(bucket, partialPath(key));
+            s3Client.deleteObject(bucket, partialContentPath(key));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to discard partial download {}", key, e);
+        }
+    }
+
+    private static S3Path validatorsPath(String key) {
+        return ImmutableS3Path.of(List.of(CACHE_PREFIX, key, "validators.json"));
+    }
+
+    private static S3Path partialPath(String key) {
+        return ImmutableS3Path.of(List.of(CACHE_PREFIX, key, "partial.json"));
+    }
+
+    private static S3Path partialContentPath(String key) {
+        return ImmutableS3Path.of(List.of(CACHE_PREFIX, key, "partial"));
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+}
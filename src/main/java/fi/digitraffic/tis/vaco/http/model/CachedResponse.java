@@ -0,0 +1,50 @@
+package fi.digitraffic.tis.vaco.http.model;
+
+import org.immutables.value.Value;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Validators and metadata of a previously downloaded response, used for revalidating the cached content with a
+ * conditional request.
+ *
+ * @see fi.digitraffic.tis.vaco.http.ValidatorCache
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableCachedResponse.class)
+@JsonDeserialize(as = ImmutableCachedResponse.class)
+public interface CachedResponse {
+    /**
+     * Cache key derived from the request URI and credentials.
+     */
+    String key();
+
+    String uri();
+
+    Optional<String> etag();
+
+    Optional<String> lastModified();
+
+    /**
+     * Number of bytes in cached content.
+     */
+    long contentLength();
+
+    /**
+     * Hex encoded SHA-256 digest of cached content.
+     */
+    String sha256();
+
+    /**
+     * Path of the package in packages bucket which holds the content. The package is tagged with the same digest.
+     */
+    String content();
+
+    /**
+     * When the content was downloaded, revalidation doesn't update this.
+     */
+    Instant downloaded();
+}
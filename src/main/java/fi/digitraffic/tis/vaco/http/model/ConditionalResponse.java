@@ -0,0 +1,24 @@
+package fi.digitraffic.tis.vaco.http.model;
+
+import org.immutables.value.Value;
+
+import java.util.Optional;
+
+/**
+ * Outcome of checking a resource for changes with a conditional request. Content of the resource is not included.
+ *
+ * @see fi.digitraffic.tis.vaco.http.VacoHttpClient#checkForChanges(String, String, String, String)
+ */
+@Value.Immutable
+public interface ConditionalResponse {
+    @Value.Parameter
+    int statusCode();
+
+    Optional<String> etag();
+
+    Optional<String> lastModified();
+
+    default boolean modified() {
+        return statusCode() >= 200 && statusCode() < 300;
+    }
+}
@@ -10,6 +10,37 @@ public interface DownloadResponse {
     Optional<String> etag();
     Optional<Path> body();
     Result result();
+
+    /**
+     * Hex encoded SHA-256 digest of the downloaded content, computed while the content was being written.
+     */
+    Optional<String> sha256();
+
+    /**
+     * Number of bytes in downloaded content.
+     */
+    Optional<Long> size();
+
+    /**
+     * Reason why downloaded content is not a readable archive. Present only for archive downloads which failed
+     * validation.
+     *
+     * @see fi.digitraffic.tis.vaco.http.VacoHttpClient#downloadArchive(Path, String, fi.digitraffic.tis.vaco.queuehandler.model.Entry, java.io.OutputStream)
+     */
+    Optional<String> archiveError();
+
+    /**
+     * <code>Last-Modified</code> validator of the response, if any.
+     */
+    Optional<String> lastModified();
+
+    /**
+     * Key for caching validators of this response. Present only for successful downloads of fresh content.
+     *
+     * @see fi.digitraffic.tis.vaco.http.ValidatorCache#store(String, DownloadResponse, fi.digitraffic.tis.aws.s3.S3Path)
+     */
+    Optional<String> cacheKey();
+
     enum Result {
         OK,
         NOT_MODIFIED,
@@ -0,0 +1,44 @@
+package fi.digitraffic.tis.vaco.http.model;
+
+import org.immutables.value.Value;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+@Value.Immutable
+@JsonSerialize(as = ImmutableHostStatistics.class)
+@JsonDeserialize(as = ImmutableHostStatistics.class)
+public interface HostStatistics {
+
+    String host();
+
+    /**
+     * Requests currently in progress.
+     */
+    int active();
+
+    /**
+     * Requests waiting for their turn.
+     */
+    int waiting();
+
+    long requests();
+
+    /**
+     * Bytes received over the wire.
+     */
+    long bytes();
+
+    /**
+     * Bytes received after decoding compressed content. Compare with {@link #bytes()} for compression savings.
+     */
+    long decodedBytes();
+
+    long averageWaitMillis();
+
+    long maxWaitMillis();
+
+    /**
+     * Average rate of received bytes while requests were in progress.
+     */
+    long bytesPerSecond();
+}
@@ -0,0 +1,41 @@
+package fi.digitraffic.tis.vaco.http.model;
+
+import org.immutables.value.Value;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+
+/**
+ * Beginning of a response body received by a download which failed midway, from which the next download of the same
+ * request continues with a range request instead of starting over.
+ *
+ * @see fi.digitraffic.tis.vaco.http.ValidatorCache
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutablePartialDownload.class)
+@JsonDeserialize(as = ImmutablePartialDownload.class)
+public interface PartialDownload {
+    /**
+     * Cache key derived from the request URI and credentials.
+     */
+    String key();
+
+    String uri();
+
+    /**
+     * Strong <code>ETag</code> or <code>Last-Modified</code> of the partially received representation, sent as
+     * <code>If-Range</code> when continuing.
+     */
+    String validator();
+
+    /**
+     * Number of bytes received, which is also the offset to continue from.
+     */
+    long offset();
+
+    /**
+     * When the download was interrupted.
+     */
+    Instant interrupted();
+}
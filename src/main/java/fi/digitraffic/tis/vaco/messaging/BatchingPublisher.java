@@ -0,0 +1,242 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutablePublisherStatistics;
+import fi.digitraffic.tis.vaco.messaging.model.PublisherStatistics;
+import io.awspring.cloud.sqs.operations.SendBatchOperationFailedException;
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers outgoing messages per queue for a short while and sends them with SQS batch API.
+ * <p>
+ * Messages published with the same coalescing key while an earlier one is still buffered replace the buffered message
+ * instead of being sent separately. This is used for delegation jobs, as multiple wake-ups for the same entry within a
+ * few milliseconds would only result in redundant delegation rounds.
+ */
+@Component
+public class BatchingPublisher implements AutoCloseable {
+
+    private static final int MAX_BATCH_SIZE = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final SqsTemplate sqsTemplate;
+    private final Duration linger;
+    private final ScheduledExecutorService flusher;
+    private final ConcurrentMap<String, QueueBuffer> buffers = new ConcurrentHashMap<>();
+
+    public BatchingPublisher(SqsTemplate sqsTemplate, VacoProperties vacoProperties) {
+        this.sqsTemplate = Objects.requireNonNull(sqsTemplate);
+        this.linger = vacoProperties.sqsPublisher().linger();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+            .daemon()
+            .name("vaco-sqs-publisher")
+            .factory());
+    }
+
+    /**
+     * Publish message to given queue.
+     *
+     * @param coalescingKey Messages with equal non-null key replace each other while buffered.
+     * @return Future completing with the given payload once SQS has accepted the message, or the message it was
+     *         coalesced into.
+     */
+    public <P> CompletableFuture<P> publish(String queueName, P payload, @Nullable String coalescingKey) {
+        QueueBuffer buffer = buffers.computeIfAbsent(queueName, QueueBuffer::new);
+        CompletableFuture<P> result = new CompletableFuture<>();
+        List<Pending> full = buffer.add(payload, coalescingKey, result);
+        if (!full.isEmpty()) {
+            send(buffer, full);
+        } else if (linger.isZero()) {
+            flush(buffer);
+        } else if (buffer.scheduleFlush()) {
+            flusher.schedule(() -> flush(buffer), linger.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private void flush(QueueBuffer buffer) {
+        List<Pending> batch;
+        while (!(batch = buffer.drain()).isEmpty()) {
+            send(buffer, batch);
+        }
+    }
+
+    private void send(QueueBuffer buffer, List<Pending> batch) {
+        Map<UUID, Pending> byId = new HashMap<>();
+        List<Message<Object>> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            Message<Object> message = MessageBuilder.withPayload(pending.payload).build();
+            byId.put(message.getHeaders().getId(), pending);
+            messages.add(message);
+        }
+        logger.debug("send {} <- batch of {}", buffer.queueName, messages.size());
+
+        CompletableFuture<SendResult.Batch<Object>> sent;
+        try {
+            sent = sqsTemplate.sendManyAsync(buffer.queueName, messages);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((result, error) -> {
+            SendResult.Batch<Object> outcome = result;
+            if (error != null && unwrap(error) instanceof SendBatchOperationFailedException sbofe) {
+                outcome = sbofe.getSendBatchResult(Object.class);
+            }
+            buffer.batches.increment();
+            if (outcome == null) {
+                logger.warn("Failed to send batch of {} messages to queue {}", batch.size(), buffer.queueName, error);
+                batch.forEach(p -> buffer.fail(p, error));
+                return;
+            }
+            outcome.successful().forEach(r -> buffer.succeed(byId.remove(r.message().getHeaders().getId())));
+            outcome.failed().forEach(f -> {
+                logger.warn("Failed to send message {} to queue {}: {}", f.message().getPayload(), buffer.queueName, f.errorMessage());
+                buffer.fail(byId.remove(f.message().getHeaders().getId()), new MessagingFailureException(f.errorMessage()));
+            });
+        });
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    public Map<String, PublisherStatistics> getStats() {
+        return buffers.values().stream()
+            .collect(Collectors.toMap(b -> b.queueName, QueueBuffer::statistics));
+    }
+
+    @Override
+    public void close() {
+        buffers.values().forEach(this::flush);
+        flusher.shutdown();
+    }
+
+    private static final class Pending {
+        private Object payload;
+        private final long enqueued = System.nanoTime();
+        private final List<Waiter> waiters = new ArrayList<>(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private record Waiter(CompletableFuture<?> future, Object payload) {
+        void complete() {
+            ((CompletableFuture<Object>) future).complete(payload);
+        }
+    }
+
+    private static final class QueueBuffer {
+        private final String queueName;
+        private final Map<Object, Pending> pending = new LinkedHashMap<>();
+        private boolean flushScheduled;
+
+        private final LongAdder published = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+
+        private QueueBuffer(String queueName) {
+            this.queueName = queueName;
+        }
+
+        /**
+         * @return Full batch to be sent immediately, or empty list if the message was buffered.
+         */
+        private synchronized List<Pending> add(Object payload, @Nullable String coalescingKey, CompletableFuture<?> future) {
+            Object key = coalescingKey != null ? coalescingKey : new Object();
+            Pending p = pending.get(key);
+            if (p != null) {
+                coalesced.increment();
+            } else {
+                p = new Pending();
+                pending.put(key, p);
+            }
+            p.payload = payload;
+            p.waiters.add(new Waiter(future, payload));
+            return pending.size() >= MAX_BATCH_SIZE ? drain() : List.of();
+        }
+
+        /**
+         * @return true if caller should schedule a flush
+         */
+        private synchronized boolean scheduleFlush() {
+            if (flushScheduled || pending.isEmpty()) {
+                return false;
+            }
+            flushScheduled = true;
+            return true;
+        }
+
+        private synchronized List<Pending> drain() {
+            flushScheduled = false;
+            List<Pending> batch = new ArrayList<>(Math.min(pending.size(), MAX_BATCH_SIZE));
+            Iterator<Pending> it = pending.values().iterator();
+            while (it.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                batch.add(it.next());
+                it.remove();
+            }
+            return batch;
+        }
+
+        private void succeed(@Nullable Pending p) {
+            if (p != null) {
+                published.increment();
+                totalLatencyNanos.add(System.nanoTime() - p.enqueued);
+                p.waiters.forEach(Waiter::complete);
+            }
+        }
+
+        private void fail(@Nullable Pending p, Throwable error) {
+            if (p != null) {
+                failed.increment();
+                p.waiters.forEach(w -> w.future().completeExceptionally(error));
+            }
+        }
+
+        private synchronized int pendingCount() {
+            return pending.size();
+        }
+
+        private PublisherStatistics statistics() {
+            long sent = published.sum();
+            long batchCount = batches.sum();
+            return ImmutablePublisherStatistics.builder()
+                .queueName(queueName)
+                .pending(pendingCount())
+                .published(sent)
+                .coalesced(coalesced.sum())
+                .failed(failed.sum())
+                .batches(batchCount)
+                .averageBatchSize(batchCount == 0 ? 0 : (double) (sent + failed.sum()) / batchCount)
+                .averageFlushLatencyMillis(sent == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.sum() / sent))
+                .build();
+        }
+    }
+}
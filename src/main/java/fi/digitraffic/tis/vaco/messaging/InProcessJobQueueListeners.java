@@ -0,0 +1,55 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.aws.sqs.SqsListener;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.delegator.DelegationJobQueueSqsListener;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
+import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
+import fi.digitraffic.tis.vaco.validation.ValidationQueueSqsListener;
+import fi.digitraffic.tis.vaco.validation.model.ImmutableValidationJobMessage;
+import io.awspring.cloud.sqs.listener.acknowledgement.Acknowledgement;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumes internal job queues through {@link QueueTransport} when running with in-process queues. Messages are
+ * acknowledged by the polling loop once the listener returns, so the listeners' own acknowledgements are no-ops.
+ *
+ * @see SqsJobQueueListeners
+ */
+@Component
+@ConditionalOnProperty(prefix = "vaco.in-process-queues", name = "enabled", havingValue = "true")
+public class InProcessJobQueueListeners extends SqsListener {
+
+    private static final Acknowledgement POLLER_ACKNOWLEDGES = new Acknowledgement() {
+        @Override
+        public void acknowledge() {
+        }
+
+        @Override
+        public CompletableFuture<Void> acknowledgeAsync() {
+            return CompletableFuture.completedFuture(null);
+        }
+    };
+
+    public InProcessJobQueueListeners(MessagingService messagingService,
+                                      ObjectMapper objectMapper,
+                                      VacoProperties vacoProperties,
+                                      DelegationJobQueueSqsListener delegationJobQueueSqsListener,
+                                      ValidationQueueSqsListener validationQueueSqsListener) {
+        super(messagingService, objectMapper, vacoProperties.sqsConsumer());
+        String jobs = MessageQueue.JOBS.getQueueName();
+        String validationJobs = MessageQueue.JOBS_VALIDATION.getQueueName();
+        consume(jobs, () -> listenValue(jobs, ImmutableDelegationJobMessage.class, message -> {
+            delegationJobQueueSqsListener.listen(message, POLLER_ACKNOWLEDGES);
+            return CompletableFuture.completedFuture(null);
+        }));
+        consume(validationJobs, () -> listenValue(validationJobs, ImmutableValidationJobMessage.class, message -> {
+            validationQueueSqsListener.listen(message, POLLER_ACKNOWLEDGES);
+            return CompletableFuture.completedFuture(null);
+        }));
+    }
+}
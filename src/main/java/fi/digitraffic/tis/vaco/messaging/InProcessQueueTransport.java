@@ -0,0 +1,317 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.InProcessQueues;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory transport for running the whole pipeline within a single JVM.
+ * <p>
+ * Mimics the SQS semantics the rest of the application relies on: received messages stay invisible for the visibility
+ * timeout and are redelivered unless deleted before it expires, delayed messages become visible only after their
+ * delay and messages received more than {@link InProcessQueues#maxReceiveCount()} times are moved to
+ * {@link MessageQueue#DLQ}. Each queue is bounded; senders wait for room up to {@link InProcessQueues#sendTimeout()}.
+ * <p>
+ * Messages are not persisted, so anything still queued is lost on shutdown.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vaco.in-process-queues", name = "enabled", havingValue = "true")
+public class InProcessQueueTransport implements QueueTransport {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ObjectMapper objectMapper;
+    private final VacoExecutors vacoExecutors;
+    private final InProcessQueues configuration;
+    private final Duration visibilityTimeout;
+    private final Map<String, InProcessQueue> queues = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile QueueTransport deadLetterTransport;
+
+    public InProcessQueueTransport(ObjectMapper objectMapper, VacoProperties vacoProperties, VacoExecutors vacoExecutors) {
+        this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+        this.configuration = Objects.requireNonNull(vacoProperties.inProcessQueues());
+        this.visibilityTimeout = Objects.requireNonNull(vacoProperties.sqsConsumer().visibilityTimeout());
+    }
+
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, @Nullable String coalescingKey) {
+        return enqueue(queueName, payload, coalescingKey, Duration.ZERO);
+    }
+
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, Duration delay) {
+        return enqueue(queueName, payload, null, delay);
+    }
+
+    private <P> CompletableFuture<P> enqueue(String queueName, P payload, @Nullable String coalescingKey, Duration delay) {
+        try {
+            String body = objectMapper.writeValueAsString(payload);
+            queue(queueName).offer(body, coalescingKey, System.nanoTime() + Math.max(0, delay.toNanos()));
+            return CompletableFuture.completedFuture(payload);
+        } catch (JacksonException e) {
+            return CompletableFuture.failedFuture(new MessagingFailureException("Failed to serialize message for queue " + queueName, e));
+        } catch (MessagingFailureException e) {
+            logger.warn("send {} !! {}", queueName, e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new MessagingFailureException("Interrupted while sending message to queue " + queueName, e));
+        }
+    }
+
+    @Override
+    public List<Message> receive(String queueName, int maxMessages, Duration waitTime) {
+        try {
+            return queue(queueName).poll(maxMessages, waitTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    @Override
+    public void delete(String queueName, List<Message> messages) {
+        if (!messages.isEmpty()) {
+            queue(queueName).remove(messages);
+        }
+    }
+
+    @Override
+    public void changeVisibility(String queueName, List<Message> messages, Duration visibilityTimeout) {
+        if (!messages.isEmpty()) {
+            queue(queueName).hide(messages, visibilityTimeout);
+        }
+    }
+
+    /**
+     * Send dead letters to given transport's {@link MessageQueue#DLQ} instead of keeping them in memory.
+     *
+     * @param transport Transport owning the dead letter queue.
+     */
+    void forwardDeadLetters(QueueTransport transport) {
+        this.deadLetterTransport = Objects.requireNonNull(transport);
+    }
+
+    private InProcessQueue queue(String queueName) {
+        return queues.computeIfAbsent(queueName, InProcessQueue::new);
+    }
+
+    private static final class Envelope {
+        private final String messageId = UUID.randomUUID().toString();
+        private String body;
+        @Nullable
+        private final String coalescingKey;
+        private long visibleAt;
+        private int receiveCount;
+        @Nullable
+        private String receiptHandle;
+
+        private Envelope(String body, @Nullable String coalescingKey, long visibleAt) {
+            this.body = body;
+            this.coalescingKey = coalescingKey;
+            this.visibleAt = visibleAt;
+        }
+    }
+
+    private final class InProcessQueue {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        // insertion order equals delivery order, redelivered messages keep their original position
+        private final Map<String, Envelope> messages = new LinkedHashMap<>();
+        private final Map<String, Envelope> byReceiptHandle = new HashMap<>();
+        // never delivered messages which later sends with the same key replace
+        private final Map<String, Envelope> coalescable = new HashMap<>();
+
+        private InProcessQueue(String name) {
+            this.name = name;
+        }
+
+        void offer(String body, @Nullable String coalescingKey, long visibleAt) throws InterruptedException {
+            lock.lock();
+            try {
+                if (coalescingKey != null) {
+                    Envelope pending = coalescable.get(coalescingKey);
+                    if (pending != null) {
+                        pending.body = body;
+                        return;
+                    }
+                }
+                long remaining = configuration.sendTimeout().toNanos();
+                while (messages.size() >= configuration.capacity()) {
+                    if (remaining <= 0) {
+                        throw new MessagingFailureException("Queue " + name + " is full");
+                    }
+                    remaining = notFull.awaitNanos(remaining);
+                }
+                Envelope envelope = new Envelope(body, coalescingKey, visibleAt);
+                messages.put(envelope.messageId, envelope);
+                if (coalescingKey != null) {
+                    coalescable.put(coalescingKey, envelope);
+                }
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Message> poll(int maxMessages, Duration waitTime) throws InterruptedException {
+            long deadline = System.nanoTime() + waitTime.toNanos();
+            lock.lock();
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    List<Message> received = new ArrayList<>();
+                    List<Envelope> exhausted = new ArrayList<>();
+                    long nextVisible = Long.MAX_VALUE;
+                    for (Envelope envelope : messages.values()) {
+                        if (received.size() >= maxMessages) {
+                            break;
+                        }
+                        if (envelope.visibleAt - now > 0) {
+                            nextVisible = Math.min(nextVisible, envelope.visibleAt);
+                            continue;
+                        }
+                        if (envelope.receiveCount >= configuration.maxReceiveCount()) {
+                            exhausted.add(envelope);
+                            continue;
+                        }
+                        received.add(deliver(envelope, now));
+                    }
+                    exhausted.forEach(this::deadLetter);
+                    long remaining = deadline - now;
+                    if (!received.isEmpty() || remaining <= 0) {
+                        return received;
+                    }
+                    long wait = nextVisible == Long.MAX_VALUE ? remaining : Math.min(remaining, nextVisible - now);
+                    notEmpty.awaitNanos(Math.max(1, wait));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Message deliver(Envelope envelope, long now) {
+            if (envelope.receiptHandle != null) {
+                byReceiptHandle.remove(envelope.receiptHandle);
+            }
+            if (envelope.coalescingKey != null) {
+                coalescable.remove(envelope.coalescingKey, envelope);
+            }
+            envelope.receiveCount++;
+            envelope.receiptHandle = UUID.randomUUID().toString();
+            envelope.visibleAt = now + visibilityTimeout.toNanos();
+            byReceiptHandle.put(envelope.receiptHandle, envelope);
+            return Message.builder()
+                .messageId(envelope.messageId)
+                .receiptHandle(envelope.receiptHandle)
+                .body(envelope.body)
+                .attributes(Map.of(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, String.valueOf(envelope.receiveCount)))
+                .build();
+        }
+
+        private void deadLetter(Envelope envelope) {
+            removeEnvelope(envelope);
+            String dlq = MessageQueue.DLQ.getQueueName();
+            if (name.equals(dlq)) {
+                logger.error("dlq {} !! Dropping message {} after {} receives", name, envelope.messageId, envelope.receiveCount);
+                return;
+            }
+            logger.warn("dlq {} -> Moving message {} to {} after {} receives", name, envelope.messageId, dlq, envelope.receiveCount);
+            QueueTransport forwardTo = deadLetterTransport;
+            // hand off outside of this queue's lock to avoid lock ordering issues between queues
+            InstrumentedExecutor.runAsync(() -> {
+                if (forwardTo != null) {
+                    forwardDeadLetter(forwardTo, dlq, envelope);
+                    return;
+                }
+                try {
+                    queue(dlq).offer(envelope.body, null, System.nanoTime());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (MessagingFailureException e) {
+                    logger.error("dlq {} !! Lost message {}: {}", name, envelope.messageId, e.getMessage());
+                }
+            }, vacoExecutors.listeners());
+        }
+
+        private void forwardDeadLetter(QueueTransport forwardTo, String dlq, Envelope envelope) {
+            try {
+                forwardTo.send(dlq, objectMapper.readTree(envelope.body), (String) null).join();
+            } catch (CompletionException e) {
+                logger.error("dlq {} !! Lost message {}: {}", name, envelope.messageId, e.getMessage());
+            } catch (JacksonException e) {
+                logger.error("dlq {} !! Lost unreadable message {}", name, envelope.messageId, e);
+            }
+        }
+
+        void remove(List<Message> handled) {
+            lock.lock();
+            try {
+                for (Message message : handled) {
+                    Envelope envelope = byReceiptHandle.get(message.receiptHandle());
+                    if (envelope != null) {
+                        removeEnvelope(envelope);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void hide(List<Message> inFlight, Duration timeout) {
+            long visibleAt = System.nanoTime() + timeout.toNanos();
+            lock.lock();
+            try {
+                for (Message message : inFlight) {
+                    Envelope envelope = byReceiptHandle.get(message.receiptHandle());
+                    if (envelope != null) {
+                        envelope.visibleAt = visibleAt;
+                    }
+                }
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void removeEnvelope(Envelope envelope) {
+            messages.remove(envelope.messageId);
+            if (envelope.receiptHandle != null) {
+                byReceiptHandle.remove(envelope.receiptHandle);
+            }
+            if (envelope.coalescingKey != null) {
+                coalescable.remove(envelope.coalescingKey, envelope);
+            }
+            notFull.signalAll();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.VacoException;
+
+/**
+ * Thrown when SQS rejects a message which was otherwise successfully submitted for sending.
+ */
+public class MessagingFailureException extends VacoException {
+    public MessagingFailureException(String message) {
+        super(message);
+    }
+
+    public MessagingFailureException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,22 +1,16 @@
 package fi.digitraffic.tis.vaco.messaging;
 
-import fi.digitraffic.tis.vaco.caching.CachingFailureException;
-import fi.digitraffic.tis.vaco.caching.CachingService;
 import fi.digitraffic.tis.vaco.messaging.model.DelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
 import fi.digitraffic.tis.vaco.rules.model.ValidationRuleJobMessage;
 import fi.digitraffic.tis.vaco.validation.model.ValidationJobMessage;
-import io.awspring.cloud.sqs.operations.MessagingOperationFailedException;
-import io.awspring.cloud.sqs.operations.SqsTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
-import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
 import software.amazon.awssdk.services.sqs.model.Message;
-import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
@@ -24,36 +18,44 @@ import java.util.stream.Stream;
 @Service
 public class MessagingService {
 
+    private static final int MAX_MESSAGES = 10;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final SqsClient sqsClient;
-    private final SqsTemplate sqsTemplate;
-    private final CachingService cachingService;
+    private final QueueTransport queueTransport;
 
-    public MessagingService(SqsClient sqsClient,
-                            SqsTemplate sqsTemplate,
-                            CachingService cachingService) {
-        this.sqsClient = Objects.requireNonNull(sqsClient);
-        this.sqsTemplate = Objects.requireNonNull(sqsTemplate);
-        this.cachingService = Objects.requireNonNull(cachingService);
+    public MessagingService(QueueTransport queueTransport) {
+        this.queueTransport = Objects.requireNonNull(queueTransport);
     }
 
     public <P> CompletableFuture<P> sendMessage(String queueName, P payload) {
+        return sendMessage(queueName, payload, null);
+    }
+
+    private <P> CompletableFuture<P> sendMessage(String queueName, P payload, String coalescingKey) {
         if (payload == null) {
             logger.warn("send {} !! Tried to send null payload, ignoring", queueName);
             return CompletableFuture.completedFuture(null);
         }
-        try {
-            logger.debug("send {} <- {}", queueName, payload);
-            return sqsTemplate.sendAsync(queueName, payload).thenApply(sr -> sr.message().getPayload());
-        } catch (MessagingOperationFailedException mofe) {
-            logger.warn("Failed to send message %s to queue %s".formatted(payload, queueName), mofe);
-            return CompletableFuture.failedFuture(mofe);
-        }
+        logger.debug("send {} <- {}", queueName, payload);
+        return queueTransport.send(queueName, payload, coalescingKey);
     }
 
+    /**
+     * Submit entry for delegation. Multiple submissions for the same entry sent within publisher's linger time are
+     * coalesced into one message.
+     */
     public CompletableFuture<DelegationJobMessage> submitProcessingJob(DelegationJobMessage delegationJobMessage) {
-        return sendMessage(MessageQueue.JOBS.getQueueName(), delegationJobMessage);
+        return sendMessage(MessageQueue.JOBS.getQueueName(), delegationJobMessage, delegationJobMessage.entry().publicId());
+    }
+
+    /**
+     * Submit processing job which becomes visible to consumers only after given delay.
+     */
+    public CompletableFuture<DelegationJobMessage> submitProcessingJob(DelegationJobMessage delegationJobMessage, Duration delay) {
+        String queueName = MessageQueue.JOBS.getQueueName();
+        logger.debug("send {} <- {} (delayed {})", queueName, delegationJobMessage, delay);
+        return queueTransport.send(queueName, delegationJobMessage, delay);
     }
 
     public CompletableFuture<ValidationJobMessage> submitValidationJob(ValidationJobMessage jobDescription) {
@@ -64,35 +66,35 @@ public class MessagingService {
         return sendMessage(MessageQueue.RULE_PROCESSING.munge(ruleName), ruleMessage);
     }
 
-    public void deleteMessage(String queueName, Message m) {
-        sqsClient.deleteMessage(DeleteMessageRequest.builder()
-            .queueUrl(resolveQueueUrl(queueName))
-            .receiptHandle(m.receiptHandle())
-            .build());
-        logger.debug("delete {} !- {}", queueName, m);
+    /**
+     * Acknowledge successfully processed messages. Failures are logged and otherwise ignored; the affected messages
+     * become visible again and will be redelivered.
+     */
+    public void deleteMessages(String queueName, List<Message> messages) {
+        queueTransport.delete(queueName, messages);
     }
 
-    public Stream<Message> readMessages(String queueName) {
-        ReceiveMessageRequest receiveMessageRequest = ReceiveMessageRequest.builder()
-            .queueUrl(resolveQueueUrl(queueName))
-            .maxNumberOfMessages(Math.min(10, Runtime.getRuntime().availableProcessors()))
-            .waitTimeSeconds(1)
-            .build();
-
-        return sqsClient.receiveMessage(receiveMessageRequest)
-            .messages()
-            .stream()
-            .parallel()
-            .peek(m -> logger.debug("receive {} -> {}", queueName, m));
+    /**
+     * Hide messages from other consumers for given duration, counting from now. Used for extending the processing time
+     * of long-running messages.
+     */
+    public void changeMessageVisibility(String queueName, List<Message> messages, Duration visibilityTimeout) {
+        queueTransport.changeVisibility(queueName, messages, visibilityTimeout);
     }
 
-    private String resolveQueueUrl(String queueName) {
-        return cachingService.cacheQueueUrl(queueName, cachedQueueName -> {
-            String queueUrl = sqsClient.getQueueUrl(GetQueueUrlRequest.builder()
-                .queueName(cachedQueueName)
-                .build()).queueUrl();
-            logger.debug("Resolved URL for queue {} as {}", cachedQueueName, queueUrl);
-            return queueUrl;
-        }).orElseThrow(() -> new CachingFailureException("Failed to cache " + queueName + " resolving!"));
+    /**
+     * Long poll queue for at most <code>maxMessages</code> messages.
+     *
+     * @param waitTime How long to wait for messages to arrive if queue is empty.
+     * @return Received messages in delivery order, possibly empty.
+     */
+    public List<Message> receiveMessages(String queueName, int maxMessages, Duration waitTime) {
+        List<Message> messages = queueTransport.receive(queueName, maxMessages, waitTime);
+        messages.forEach(m -> logger.debug("receive {} -> {}", queueName, m));
+        return messages;
+    }
+
+    public Stream<Message> readMessages(String queueName) {
+        return receiveMessages(queueName, MAX_MESSAGES, Duration.ofSeconds(1)).stream();
     }
 }
@@ -0,0 +1,47 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import jakarta.annotation.Nullable;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moves messages between pipeline stages. All implementations follow SQS semantics: received messages are hidden from
+ * other consumers for a visibility timeout and reappear unless deleted, and messages received too many times are moved
+ * to the dead letter queue.
+ * <p>
+ * SQS SDK's {@link Message} is used as the envelope type for all implementations, so that consumers are independent of
+ * the transport in use.
+ *
+ * @see MessagingService
+ */
+public interface QueueTransport {
+
+    /**
+     * @param coalescingKey Buffered messages with equal non-null key may be merged into the latest one.
+     * @return Future completing with the payload once the transport has accepted the message.
+     */
+    <P> CompletableFuture<P> send(String queueName, P payload, @Nullable String coalescingKey);
+
+    /**
+     * Send message which becomes visible to consumers only after given delay.
+     */
+    <P> CompletableFuture<P> send(String queueName, P payload, Duration delay);
+
+    /**
+     * Receive at most <code>maxMessages</code> messages, waiting at most <code>waitTime</code> for any to arrive.
+     */
+    List<Message> receive(String queueName, int maxMessages, Duration waitTime);
+
+    /**
+     * Acknowledge given messages as processed.
+     */
+    void delete(String queueName, List<Message> messages);
+
+    /**
+     * Hide given messages from other consumers for given duration, counting from now.
+     */
+    void changeVisibility(String queueName, List<Message> messages, Duration visibilityTimeout);
+}
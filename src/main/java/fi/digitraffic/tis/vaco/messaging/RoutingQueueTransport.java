@@ -0,0 +1,75 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
+import jakarta.annotation.Nullable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used with in-process queues: internal job queues are kept in memory while every queue shared with rule
+ * workers running outside of this JVM stays on SQS.
+ * <p>
+ * Rule processing queues are consumed by external validators and the results, errors and redriven dead letters they
+ * produce arrive through SQS, so only {@link MessageQueue#JOBS} and {@link MessageQueue#JOBS_VALIDATION} can be served
+ * in-process. Dead letters of the in-process queues are forwarded to SQS {@link MessageQueue#DLQ} to keep a single
+ * dead letter consumer.
+ *
+ * @see InProcessQueueTransport
+ * @see SqsQueueTransport
+ */
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "vaco.in-process-queues", name = "enabled", havingValue = "true")
+public class RoutingQueueTransport implements QueueTransport {
+
+    private static final Set<String> IN_PROCESS_QUEUES = Set.of(
+        MessageQueue.JOBS.getQueueName(),
+        MessageQueue.JOBS_VALIDATION.getQueueName());
+
+    private final InProcessQueueTransport inProcessQueueTransport;
+    private final SqsQueueTransport sqsQueueTransport;
+
+    public RoutingQueueTransport(InProcessQueueTransport inProcessQueueTransport,
+                                 SqsQueueTransport sqsQueueTransport) {
+        this.inProcessQueueTransport = Objects.requireNonNull(inProcessQueueTransport);
+        this.sqsQueueTransport = Objects.requireNonNull(sqsQueueTransport);
+        inProcessQueueTransport.forwardDeadLetters(sqsQueueTransport);
+    }
+
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, @Nullable String coalescingKey) {
+        return route(queueName).send(queueName, payload, coalescingKey);
+    }
+
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, Duration delay) {
+        return route(queueName).send(queueName, payload, delay);
+    }
+
+    @Override
+    public List<Message> receive(String queueName, int maxMessages, Duration waitTime) {
+        return route(queueName).receive(queueName, maxMessages, waitTime);
+    }
+
+    @Override
+    public void delete(String queueName, List<Message> messages) {
+        route(queueName).delete(queueName, messages);
+    }
+
+    @Override
+    public void changeVisibility(String queueName, List<Message> messages, Duration visibilityTimeout) {
+        route(queueName).changeVisibility(queueName, messages, visibilityTimeout);
+    }
+
+    private QueueTransport route(String queueName) {
+        return IN_PROCESS_QUEUES.contains(queueName) ? inProcessQueueTransport : sqsQueueTransport;
+    }
+}
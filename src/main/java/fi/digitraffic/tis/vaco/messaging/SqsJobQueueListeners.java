@@ -0,0 +1,42 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.delegator.DelegationJobQueueSqsListener;
+import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
+import fi.digitraffic.tis.vaco.messaging.model.QueueNames;
+import fi.digitraffic.tis.vaco.validation.ValidationQueueSqsListener;
+import fi.digitraffic.tis.vaco.validation.model.ImmutableValidationJobMessage;
+import io.awspring.cloud.sqs.annotation.SqsListener;
+import io.awspring.cloud.sqs.listener.acknowledgement.Acknowledgement;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Binds internal job queues to Spring Cloud AWS' SQS listener containers.
+ *
+ * @see InProcessJobQueueListeners
+ */
+@Component
+@ConditionalOnProperty(prefix = "vaco.in-process-queues", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class SqsJobQueueListeners {
+
+    private final DelegationJobQueueSqsListener delegationJobQueueSqsListener;
+    private final ValidationQueueSqsListener validationQueueSqsListener;
+
+    public SqsJobQueueListeners(DelegationJobQueueSqsListener delegationJobQueueSqsListener,
+                                ValidationQueueSqsListener validationQueueSqsListener) {
+        this.delegationJobQueueSqsListener = Objects.requireNonNull(delegationJobQueueSqsListener);
+        this.validationQueueSqsListener = Objects.requireNonNull(validationQueueSqsListener);
+    }
+
+    @SqsListener(QueueNames.VACO_JOBS)
+    public void listenJobs(ImmutableDelegationJobMessage message, Acknowledgement acknowledgement) {
+        delegationJobQueueSqsListener.listen(message, acknowledgement);
+    }
+
+    @SqsListener(QueueNames.VACO_JOBS_VALIDATION)
+    public void listenValidationJobs(ImmutableValidationJobMessage message, Acknowledgement acknowledgement) {
+        validationQueueSqsListener.listen(message, acknowledgement);
+    }
+}
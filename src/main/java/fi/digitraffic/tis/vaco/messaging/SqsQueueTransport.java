@@ -0,0 +1,150 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
+import fi.digitraffic.tis.vaco.caching.CachingFailureException;
+import fi.digitraffic.tis.vaco.caching.CachingService;
+import io.awspring.cloud.sqs.operations.MessagingOperationFailedException;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Default transport backed by Amazon SQS.
+ */
+@Component
+public class SqsQueueTransport implements QueueTransport {
+
+    /**
+     * SQS API limit for messages per receive and entries per batch request.
+     */
+    private static final int MAX_BATCH_SIZE = 10;
+
+    /**
+     * SQS API limit for message delivery delay.
+     */
+    private static final Duration MAX_DELAY = Duration.ofMinutes(15);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final SqsClient sqsClient;
+    private final SqsTemplate sqsTemplate;
+    private final CachingService cachingService;
+    private final BatchingPublisher batchingPublisher;
+
+    public SqsQueueTransport(SqsClient sqsClient,
+                             SqsTemplate sqsTemplate,
+                             CachingService cachingService,
+                             BatchingPublisher batchingPublisher) {
+        this.sqsClient = Objects.requireNonNull(sqsClient);
+        this.sqsTemplate = Objects.requireNonNull(sqsTemplate);
+        this.cachingService = Objects.requireNonNull(cachingService);
+        this.batchingPublisher = Objects.requireNonNull(batchingPublisher);
+    }
+
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, @Nullable String coalescingKey) {
+        return batchingPublisher.publish(queueName, payload, coalescingKey);
+    }
+
+    /**
+     * Delay is capped to SQS maximum of 15 minutes.
+     */
+    @Override
+    public <P> CompletableFuture<P> send(String queueName, P payload, Duration delay) {
+        int delaySeconds = Math.toIntExact(Math.clamp(delay.toSeconds(), 0, MAX_DELAY.toSeconds()));
+        try {
+            return sqsTemplate.sendAsync(to -> to.queue(queueName).payload(payload).delaySeconds(delaySeconds))
+                .thenApply(sr -> sr.message().getPayload());
+        } catch (MessagingOperationFailedException mofe) {
+            logger.warn("Failed to send message %s to queue %s".formatted(payload, queueName), mofe);
+            return CompletableFuture.failedFuture(mofe);
+        }
+    }
+
+    /**
+     * Long poll queue for at most <code>maxMessages</code> (capped to SQS limit of 10) messages.
+     */
+    @Override
+    public List<Message> receive(String queueName, int maxMessages, Duration waitTime) {
+        ReceiveMessageRequest receiveMessageRequest = ReceiveMessageRequest.builder()
+            .queueUrl(resolveQueueUrl(queueName))
+            .maxNumberOfMessages(Math.clamp(maxMessages, 1, MAX_BATCH_SIZE))
+            .waitTimeSeconds(Math.toIntExact(waitTime.toSeconds()))
+            .build();
+
+        return sqsClient.receiveMessage(receiveMessageRequest).messages();
+    }
+
+    /**
+     * Delete messages using as few batch calls as possible. Individual failures are logged and otherwise ignored; the
+     * affected messages become visible again and will be redelivered.
+     */
+    @Override
+    public void delete(String queueName, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String queueUrl = resolveQueueUrl(queueName);
+        for (List<Message> batch : Lists.partition(messages, MAX_BATCH_SIZE)) {
+            DeleteMessageBatchResponse response = sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                .queueUrl(queueUrl)
+                .entries(Streams.mapWithIndex(batch.stream(), (m, i) -> DeleteMessageBatchRequestEntry.builder()
+                        .id(String.valueOf(i))
+                        .receiptHandle(m.receiptHandle())
+                        .build())
+                    .toList())
+                .build());
+            response.failed().forEach(f -> logger.warn("delete {} !! Failed to delete message {}: {} {}", queueName, batch.get(Integer.parseInt(f.id())).messageId(), f.code(), f.message()));
+            logger.debug("delete {} !- {} messages", queueName, response.successful().size());
+        }
+    }
+
+    @Override
+    public void changeVisibility(String queueName, List<Message> messages, Duration visibilityTimeout) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String queueUrl = resolveQueueUrl(queueName);
+        int timeoutSeconds = Math.toIntExact(visibilityTimeout.toSeconds());
+        for (List<Message> batch : Lists.partition(messages, MAX_BATCH_SIZE)) {
+            ChangeMessageVisibilityBatchResponse response = sqsClient.changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest.builder()
+                .queueUrl(queueUrl)
+                .entries(Streams.mapWithIndex(batch.stream(), (m, i) -> ChangeMessageVisibilityBatchRequestEntry.builder()
+                        .id(String.valueOf(i))
+                        .receiptHandle(m.receiptHandle())
+                        .visibilityTimeout(timeoutSeconds)
+                        .build())
+                    .toList())
+                .build());
+            response.failed().forEach(f -> logger.warn("visibility {} !! Failed to extend visibility of message {}: {} {}", queueName, batch.get(Integer.parseInt(f.id())).messageId(), f.code(), f.message()));
+        }
+    }
+
+    private String resolveQueueUrl(String queueName) {
+        return cachingService.cacheQueueUrl(queueName, cachedQueueName -> {
+            String queueUrl = sqsClient.getQueueUrl(GetQueueUrlRequest.builder()
+                .queueName(cachedQueueName)
+                .build()).queueUrl();
+            logger.debug("Resolved URL for queue {} as {}", cachedQueueName, queueUrl);
+            return queueUrl;
+        }).orElseThrow(() -> new CachingFailureException("Failed to cache " + queueName + " resolving!"));
+    }
+}
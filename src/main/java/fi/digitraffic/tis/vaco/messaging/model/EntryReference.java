@@ -0,0 +1,33 @@
+package fi.digitraffic.tis.vaco.messaging.model;
+
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import jakarta.annotation.Nullable;
+import org.immutables.value.Value;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Claim check for an {@link Entry}. Internal job messages carry only this reference and consumers resolve the current
+ * state of the entry just before processing.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableEntryReference.class)
+@JsonDeserialize(as = ImmutableEntryReference.class)
+public interface EntryReference {
+    @Value.Parameter
+    String publicId();
+
+    /**
+     * @return Last update timestamp of the entry known to the sender. Locally cached entries older than this are
+     * considered stale.
+     */
+    @Nullable
+    @Value.Parameter
+    ZonedDateTime updated();
+
+    static EntryReference of(Entry entry) {
+        return ImmutableEntryReference.of(entry.publicId(), entry.updated());
+    }
+}
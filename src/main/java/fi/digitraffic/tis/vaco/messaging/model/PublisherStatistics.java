@@ -0,0 +1,36 @@
+package fi.digitraffic.tis.vaco.messaging.model;
+
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+@Value.Immutable
+@JsonSerialize(as = ImmutablePublisherStatistics.class)
+@JsonDeserialize(as = ImmutablePublisherStatistics.class)
+public interface PublisherStatistics {
+
+    String queueName();
+
+    /**
+     * Messages currently buffered and waiting to be sent.
+     */
+    int pending();
+
+    long published();
+
+    /**
+     * Messages which were merged into an already buffered message instead of being sent separately.
+     */
+    long coalesced();
+
+    long failed();
+
+    long batches();
+
+    double averageBatchSize();
+
+    /**
+     * Average time from buffering a message to SQS acknowledging it.
+     */
+    long averageFlushLatencyMillis();
+}
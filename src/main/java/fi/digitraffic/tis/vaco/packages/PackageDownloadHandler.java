@@ -0,0 +1,132 @@
+package fi.digitraffic.tis.vaco.packages;
+
+import fi.digitraffic.tis.vaco.configuration.PackageDownloads;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.Objects;
+
+/**
+ * Serves package files to clients straight from S3, without storing them locally first.
+ * <p>
+ * Package content is either streamed through as it is read from S3, or the client is redirected to a short-lived
+ * presigned S3 URL, depending on {@link PackageDownloads#redirect()}. Streamed responses support single byte ranges and
+ * conditional requests with <code>If-None-Match</code>, both of which are delegated to S3.
+ */
+@Component
+public class PackageDownloadHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final PackagesService packagesService;
+    private final VacoProperties vacoProperties;
+
+    public PackageDownloadHandler(PackagesService packagesService,
+                                  VacoProperties vacoProperties) {
+        this.packagesService = Objects.requireNonNull(packagesService);
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+    }
+
+    /**
+     * @param requestHeaders Headers of the client's request.
+     * @return Response with package content, or a redirect to it.
+     * @throws ResponseStatusException with status 404 if there's no such package.
+     */
+    public ResponseEntity<StreamingResponseBody> download(Entry entry, Task task, String packageName, HttpHeaders requestHeaders) {
+        String contentDisposition = ContentDisposition.builder("inline")
+            .filename(packageName + ".zip")
+            .build()
+            .toString();
+
+        if (vacoProperties.packageDownloads().redirect()) {
+            return packagesService.presignPackage(entry, task, packageName, contentDisposition)
+                .map(uri -> ResponseEntity.status(HttpStatus.FOUND)
+                    .location(uri)
+                    .cacheControl(CacheControl.noStore())
+                    .<StreamingResponseBody>build())
+                .orElseThrow(() -> unknownPackage(entry, packageName));
+        }
+
+        String ifNoneMatch = requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH);
+        try {
+            ResponseInputStream<GetObjectResponse> content = packagesService.openPackage(entry, task, packageName, singleRange(requestHeaders), ifNoneMatch)
+                .orElseThrow(() -> unknownPackage(entry, packageName));
+            GetObjectResponse object = content.response();
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(object.contentRange() != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (object.eTag() != null) {
+                response.eTag(object.eTag());
+            }
+            if (object.contentLength() != null) {
+                response.contentLength(object.contentLength());
+            }
+            if (object.contentRange() != null) {
+                response.header(HttpHeaders.CONTENT_RANGE, object.contentRange());
+            }
+            if (object.lastModified() != null) {
+                response.lastModified(object.lastModified());
+            }
+            return response.body(out -> {
+                try (content) {
+                    content.transferTo(out);
+                }
+            });
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                ResponseEntity.BodyBuilder notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+                e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader(HttpHeaders.ETAG).ifPresent(notModified::eTag);
+                return notModified.build();
+            }
+            if (e.statusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+            }
+            if (e instanceof NoSuchKeyException || e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                // package is known but its file has disappeared from S3
+                logger.warn("Package '{}' of entry '{}' not found from S3", packageName, entry.publicId());
+                throw unknownPackage(entry, packageName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * S3 supports only single byte ranges, so requests for anything else are served in full as the client can't tell
+     * the difference from a server not supporting ranges at all.
+     *
+     * @return Value of request's Range header if it is a single byte range, <code>null</code> otherwise.
+     */
+    private String singleRange(HttpHeaders requestHeaders) {
+        String range = requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (range == null) {
+            return null;
+        }
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            logger.debug("Ignoring unsupported range request '{}'", range);
+            return null;
+        }
+        return range;
+    }
+
+    private static ResponseStatusException unknownPackage(Entry entry, String packageName) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND,
+            String.format("Unknown package '%s' for entry '%s'", packageName, entry.publicId()));
+    }
+}
@@ -10,6 +10,7 @@ import fi.digitraffic.tis.vaco.aws.S3Packager;
 import fi.digitraffic.tis.vaco.caching.CachingService;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.db.mapper.RecordMapper;
+import fi.digitraffic.tis.vaco.db.model.PackageLocationRecord;
 import fi.digitraffic.tis.vaco.db.model.PackageRecord;
 import fi.digitraffic.tis.vaco.db.repositories.PackageRepository;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
@@ -19,12 +20,19 @@ import fi.digitraffic.tis.vaco.process.model.Task;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 
 @Service
@@ -110,16 +118,99 @@ public class PackagesService {
      * @return Saved Package with updated ids, references etc.
      */
     public Package registerPackage(Package p) {
-        return recordMapper.toPackage(p.task(), packageRepository.upsertPackage(p));
+        PackageRecord saved = packageRepository.upsertPackage(p);
+        cachingService.updatePackageAvailability(saved.path(), true);
+        return recordMapper.toPackage(p.task(), saved);
     }
 
-    public List<Package> findAvailablePackages(Task task, String entryPublicId) {
-        List<PackageRecord> packages = packageRepository.findPackages(task);
-        return Streams.filter(packages, p -> s3Client.keyExists(resolveBucketName(p.path(), entryPublicId, task.name()), p.path()))
+    /**
+     * Copies all packages of a task from another entry to given task, both in S3 and as database references.
+     *
+     * @param source Entry the packages are copied from.
+     * @param sourceTask Task of source entry owning the packages.
+     * @param entry Entry the packages are copied to.
+     * @param task Task which will own the copied packages.
+     * @return Copied packages
+     */
+    public List<Package> copyPackages(Entry source, Task sourceTask, Entry entry, Task task) {
+        return Streams.map(packageRepository.findPackages(sourceTask), p -> {
+                S3Path sourcePath = S3Path.of(p.path());
+                S3Path targetPath = ImmutableS3Path.of(List.of(entry.publicId(), Objects.requireNonNull(task.publicId()), sourcePath.path().getLast()));
+                s3Client.copyFile(resolveBucketName(p.path(), source.publicId(), sourceTask.name()), sourcePath, vacoProperties.s3PackagesBucket(), targetPath).join();
+                return registerPackage(ImmutablePackage.of(task, p.name(), targetPath.toString()));
+            })
+            .toList();
+    }
+
+    /**
+     * Packages of given task which exist in S3. Answered from database and cache only: packages are registered once
+     * their file is in S3, so every registered package is considered available unless
+     * {@link #reconcilePackageAvailability()} has found its file missing.
+     *
+     * @param task Task to find packages for.
+     * @return Available packages of the task.
+     */
+    public List<Package> findAvailablePackages(Task task) {
+        return Streams.filter(packageRepository.findPackages(task), p -> cachingService.packageAvailability(p.path()).orElse(true))
             .map(p -> recordMapper.toPackage(task, p))
             .toList();
     }
 
+    @Scheduled(cron = "${vaco.scheduling.package-reconciliation.cron}")
+    public void scheduledReconciliation() {
+        try {
+            reconcilePackageAvailability();
+        } catch (Exception e) {
+            logger.warn("Failed to reconcile package availability", e);
+        }
+    }
+
+    /**
+     * Check which packages of recent entries still exist in S3 and update the availability cache accordingly. Each
+     * bucket is listed once under the common prefix of the checked packages instead of checking packages or their
+     * directories separately.
+     *
+     * @return Number of packages not found from S3.
+     */
+    public int reconcilePackageAvailability() {
+        List<PackageLocationRecord> locations = packageRepository.findPackageLocations(vacoProperties.packaging().reconciliationWindow());
+        Map<String, List<PackageLocationRecord>> byBucket = Streams.groupBy(locations, l -> resolveBucketName(l.path(), l.entryPublicId(), l.taskName()));
+
+        int missing = 0;
+        for (Map.Entry<String, List<PackageLocationRecord>> bucket : byBucket.entrySet()) {
+            Set<String> keys = Streams.map(bucket.getValue(), l -> S3Path.of(l.path()).toString()).toSet();
+            Set<String> existing = Streams.map(
+                s3Client.listObjects(bucket.getKey(), commonDirectory(keys), keys::contains),
+                S3Object::key).toSet();
+            for (PackageLocationRecord location : bucket.getValue()) {
+                boolean available = existing.contains(S3Path.of(location.path()).toString());
+                cachingService.updatePackageAvailability(location.path(), available);
+                if (!available) {
+                    missing++;
+                }
+            }
+        }
+        logger.info("Reconciled availability of {} packages, {} missing from S3", locations.size(), missing);
+        return missing;
+    }
+
+    private static S3Path commonDirectory(Set<String> keys) {
+        List<String> common = null;
+        for (String key : keys) {
+            List<String> directory = S3Path.of(key).parent().path();
+            if (common == null) {
+                common = directory;
+            } else {
+                int shared = 0;
+                while (shared < common.size() && shared < directory.size() && common.get(shared).equals(directory.get(shared))) {
+                    shared++;
+                }
+                common = common.subList(0, shared);
+            }
+        }
+        return ImmutableS3Path.of(common != null ? common : List.of());
+    }
+
     public Optional<Package> findPackage(Task task, String packageName) {
         return taskRepository.findByPublicId(task.publicId())
             .flatMap(t -> packageRepository.findPackage(t, packageName))
@@ -145,6 +236,32 @@ public class PackagesService {
             });
     }
 
+    /**
+     * Open package file for streaming directly from S3.
+     *
+     * @param range HTTP byte range to read, <code>null</code> for entire file.
+     * @param ifNoneMatch ETag of a copy the caller already has, <code>null</code> to read unconditionally.
+     * @return Content of the package file, empty if there's no such package.
+     * @see S3Client#openObject(String, String, String, String)
+     */
+    public Optional<ResponseInputStream<GetObjectResponse>> openPackage(Entry entry, Task task, String packageName, String range, String ifNoneMatch) {
+        return findPackage(task, packageName)
+            .map(p -> s3Client.openObject(resolveBucketName(p.path(), entry.publicId(), task.name()), p.path(), range, ifNoneMatch));
+    }
+
+    /**
+     * @return Short-lived URL for downloading the package file directly from S3, empty if there's no such package.
+     * @see S3Client#presignGetObject(String, String, java.time.Duration, String)
+     */
+    public Optional<URI> presignPackage(Entry entry, Task task, String packageName, String contentDisposition) {
+        return findPackage(task, packageName)
+            .map(p -> s3Client.presignGetObject(
+                resolveBucketName(p.path(), entry.publicId(), task.name()),
+                p.path(),
+                vacoProperties.packageDownloads().presignedUrlTtl(),
+                contentDisposition));
+    }
+
     private String resolveBucketName(String path, String entryPublicId, String taskName) {
         // Maintain compatibility with packages still in processing bucket.
         // TODO: To be removed 7 days after this feature has been released
@@ -154,4 +271,5 @@ public class PackagesService {
         }
         return vacoProperties.s3PackagesBucket();
     }
+
 }
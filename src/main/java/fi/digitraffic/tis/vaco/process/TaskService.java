@@ -8,11 +8,15 @@ import fi.digitraffic.tis.utilities.Streams;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.InvalidMappingException;
 import fi.digitraffic.tis.vaco.caching.CachingService;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.db.mapper.RecordMapper;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
 import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.packages.PackagesService;
+import fi.digitraffic.tis.vaco.packages.model.Package;
 import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.process.model.TaskTransition;
 import fi.digitraffic.tis.vaco.queuehandler.model.ConversionInput;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.db.model.EntryRecord;
@@ -21,6 +25,7 @@ import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
 import fi.digitraffic.tis.vaco.rules.internal.StopsAndQuaysRule;
 import fi.digitraffic.tis.vaco.ruleset.RulesetService;
 import fi.digitraffic.tis.vaco.ruleset.model.Ruleset;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -43,27 +48,60 @@ public class TaskService {
     private final TaskRepository taskRepository;
     private final RulesetService rulesetService;
     private final CachingService cachingService;
+    private final PackagesService packagesService;
+    private final VacoProperties vacoProperties;
 
     public TaskService(TaskRepository taskRepository,
                        RulesetService rulesetService,
-                       CachingService cachingService, RecordMapper recordMapper) {
+                       CachingService cachingService, RecordMapper recordMapper,
+                       PackagesService packagesService,
+                       VacoProperties vacoProperties) {
         this.taskRepository = Objects.requireNonNull(taskRepository);
         this.rulesetService = Objects.requireNonNull(rulesetService);
         this.cachingService = Objects.requireNonNull(cachingService);
         this.recordMapper = Objects.requireNonNull(recordMapper);
+        this.packagesService = Objects.requireNonNull(packagesService);
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
     }
 
     public Task trackTask(Entry entry, Task task, ProcessingState state) {
         logger.trace("Updating task {} to {}", task, state);
-        Task result = switch (state) {
-            case START -> taskRepository.startTask(task);
-            case UPDATE -> taskRepository.updateTask(task);
-            case COMPLETE -> taskRepository.completeTask(task);
-        };
+        return transitionTask(entry, task, TaskTransition.of(state));
+    }
 
-        cachingService.invalidateEntry(entry.publicId());
+    /**
+     * Complete task and set its final status in one go.
+     *
+     * @param status Final status of the task or null to keep the current status.
+     */
+    public Task completeTask(Entry entry, Task task, @Nullable Status status) {
+        return transitionTask(entry, task, TaskTransition.completed(status));
+    }
 
-        return result;
+    public Task transitionTask(Entry entry, Task task, TaskTransition transition) {
+        List<Task> transitioned = transitionTasks(entry, List.of(task), transition);
+        if (transitioned.isEmpty()) {
+            throw new PersistenceException("Failed to transition task " + task.publicId() + " of entry " + entry.publicId());
+        }
+        return transitioned.getFirst();
+    }
+
+    /**
+     * Apply the same transition to multiple tasks of an entry with a single database round trip.
+     */
+    public List<Task> transitionTasks(Entry entry, List<Task> tasks, TaskTransition transition) {
+        List<Task> transitioned = taskRepository.transitionTasks(tasks, transition);
+        // completed tasks have usually produced new packages as well
+        updateCachedEntry(entry, transitioned, transition.markCompleted());
+        return transitioned;
+    }
+
+    private void updateCachedEntry(Entry entry, List<Task> changed, boolean refreshPackages) {
+        Map<Long, List<Package>> packages = new HashMap<>();
+        if (refreshPackages && cachingService.isEntryCached(entry.publicId())) {
+            changed.forEach(task -> packages.put(task.id(), packagesService.findAvailablePackages(task)));
+        }
+        cachingService.updateEntryTasks(entry.publicId(), changed, packages);
     }
 
     public Optional<Task> findTask(Long entryId, String taskName) {
@@ -82,8 +120,32 @@ public class TaskService {
         return taskRepository.findTasks(entry.id());
     }
 
-    public List<Task> findTasksToExecute(Entry entry) {
-        return Streams.collect(taskRepository.findAvailableTasksToExecute(entry), recordMapper::toTask);
+    /**
+     * Claim next runnable group of tasks for the calling worker.
+     *
+     * @see TaskRepository#claimAvailableTasksToExecute(Entry, java.time.Duration)
+     */
+    public List<Task> claimTasksToExecute(Entry entry) {
+        List<Task> claimed = Streams.collect(taskRepository.claimAvailableTasksToExecute(entry, vacoProperties.taskClaims().lease()), recordMapper::toTask);
+        updateCachedEntry(entry, claimed, false);
+        return claimed;
+    }
+
+    /**
+     * @return Public ids of unfinished entries with tasks whose claim has expired without the task completing.
+     * @see fi.digitraffic.tis.vaco.configuration.TaskClaims
+     */
+    public List<String> findEntriesWithExpiredClaims() {
+        return taskRepository.findEntriesWithExpiredClaims(vacoProperties.taskClaims().lease());
+    }
+
+    /**
+     * Release previously claimed task so that it will be picked up again by a later delegation round.
+     */
+    public Optional<Task> releaseTask(Entry entry, Task task) {
+        Optional<Task> released = taskRepository.releaseTask(task);
+        released.ifPresent(t -> updateCachedEntry(entry, List.of(t), false));
+        return released;
     }
 
     /**
@@ -329,7 +391,7 @@ public class TaskService {
 
     public Task markStatus(Entry entry, Task task, Status status) {
         Task marked = taskRepository.markStatus(task, status);
-        cachingService.invalidateEntry(entry);
+        updateCachedEntry(entry, List.of(marked), false);
         return marked;
     }
     public Task markStatus(Task task, Status status) {
@@ -364,15 +426,14 @@ public class TaskService {
     }
 
     public void cancelAfterDependencies(Entry entry, Task task, Ruleset r) {
-
-        r.afterDependencies().forEach(dependency -> {
-            findTask(entry.publicId(), dependency)
-                .filter(depTask -> depTask.priority() > task.priority())  // ensure the dependent tasks to be cancelled occur after the current one to avoid cancelling potentially wrong tasks
-                .map(t -> trackTask(entry, t, ProcessingState.START))
-                .map(t -> markStatus(entry, t, Status.CANCELLED))
-                .map(t -> trackTask(entry, t, ProcessingState.COMPLETE))
-                .orElse(null);
-        });
-
+        Set<String> dependencies = r.afterDependencies();
+        if (dependencies.isEmpty()) {
+            return;
+        }
+        // ensure the dependent tasks to be cancelled occur after the current one to avoid cancelling potentially wrong tasks
+        List<Task> dependentTasks = Streams.filter(findTasks(entry),
+                t -> dependencies.contains(t.name()) && t.priority() > task.priority())
+            .toList();
+        transitionTasks(entry, dependentTasks, TaskTransition.cancelled());
     }
 }
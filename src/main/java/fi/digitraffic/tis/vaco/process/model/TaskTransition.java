@@ -0,0 +1,62 @@
+package fi.digitraffic.tis.vaco.process.model;
+
+import fi.digitraffic.tis.utilities.model.ProcessingState;
+import fi.digitraffic.tis.vaco.entries.model.Status;
+import jakarta.annotation.Nullable;
+import org.immutables.value.Value;
+
+/**
+ * Describes a task state change as a single unit: which lifecycle timestamps to touch and which status to set. Applied
+ * with one database statement regardless of how many of these change at once.
+ */
+@Value.Immutable
+public interface TaskTransition {
+
+    @Value.Default
+    default boolean markStarted() {
+        return false;
+    }
+
+    @Value.Default
+    default boolean markUpdated() {
+        return false;
+    }
+
+    @Value.Default
+    default boolean markCompleted() {
+        return false;
+    }
+
+    /**
+     * @return Status to set or null to keep current status.
+     */
+    @Nullable
+    Status status();
+
+    static TaskTransition of(ProcessingState state) {
+        return switch (state) {
+            case START -> ImmutableTaskTransition.builder().markStarted(true).status(Status.PROCESSING).build();
+            case UPDATE -> ImmutableTaskTransition.builder().markUpdated(true).build();
+            case COMPLETE -> completed(null);
+        };
+    }
+
+    /**
+     * Complete the task, optionally setting its final status at the same time.
+     */
+    static TaskTransition completed(@Nullable Status status) {
+        return ImmutableTaskTransition.builder().markUpdated(true).markCompleted(true).status(status).build();
+    }
+
+    /**
+     * Start, cancel and complete a task which won't be run at all.
+     */
+    static TaskTransition cancelled() {
+        return ImmutableTaskTransition.builder()
+            .markStarted(true)
+            .markUpdated(true)
+            .markCompleted(true)
+            .status(Status.CANCELLED)
+            .build();
+    }
+}
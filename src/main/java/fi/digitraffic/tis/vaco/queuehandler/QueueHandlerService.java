@@ -22,6 +22,7 @@ import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
 import fi.digitraffic.tis.vaco.db.repositories.ValidationInputRepository;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.process.TaskService;
@@ -144,7 +145,7 @@ public class QueueHandlerService {
                 logger.debug("Processing done for entry request and new entry created as {}, submitting to delegation", createdEntry.publicId());
 
                 ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-                    .entry(createdEntry)
+                    .entry(EntryReference.of(createdEntry))
                     .retryStatistics(ImmutableRetryStatistics.of(5))
                     .build();
                 messagingService.submitProcessingJob(job);
@@ -206,6 +207,11 @@ public class QueueHandlerService {
             .orElseThrow(() -> new UnknownEntityException(publicId, "Entry not found"));
     }
 
+    public Entry getEntry(EntryReference reference) {
+        return entryService.findEntry(reference)
+            .orElseThrow(() -> new UnknownEntityException(reference.publicId(), "Entry not found"));
+    }
+
     public List<Entry> getAllQueueEntriesFor(String businessId) {
         return getAllQueueEntriesFor(businessId, OptionalInt.empty(), Optional.empty());
     }
@@ -5,6 +5,9 @@ import tools.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import fi.digitraffic.tis.aws.sqs.SqsListener;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.db.repositories.FindingRepository;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -13,12 +16,12 @@ import fi.digitraffic.tis.vaco.findings.model.Finding;
 import fi.digitraffic.tis.vaco.findings.model.FindingSeverity;
 import fi.digitraffic.tis.vaco.findings.model.ImmutableFinding;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.Task;
-import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
 import fi.digitraffic.tis.vaco.rules.internal.StopsAndQuaysRule;
@@ -38,7 +41,6 @@ import fi.digitraffic.tis.vaco.summary.SummaryService;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
@@ -55,7 +57,6 @@ public class RuleResultsListener extends SqsListener {
 
     private final FindingService findingService;
     private final TaskService taskService;
-    private final QueueHandlerService queueHandlerService;
     private final EntryService entryService;
     private final NetexEnturValidatorResultProcessor netexEnturValidator;
     private final GbfsEnturResultProcessor gbfsResultProcessor;
@@ -67,11 +68,11 @@ public class RuleResultsListener extends SqsListener {
     private final NetexToGtfsRuleResultProcessor netexToGtfsRuleResultProcessor;
     private final FindingRepository findingRepository;
     private final RulesetService rulesetService;
+    private final VacoExecutors vacoExecutors;
 
     public RuleResultsListener(MessagingService messagingService,
                                FindingService findingService,
                                ObjectMapper objectMapper,
-                               QueueHandlerService queueHandlerService,
                                TaskService taskService,
                                EntryService entryService,
                                NetexEnturValidatorResultProcessor netexEnturValidator,
@@ -82,10 +83,11 @@ public class RuleResultsListener extends SqsListener {
                                SummaryService summaryService,
                                GtfsToNetexResultProcessor gtfsToNetexResultProcessor,
                                NetexToGtfsRuleResultProcessor netexToGtfsRuleResultProcessor,
-                               FindingRepository findingRepository, RulesetService rulesetService) {
-        super(messagingService, objectMapper);
+                               FindingRepository findingRepository, RulesetService rulesetService,
+                               VacoExecutors vacoExecutors,
+                               VacoProperties vacoProperties) {
+        super(messagingService, objectMapper, vacoProperties.sqsConsumer());
         this.findingService = Objects.requireNonNull(findingService);
-        this.queueHandlerService = Objects.requireNonNull(queueHandlerService);
         this.taskService = Objects.requireNonNull(taskService);
         this.entryService = Objects.requireNonNull(entryService);
         this.netexEnturValidator = Objects.requireNonNull(netexEnturValidator);
@@ -98,34 +100,36 @@ public class RuleResultsListener extends SqsListener {
         this.netexToGtfsRuleResultProcessor = Objects.requireNonNull(netexToGtfsRuleResultProcessor);
         this.findingRepository = Objects.requireNonNull(findingRepository);
         this.rulesetService = Objects.requireNonNull(rulesetService);
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+
+        consume(MessageQueue.ERRORS.getQueueName(), this::handleErrorsQueue);
+        consume(MessageQueue.DLQ.getQueueName(), this::handleDeadLetterQueue);
+        consume(MessageQueue.RULE_RESULTS_INGEST.getQueueName(), this::handleRuleResultsIngestQueue);
     }
 
-    @Scheduled(initialDelayString = "${vaco.scheduling.findings.poll-rate}", fixedRateString = "${vaco.scheduling.findings.poll-rate}")
     public void handleErrorsQueue() {
         listenValue(MessageQueue.ERRORS.getQueueName(), ErrorMessage.class, this::handleErrors);
     }
 
     private CompletableFuture<Boolean> handleErrors(ErrorMessage errorMessage) {
-        return CompletableFuture.supplyAsync(() -> {
+        return InstrumentedExecutor.supplyAsync(() -> {
             logger.warn("Got ErrorMessage {}", errorMessage);
             findingService.reportFindings(errorMessage.findings());
             return true;
-        });
+        }, vacoExecutors.listeners());
     }
 
-    @Scheduled(initialDelayString = "${vaco.scheduling.dlq.poll-rate}", fixedRateString = "${vaco.scheduling.dlq.poll-rate}")
     public void handleDeadLetterQueue() {
         listenTree(MessageQueue.DLQ.getQueueName(), this::handleDeadLetter);
     }
 
-    @Scheduled(initialDelayString = "${vaco.scheduling.rules-results.poll-rate}", fixedRateString = "${vaco.scheduling.rules-results.poll-rate}")
     public void handleRuleResultsIngestQueue() {
         listenValue(MessageQueue.RULE_RESULTS_INGEST.getQueueName(), ResultMessage.class, this::handleResult);
     }
 
     @VisibleForTesting
     protected CompletableFuture<Boolean> handleDeadLetter(JsonNode jsonNode) {
-        return CompletableFuture.supplyAsync(() -> {
+        return InstrumentedExecutor.supplyAsync(() -> {
             logger.info("Dead letter Queue Message {}", jsonNode);
 
             Optional<Finding> finding = createDeadLetterQueueFinding(jsonNode);
@@ -142,15 +146,14 @@ public class RuleResultsListener extends SqsListener {
             return taskPublicId
                 .flatMap(taskService::findTask)
                 .map(task -> {
-                    taskService.markStatus(task, Status.FAILED);
-                    entry.ifPresent(e ->  {
-                        taskService.trackTask(e, task, ProcessingState.COMPLETE);
+                    entry.ifPresentOrElse(e ->  {
+                        taskService.completeTask(e, task, Status.FAILED);
                         Optional<Ruleset> ruleset = rulesetService.findByName(task.name());
                         ruleset.ifPresent(r -> taskService.cancelAfterDependencies(e, task, r));
-                    });
+                    }, () -> taskService.markStatus(task, Status.FAILED));
                     return true;
                 }).orElse(false);
-        }).whenComplete((deadLetterProcessingSuccess, maybeEx) -> {
+        }, vacoExecutors.listeners()).whenComplete((deadLetterProcessingSuccess, maybeEx) -> {
             if (maybeEx != null) {
                 logger.warn("Handling dead letter queue message failed due to unhandled exception", maybeEx);
             }
@@ -160,7 +163,7 @@ public class RuleResultsListener extends SqsListener {
             entryPublicId.flatMap(entryService::findEntry)
                 .ifPresent(entry ->
                     messagingService.submitProcessingJob(ImmutableDelegationJobMessage.builder()
-                        .entry(entry)
+                        .entry(EntryReference.of(entry))
                         .retryStatistics(ImmutableRetryStatistics.of(5))
                         .build()));
         });
@@ -211,7 +214,7 @@ public class RuleResultsListener extends SqsListener {
     }
 
     protected CompletableFuture<Boolean> handleResult(ResultMessage resultMessage) {
-        return CompletableFuture.supplyAsync(() -> {
+        return InstrumentedExecutor.supplyAsync(() -> {
             logger.debug("Got ResultMessage {}", resultMessage);
             return switch (resultMessage.ruleName()) {
                 case DownloadRule.PREPARE_DOWNLOAD_TASK -> processDownloadRuleResults(resultMessage);
@@ -229,14 +232,14 @@ public class RuleResultsListener extends SqsListener {
                     yield false;
                 }
             };
-        }).whenComplete((ruleProcessingSuccess, maybeEx) -> {
+        }, vacoExecutors.listeners()).whenComplete((ruleProcessingSuccess, maybeEx) -> {
             if (maybeEx != null) {
                 logger.warn("Handling rule result failed due to unhandled exception", maybeEx);
             }
-            // resubmit to processing queue to continue general logic
+            // resubmit to processing queue to continue general logic, this also wakes up tasks parked for this one
             Optional<Entry> entry = entryService.findEntry(resultMessage.entryId());
             entry.ifPresent(value -> messagingService.submitProcessingJob(ImmutableDelegationJobMessage.builder()
-                    .entry(queueHandlerService.getEntry(value.publicId()))
+                    .entry(EntryReference.of(value))
                     .retryStatistics(ImmutableRetryStatistics.of(5))
                     .build()));
         });
@@ -278,18 +281,19 @@ public class RuleResultsListener extends SqsListener {
             Optional<Task> task = taskService.findTask(entry.publicId(), resultMessage.ruleName());
             return task.map(t -> {
                 Task tracked = taskService.trackTask(entry, t, ProcessingState.UPDATE);
+                Status finalStatus = null;
                 try {
                     logger.info("Processing result from {} for entry {}/task {}", ruleName, entry.publicId(), tracked.name());
                     boolean result = resultProcessor.processResults(resultMessage, entry, tracked);
                     Task taskWithLatestStatus = taskService.findTask(entry.publicId(), resultMessage.ruleName()).get();
 
                     if (result && Status.isNotCompleted(taskWithLatestStatus.status())) {
-                        tracked = taskService.markStatus(entry, tracked, Status.SUCCESS);
+                        finalStatus = Status.SUCCESS;
                     }
                     return result;
                 } finally {
                     summaryService.generateSummaries(entry, t);
-                    taskService.trackTask(entry, tracked, ProcessingState.COMPLETE);
+                    taskService.completeTask(entry, tracked, finalStatus);
                 }
             }).orElse(false);
         } else {
@@ -1,14 +1,15 @@
 package fi.digitraffic.tis.vaco.rules.internal;
 
-import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.ImmutableS3Path;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
-import fi.digitraffic.tis.utilities.Archiver;
-import fi.digitraffic.tis.utilities.Streams;
+import fi.digitraffic.tis.aws.s3.S3UploadStream;
 import fi.digitraffic.tis.utilities.TempFiles;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
+import fi.digitraffic.tis.vaco.archives.ArchiveVerifier;
 import fi.digitraffic.tis.vaco.aws.S3Artifact;
+import fi.digitraffic.tis.vaco.concurrency.InstrumentedExecutor;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -18,6 +19,7 @@ import fi.digitraffic.tis.vaco.findings.model.Finding;
 import fi.digitraffic.tis.vaco.findings.model.FindingSeverity;
 import fi.digitraffic.tis.vaco.findings.model.ImmutableFinding;
 import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.ValidatorCache;
 import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.Task;
@@ -26,51 +28,58 @@ import fi.digitraffic.tis.vaco.rules.Rule;
 import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
 import fi.digitraffic.tis.vaco.rules.model.ImmutableResultMessage;
 import fi.digitraffic.tis.vaco.rules.model.ResultMessage;
-import fi.digitraffic.tis.vaco.rules.model.gbfs.Discovery;
 import fi.digitraffic.tis.vaco.ruleset.model.TransitDataFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 @Component
 public class DownloadRule implements Rule<Entry, ResultMessage> {
     public static final String PREPARE_DOWNLOAD_TASK = "prepare.download";
+    /**
+     * S3 object tag containing hex encoded SHA-256 digest of downloaded package content.
+     */
+    public static final String CONTENT_DIGEST_TAG = "sha256";
+    /**
+     * Finding message for downloads which have identical content to the previous entry in the same context.
+     */
+    public static final String UNCHANGED = "UNCHANGED";
     private final EntryService entryService;
     private final FeatureFlagsService featureFlagsService;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final ObjectMapper objectMapper;
     private final TaskService taskService;
     private final VacoProperties vacoProperties;
     private final VacoHttpClient httpClient;
     private final S3Client s3Client;
     private final FindingService findingService;
+    private final VacoExecutors vacoExecutors;
+    private final ArchiveVerifier archiveVerifier;
+    private final GbfsSnapshotAssembler gbfsSnapshotAssembler;
+    private final ValidatorCache validatorCache;
 
-    public DownloadRule(ObjectMapper objectMapper, TaskService taskService,
+    public DownloadRule(TaskService taskService,
                         VacoProperties vacoProperties,
                         VacoHttpClient httpClient,
                         S3Client s3Client,
                         FindingService findingService, EntryService entryService,
-                        FeatureFlagsService featureFlagsService) {
-        this.objectMapper = Objects.requireNonNull(objectMapper);
+                        FeatureFlagsService featureFlagsService,
+                        VacoExecutors vacoExecutors,
+                        ArchiveVerifier archiveVerifier,
+                        GbfsSnapshotAssembler gbfsSnapshotAssembler,
+                        ValidatorCache validatorCache) {
         this.taskService = Objects.requireNonNull(taskService);
         this.vacoProperties = Objects.requireNonNull(vacoProperties);
         this.httpClient = Objects.requireNonNull(httpClient);
@@ -78,11 +87,15 @@ public class DownloadRule implements Rule<Entry, ResultMessage> {
         this.findingService = Objects.requireNonNull(findingService);
         this.entryService = Objects.requireNonNull(entryService);
         this.featureFlagsService = Objects.requireNonNull(featureFlagsService);
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+        this.archiveVerifier = Objects.requireNonNull(archiveVerifier);
+        this.gbfsSnapshotAssembler = Objects.requireNonNull(gbfsSnapshotAssembler);
+        this.validatorCache = Objects.requireNonNull(validatorCache);
     }
 
     @Override
     public CompletableFuture<ResultMessage> execute(Entry entry) {
-        return CompletableFuture.supplyAsync(() -> {
+        return InstrumentedExecutor.supplyAsync(() -> {
             Optional<Task> task = taskService.findTask(entry.publicId(), PREPARE_DOWNLOAD_TASK);
             return task.map(t -> {
                 Task tracked = taskService.trackTask(entry, t, ProcessingState.START);
@@ -143,42 +156,110 @@ public class DownloadRule implements Rule<Entry, ResultMessage> {
                     }
                 }
             }).orElseThrow();
-        });
+        }, vacoExecutors.rules());
     }
 
     private Optional<S3Path> download(Entry entry, Path tempDirPath, Task tracked) {
         if (shouldDownload(entry)) {
-            CompletableFuture<Optional<Path>> feedArchive;
-
             if (TransitDataFormat.GBFS.fieldName().equalsIgnoreCase(entry.format())) {
                 // GBFS feed is a directive pointing out to more files, so need to download them all separately and build a ZIP
-                feedArchive = httpClient.downloadFile(
+                return httpClient.downloadFile(
                         TempFiles.getTaskTempFile(tempDirPath, entry.format() + ".json"),
                         entry.url(),
                         entry)
                     .thenApply(updateEtag(entry))
                     .thenApply(reportResult(entry, tracked))
-                    .thenCompose(downloadGbfsDiscovery(entry, tempDirPath));
+                    .thenApply(assembleGbfsSnapshot(entry, tracked))
+                    .thenApply(track(entry, tracked, ProcessingState.UPDATE))
+                    .join();
             } else {
                 // by default we assume single ZIP files, this applies to e.g. GTFS and NeTEx
-                feedArchive = httpClient.downloadFile(
-                        TempFiles.getTaskTempFile(tempDirPath, entry.format() + ".zip"),
-                        entry.url(),
-                        entry)
-                    .thenApply(updateEtag(entry))
-                    .thenApply(reportResult(entry, tracked))
-                    .thenApply(DownloadResponse::body);
+                return streamToS3(entry, tempDirPath, tracked);
             }
+        } else {
+            return Optional.empty();
+        }
+    }
 
-            return feedArchive.thenCompose(validateZip(tracked))
-                .thenApply(track(entry, tracked, ProcessingState.UPDATE))
-                .thenCompose(uploadToS3(entry, tracked))
+    /**
+     * Download single archive file and upload it to S3 in one pass: the content is sent to S3 while it is being
+     * downloaded and the upload is committed only if the downloaded content turns out to be a valid archive.
+     * <p>
+     * If the previous entry in the same context has a known content digest and the downloaded content turns out to be
+     * identical, the streamed upload is left uncompleted and thus aborted, and the previous package is copied within S3
+     * instead.
+     * <p>
+     * Validators of the response are cached with a pointer to the stored package, which then serves the content of
+     * later downloads answered with <code>304 Not Modified</code>.
+     */
+    private Optional<S3Path> streamToS3(Entry entry, Path tempDirPath, Task tracked) {
+        String bucket = vacoProperties.s3PackagesBucket();
+        S3Path s3TargetPath = packagePath(entry, tracked);
+        Optional<PreviousPackage> previous = findPreviousPackage(entry);
+        try (S3UploadStream upload = s3Client.openUpload(bucket, s3TargetPath)) {
+            DownloadResponse response = httpClient.downloadArchive(
+                    TempFiles.getTaskTempFile(tempDirPath, entry.format() + ".zip"),
+                    entry.url(),
+                    entry,
+                    upload)
+                .thenApply(updateEtag(entry))
+                .thenApply(reportResult(entry, tracked))
                 .join();
-        } else {
+
+            if (response.body().isEmpty()) {
+                return Optional.empty();
+            }
+            Optional<String> archiveError = response.archiveError()
+                .or(() -> archiveVerifier.verify(response.body().get()).error());
+            if (archiveError.isPresent()) {
+                findingService.reportFinding(ImmutableFinding.of(tracked.id(), null, PREPARE_DOWNLOAD_TASK, archiveError.get(), "ERROR"));
+                return Optional.empty();
+            }
+            logger.info("Downloaded {} bytes with SHA-256 {} for entry {}", response.size().orElse(-1L), response.sha256().orElse(null), entry.publicId());
+            taskService.trackTask(entry, tracked, ProcessingState.UPDATE);
+
+            if (previous.isPresent() && response.sha256().equals(Optional.of(previous.get().sha256()))) {
+                logger.info("Entry {} has same content as previous entry in context '{}', reusing s3://{}/{}", entry.publicId(), entry.context(), bucket, previous.get().path());
+                s3Client.copyFile(bucket, previous.get().path(), bucket, s3TargetPath).join();
+                validatorCache.store(entry.url(), response, previous.get().path());
+                findingService.reportFinding(ImmutableFinding.builder()
+                    .publicId(entry.publicId())
+                    .taskId(tracked.id())
+                    .source(tracked.name())
+                    .message(UNCHANGED)
+                    .severity(FindingSeverity.INFO)
+                    .build());
+            } else {
+                upload.complete();
+                response.sha256().ifPresent(digest -> s3Client.tagObject(bucket, s3TargetPath, Map.of(CONTENT_DIGEST_TAG, digest)));
+                validatorCache.store(entry.url(), response, s3TargetPath);
+            }
+            taskService.trackTask(entry, tracked, ProcessingState.UPDATE);
+            return Optional.of(s3TargetPath);
+        } catch (IOException e) {
+            throw new RuleExecutionException("Failed to upload downloaded content of entry " + entry.publicId() + " to " + s3TargetPath, e);
+        }
+    }
+
+    /**
+     * Find the downloaded package of the most recent completed entry in the same context, if it has a content digest.
+     */
+    private Optional<PreviousPackage> findPreviousPackage(Entry entry) {
+        if (entry.context() == null) {
             return Optional.empty();
         }
+        return entryService.findLatestEntryForContext(entry.businessId(), entry.context())
+            .filter(previous -> !previous.publicId().equals(entry.publicId()))
+            .filter(previous -> entry.format().equalsIgnoreCase(previous.format()))
+            .flatMap(previous -> taskService.findTask(previous.publicId(), PREPARE_DOWNLOAD_TASK)
+                .filter(t -> t.publicId() != null)
+                .map(t -> packagePath(previous, t)))
+            .flatMap(path -> Optional.ofNullable(s3Client.objectTags(vacoProperties.s3PackagesBucket(), path).get(CONTENT_DIGEST_TAG))
+                .map(digest -> new PreviousPackage(path, digest)));
     }
 
+    private record PreviousPackage(S3Path path, String sha256) {}
+
     private Function<DownloadResponse, DownloadResponse> reportResult(Entry entry, Task task) {
         return downloadResponse -> {
             if (downloadResponse.result().equals(DownloadResponse.Result.NOT_MODIFIED)) {
@@ -231,38 +312,13 @@ public class DownloadRule implements Rule<Entry, ResultMessage> {
         }
     }
 
-    private Function<DownloadResponse, CompletionStage<Optional<Path>>> downloadGbfsDiscovery(Entry entry, Path tempDirPath) {
+    private Function<DownloadResponse, Optional<S3Path>> assembleGbfsSnapshot(Entry entry, Task task) {
         return discoveryFile -> {
             if (discoveryFile.body().isPresent()) {
-                try {
-                    Path discoveryDir = Files.createDirectories(tempDirPath.resolve("discovery"));
-                    Discovery discovery = objectMapper.readValue(discoveryFile.body().get().toFile(), Discovery.class);
-
-                    List<CompletableFuture<DownloadResponse>> contents = Streams.flatten(discovery.data().values(), Map::values)
-                        .flatten(Function.identity())
-                        .map(feed -> httpClient.downloadFile(
-                            TempFiles.getTaskTempFile(discoveryDir, feed.name() + ".json"),
-                            feed.url(), entry))
-                        .filter(Objects::nonNull)
-                        .toList();
-
-                    CompletableFuture<Void> all = CompletableFuture.allOf(contents.toArray(new CompletableFuture[0]));
-                    return all.thenApply(v -> {
-                        Path finalFile = TempFiles.getTaskTempFile(tempDirPath, entry.format() + ".zip");
-                        try {
-                            Archiver.createZip(discoveryDir, finalFile);
-                        } catch (IOException e) {
-                            throw new RuleExecutionException("Could not create ZIP archive for GBFS content", e);
-                        }
-                        return Optional.of(finalFile);
-                    });
-                } catch (IOException e) {
-                    logger.warn("Failed to deserialize assumed GBFS content", e);
-                    return CompletableFuture.completedFuture(Optional.empty());
-                }
+                return gbfsSnapshotAssembler.assemble(entry, task, discoveryFile.body().get(), packagePath(entry, task));
             } else {
                 logger.info("GBFS discovery file not present");
-                return CompletableFuture.completedFuture(Optional.empty());
+                return Optional.empty();
             }
         };
     }
@@ -274,53 +330,7 @@ public class DownloadRule implements Rule<Entry, ResultMessage> {
         };
     }
 
-    /**
-     * Ensure the downloaded file is a valid ZIP file, e.g. not partial, corrupted or complete nonsense.
-     * <p>
-     * Original from <a href="https://stackoverflow.com/a/17222756/44523">StackOverflow</a> by Nikhil Das Nomula,
-     * licensed under CC BY-SA 3.0.
-     *
-     * @return Composable function which returns the input as is if it represents a valid ZIP file, empty otherwise
-     */
-    private Function<Optional<Path>, CompletableFuture<Optional<Path>>> validateZip(Task task) {
-        return path -> {
-            if (path.isPresent()) {
-                File file = path.get().toFile();
-
-                try (ZipFile zipfile = new ZipFile(file)) {
-                    Enumeration<? extends ZipEntry> entries = zipfile.entries();
-                    while (entries.hasMoreElements()) {
-                        ZipEntry ze = entries.nextElement();
-                        // if it throws an exception fetching any of the following then we know the file is corrupted.
-                        try (InputStream fileContent = zipfile.getInputStream(ze)) {
-                             ze.getCrc();
-                             ze.getCompressedSize();
-                             ze.getName();
-                        }
-                    }
-                    return CompletableFuture.completedFuture(path);
-                } catch (IOException e) {
-                    findingService.reportFinding(ImmutableFinding.of(task.id(), null, PREPARE_DOWNLOAD_TASK, e.getMessage(), "ERROR"));
-                    return CompletableFuture.completedFuture(Optional.empty());
-                }
-            } else {
-                return CompletableFuture.completedFuture(Optional.empty());
-            }
-        };
-    }
-
-    private Function<Optional<Path>, CompletableFuture<Optional<S3Path>>> uploadToS3(Entry entry, Task task) {
-        return path -> {
-            if (path.isPresent()) {
-                Path localPath = path.get();
-                S3Path s3TargetPath = ImmutableS3Path.of(List.of(entry.publicId(), Objects.requireNonNull(task.publicId()), entry.format() + ".zip"));
-
-                return s3Client.uploadFile(vacoProperties.s3PackagesBucket(), s3TargetPath, localPath)
-                    .thenApply(track(entry, task, ProcessingState.UPDATE))
-                    .thenApply(u -> Optional.of(s3TargetPath));  // NOTE: There's probably something useful in the `u` parameter
-            } else {
-                return CompletableFuture.completedFuture(Optional.empty());
-            }
-        };
+    private static S3Path packagePath(Entry entry, Task task) {
+        return ImmutableS3Path.of(List.of(entry.publicId(), Objects.requireNonNull(task.publicId()), entry.format() + ".zip"));
     }
 }
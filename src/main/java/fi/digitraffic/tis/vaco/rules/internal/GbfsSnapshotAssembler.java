@@ -0,0 +1,323 @@
+package fi.digitraffic.tis.vaco.rules.internal;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.aws.s3.S3UploadStream;
+import fi.digitraffic.tis.utilities.ParallelZipWriter;
+import fi.digitraffic.tis.utilities.Streams;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.GbfsSnapshots;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.db.repositories.SummaryRepository;
+import fi.digitraffic.tis.vaco.http.StreamedResponse;
+import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
+import fi.digitraffic.tis.vaco.rules.model.gbfs.Discovery;
+import fi.digitraffic.tis.vaco.rules.model.gbfs.Feed;
+import fi.digitraffic.tis.vaco.summary.model.ImmutableSummary;
+import fi.digitraffic.tis.vaco.summary.model.RendererType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Builds GBFS snapshot archive from the feeds listed in a GBFS discovery file in one pass: each feed's response body
+ * is written directly into its own archive entry, and the archive directly into an S3 multipart upload. Entries are
+ * compressed in parallel while later feeds are being read.
+ * <p>
+ * Feeds are requested a few at a time ahead of the one currently being written, so that waiting for the next response
+ * overlaps with reading the current one, while unread responses are held back by the HTTP client's flow control. Memory
+ * use is therefore constant regardless of the number of feeds. Requests ahead are only sent when the host has a free
+ * request slot, as unread responses hold their slots and other snapshots of the same host may be waiting for them.
+ * <p>
+ * Feeds which fail or time out before their body is read are left out of the archive. Failure while reading a body
+ * fails the whole snapshot, as an archive entry cannot be taken back once started. The outcome, latency and size of
+ * each feed is recorded as a summary of the task.
+ */
+@Component
+public class GbfsSnapshotAssembler {
+
+    /**
+     * Name of the task summary item listing outcome of each feed.
+     */
+    public static final String FEEDS_SUMMARY = "gbfsFeeds";
+
+    /**
+     * Feeds larger than this are compressed while streaming instead of in parallel.
+     */
+    private static final int MAX_BUFFERED_FEED_SIZE = 8 * 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final VacoProperties vacoProperties;
+    private final VacoHttpClient httpClient;
+    private final S3Client s3Client;
+    private final SummaryRepository summaryRepository;
+    private final ObjectMapper objectMapper;
+    private final VacoExecutors vacoExecutors;
+
+    public GbfsSnapshotAssembler(VacoProperties vacoProperties,
+                                 VacoHttpClient httpClient,
+                                 S3Client s3Client,
+                                 SummaryRepository summaryRepository,
+                                 ObjectMapper objectMapper,
+                                 VacoExecutors vacoExecutors) {
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+        this.httpClient = Objects.requireNonNull(httpClient);
+        this.s3Client = Objects.requireNonNull(s3Client);
+        this.summaryRepository = Objects.requireNonNull(summaryRepository);
+        this.objectMapper = Objects.requireNonNull(objectMapper);
+        this.vacoExecutors = Objects.requireNonNull(vacoExecutors);
+    }
+
+    /**
+     * @param entry Entry the snapshot belongs to
+     * @param task Task to record feed summary to
+     * @param discoveryFile Downloaded GBFS discovery file
+     * @param target Path in packages bucket to upload the snapshot archive to
+     * @return Path of uploaded snapshot, empty if the discovery file isn't valid GBFS discovery.
+     */
+    public Optional<S3Path> assemble(Entry entry, Task task, Path discoveryFile, S3Path target) {
+        Discovery discovery;
+        try {
+            discovery = objectMapper.readValue(discoveryFile.toFile(), Discovery.class);
+        } catch (JacksonException e) {
+            logger.warn("Failed to deserialize assumed GBFS content", e);
+            return Optional.empty();
+        }
+
+        GbfsSnapshots gbfsSnapshots = vacoProperties.gbfsSnapshots();
+        int window = Math.max(1, Math.min(gbfsSnapshots.maxConcurrentFeeds(), vacoProperties.hostLimits().maxConcurrentRequests()));
+        Deque<Feed> feeds = new ArrayDeque<>(distinctFeeds(discovery));
+        Deque<PendingFeed> pending = new ArrayDeque<>();
+        List<Map<String, String>> statistics = new ArrayList<>();
+
+        try (S3UploadStream upload = s3Client.openUpload(vacoProperties.s3PackagesBucket(), target);
+             ParallelZipWriter zip = new ParallelZipWriter(
+                 upload,
+                 vacoExecutors.compression(),
+                 gbfsSnapshots.compressionLevel(),
+                 vacoProperties.concurrency().compression(),
+                 MAX_BUFFERED_FEED_SIZE)) {
+            try {
+                while (!feeds.isEmpty() || !pending.isEmpty()) {
+                    while (pending.size() < window && !feeds.isEmpty()) {
+                        // Waiting for a host permit while holding permits of unread responses could deadlock with
+                        // other snapshots of the same host, so further feeds are requested only if a permit is free.
+                        Optional<PendingFeed> requested = pending.isEmpty()
+                            ? Optional.of(request(feeds.peek(), entry))
+                            : tryRequest(feeds.peek(), entry);
+                        if (requested.isEmpty()) {
+                            break;
+                        }
+                        feeds.poll();
+                        pending.add(requested.get());
+                    }
+                    statistics.add(write(pending.poll(), zip, gbfsSnapshots));
+                }
+            } finally {
+                // responses which were never read still hold their host permits
+                pending.forEach(PendingFeed::discard);
+            }
+            zip.finish();
+            upload.complete();
+            logger.info("Uploaded GBFS snapshot of {} feeds for entry {} to {}", statistics.size(), entry.publicId(), target);
+            return Optional.of(target);
+        } catch (IOException e) {
+            throw new RuleExecutionException("Failed to assemble GBFS snapshot of entry " + entry.publicId() + " to " + target, e);
+        } finally {
+            persistStatistics(task, statistics);
+        }
+    }
+
+    /**
+     * All feeds of all languages by name. Archive has a single entry per name, so the first listed language wins.
+     */
+    private List<Feed> distinctFeeds(Discovery discovery) {
+        Map<String, Feed> feeds = new LinkedHashMap<>();
+        Streams.flatten(discovery.data().values(), Map::values)
+            .flatten(Function.identity())
+            .toList()
+            .forEach(feed -> {
+                Feed existing = feeds.putIfAbsent(feed.name(), feed);
+                if (existing != null && !existing.url().equals(feed.url())) {
+                    logger.debug("GBFS feed {} is listed in multiple languages, using {} instead of {}", feed.name(), existing.url(), feed.url());
+                }
+            });
+        return List.copyOf(feeds.values());
+    }
+
+    private PendingFeed request(Feed feed, Entry entry) {
+        long requested = System.nanoTime();
+        return new PendingFeed(feed, requested, httpClient.openStream(feed.url(), entry)
+            .thenApply(response -> new ReceivedFeed(response, System.nanoTime())));
+    }
+
+    private Optional<PendingFeed> tryRequest(Feed feed, Entry entry) {
+        long requested = System.nanoTime();
+        return httpClient.tryOpenStream(feed.url(), entry)
+            .map(response -> new PendingFeed(feed, requested, response
+                .thenApply(r -> new ReceivedFeed(r, System.nanoTime()))));
+    }
+
+    private Map<String, String> write(PendingFeed pending, ParallelZipWriter zip, GbfsSnapshots gbfsSnapshots) throws IOException {
+        Feed feed = pending.feed();
+        long timeout = gbfsSnapshots.feedTimeout().toNanos();
+        ReceivedFeed received;
+        try {
+            received = pending.response().get(Math.max(0, timeout - (System.nanoTime() - pending.requested())), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            pending.discard();
+            logger.warn("GBFS feed {} at {} did not respond within {}", feed.name(), feed.url(), gbfsSnapshots.feedTimeout());
+            return feedStatistics(feed, "timeout", -1, -1, 0);
+        } catch (ExecutionException e) {
+            logger.warn("GBFS feed {} at {} failed", feed.name(), feed.url(), e.getCause());
+            return feedStatistics(feed, "failed", -1, -1, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.discard();
+            throw new InterruptedIOException("Interrupted while waiting for GBFS feed " + feed.url());
+        }
+
+        long latency = received.received() - pending.requested();
+        try (StreamedResponse response = received.response()) {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                logger.warn("GBFS feed {} at {} responded with HTTP status {}", feed.name(), feed.url(), response.statusCode());
+                return feedStatistics(feed, String.valueOf(response.statusCode()), latency, -1, 0);
+            }
+            long started = System.nanoTime();
+            long size;
+            try (DeadlineInputStream body = new DeadlineInputStream(response.body(), feed, gbfsSnapshots)) {
+                zip.addEntry(feed.name() + ".json", null, body);
+                size = body.count;
+            }
+            long duration = System.nanoTime() - started;
+            logger.debug("GBFS feed {} responded in {} ms, {} bytes ({} on the wire) read in {} ms",
+                feed.name(), TimeUnit.NANOSECONDS.toMillis(latency), size, response.wireBytes(), TimeUnit.NANOSECONDS.toMillis(duration));
+            return feedStatistics(feed, String.valueOf(response.statusCode()), latency, duration, size);
+        }
+    }
+
+    private static Map<String, String> feedStatistics(Feed feed, String status, long latencyNanos, long durationNanos, long bytes) {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("name", feed.name());
+        statistics.put("url", feed.url());
+        statistics.put("status", status);
+        statistics.put("latencyMillis", latencyNanos >= 0 ? String.valueOf(TimeUnit.NANOSECONDS.toMillis(latencyNanos)) : "");
+        statistics.put("durationMillis", durationNanos >= 0 ? String.valueOf(TimeUnit.NANOSECONDS.toMillis(durationNanos)) : "");
+        statistics.put("bytes", String.valueOf(bytes));
+        return statistics;
+    }
+
+    private void persistStatistics(Task task, List<Map<String, String>> statistics) {
+        try {
+            summaryRepository.create(ImmutableSummary.of(task.id(), FEEDS_SUMMARY, RendererType.LIST, objectMapper.writeValueAsBytes(statistics)));
+        } catch (JacksonException e) {
+            logger.error("Failed to persist {}'s summary data {} generated for task {}", FEEDS_SUMMARY, statistics, task.name(), e);
+        }
+    }
+
+    private record PendingFeed(Feed feed, long requested, CompletableFuture<ReceivedFeed> response) {
+        /**
+         * Close the response whenever it arrives, as nobody is going to read it.
+         */
+        void discard() {
+            response.thenAccept(received -> {
+                try {
+                    received.response().close();
+                } catch (IOException ignored) {
+                    /* ignored on purpose */
+                }
+            });
+        }
+    }
+
+    private record ReceivedFeed(StreamedResponse response, long received) {}
+
+    /**
+     * Counts bytes read and fails reading once the deadline has passed. The deadline is enforced by closing the
+     * underlying stream from a timer, which also releases a read blocked on a stalled connection.
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+        private final CompletableFuture<Void> deadline = new CompletableFuture<>();
+        private final Feed feed;
+        private final GbfsSnapshots gbfsSnapshots;
+        private volatile boolean expired;
+        private long count;
+
+        private DeadlineInputStream(InputStream in, Feed feed, GbfsSnapshots gbfsSnapshots) {
+            super(in);
+            this.feed = feed;
+            this.gbfsSnapshots = gbfsSnapshots;
+            deadline.completeOnTimeout(null, gbfsSnapshots.feedTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                .thenRun(this::expire);
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                /* ignored on purpose */
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = super.read(b, off, len);
+            } catch (IOException e) {
+                throw expired ? timedOut() : e;
+            }
+            // closed stream may also look like a regular end of body
+            if (expired) {
+                throw timedOut();
+            }
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        private IOException timedOut() {
+            return new IOException("Reading GBFS feed " + feed.url() + " took longer than " + gbfsSnapshots.feedTimeout());
+        }
+
+        @Override
+        public void close() throws IOException {
+            deadline.cancel(false);
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package fi.digitraffic.tis.vaco.rules.internal;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.vaco.aws.S3Artifact;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Static reference datasets bundled with the application, stored once in packages bucket under content addressed keys
+ * so that all entries can share the same object.
+ * <p>
+ * A changed dataset produces a new key while the previous version stays in place for the entries already pointing at
+ * it. Each dataset is resolved once per application instance, after which referring to it costs nothing.
+ *
+ * @see S3Artifact#getReferenceDatasetPath(String, String, String)
+ */
+@Component
+public class ReferenceDatasets {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final S3Client s3Client;
+    private final VacoProperties vacoProperties;
+
+    private final ConcurrentMap<String, S3Path> published = new ConcurrentHashMap<>();
+
+    public ReferenceDatasets(S3Client s3Client,
+                             VacoProperties vacoProperties) {
+        this.s3Client = Objects.requireNonNull(s3Client);
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+    }
+
+    /**
+     * Make sure given classpath resource is stored in packages bucket.
+     *
+     * @param dataset Name of the dataset
+     * @param resource Classpath resource containing the dataset
+     * @param fileName File name to store the dataset with
+     * @return Content addressed path of the dataset in packages bucket.
+     * @throws RuleExecutionException if the resource is unavailable
+     */
+    public S3Path publish(String dataset, String resource, String fileName) {
+        return published.computeIfAbsent(resource, r -> store(dataset, r, fileName));
+    }
+
+    private S3Path store(String dataset, String resource, String fileName) {
+        byte[] content = readResource(resource);
+        S3Path path = S3Artifact.getReferenceDatasetPath(dataset, sha256(content), fileName);
+        String bucket = vacoProperties.s3PackagesBucket();
+        if (s3Client.keyExists(bucket, path.toString())) {
+            logger.debug("Reference dataset {} already stored as s3://{}/{}", dataset, bucket, path);
+        } else {
+            s3Client.putObject(bucket, path, content);
+            logger.info("Stored reference dataset {} ({} bytes) as s3://{}/{}", dataset, content.length, bucket, path);
+        }
+        return path;
+    }
+
+    private static byte[] readResource(String resource) {
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new RuleExecutionException(String.format("Static file '%s' unavailable", resource));
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new RuleExecutionException(String.format("Failed to read static file '%s'", resource), e);
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+}
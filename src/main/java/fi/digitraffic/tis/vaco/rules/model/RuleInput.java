@@ -0,0 +1,42 @@
+package fi.digitraffic.tis.vaco.rules.model;
+
+import jakarta.annotation.Nullable;
+import org.immutables.value.Value;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Exact S3 object produced by an earlier task which a rule may read as its input.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableRuleInput.class)
+@JsonDeserialize(as = ImmutableRuleInput.class)
+public interface RuleInput {
+    /**
+     * @return Name of the task which produced the object.
+     */
+    String task();
+
+    /**
+     * @return Full <code>s3://bucket/key</code> URI of the object.
+     */
+    String uri();
+
+    /**
+     * @return Version of the object, <code>null</code> if the bucket isn't versioned.
+     */
+    @Nullable
+    String versionId();
+
+    @Nullable
+    String eTag();
+
+    /**
+     * @return Base64 encoded SHA-256 checksum of the object, <code>null</code> if it was stored without one.
+     */
+    @Nullable
+    String checksumSha256();
+
+    @Nullable
+    Long size();
+}
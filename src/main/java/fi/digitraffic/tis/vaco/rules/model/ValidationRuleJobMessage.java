@@ -3,22 +3,36 @@ package fi.digitraffic.tis.vaco.rules.model;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import tools.jackson.databind.annotation.JsonDeserialize;
 import tools.jackson.databind.annotation.JsonSerialize;
-import fi.digitraffic.tis.vaco.messaging.model.JobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.Retryable;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.rules.RuleConfiguration;
 import jakarta.annotation.Nullable;
 import org.immutables.value.Value;
 
+import java.util.List;
+
 @Value.Immutable
 @JsonSerialize(as = ImmutableValidationRuleJobMessage.class)
 @JsonDeserialize(as = ImmutableValidationRuleJobMessage.class)
-public interface ValidationRuleJobMessage extends JobMessage, Retryable {
+public interface ValidationRuleJobMessage extends Retryable {
+    /**
+     * @return Full entry snapshot. Unlike internal {@link fi.digitraffic.tis.vaco.messaging.model.JobMessage JobMessages}
+     * this message is consumed by external rule implementations which do not have access to VACO's database.
+     */
+    Entry entry();
+
     Task task();
 
     String inputs();
     String outputs();
 
+    /**
+     * @return Exact objects produced by earlier tasks of the entry. Rules which can read these directly don't need
+     * them copied to {@link #inputs()}.
+     */
+    List<RuleInput> manifest();
+
     String source();
 
     @Nullable
@@ -3,7 +3,6 @@ package fi.digitraffic.tis.vaco.rules.results;
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.findings.FindingService;
@@ -48,11 +47,12 @@ public class InternalRuleResultProcessor extends RuleResultProcessor implements
         ConcurrentMap<String, List<String>> packages = collectPackageContents(resultMessage.uploadedFiles());
         if (!packages.containsKey("result") || packages.get("result").isEmpty()) {
             // preserve terminal statuses (CANCELLED, FAILED) already set by the rule itself
+            Status status = null;
             if (Status.isNotCompleted(task.status())) {
                 logger.warn("Entry {} internal task {} does not contain 'result' package.", resultMessage.entryId(), task.name());
-                taskService.markStatus(entry, task, Status.FAILED);
+                status = Status.FAILED;
             }
-            taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+            taskService.completeTask(entry, task, status);
             return false;
         } else {
             String sourceFile = packages.get("result").getFirst();
@@ -61,8 +61,7 @@ public class InternalRuleResultProcessor extends RuleResultProcessor implements
                 task,
                 "result",
                 dlFile.toString()));
-            taskService.markStatus(entry, task, Status.SUCCESS);
-            taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+            taskService.completeTask(entry, task, Status.SUCCESS);
             return true;
         }
     }
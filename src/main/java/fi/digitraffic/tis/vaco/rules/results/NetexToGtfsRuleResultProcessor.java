@@ -4,7 +4,6 @@ import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.ImmutableS3Path;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.findings.FindingService;
@@ -65,8 +64,7 @@ public class NetexToGtfsRuleResultProcessor extends RuleResultProcessor implemen
             if (!packages.containsKey("result") || packages.get("result").isEmpty()) {
                 logger.warn("Entry {} task {} does not contain 'result' package.", resultMessage.entryId(), task.name());
 
-                taskService.markStatus(entry, task, Status.FAILED);
-                taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+                taskService.completeTask(entry, task, Status.FAILED);
                 resultFound = false;
             } else {
                 String sourceFile = packages.get("result").getFirst();
@@ -77,8 +75,7 @@ public class NetexToGtfsRuleResultProcessor extends RuleResultProcessor implemen
                     task,
                     "result",
                     resultPackagePath.toString()));
-                taskService.markStatus(entry, task, Status.SUCCESS);
-                taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+                taskService.completeTask(entry, task, Status.SUCCESS);
                 resultFound = true;
             }
             packages.remove("result");
@@ -7,7 +7,6 @@ import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
 import fi.digitraffic.tis.utilities.Streams;
 import fi.digitraffic.tis.utilities.TempFiles;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.VacoException;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.db.UnknownEntityException;
@@ -168,22 +167,23 @@ public abstract class RuleResultProcessor implements ResultProcessor {
         Map<String, Long> severities = findingService.summarizeFindingsSeverities(task);
         logger.debug("{}/{} ({}) produced findings {}", entry.publicId(), task.name(), task.publicId(), severities);
 
+        Status status;
         if (override.isPresent()) {
-            taskService.markStatus(entry, task, override.get());
+            status = override.get();
         } else {
             if (severities.getOrDefault(FindingSeverity.ERROR, 0L) > 0
                 || severities.getOrDefault(FindingSeverity.CRITICAL, 0L) > 0) {
-                taskService.markStatus(entry, task, Status.ERRORS);
+                status = Status.ERRORS;
             } else if (severities.getOrDefault(FindingSeverity.WARNING, 0L) > 0) {
-                taskService.markStatus(entry, task, Status.WARNINGS);
+                status = Status.WARNINGS;
             } else if (severities.getOrDefault(FindingSeverity.FAILURE, 0L) > 0) {
-                taskService.markStatus(entry, task, Status.FAILED);
+                status = Status.FAILED;
             } else {
-                taskService.markStatus(entry, task, Status.SUCCESS);
+                status = Status.SUCCESS;
             }
         }
 
-        taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+        taskService.completeTask(entry, task, status);
     }
 
     protected boolean storeFindings(List<Finding> findings) {
@@ -2,7 +2,6 @@ package fi.digitraffic.tis.vaco.rules.results;
 
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.S3Client;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.findings.FindingService;
@@ -46,8 +45,7 @@ public class SimpleResultProcessor extends RuleResultProcessor implements Result
         logger.info("Processing result from PREPARE for entry {}/task {}", entry.publicId(), task.name());
         createOutputPackages(resultMessage, entry, task, requiredFiles);
         // this should call resolveTaskStatus(); if this logic gets _any_ more complex than this
-        taskService.markStatus(entry, task, Status.SUCCESS);
-        taskService.trackTask(entry, task, ProcessingState.COMPLETE);
+        taskService.completeTask(entry, task, Status.SUCCESS);
         return true;
     }
 }
@@ -19,8 +19,8 @@ import fi.digitraffic.tis.vaco.credentials.CredentialsService;
 import fi.digitraffic.tis.vaco.crypt.EncryptionService;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.me.MeService;
+import fi.digitraffic.tis.vaco.packages.PackageDownloadHandler;
 import fi.digitraffic.tis.vaco.packages.PackagesController;
-import fi.digitraffic.tis.vaco.packages.PackagesService;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.queuehandler.QueueController;
 import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
@@ -47,13 +47,10 @@ import fi.digitraffic.tis.vaco.ui.model.SwapPartnershipRequest;
 import fi.digitraffic.tis.vaco.ui.model.TaskReport;
 import fi.digitraffic.tis.vaco.ui.model.pages.CompanyEntriesPage;
 import io.swagger.v3.oas.annotations.Hidden;
-import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -65,6 +62,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -104,7 +102,7 @@ public class UiController {
     private final RulesetService rulesetService;
     private final MeService meService;
     private final CompanyHierarchyService companyHierarchyService;
-    private final PackagesService packagesService;
+    private final PackageDownloadHandler packageDownloadHandler;
     private final AdminToolsService adminToolsService;
     private final EntryRequestMapper entryRequestMapper;
     private final EncryptionService encryptionService;
@@ -120,7 +118,7 @@ public class UiController {
                         RulesetService rulesetService,
                         MeService meService,
                         CompanyHierarchyService companyHierarchyService,
-                        PackagesService packagesService,
+                        PackageDownloadHandler packageDownloadHandler,
                         AdminToolsService adminToolsService,
                         EntryRequestMapper entryRequestMapper,
                         EncryptionService encryptionService,
@@ -136,7 +134,7 @@ public class UiController {
         this.rulesetService = Objects.requireNonNull(rulesetService);
         this.meService = Objects.requireNonNull(meService);
         this.companyHierarchyService = Objects.requireNonNull(companyHierarchyService);
-        this.packagesService = Objects.requireNonNull(packagesService);
+        this.packageDownloadHandler = Objects.requireNonNull(packageDownloadHandler);
         this.adminToolsService = Objects.requireNonNull(adminToolsService);
         this.entryRequestMapper = Objects.requireNonNull(entryRequestMapper);
         this.encryptionService = Objects.requireNonNull(encryptionService);
@@ -310,22 +308,15 @@ public class UiController {
     }
 
     @GetMapping(path = "/packages/{entryPublicId}/{taskName}/{packageName}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public FileSystemResource fetchPackage(
+    public ResponseEntity<StreamingResponseBody> fetchPackage(
         @PathVariable("entryPublicId") String entryPublicId,
         @PathVariable("taskName") String taskName,
         @PathVariable("packageName") String packageName,
-        HttpServletResponse response) {
+        @RequestHeader HttpHeaders headers) {
         return entryService.findEntry(entryPublicId)
             .flatMap(e ->
                 taskService.findTask(entryPublicId, taskName)
-                    .flatMap(t -> packagesService.downloadPackage(e, t, packageName)))
-            .map(filePath -> {
-                ContentDisposition contentDisposition = ContentDisposition.builder("inline")
-                    .filename(packageName + ".zip")
-                    .build();
-                response.addHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString());
-                return new FileSystemResource(filePath);
-            })
+                    .map(t -> packageDownloadHandler.download(e, t, packageName, headers)))
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                 String.format("Unknown package '%s' for entry '%s'", packageName, entryPublicId)));
     }
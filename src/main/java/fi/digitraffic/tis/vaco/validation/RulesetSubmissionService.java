@@ -6,15 +6,18 @@ import fi.digitraffic.tis.aws.s3.S3Path;
 import fi.digitraffic.tis.utilities.Streams;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.aws.S3Artifact;
+import fi.digitraffic.tis.vaco.caching.CachingService;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
 import fi.digitraffic.tis.vaco.messaging.model.DelegationJobMessage;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.packages.PackagesService;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.process.model.TaskTransition;
 import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
 import fi.digitraffic.tis.vaco.queuehandler.model.ConversionInput;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
@@ -23,7 +26,9 @@ import fi.digitraffic.tis.vaco.queuehandler.model.ValidationInput;
 import fi.digitraffic.tis.vaco.rules.RuleConfiguration;
 import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
 import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
+import fi.digitraffic.tis.vaco.rules.model.ImmutableRuleInput;
 import fi.digitraffic.tis.vaco.rules.model.ImmutableValidationRuleJobMessage;
+import fi.digitraffic.tis.vaco.rules.model.RuleInput;
 import fi.digitraffic.tis.vaco.rules.model.ValidationRuleJobMessage;
 import fi.digitraffic.tis.vaco.ruleset.RulesetService;
 import fi.digitraffic.tis.vaco.ruleset.model.Ruleset;
@@ -32,19 +37,31 @@ import fi.digitraffic.tis.vaco.validation.model.ValidationJobMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class RulesetSubmissionService {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * How long to wait before rechecking a task parked for its dependencies in case the wake-up was lost.
+     */
+    private static final Duration PARKED_TASK_FALLBACK_DELAY = Duration.ofMinutes(5);
+
     private final TaskService taskService;
     private final S3Client s3Client;
     private final VacoProperties vacoProperties;
@@ -54,6 +71,8 @@ public class RulesetSubmissionService {
     private final RulesetService rulesetService;
     private final PackagesService packagesService;
     private final QueueHandlerService queueHandlerService;
+    private final ValidationMemoizer validationMemoizer;
+    private final CachingService cachingService;
 
     public RulesetSubmissionService(TaskService taskService,
                                     S3Client s3Client,
@@ -61,7 +80,9 @@ public class RulesetSubmissionService {
                                     MessagingService messagingService,
                                     RulesetService rulesetService,
                                     PackagesService packagesService,
-                                    QueueHandlerService queueHandlerService) {
+                                    QueueHandlerService queueHandlerService,
+                                    ValidationMemoizer validationMemoizer,
+                                    CachingService cachingService) {
         this.taskService = Objects.requireNonNull(taskService);
         this.s3Client = Objects.requireNonNull(s3Client);
         this.vacoProperties = Objects.requireNonNull(vacoProperties);
@@ -69,10 +90,12 @@ public class RulesetSubmissionService {
         this.rulesetService = Objects.requireNonNull(rulesetService);
         this.packagesService = Objects.requireNonNull(packagesService);
         this.queueHandlerService = Objects.requireNonNull(queueHandlerService);
+        this.validationMemoizer = Objects.requireNonNull(validationMemoizer);
+        this.cachingService = Objects.requireNonNull(cachingService);
     }
 
     public void submit(ValidationJobMessage message) throws RuleExecutionException {
-        Entry entry = message.entry();
+        Entry entry = queueHandlerService.getEntry(message.entry());
         RulesetSubmissionConfiguration configuration = message.configuration();
 
         taskService.findTask(configuration.taskPublicId())
@@ -111,17 +134,7 @@ public class RulesetSubmissionService {
                     Task task,
                     Ruleset r) {
 
-        Map<String, RuleConfiguration> userProvidedConfigs = new HashMap<>();
-        List<ValidationInput> validations = entry.validations();
-        if (validations != null) {
-            userProvidedConfigs.putAll(Streams.filter(validations, v -> v.config() != null)
-                .collect(ValidationInput::name, ValidationInput::config));
-        }
-        List<ConversionInput> conversions = entry.conversions();
-        if (conversions != null) {
-            userProvidedConfigs.putAll(Streams.filter(conversions, v -> v.config() != null)
-                .collect(ConversionInput::name, ConversionInput::config));
-        }
+        Map<String, RuleConfiguration> userProvidedConfigs = userProvidedConfigs(entry);
 
         String identifyingName = r.identifyingName();
 
@@ -132,8 +145,8 @@ public class RulesetSubmissionService {
             submit(entry, task, identifyingName, userProvidedConfigs);
         } else {
             if (rulesetService.dependenciesProcessing(entry, r)) {
-                logger.debug("Entry {}, ruleset {} some dependencies still processing, submitting", entry.publicId(), identifyingName);
-                delay(entry);
+                logger.debug("Entry {}, ruleset {} some dependencies still processing, parking until they complete", entry.publicId(), identifyingName);
+                park(entry, task);
             } else {
                 logger.warn("Entry {} ruleset {} has failed dependencies, cancelling the matching task", entry.publicId(), identifyingName);
                 cancel(entry, task, identifyingName, r);
@@ -141,30 +154,53 @@ public class RulesetSubmissionService {
         }
     }
 
+    /**
+     * @return Rule configurations provided with entry's validation and conversion inputs, keyed by rule name.
+     */
+    static Map<String, RuleConfiguration> userProvidedConfigs(Entry entry) {
+        Map<String, RuleConfiguration> userProvidedConfigs = new HashMap<>();
+        List<ValidationInput> validations = entry.validations();
+        if (validations != null) {
+            userProvidedConfigs.putAll(Streams.filter(validations, v -> v.config() != null)
+                .collect(ValidationInput::name, ValidationInput::config));
+        }
+        List<ConversionInput> conversions = entry.conversions();
+        if (conversions != null) {
+            userProvidedConfigs.putAll(Streams.filter(conversions, v -> v.config() != null)
+                .collect(ConversionInput::name, ConversionInput::config));
+        }
+        return userProvidedConfigs;
+    }
+
     private void cancel(Entry entry, Task task, String identifyingName, Ruleset r) {
         // dependencies failed or were cancelled, mark this one as cancelled and complete
         taskService.findTask(entry.publicId(), identifyingName)
-            .map(t -> taskService.trackTask(entry, t, ProcessingState.START))
-            .map(t -> taskService.markStatus(entry, t, Status.CANCELLED))
-            .map(t -> taskService.trackTask(entry, t, ProcessingState.COMPLETE))
+            .map(t -> taskService.transitionTask(entry, t, TaskTransition.cancelled()))
             .orElseThrow();
 
         taskService.cancelAfterDependencies(entry, task, r);
 
         DelegationJobMessage message = ImmutableDelegationJobMessage.builder()
-            .entry(queueHandlerService.getEntry(entry.publicId()))
+            .entry(EntryReference.of(entry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
         messagingService.submitProcessingJob(message).join();
     }
 
     private void submit(Entry entry, Task task, String identifyingName, Map<String, RuleConfiguration> userProvidedConfigs) {
-        // mark the processing of matching task as started
         Optional<Task> ruleTask = taskService.findTask(entry.publicId(), identifyingName);
+        Optional<RuleConfiguration> configuration = Optional.ofNullable(userProvidedConfigs.get(identifyingName));
+
+        // dependencies are done at this point, so content digest of the downloaded input is known
+        if (ruleTask.isPresent() && validationMemoizer.reuseEarlierResults(entry, ruleTask.get(), configuration)) {
+            messagingService.submitProcessingJob(convertoToDelegationJobMessage(entry)).join();
+            return;
+        }
+
+        // mark the processing of matching task as started
         ruleTask.map(t -> taskService.trackTask(entry, t, ProcessingState.START))
             .orElseThrow();
 
-        Optional<RuleConfiguration> configuration = Optional.ofNullable(userProvidedConfigs.get(identifyingName));
         ValidationRuleJobMessage ruleMessage = convertToValidationRuleJobMessage(
             entry,
             task,
@@ -173,16 +209,35 @@ public class RulesetSubmissionService {
         messagingService.submitRuleExecutionJob(identifyingName, ruleMessage).join();
     }
 
-    private void delay(Entry entry) {
+    /**
+     * Leave the task waiting for its dependencies. Completion of each rule resubmits the entry to delegation via
+     * {@link fi.digitraffic.tis.vaco.rules.RuleResultsListener}, which wakes up the parked task once its dependencies
+     * are done. Delayed fallback message only guards against a lost wake-up and is not part of the normal flow, so at
+     * most one fallback per entry is kept pending regardless of how many times its tasks are parked.
+     * <p>
+     * The task was claimed for execution by delegation, so it is released back to make it claimable again.
+     */
+    @VisibleForTesting
+    void park(Entry entry, Task task) {
+        taskService.releaseTask(entry, task);
+        if (!cachingService.reserveDelegationFallback(entry.publicId(), Instant.now().plus(PARKED_TASK_FALLBACK_DELAY))) {
+            logger.debug("Entry {} already has a pending delegation fallback, not scheduling another", entry.publicId());
+            return;
+        }
         DelegationJobMessage delegationJobMessage = convertoToDelegationJobMessage(
             entry
         );
-        messagingService.submitProcessingJob(delegationJobMessage).join();
+        try {
+            messagingService.submitProcessingJob(delegationJobMessage, PARKED_TASK_FALLBACK_DELAY).join();
+        } catch (RuntimeException e) {
+            cachingService.releaseDelegationFallback(entry.publicId());
+            throw e;
+        }
     }
 
     private DelegationJobMessage convertoToDelegationJobMessage(Entry entry) {
         return ImmutableDelegationJobMessage.builder()
-            .entry(entry)
+            .entry(EntryReference.of(entry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
     }
@@ -196,7 +251,12 @@ public class RulesetSubmissionService {
         S3Path ruleS3Input = ruleBasePath.resolve("input");
         S3Path ruleS3Output = ruleBasePath.resolve("output");
 
-        copyAllResultsFromCompletedTasks(ruleS3Input, entry, task);
+        List<ManifestItem> manifest = resultsOfCompletedTasks(entry, task);
+        if (vacoProperties.ruleInputs().manifestOnlyRules().contains(identifyingName)) {
+            logger.debug("Entry {} rule {} reads its inputs from manifest, skipping copying of {} inputs", entry.publicId(), identifyingName, manifest.size());
+        } else {
+            copyToInputs(ruleS3Input, manifest);
+        }
 
         return ImmutableValidationRuleJobMessage.builder()
             .entry(ImmutableEntry.copyOf(entry).withTasks())
@@ -204,46 +264,86 @@ public class RulesetSubmissionService {
             .source(task.name())
             .inputs(ruleS3Input.asUri(vacoProperties.s3ProcessingBucket()))
             .outputs(ruleS3Output.asUri(vacoProperties.s3ProcessingBucket()))
+            .manifest(Streams.collect(manifest, ManifestItem::input))
             .configuration(configuration.orElse(null))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
     }
 
     /**
-     * Expose the results of previously completed tasks as inputs to the current task.
+     * List the results of previously completed tasks as inputs of the current task. Metadata of all results is read in
+     * parallel.
      * <p>
-     * Transitively this copies downloaded input files and other static content for the task.
-     * <p>
-     * The copying logic has two branches due to legacy reasons, one which puts all outputs as is to root of provided
-     * directory and another which categorizes the outputs of previous tasks by name. The latter is the one which should
-     * be used in longterm.
+     * Transitively this includes downloaded input files and other static content for the task.
      *
-     * @param targetDirectory Target directory to copy files to
      * @param entry Entry
+     * @param current Task the inputs are for
+     * @return Inputs in task priority order.
      * @see DownloadRule
      * @see fi.digitraffic.tis.vaco.rules.internal.StopsAndQuaysRule
      */
-    private void copyAllResultsFromCompletedTasks(S3Path targetDirectory, Entry entry, Task current) {
-        List<Task> completedTasks = taskService.findTasks(entry).stream()
+    private List<ManifestItem> resultsOfCompletedTasks(Entry entry, Task current) {
+        String sourceBucket = vacoProperties.s3PackagesBucket();
+        List<CompletableFuture<ManifestItem>> items = taskService.findTasks(entry).stream()
             .filter(task -> task.priority() < current.priority() && task.completed() != null)
+            .flatMap(task -> packagesService.findPackage(task, "result")
+                .map(downloadResult -> S3Path.of(URI.create(downloadResult.path()).getPath()))
+                .map(s3Path -> s3Client.describeObject(sourceBucket, s3Path)
+                    .thenApply(head -> new ManifestItem(task.name(), s3Path, ImmutableRuleInput.builder()
+                        .task(task.name())
+                        .uri(s3Path.asUri(sourceBucket))
+                        .versionId(head.versionId())
+                        .eTag(head.eTag())
+                        .checksumSha256(checksumSha256(sourceBucket, s3Path, head))
+                        .size(head.contentLength())
+                        .build())))
+                .stream())
             .toList();
-        completedTasks.forEach(task -> lookupDownloadedFile(entry, task.name())
-            .ifPresent(s3Path -> {
-                String sourceBucket = vacoProperties.s3PackagesBucket();
-                String destinationBucket = vacoProperties.s3ProcessingBucket();
-
-                // legacy logic: copy all results as is
-                S3Path targetPath = targetDirectory.resolve(s3Path.path().getLast());
-                s3Client.copyFile(sourceBucket, s3Path, destinationBucket, targetPath).join();
-                // new logic: categorize outputs by task name (could be publicId?)
-                S3Path targetTaskPath = targetDirectory.resolve(task.name()).resolve(s3Path.path().getLast());
-                s3Client.copyFile(sourceBucket, s3Path, destinationBucket, targetTaskPath).join();
-            }));
+        return Streams.collect(items, CompletableFuture::join);
     }
 
-    private Optional<S3Path> lookupDownloadedFile(Entry entry, String taskName) {
-        return taskService.findTask(entry.publicId(), taskName)
-            .flatMap(task -> packagesService.findPackage(task, "result"))
-            .map(downloadResult -> S3Path.of(URI.create(downloadResult.path()).getPath()));
+    /**
+     * Objects uploaded without S3 checksum, such as downloaded input files, have their digest in
+     * {@link DownloadRule#CONTENT_DIGEST_TAG} tag instead, hex encoded.
+     *
+     * @return Base64 encoded SHA-256 checksum of the object, <code>null</code> if not known.
+     */
+    private String checksumSha256(String bucket, S3Path path, HeadObjectResponse head) {
+        if (head.checksumSHA256() != null) {
+            return head.checksumSHA256();
+        }
+        return Optional.ofNullable(s3Client.objectTags(bucket, path).get(DownloadRule.CONTENT_DIGEST_TAG))
+            .map(digest -> Base64.getEncoder().encodeToString(HexFormat.of().parseHex(digest)))
+            .orElse(null);
+    }
+
+    /**
+     * Copy given inputs into the input directory of a rule, all in parallel.
+     * <p>
+     * The copying logic has two branches due to legacy reasons, one which puts all outputs as is to root of provided
+     * directory and another which categorizes the outputs of previous tasks by name. The latter is the one which should
+     * be used in longterm.
+     *
+     * @param targetDirectory Target directory to copy files to
+     * @param manifest Inputs to copy
+     */
+    private void copyToInputs(S3Path targetDirectory, List<ManifestItem> manifest) {
+        String sourceBucket = vacoProperties.s3PackagesBucket();
+        String destinationBucket = vacoProperties.s3ProcessingBucket();
+        List<CompletableFuture<?>> copies = new ArrayList<>();
+        manifest.forEach(item -> {
+            String fileName = item.path().path().getLast();
+            // legacy logic: copy all results as is
+            copies.add(s3Client.copyFile(sourceBucket, item.path(), destinationBucket, targetDirectory.resolve(fileName)));
+            // new logic: categorize outputs by task name (could be publicId?)
+            copies.add(s3Client.copyFile(sourceBucket, item.path(), destinationBucket, targetDirectory.resolve(item.taskName()).resolve(fileName)));
+        });
+        CompletableFuture.allOf(copies.toArray(new CompletableFuture[0])).join();
     }
+
+    /**
+     * @param path Key of the input object in packages bucket.
+     * @param input The same object as described to the rule.
+     */
+    private record ManifestItem(String taskName, S3Path path, RuleInput input) {}
 }
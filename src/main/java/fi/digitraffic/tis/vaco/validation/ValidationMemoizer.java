@@ -0,0 +1,141 @@
+package fi.digitraffic.tis.vaco.validation;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.utilities.model.ProcessingState;
+import fi.digitraffic.tis.vaco.configuration.ValidationMemoization;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
+import fi.digitraffic.tis.vaco.db.repositories.SummaryRepository;
+import fi.digitraffic.tis.vaco.entries.EntryService;
+import fi.digitraffic.tis.vaco.findings.FindingService;
+import fi.digitraffic.tis.vaco.findings.model.FindingSeverity;
+import fi.digitraffic.tis.vaco.findings.model.ImmutableFinding;
+import fi.digitraffic.tis.vaco.packages.PackagesService;
+import fi.digitraffic.tis.vaco.packages.model.Package;
+import fi.digitraffic.tis.vaco.process.TaskService;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.rules.RuleConfiguration;
+import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Reuses results of an earlier run of the same rule when it would produce the same results again.
+ * <p>
+ * Results are considered reusable when an earlier entry in the same context has completed the same rule with the same
+ * {@link RuleConfiguration} for input data with identical content digest, as recorded by {@link DownloadRule}. On a
+ * match the findings, summaries and packages of the earlier task are copied to the current task, which is then
+ * completed with the earlier task's status without invoking the rule at all.
+ * <p>
+ * Copied results are marked with a {@link #MEMOIZED} finding. Marked tasks are never used as a source themselves, so
+ * results are always traced back to an actual rule run and {@link ValidationMemoization#maxAge()} bounds how long a
+ * single run may be reused.
+ */
+@Service
+public class ValidationMemoizer {
+
+    public static final String MEMOIZED = "MEMOIZED";
+
+    /**
+     * How many earlier entries to inspect at most. Configurations rarely change, so the match is nearly always found
+     * among the first few.
+     */
+    private static final int MAX_CANDIDATES = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final VacoProperties vacoProperties;
+    private final EntryRepository entryRepository;
+    private final SummaryRepository summaryRepository;
+    private final EntryService entryService;
+    private final TaskService taskService;
+    private final FindingService findingService;
+    private final PackagesService packagesService;
+    private final S3Client s3Client;
+
+    public ValidationMemoizer(VacoProperties vacoProperties,
+                              EntryRepository entryRepository,
+                              SummaryRepository summaryRepository,
+                              EntryService entryService,
+                              TaskService taskService,
+                              FindingService findingService,
+                              PackagesService packagesService,
+                              S3Client s3Client) {
+        this.vacoProperties = Objects.requireNonNull(vacoProperties);
+        this.entryRepository = Objects.requireNonNull(entryRepository);
+        this.summaryRepository = Objects.requireNonNull(summaryRepository);
+        this.entryService = Objects.requireNonNull(entryService);
+        this.taskService = Objects.requireNonNull(taskService);
+        this.findingService = Objects.requireNonNull(findingService);
+        this.packagesService = Objects.requireNonNull(packagesService);
+        this.s3Client = Objects.requireNonNull(s3Client);
+    }
+
+    /**
+     * Complete given task with results of an earlier run, if there is one with identical inputs.
+     *
+     * @param entry Entry being processed.
+     * @param task Task about to be submitted for execution.
+     * @param configuration User provided configuration the rule would be run with.
+     * @return <code>true</code> if earlier results were reused and the task is complete, <code>false</code> if the
+     * rule should be run normally.
+     */
+    public boolean reuseEarlierResults(Entry entry, Task task, Optional<RuleConfiguration> configuration) {
+        ValidationMemoization memoization = vacoProperties.validationMemoization();
+        if (memoization == null || !memoization.enabled() || entry.context() == null) {
+            return false;
+        }
+        Optional<String> digest = contentDigest(entry);
+        if (digest.isEmpty()) {
+            return false;
+        }
+
+        List<String> candidates = entryRepository.findMemoizationCandidates(entry, task.name(), MEMOIZED, memoization.maxAge(), MAX_CANDIDATES);
+        for (String candidate : candidates) {
+            Optional<Entry> source = entryService.findEntry(candidate)
+                .filter(e -> configuration.equals(Optional.ofNullable(RulesetSubmissionService.userProvidedConfigs(e).get(task.name()))))
+                .filter(e -> digest.equals(contentDigest(e)));
+            Optional<Task> sourceTask = source.flatMap(e -> taskService.findTask(e.publicId(), task.name()));
+            if (sourceTask.isPresent()) {
+                copyResults(source.get(), sourceTask.get(), entry, task);
+                return true;
+            }
+        }
+        logger.debug("No reusable results for entry {} task {} among {} candidates", entry.publicId(), task.name(), candidates.size());
+        return false;
+    }
+
+    private void copyResults(Entry source, Task sourceTask, Entry entry, Task task) {
+        Task tracked = taskService.trackTask(entry, task, ProcessingState.START);
+        int findings = findingService.copyFindings(sourceTask, tracked);
+        int summaries = summaryRepository.copySummaries(sourceTask.id(), tracked.id());
+        List<Package> packages = packagesService.copyPackages(source, sourceTask, entry, tracked);
+        findingService.reportFinding(ImmutableFinding.builder()
+            .publicId(entry.publicId())
+            .taskId(tracked.id())
+            .source(tracked.name())
+            .message(MEMOIZED)
+            .severity(FindingSeverity.INFO)
+            .build());
+        taskService.completeTask(entry, tracked, sourceTask.status());
+        logger.info("Entry {} task {} reused results of entry {}: {} findings, {} summaries, {} packages",
+            entry.publicId(), tracked.name(), source.publicId(), findings, summaries, packages.size());
+    }
+
+    /**
+     * @return Content digest of entry's downloaded input data, if known.
+     */
+    private Optional<String> contentDigest(Entry entry) {
+        return taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)
+            .flatMap(task -> packagesService.findPackage(task, "result"))
+            .flatMap(p -> Optional.ofNullable(s3Client.objectTags(vacoProperties.s3PackagesBucket(), S3Path.of(p.path()))
+                .get(DownloadRule.CONTENT_DIGEST_TAG)));
+    }
+}
@@ -1,13 +1,10 @@
 package fi.digitraffic.tis.vaco.validation;
 
-import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
 import fi.digitraffic.tis.vaco.messaging.SqsListenerBase;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
-import fi.digitraffic.tis.vaco.messaging.model.QueueNames;
 import fi.digitraffic.tis.vaco.validation.model.ImmutableValidationJobMessage;
-import io.awspring.cloud.sqs.annotation.SqsListener;
 import io.awspring.cloud.sqs.listener.acknowledgement.Acknowledgement;
 import org.springframework.stereotype.Component;
 
@@ -16,18 +13,14 @@ public class ValidationQueueSqsListener extends SqsListenerBase<ImmutableValidat
 
     private final MessagingService messagingService;
     private final RulesetSubmissionService rulesetSubmissionService;
-    private final EntryService entryService;
 
     public ValidationQueueSqsListener(MessagingService messagingService,
-                                      RulesetSubmissionService rulesetSubmissionService,
-                                      EntryService entryService) {
+                                      RulesetSubmissionService rulesetSubmissionService) {
         super((message, stats) -> messagingService.submitValidationJob(message.withRetryStatistics(stats)));
         this.messagingService = messagingService;
         this.rulesetSubmissionService = rulesetSubmissionService;
-        this.entryService = entryService;
     }
 
-    @SqsListener(QueueNames.VACO_JOBS_VALIDATION)
     public void listen(ImmutableValidationJobMessage message, Acknowledgement acknowledgement) {
         handle(message, message.entry().publicId(), acknowledgement, ignored -> {});
     }
@@ -39,8 +32,7 @@ public class ValidationQueueSqsListener extends SqsListenerBase<ImmutableValidat
         logger.debug("Submission complete for {}, resubmitting to delegation", message.entry().publicId());
 
         ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-            // refresh entry to avoid repeating same message over and over and over...and over again
-            .entry(entryService.reload(message.entry()))
+            .entry(message.entry())
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
         messagingService.submitProcessingJob(job);
@@ -23,6 +23,7 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
 import software.amazon.awssdk.services.s3.model.CreateBucketResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
@@ -45,6 +46,7 @@ public abstract class AwsIntegrationTestBase {
     protected static S3Client awsS3Client;
     protected static S3AsyncClient s3AsyncClient;
     protected static S3TransferManager s3TransferManager;
+    protected static S3Presigner s3Presigner;
     protected static SqsClient sqsClient;
     protected static SesClient sesClient;
     protected static KmsClient kmsClient;
@@ -104,6 +106,8 @@ public abstract class AwsIntegrationTestBase {
 
         s3TransferManager = awsConfiguration.s3TransferManager(s3AsyncClient);
 
+        s3Presigner = awsConfiguration.s3Presigner(vacoProperties, credentialsProvider);
+
         sqsClient = awsConfiguration.amazonSQSClient(
             vacoProperties,
             credentialsProvider,
@@ -15,6 +15,8 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -46,7 +48,7 @@ class S3ClientTests extends AwsIntegrationTestBase {
 
     @BeforeEach
     void setUp() {
-        s3Client = new S3Client(vacoProperties, s3TransferManager, awsS3Client);
+        s3Client = new S3Client(vacoProperties, s3TransferManager, awsS3Client, s3Presigner, Runnable::run);
     }
 
     @Test
@@ -63,6 +65,46 @@ class S3ClientTests extends AwsIntegrationTestBase {
         assertThat(Files.readString(outputContent), equalTo(content));
     }
 
+    @Test
+    void streamingUploadSpanningMultipleParts() throws IOException {
+        byte[] content = new byte[S3UploadStream.PART_SIZE * 2 + 1234];
+        new Random(42).nextBytes(content);
+        Path outputContent = outputs.resolve("multipart.bin");
+
+        S3Path path = ImmutableS3Path.of("multipart.bin");
+        try (S3UploadStream upload = s3Client.openUpload(vacoProperties.s3ProcessingBucket(), path)) {
+            upload.write(content);
+            upload.complete();
+        }
+        s3Client.downloadFile(vacoProperties.s3ProcessingBucket(), path, outputContent);
+
+        assertArrayEquals(content, Files.readAllBytes(outputContent));
+    }
+
+    @Test
+    void streamingUploadIsDiscardedUnlessCompleted() throws IOException {
+        S3Path path = ImmutableS3Path.of("discarded.bin");
+        try (S3UploadStream upload = s3Client.openUpload(vacoProperties.s3ProcessingBucket(), path)) {
+            upload.write(new byte[S3UploadStream.PART_SIZE + 1]);
+        }
+
+        assertThat(s3Client.keyExists(vacoProperties.s3ProcessingBucket(), path.toString()), equalTo(false));
+    }
+
+    @Test
+    void objectTagsAreCopiedAlongWithObject() throws IOException {
+        Path inputContent = writeContent(inputs.resolve("tagged.txt"), "tagged");
+        S3Path path = ImmutableS3Path.of("tagged.txt");
+        S3Path copy = ImmutableS3Path.of("copy-of-tagged.txt");
+
+        s3Client.uploadFile(vacoProperties.s3ProcessingBucket(), path, inputContent).join();
+        s3Client.tagObject(vacoProperties.s3ProcessingBucket(), path, Map.of("sha256", "abc123"));
+        s3Client.copyFile(vacoProperties.s3ProcessingBucket(), path, vacoProperties.s3ProcessingBucket(), copy).join();
+
+        assertThat(s3Client.objectTags(vacoProperties.s3ProcessingBucket(), copy), equalTo(Map.of("sha256", "abc123")));
+        assertThat(s3Client.objectTags(vacoProperties.s3ProcessingBucket(), ImmutableS3Path.of("nonexistent.txt")), equalTo(Map.of()));
+    }
+
     @Test
     void canRoundtripEntireDirectory() throws IOException {
         Path inputManyFiles = Files.createDirectories(inputs.resolve("manyFiles"));
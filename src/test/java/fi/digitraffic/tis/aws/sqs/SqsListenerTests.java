@@ -0,0 +1,108 @@
+package fi.digitraffic.tis.aws.sqs;
+
+import fi.digitraffic.tis.vaco.configuration.SqsConsumer;
+import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.sqs.model.Message;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class SqsListenerTests {
+
+    private static final String QUEUE = "test-queue";
+
+    private SqsListener listener;
+    private SqsConsumer consumer;
+
+    @Mock
+    private MessagingService messagingService;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new SqsConsumer(false, 1, Duration.ofSeconds(1), Duration.ofMillis(100));
+        listener = new SqsListener(messagingService, JsonMapper.builder().build(), consumer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(messagingService);
+    }
+
+    @Test
+    void failedMessagesAreLeftForRedelivery() {
+        Message succeeded = aMessage("1", "succeed");
+        Message failed = aMessage("2", "fail");
+        Message thrown = aMessage("3", "throw");
+        givenMessages(succeeded, failed, thrown);
+
+        listener.<String, String>listen(QUEUE, Function.identity(), body -> switch (body) {
+            case "succeed" -> CompletableFuture.completedFuture(body);
+            case "fail" -> CompletableFuture.failedFuture(new IllegalStateException("simulated failure"));
+            default -> throw new IllegalStateException("simulated synchronous failure");
+        });
+
+        verify(messagingService).deleteMessages(QUEUE, List.of(succeeded));
+    }
+
+    @Test
+    void unreadableMessagesAreAcknowledged() {
+        Message unreadable = aMessage("1", "{not json");
+        Message readable = aMessage("2", "{\"hello\":\"world\"}");
+        givenMessages(unreadable, readable);
+        List<JsonNode> processed = new ArrayList<>();
+
+        listener.listenTree(QUEUE, tree -> {
+            processed.add(tree);
+            return CompletableFuture.completedFuture(tree);
+        });
+
+        assertThat(processed.size(), equalTo(1));
+        assertThat(processed.getFirst().get("hello").asString(), equalTo("world"));
+        verify(messagingService).deleteMessages(QUEUE, List.of(unreadable, readable));
+    }
+
+    @Test
+    void visibilityOfLongRunningMessagesIsExtended() {
+        Message quick = aMessage("1", "quick");
+        Message slow = aMessage("2", "slow");
+        givenMessages(quick, slow);
+        CompletableFuture<String> slowResult = new CompletableFuture<>();
+        // slow message completes only once its visibility has been extended
+        willAnswer(a -> slowResult.complete("slow"))
+            .given(messagingService).changeMessageVisibility(QUEUE, List.of(slow), consumer.visibilityTimeout());
+
+        listener.<String, String>listen(QUEUE, Function.identity(), body -> body.equals("slow")
+            ? slowResult
+            : CompletableFuture.completedFuture(body));
+
+        verify(messagingService).changeMessageVisibility(QUEUE, List.of(slow), consumer.visibilityTimeout());
+        verify(messagingService).deleteMessages(QUEUE, List.of(quick, slow));
+    }
+
+    private void givenMessages(Message... messages) {
+        given(messagingService.receiveMessages(QUEUE, 10, consumer.waitTime())).willReturn(List.of(messages));
+    }
+
+    private static Message aMessage(String messageId, String body) {
+        return Message.builder().messageId(messageId).body(body).build();
+    }
+}
@@ -0,0 +1,90 @@
+package fi.digitraffic.tis.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Manual benchmark comparing sequential {@link ZipOutputStream} with {@link ParallelZipWriter} on GTFS-like content.
+ * Not run as part of the test suite, run with <code>main</code> from IDE or
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=fi.digitraffic.tis.utilities.ArchiverBenchmark</code>
+ */
+public class ArchiverBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Path source = Files.createTempDirectory("archiver-benchmark");
+        try (ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())) {
+            generate(source, args.length > 0 ? Integer.parseInt(args[0]) : 64);
+            Path target = source.resolveSibling(source.getFileName() + ".zip");
+
+            measure("ZipOutputStream, default level", target, () -> sequential(source, target));
+            for (int level : List.of(Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION)) {
+                for (int parallelism : List.of(1, 4, Runtime.getRuntime().availableProcessors())) {
+                    measure("ParallelZipWriter, level " + level + ", parallelism " + parallelism, target,
+                        () -> Archiver.createZip(source, target, executor, level, parallelism));
+                }
+            }
+            Files.deleteIfExists(target);
+        } finally {
+            try (Stream<Path> files = Files.walk(source)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Text files of varying compressibility, roughly like the ones in GTFS and NeTEx packages.
+     */
+    private static void generate(Path source, int files) throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < files; i++) {
+            Path file = source.resolve("feed-" + (i % 4)).resolve("file-" + i + ".txt");
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                int rows = 10_000 + random.nextInt(100_000);
+                for (int row = 0; row < rows; row++) {
+                    out.write(("%d,stop %d,%.6f,%.6f,%d%n".formatted(row, random.nextInt(5000), 60 + random.nextDouble(), 24 + random.nextDouble(), random.nextInt(3))).getBytes());
+                }
+            }
+        }
+    }
+
+    private static void measure(String name, Path target, Task task) throws IOException {
+        task.run(); // warmup
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-55s %8d ms %12d bytes%n", name, best / 1_000_000, Files.size(target));
+    }
+
+    private static void sequential(Path source, Path target) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target)));
+             Stream<Path> files = Files.walk(source)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                zip.putNextEntry(new ZipEntry(source.relativize(file).toString()));
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,197 @@
+package fi.digitraffic.tis.utilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelZipWriterTests {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writesEntriesInOrderTheyWereAdded() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            entries.put("dir/file-" + i + ".txt", ("content of file " + i + " ").repeat(i * 10).getBytes(StandardCharsets.UTF_8));
+        }
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, executor, Deflater.BEST_SPEED, 4, 1024 * 1024)) {
+            zip.addEntry("dir/", null, new ByteArrayInputStream(new byte[0]), ParallelZipWriter.STORE);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.addEntry(entry.getKey(), null, new ByteArrayInputStream(entry.getValue()));
+            }
+        }
+
+        Map<String, byte[]> read = readAll(archive.toByteArray());
+        assertThat(new ArrayList<>(read.keySet()), equalTo(concat("dir/", entries.keySet())));
+        entries.forEach((name, content) -> assertThat(read.get(name), equalTo(content)));
+    }
+
+    @Test
+    void storesIncompressibleContent() throws IOException {
+        byte[] random = new byte[64 * 1024];
+        new Random(42).nextBytes(random);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, executor, Deflater.BEST_COMPRESSION, 2, 1024 * 1024)) {
+            zip.addEntry("random.bin", null, new ByteArrayInputStream(random));
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertThat(entry.getMethod(), equalTo(ZipEntry.STORED));
+            assertThat(zis.readAllBytes(), equalTo(random));
+        }
+    }
+
+    @Test
+    void streamsEntriesLargerThanBuffer() throws IOException {
+        byte[] large = "streamed past the buffer ".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, executor, Deflater.DEFAULT_COMPRESSION, 2, 1024)) {
+            zip.addEntry("small.txt", null, new ByteArrayInputStream("small".getBytes(StandardCharsets.UTF_8)));
+            zip.addEntry("large.txt", null, new ByteArrayInputStream(large));
+            zip.addEntry("after.txt", null, new ByteArrayInputStream("after".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        Map<String, byte[]> read = readAll(archive.toByteArray());
+        assertThat(new ArrayList<>(read.keySet()), equalTo(List.of("small.txt", "large.txt", "after.txt")));
+        assertThat(read.get("large.txt"), equalTo(large));
+        assertThat(archive.size(), lessThan(large.length));
+    }
+
+    @Test
+    void centralDirectoryDescribesBufferedAndStreamedEntries() throws IOException {
+        byte[] small = "buffered ".repeat(100).getBytes(StandardCharsets.UTF_8);
+        byte[] large = "streamed past the buffer ".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        byte[] random = new byte[512];
+        new Random(42).nextBytes(random);
+
+        Path archive = Files.createTempFile(getClass().getSimpleName(), ".zip");
+        try (ParallelZipWriter zip = new ParallelZipWriter(new BufferedOutputStream(Files.newOutputStream(archive)), executor, Deflater.DEFAULT_COMPRESSION, 2, 1024)) {
+            zip.addEntry("small.txt", null, new ByteArrayInputStream(small));
+            zip.addEntry("random.bin", null, new ByteArrayInputStream(random));
+            zip.addEntry("large.txt", null, new ByteArrayInputStream(large));
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            assertThat(Streams.collect(Collections.list(zipFile.entries()), ZipEntry::getName), equalTo(List.of("small.txt", "random.bin", "large.txt")));
+            assertEntry(zipFile, "small.txt", small, ZipEntry.DEFLATED);
+            assertEntry(zipFile, "random.bin", random, ZipEntry.STORED);
+            assertEntry(zipFile, "large.txt", large, ZipEntry.DEFLATED);
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    @Test
+    void usesZip64WhenEntryCountExceedsLimit() throws IOException {
+        int count = 0xFFFF + 10;
+
+        Path archive = Files.createTempFile(getClass().getSimpleName(), ".zip");
+        try (ParallelZipWriter zip = new ParallelZipWriter(new BufferedOutputStream(Files.newOutputStream(archive)), executor, Deflater.BEST_SPEED, 4, 1024)) {
+            for (int i = 0; i < count; i++) {
+                zip.addEntry("file-" + i + ".txt", null, new ByteArrayInputStream(String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+            }
+            zip.addEntry("large.txt", null, new ByteArrayInputStream("streamed ".repeat(1000).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            assertThat(zipFile.size(), equalTo(count + 1));
+            assertEntry(zipFile, "file-" + (count - 1) + ".txt", String.valueOf(count - 1).getBytes(StandardCharsets.UTF_8), ZipEntry.STORED);
+            assertEntry(zipFile, "large.txt", "streamed ".repeat(1000).getBytes(StandardCharsets.UTF_8), ZipEntry.DEFLATED);
+        }
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(archive))) {
+            int read = 0;
+            while (zis.getNextEntry() != null) {
+                read++;
+            }
+            assertThat(read, equalTo(count + 1));
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    @Test
+    void rejectsDuplicateEntries() throws IOException {
+        try (ParallelZipWriter zip = new ParallelZipWriter(new ByteArrayOutputStream(), executor, Deflater.DEFAULT_COMPRESSION, 2, 1024)) {
+            zip.addEntry("feed.json", null, new ByteArrayInputStream(new byte[0]));
+            assertThrows(ZipException.class, () -> zip.addEntry("feed.json", null, new ByteArrayInputStream(new byte[0])));
+        }
+    }
+
+    @Test
+    void storesAlreadyCompressedFilesByName() {
+        assertThat(ParallelZipWriter.levelFor("gtfs/feed.ZIP", 9), equalTo(ParallelZipWriter.STORE));
+        assertThat(ParallelZipWriter.levelFor("gtfs/stops.txt", 9), equalTo(9));
+    }
+
+    private static List<String> concat(String first, Iterable<String> rest) {
+        List<String> all = new ArrayList<>(List.of(first));
+        rest.forEach(all::add);
+        return all;
+    }
+
+    private static void assertEntry(ZipFile zipFile, String name, byte[] content, int method) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertThat(entry.getMethod(), equalTo(method));
+        assertThat(entry.getSize(), equalTo((long) content.length));
+        assertThat(entry.getCrc(), equalTo(crc.getValue()));
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            assertThat(in.readAllBytes(), equalTo(content));
+        }
+    }
+
+    private static Map<String, byte[]> readAll(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), zis.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
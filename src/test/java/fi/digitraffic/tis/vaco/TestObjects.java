@@ -10,13 +10,28 @@ import fi.digitraffic.tis.vaco.company.dto.ImmutablePartnershipRequest;
 import fi.digitraffic.tis.vaco.company.model.ImmutableCompany;
 import fi.digitraffic.tis.vaco.company.model.ImmutablePartnership;
 import fi.digitraffic.tis.vaco.company.model.PartnershipType;
+import fi.digitraffic.tis.vaco.configuration.ArchiveVerification;
 import fi.digitraffic.tis.vaco.configuration.Aws;
 import fi.digitraffic.tis.vaco.configuration.AzureAd;
 import fi.digitraffic.tis.vaco.configuration.Cleanup;
+import fi.digitraffic.tis.vaco.configuration.Concurrency;
+import fi.digitraffic.tis.vaco.configuration.DownloadResumption;
 import fi.digitraffic.tis.vaco.configuration.Email;
 import fi.digitraffic.tis.vaco.configuration.EncryptionKeys;
+import fi.digitraffic.tis.vaco.configuration.FeedPolling;
+import fi.digitraffic.tis.vaco.configuration.GbfsSnapshots;
+import fi.digitraffic.tis.vaco.configuration.HostLimits;
+import fi.digitraffic.tis.vaco.configuration.HttpCaching;
+import fi.digitraffic.tis.vaco.configuration.InProcessQueues;
 import fi.digitraffic.tis.vaco.configuration.MsGraph;
+import fi.digitraffic.tis.vaco.configuration.PackageDownloads;
+import fi.digitraffic.tis.vaco.configuration.Packaging;
+import fi.digitraffic.tis.vaco.configuration.RuleInputs;
+import fi.digitraffic.tis.vaco.configuration.SqsConsumer;
+import fi.digitraffic.tis.vaco.configuration.SqsPublisher;
 import fi.digitraffic.tis.vaco.configuration.S3;
+import fi.digitraffic.tis.vaco.configuration.TaskClaims;
+import fi.digitraffic.tis.vaco.configuration.ValidationMemoization;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.credentials.model.CredentialsType;
 import fi.digitraffic.tis.vaco.credentials.model.ImmutableCredentials;
@@ -33,6 +48,7 @@ import fi.digitraffic.tis.vaco.ruleset.model.TransitDataFormat;
 import fi.digitraffic.tis.vaco.ui.model.ImmutableContext;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -40,6 +56,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 
 public class TestObjects {
@@ -179,7 +196,22 @@ public class TestObjects {
             email != null ? email : new Email("king@commonwealth", null),
             cleanup != null ? cleanup : new Cleanup(Duration.parse("-P-365D"), Duration.parse("P90D"), 10, 100),
             msGraph != null ? msGraph : new MsGraph("tenantId", "clientId", "clientSecret", "schemaExtension"),
-            encryptionKeys != null ? encryptionKeys : new EncryptionKeys("credentials", "C7AS{&MrNsFUzEXbpBJ4j@DLu2(vP=$3")
+            encryptionKeys != null ? encryptionKeys : new EncryptionKeys("credentials", "C7AS{&MrNsFUzEXbpBJ4j@DLu2(vP=$3"),
+            new Concurrency(false, 2, 2, 4, 2, 2, 2, 2, 10),
+            new SqsConsumer(false, 1, Duration.ofSeconds(1), Duration.ofSeconds(30)),
+            new SqsPublisher(Duration.ofMillis(10)),
+            new InProcessQueues(false, 1000, 3, Duration.ofSeconds(1)),
+            new ArchiveVerification(DataSize.ofGigabytes(1), 100, 1000),
+            new ValidationMemoization(true, Duration.ofDays(7)),
+            new FeedPolling(Duration.ofHours(1), Map.of()),
+            new HttpCaching(true, Duration.ofDays(30)),
+            new DownloadResumption(2, Duration.ofMillis(10)),
+            new HostLimits(2, 100, 100, Duration.ofSeconds(1)),
+            new GbfsSnapshots(2, Duration.ofSeconds(5), 1),
+            new Packaging(2, DataSize.ofMegabytes(1), 1, Duration.ofDays(1)),
+            new PackageDownloads(false, Duration.ofMinutes(1)),
+            new RuleInputs(Set.of()),
+            new TaskClaims(Duration.ofHours(1))
         );
 
     }
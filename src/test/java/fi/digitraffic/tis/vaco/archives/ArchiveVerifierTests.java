@@ -0,0 +1,116 @@
+package fi.digitraffic.tis.vaco.archives;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.archives.model.ArchiveReport;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+class ArchiveVerifierTests {
+
+    @TempDir
+    Path testDirectory;
+
+    private VacoExecutors vacoExecutors;
+    private ArchiveVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        VacoProperties vacoProperties = TestObjects.vacoProperties();
+        vacoExecutors = new VacoExecutors(vacoProperties);
+        verifier = new ArchiveVerifier(vacoProperties, vacoExecutors);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vacoExecutors.close();
+    }
+
+    @Test
+    void acceptsValidArchive() throws IOException {
+        Path archive = zip("valid.zip", Map.of(
+            "stops.txt", "stop_id,stop_name\n1,Kamppi\n",
+            "routes.txt", "route_id,route_short_name\n1,550\n",
+            "trips.txt", "route_id,service_id,trip_id\n1,1,1\n"));
+
+        ArchiveReport report = verifier.verify(archive);
+
+        assertThat(report.valid(), equalTo(true));
+        assertThat(report.entries().size(), equalTo(3));
+    }
+
+    @Test
+    void rejectsCorruptedEntryContent() throws IOException {
+        Path archive = zip("corrupted.zip", Map.of("stops.txt", "stop_id,stop_name\n".repeat(1000)));
+        byte[] bytes = Files.readAllBytes(archive);
+        // local file header is 30 bytes followed by file name, so this lands inside compressed content
+        int contentStart = 30 + "stops.txt".length();
+        for (int i = contentStart + 10; i < contentStart + 20; i++) {
+            bytes[i] = (byte) ~bytes[i];
+        }
+        Files.write(archive, bytes);
+
+        ArchiveReport report = verifier.verify(archive);
+
+        assertThat(report.valid(), equalTo(false));
+    }
+
+    @Test
+    void rejectsTruncatedArchive() throws IOException {
+        Path archive = zip("truncated.zip", Map.of("stops.txt", "stop_id,stop_name\n1,Kamppi\n"));
+        byte[] bytes = Files.readAllBytes(archive);
+        Files.write(archive, Arrays.copyOf(bytes, bytes.length / 2));
+
+        ArchiveReport report = verifier.verify(archive);
+
+        assertThat(report.valid(), equalTo(false));
+    }
+
+    @Test
+    void rejectsEntriesExceedingCompressionRatio() throws IOException {
+        Path archive = testDirectory.resolve("bomb.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("zeros.txt"));
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 32; i++) {
+                zip.write(zeros);
+            }
+            zip.closeEntry();
+        }
+
+        ArchiveReport report = verifier.verify(archive);
+
+        assertThat(report.valid(), equalTo(false));
+        assertThat(report.error().get(), containsString("compression ratio"));
+    }
+
+    private Path zip(String name, Map<String, String> entries) throws IOException {
+        Path archive = testDirectory.resolve(name);
+        try (OutputStream out = Files.newOutputStream(archive);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return archive;
+    }
+}
@@ -36,7 +36,6 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
@@ -49,13 +48,10 @@ import static fi.digitraffic.tis.vaco.aws.TestData.fileInIgnoredDirectoryName;
 import static fi.digitraffic.tis.vaco.aws.TestData.fileInSubDirectoryName;
 import static fi.digitraffic.tis.vaco.aws.TestData.fileToIgnoreInSubDirectoryName;
 import static fi.digitraffic.tis.vaco.aws.TestData.inputRootDirectoryPath;
-import static fi.digitraffic.tis.vaco.aws.TestData.outputDirectoryPath;
 import static fi.digitraffic.tis.vaco.aws.TestData.someFileName;
 import static fi.digitraffic.tis.vaco.aws.TestData.subDirectory;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.notNullValue;
-import static org.hamcrest.Matchers.nullValue;
 
 class S3PackagerIntegrationTests extends SpringBootIntegrationTestBase {
 
@@ -215,14 +211,6 @@ class S3PackagerIntegrationTests extends SpringBootIntegrationTestBase {
         producedPackageZip.close();
     }
 
-    @Test
-    void testDirectoryCleanup() throws IOException {
-        assertThat(Objects.requireNonNull(inputRootDirectoryPath.toFile().listFiles()).length, equalTo(3));
-        s3Packager.cleanup(inputRootDirectoryPath.toFile());
-        assertThat(inputRootDirectoryPath.toFile().listFiles(), nullValue());
-        assertThat(outputDirectoryPath.toFile().listFiles(), notNullValue());
-    }
-
     private byte[] getObjectBytes(String keyName) {
         GetObjectRequest objectRequest = GetObjectRequest
             .builder()
@@ -17,6 +17,7 @@ import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
@@ -213,7 +214,7 @@ class BadgeControllerSystemTests extends SpringBootIntegrationTestBase {
             .tasks(Streams.collect(tasks, recordMapper::toTask))
             .build();
         ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-            .entry(createdEntry)
+            .entry(EntryReference.of(createdEntry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
         messagingService.submitProcessingJob(job);
@@ -245,7 +246,7 @@ class BadgeControllerSystemTests extends SpringBootIntegrationTestBase {
             .tasks(Streams.collect(tasks, recordMapper::toTask))
             .build();
         ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-            .entry(createdEntry)
+            .entry(EntryReference.of(createdEntry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
         messagingService.submitProcessingJob(job);
@@ -284,7 +285,7 @@ class BadgeControllerSystemTests extends SpringBootIntegrationTestBase {
             .tasks(Streams.collect(tasks, recordMapper::toTask))
             .build();
         ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-            .entry(createdEntry)
+            .entry(EntryReference.of(createdEntry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
 
@@ -320,7 +321,7 @@ class BadgeControllerSystemTests extends SpringBootIntegrationTestBase {
             .tasks(Streams.collect(tasks, recordMapper::toTask))
             .build();
         ImmutableDelegationJobMessage job = ImmutableDelegationJobMessage.builder()
-            .entry(createdEntry)
+            .entry(EntryReference.of(createdEntry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
 
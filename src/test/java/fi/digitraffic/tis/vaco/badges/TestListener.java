@@ -2,11 +2,12 @@ package fi.digitraffic.tis.vaco.badges;
 
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.sqs.SqsListener;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
-import fi.digitraffic.tis.vaco.messaging.model.JobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
 import fi.digitraffic.tis.vaco.messaging.model.QueueNames;
 import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
@@ -17,10 +18,8 @@ import fi.digitraffic.tis.vaco.rules.model.ResultMessage;
 import fi.digitraffic.tis.vaco.rules.model.ValidationRuleJobMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -30,6 +29,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
 @Component
@@ -38,24 +39,29 @@ public class TestListener extends SqsListener {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final EntryService entryService;
     private final QueueHandlerService queueHandlerService;
-    private final ConcurrentMap<String, List<JobMessage>> processingMessages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<ValidationRuleJobMessage>> processingMessages = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Function<ValidationRuleJobMessage, ResultMessage>> resultConverters = new ConcurrentHashMap<>();
-    private final Set<String> enabledQueues = new HashSet<>();
+    private final Set<String> enabledQueues = ConcurrentHashMap.newKeySet();
 
     public TestListener(MessagingService messagingService,
                         ObjectMapper objectMapper,
                         EntryService entryService,
-                        QueueHandlerService queueHandlerService) {
-        super(messagingService, objectMapper);
+                        QueueHandlerService queueHandlerService,
+                        VacoProperties vacoProperties) {
+        super(messagingService, objectMapper, vacoProperties.sqsConsumer());
         this.entryService = entryService;
         this.queueHandlerService = queueHandlerService;
+
+        consume(MessageQueue.RULE_PROCESSING.munge(RuleName.GTFS_CANONICAL), this::handleGtfsCanonical);
     }
 
-    @Scheduled(initialDelayString = "${vaco.scheduling.findings.poll-rate}", fixedRateString = "${vaco.scheduling.findings.poll-rate}")
     public void handleGtfsCanonical() {
         String queueName = MessageQueue.RULE_PROCESSING.munge(RuleName.GTFS_CANONICAL);
         if (enabledQueues.contains(queueName)) {
             listenValue(queueName, ValidationRuleJobMessage.class, this::handleGtfs);
+        } else {
+            // avoid spinning the poller while the queue is disabled
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
         }
     }
 
@@ -75,7 +81,7 @@ public class TestListener extends SqsListener {
             // resubmit to processing queue to continue general logic
             Optional<Entry> entry = entryService.findEntry(resultMessage.entryId());
             entry.ifPresent(value -> messagingService.submitProcessingJob(ImmutableDelegationJobMessage.builder()
-                .entry(queueHandlerService.getEntry(value.publicId()))
+                .entry(EntryReference.of(value))
                 .retryStatistics(ImmutableRetryStatistics.of(5))
                 .build()));
         });
@@ -96,7 +102,7 @@ public class TestListener extends SqsListener {
         resultConverters.put(publicId, converter);
     }
 
-    public ConcurrentMap<String, List<JobMessage>> getProcessingMessages() {
+    public ConcurrentMap<String, List<ValidationRuleJobMessage>> getProcessingMessages() {
         return processingMessages;
     }
 
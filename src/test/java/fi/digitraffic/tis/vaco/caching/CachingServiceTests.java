@@ -0,0 +1,74 @@
+package fi.digitraffic.tis.vaco.caching;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.caching.mapper.CacheStatsMapper;
+import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.packages.model.ImmutablePackage;
+import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class CachingServiceTests {
+
+    private final ZonedDateTime now = ZonedDateTime.now();
+
+    private CachingService cachingService;
+    private ImmutableTask download;
+    private ImmutableTask validate;
+    private Entry entry;
+
+    @BeforeEach
+    void setUp() {
+        cachingService = new CachingService(new CacheStatsMapper());
+        download = ImmutableTask.of("download", 100).withId(1L).withStarted(now);
+        validate = ImmutableTask.of("validate", 200).withId(2L);
+        entry = TestObjects.anEntry("gtfs").addTasks(download, validate).build();
+        cachingService.updateEntry(entry.publicId(), entry);
+    }
+
+    @Test
+    void appliesTaskChangesInPlace() {
+        Task completed = download.withCompleted(now.plusSeconds(1)).withStatus(Status.SUCCESS);
+        ImmutablePackage result = ImmutablePackage.of(completed, "result", "path/to/result.zip");
+
+        cachingService.updateEntryTasks(entry.publicId(), List.of(completed), Map.of(1L, List.of(result)));
+
+        Entry cached = cachedEntry();
+        assertThat(cached.tasks(), equalTo(List.of(completed, validate)));
+        assertThat(cached.packages(), equalTo(List.of(result)));
+    }
+
+    @Test
+    void ignoresChangesOlderThanCachedTask() {
+        Task newer = download.withUpdated(now.plusSeconds(5)).withStatus(Status.SUCCESS);
+        cachingService.updateEntryTasks(entry.publicId(), List.of(newer), Map.of());
+
+        cachingService.updateEntryTasks(entry.publicId(), List.of(download.withUpdated(now.plusSeconds(1))), Map.of());
+
+        assertThat(cachedEntry().tasks().getFirst(), equalTo(newer));
+    }
+
+    @Test
+    void invalidatesEntryWhenChangedTaskIsUnknown() {
+        Task unknown = ImmutableTask.of("unknown", 300).withId(3L);
+
+        cachingService.updateEntryTasks(entry.publicId(), List.of(unknown), Map.of());
+
+        assertThat(cachingService.isEntryCached(entry.publicId()), equalTo(false));
+    }
+
+    private Entry cachedEntry() {
+        Optional<Entry> cached = cachingService.cacheEntry(entry.publicId(), key -> null);
+        return cached.orElseThrow();
+    }
+}
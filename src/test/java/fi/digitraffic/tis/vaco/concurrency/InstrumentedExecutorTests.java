@@ -0,0 +1,105 @@
+package fi.digitraffic.tis.vaco.concurrency;
+
+import fi.digitraffic.tis.vaco.concurrency.model.ExecutorStatistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstrumentedExecutorTests {
+
+    private static InstrumentedExecutor executor(boolean virtualThreads, int maxConcurrency) {
+        return virtualThreads
+            ? InstrumentedExecutor.virtualThreads("test", maxConcurrency)
+            : InstrumentedExecutor.platformThreads("test", maxConcurrency, 100);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void runsTasksInNamedThreads(boolean virtualThreads) {
+        try (InstrumentedExecutor executor = executor(virtualThreads, 2)) {
+            String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor).join();
+
+            assertThat(threadName, startsWith("test-"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void limitsConcurrency(boolean virtualThreads) {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+
+        try (InstrumentedExecutor executor = executor(virtualThreads, 3)) {
+            List<CompletableFuture<Void>> tasks = IntStream.range(0, 30)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    maxSeen.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }, executor))
+                .toList();
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        }
+
+        assertThat(maxSeen.get(), lessThanOrEqualTo(3));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void tracksCompletedAndFailedTasks(boolean virtualThreads) {
+        try (InstrumentedExecutor executor = executor(virtualThreads, 2)) {
+            CompletableFuture<Void> ok = CompletableFuture.runAsync(() -> {}, executor);
+            CompletableFuture<Void> failing = new CompletableFuture<>();
+            executor.execute(() -> {
+                failing.complete(null);
+                throw new IllegalStateException("expected failure");
+            });
+            CompletableFuture.allOf(ok, failing).join();
+            executor.close();
+
+            ExecutorStatistics stats = executor.statistics();
+            assertThat(stats.submitted(), equalTo(2L));
+            assertThat(stats.completed(), equalTo(1L));
+            assertThat(stats.failed(), equalTo(1L));
+            assertThat(stats.active(), equalTo(0));
+            assertThat(stats.waiting(), equalTo(0));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void countsFailuresOfAsynchronousWork(boolean virtualThreads) {
+        try (InstrumentedExecutor executor = executor(virtualThreads, 2)) {
+            CompletableFuture<String> ok = InstrumentedExecutor.supplyAsync(() -> "ok", executor);
+            CompletableFuture<Void> failing = InstrumentedExecutor.runAsync(() -> {
+                throw new IllegalStateException("expected failure");
+            }, executor);
+
+            assertThat(ok.join(), equalTo("ok"));
+            CompletionException e = assertThrows(CompletionException.class, failing::join);
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            executor.close();
+
+            ExecutorStatistics stats = executor.statistics();
+            assertThat(stats.submitted(), equalTo(2L));
+            assertThat(stats.completed(), equalTo(1L));
+            assertThat(stats.failed(), equalTo(1L));
+        }
+    }
+}
@@ -16,7 +16,9 @@ import fi.digitraffic.tis.vaco.db.model.ImmutableCredentialsRecord;
 import fi.digitraffic.tis.vaco.db.repositories.CompanyRepository;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
+import fi.digitraffic.tis.vaco.http.HostLimiter;
 import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.ValidatorCache;
 import fi.digitraffic.tis.vaco.queuehandler.mapper.EntryRequestMapper;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
@@ -55,6 +57,8 @@ class CredentialsServiceTests {
     private EntryService entryService;
     @Mock
     private FeatureFlagsService featureFlagsService;
+    @Mock
+    private ValidatorCache validatorCache;
 
     private Map<String, String> requestHeaders = new HashMap<>();
     private ObjectMapper objectMapper;
@@ -74,7 +78,7 @@ class CredentialsServiceTests {
                 entryRequestMapper, companyHierarchyService,
                 credentialsRepository, companyRepository, recordMapper);
 
-        vacoHttpClient = new VacoHttpClient(httpClient, credentialsService, entryService, featureFlagsService);
+        vacoHttpClient = new VacoHttpClient(httpClient, credentialsService, entryService, featureFlagsService, validatorCache, TestObjects.vacoProperties(), new HostLimiter(TestObjects.vacoProperties()));
 
         businessId = Constants.FINTRAFFIC_BUSINESS_ID;
 
@@ -0,0 +1,57 @@
+package fi.digitraffic.tis.vaco.db.repositories;
+
+import fi.digitraffic.tis.SpringBootIntegrationTestBase;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.db.model.EntryRecord;
+import fi.digitraffic.tis.vaco.feeds.model.FeedPollingState;
+import fi.digitraffic.tis.vaco.feeds.model.ImmutableFeedPollingState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class EntryRepositoryIntegrationTests extends SpringBootIntegrationTestBase {
+
+    @Autowired
+    private EntryRepository entryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void pollingSlotCanBeClaimedOncePerSlot() {
+        EntryRecord entry = entryRepository.create(TestObjects.anEntry("gtfs").build(), Optional.empty(), Optional.empty()).get();
+        Instant slot = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        assertThat(entryRepository.claimPollingSlot(entry, slot), equalTo(true));
+        assertThat(entryRepository.claimPollingSlot(entry, slot), equalTo(false));
+        assertThat(entryRepository.claimPollingSlot(entry, slot.minus(Duration.ofHours(1))), equalTo(false));
+
+        entryRepository.releasePollingSlot(entry, slot);
+
+        assertThat(entryRepository.claimPollingSlot(entry, slot), equalTo(true));
+        assertThat(entryRepository.claimPollingSlot(entry, slot.plus(Duration.ofHours(1))), equalTo(true));
+    }
+
+    @Test
+    void pollingStateIsStoredInMetadata() {
+        EntryRecord entry = entryRepository.create(TestObjects.anEntry("gtfs").build(), Optional.empty(), Optional.empty()).get();
+        FeedPollingState state = ImmutableFeedPollingState.builder()
+            .polled(Instant.now().truncatedTo(ChronoUnit.SECONDS))
+            .statusCode(304)
+            .etag("\"abc\"")
+            .build();
+
+        entryRepository.updatePollingState(entry, state);
+
+        EntryRecord updated = entryRepository.findByPublicId(entry.publicId()).get();
+        assertThat(objectMapper.treeToValue(updated.metadata().get(FeedPollingState.METADATA_KEY), FeedPollingState.class), equalTo(state));
+    }
+}
@@ -6,6 +6,7 @@ import fi.digitraffic.tis.vaco.db.mapper.RecordMapper;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableDelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.messaging.model.RetryStatistics;
@@ -25,7 +26,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.ZonedDateTime;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -77,7 +81,7 @@ class DelegationJobQueueSqsListenerTests extends SpringBootIntegrationTestBase {
             notificationsService);
         entry = createQueueEntryForTesting();
         jobMessage = ImmutableDelegationJobMessage.builder()
-            .entry(entry)
+            .entry(EntryReference.of(entry))
             .retryStatistics(ImmutableRetryStatistics.of(5))
             .build();
     }
@@ -105,4 +109,27 @@ class DelegationJobQueueSqsListenerTests extends SpringBootIntegrationTestBase {
 
         assertThat(result.completed(), notNullValue());
     }
+
+    @Test
+    void completingEntryIsIdempotent() {
+        assertThat(entryService.markComplete(entry), equalTo(true));
+        ZonedDateTime completed = entryService.findEntry(entry.publicId()).get().completed();
+
+        assertThat(entryService.markComplete(entry), equalTo(false));
+
+        assertThat(entryService.findEntry(entry.publicId()).get().completed(), equalTo(completed));
+    }
+
+    @Test
+    void jobMessageForCompletedEntryIsIgnored() {
+        entryService.markComplete(entry);
+        Entry completed = entryService.findEntry(entry.publicId()).get();
+
+        // e.g. delayed fallback of a parked task arriving after the entry was finished
+        listener.listen(jobMessage, acknowledgement);
+
+        Entry result = entryService.findEntry(entry.publicId()).get();
+        assertThat(result.completed(), equalTo(completed.completed()));
+        assertThat(result.updated(), equalTo(completed.updated()));
+    }
 }
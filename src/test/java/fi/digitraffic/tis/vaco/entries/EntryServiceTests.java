@@ -99,7 +99,7 @@ class EntryServiceTests {
     void marksEntryAsSuccessByDefault() {
         givenTaskInStatus(Status.SUCCESS);
         thenEntryIsMarkedAs(Status.SUCCESS);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.SUCCESS);
     }
 
     /**
@@ -109,26 +109,26 @@ class EntryServiceTests {
     void taskStatesGuideEntryStatusSelection() {
         givenTaskInStatus(Status.FAILED);
         thenEntryIsMarkedAs(Status.FAILED);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.FAILED);
 
         givenTaskInStatus(Status.ERRORS);
         thenEntryIsMarkedAs(Status.ERRORS);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.ERRORS);
 
         givenTaskInStatus(Status.WARNINGS);
         thenEntryIsMarkedAs(Status.WARNINGS);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.WARNINGS);
 
         givenTaskInStatus(Status.CANCELLED);
         thenEntryIsMarkedAs(Status.CANCELLED);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.CANCELLED);
     }
 
     @Test
     void markEntryWithoutTasksAsCancelled() {
         givenNoTasks();
         thenEntryIsMarkedAs(Status.CANCELLED);
-        thenCacheIsInvalidated();
+        thenCachedEntryStatusIsUpdatedTo(Status.CANCELLED);
     }
 
     private void givenNoTasks() {
@@ -147,7 +147,7 @@ class EntryServiceTests {
         inOrderRepository.verify(entryRepository).markStatus(entry, status);
     }
 
-    private void thenCacheIsInvalidated() {
-        inOrderCaching.verify(cachingService).invalidateEntry(entry.publicId());
+    private void thenCachedEntryStatusIsUpdatedTo(Status status) {
+        inOrderCaching.verify(cachingService).updateEntryStatus(entry.publicId(), status);
     }
 }
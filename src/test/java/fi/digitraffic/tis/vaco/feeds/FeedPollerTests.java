@@ -0,0 +1,227 @@
+package fi.digitraffic.tis.vaco.feeds;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.db.model.EntryRecord;
+import fi.digitraffic.tis.vaco.db.model.FeedRecord;
+import fi.digitraffic.tis.vaco.db.model.ImmutableCompanyRecord;
+import fi.digitraffic.tis.vaco.db.model.ImmutableEntryRecord;
+import fi.digitraffic.tis.vaco.db.model.ImmutableFeedRecord;
+import fi.digitraffic.tis.vaco.db.repositories.CompanyRepository;
+import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
+import fi.digitraffic.tis.vaco.db.repositories.FeedRepository;
+import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
+import fi.digitraffic.tis.vaco.feeds.model.FeedPollingState;
+import fi.digitraffic.tis.vaco.feeds.model.ImmutableFeedPollingState;
+import fi.digitraffic.tis.vaco.feeds.model.ImmutableFeedUri;
+import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.model.ImmutableConditionalResponse;
+import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
+import fi.digitraffic.tis.vaco.ruleset.RulesetService;
+import fi.digitraffic.tis.vaco.ruleset.model.TransitDataFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class FeedPollerTests {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T12:34:56Z");
+
+    private FeedPoller feedPoller;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    @Mock
+    private FeedRepository feedRepository;
+    @Mock
+    private CompanyRepository companyRepository;
+    @Mock
+    private EntryRepository entryRepository;
+    @Mock
+    private RulesetService rulesetService;
+    @Mock
+    private QueueHandlerService queueHandlerService;
+    @Mock
+    private VacoHttpClient httpClient;
+    @Mock
+    private FeatureFlagsService featureFlagsService;
+    @Mock
+    private VacoExecutors vacoExecutors;
+
+    @BeforeEach
+    void setUp() {
+        feedPoller = new FeedPoller(
+            TestObjects.vacoProperties(),
+            feedRepository,
+            companyRepository,
+            entryRepository,
+            rulesetService,
+            queueHandlerService,
+            httpClient,
+            featureFlagsService,
+            vacoExecutors,
+            objectMapper,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(rulesetService, queueHandlerService);
+    }
+
+    @Test
+    void pollingSlotIsStableWithinInterval() {
+        FeedRecord feed = aFeed("GET");
+        Instant slot = feedPoller.currentSlot(feed, NOW);
+
+        assertThat(slot, lessThanOrEqualTo(NOW));
+        assertThat(Duration.between(slot, NOW), lessThanOrEqualTo(Duration.ofHours(1)));
+        assertThat(feedPoller.currentSlot(feed, slot), equalTo(slot));
+        assertThat(feedPoller.currentSlot(feed, slot.plus(Duration.ofMinutes(59))), equalTo(slot));
+        assertThat(feedPoller.currentSlot(feed, slot.plus(Duration.ofHours(1))), greaterThan(slot));
+    }
+
+    @Test
+    void unchangedFeedDoesNotCreateEntry() {
+        FeedRecord feed = aFeed("GET");
+        EntryRecord latest = anEntry(Status.SUCCESS, null);
+        givenLatestEntry(feed, latest);
+        given(entryRepository.claimPollingSlot(latest, NOW)).willReturn(true);
+        given(httpClient.checkForChanges("https://example.fi/v1/feeds?key=value", "1234567-8", "\"old\"", null))
+            .willReturn(CompletableFuture.completedFuture(ImmutableConditionalResponse.of(304)));
+
+        assertThat(feedPoller.poll(feed, NOW), equalTo(Optional.empty()));
+
+        verify(entryRepository).updatePollingState(latest, ImmutableFeedPollingState.builder().polled(NOW).statusCode(304).etag("\"old\"").build());
+    }
+
+    @Test
+    void validatorsOfPreviousPollAreUsed() {
+        FeedRecord feed = aFeed("GET");
+        FeedPollingState previous = ImmutableFeedPollingState.builder()
+            .polled(NOW.minus(Duration.ofHours(1)))
+            .statusCode(304)
+            .etag("\"abc\"")
+            .lastModified("Sat, 17 Oct 2026 10:00:00 GMT")
+            .build();
+        ObjectNode metadata = objectMapper.createObjectNode();
+        metadata.set(FeedPollingState.METADATA_KEY, objectMapper.valueToTree(previous));
+        EntryRecord latest = anEntry(Status.SUCCESS, metadata);
+        givenLatestEntry(feed, latest);
+        given(entryRepository.claimPollingSlot(latest, NOW)).willReturn(true);
+        given(httpClient.checkForChanges("https://example.fi/v1/feeds?key=value", "1234567-8", previous.etag(), previous.lastModified()))
+            .willReturn(CompletableFuture.completedFuture(ImmutableConditionalResponse.of(304)));
+
+        assertThat(feedPoller.poll(feed, NOW), equalTo(Optional.empty()));
+
+        verify(entryRepository).updatePollingState(latest, ImmutableFeedPollingState.copyOf(previous).withPolled(NOW));
+    }
+
+    @Test
+    void slotClaimedByAnotherNodeIsNotPolled() {
+        FeedRecord feed = aFeed("GET");
+        EntryRecord latest = anEntry(Status.SUCCESS, null);
+        givenLatestEntry(feed, latest);
+        given(entryRepository.claimPollingSlot(latest, NOW)).willReturn(false);
+
+        assertThat(feedPoller.poll(feed, NOW), equalTo(Optional.empty()));
+
+        verifyNoInteractions(httpClient);
+    }
+
+    @Test
+    void feedWithEntryInProgressIsSkippedWithoutClaimingSlot() {
+        FeedRecord feed = aFeed("GET");
+        EntryRecord latest = anEntry(Status.PROCESSING, null);
+        givenLatestEntry(feed, latest);
+
+        assertThat(feedPoller.poll(feed, NOW), equalTo(Optional.empty()));
+
+        verify(entryRepository, never()).claimPollingSlot(latest, NOW);
+        verifyNoInteractions(httpClient);
+    }
+
+    @Test
+    void failedPollIsRecordedAndReleasesSlot() {
+        FeedRecord feed = aFeed("GET");
+        EntryRecord latest = anEntry(Status.SUCCESS, null);
+        givenLatestEntry(feed, latest);
+        given(entryRepository.claimPollingSlot(latest, NOW)).willReturn(true);
+        given(httpClient.checkForChanges("https://example.fi/v1/feeds?key=value", "1234567-8", "\"old\"", null))
+            .willReturn(CompletableFuture.failedFuture(new IOException("Connection reset")));
+
+        assertThrows(CompletionException.class, () -> feedPoller.poll(feed, NOW));
+
+        verify(entryRepository).updatePollingState(latest, ImmutableFeedPollingState.builder()
+            .polled(NOW)
+            .error("java.io.IOException: Connection reset")
+            .etag("\"old\"")
+            .build());
+        verify(entryRepository).releasePollingSlot(latest, NOW);
+    }
+
+    @Test
+    void onlyGetFeedsArePolled() {
+        assertThat(feedPoller.poll(aFeed("POST"), NOW), equalTo(Optional.empty()));
+
+        verifyNoInteractions(companyRepository, entryRepository, httpClient);
+    }
+
+    private void givenLatestEntry(FeedRecord feed, EntryRecord latest) {
+        given(companyRepository.findById(feed.ownerId())).willReturn(ImmutableCompanyRecord.of(feed.ownerId(), "1234567-8", true));
+        given(entryRepository.findNewestForBusinessIdAndContext("1234567-8", FeedPoller.context(feed))).willReturn(Optional.of(latest));
+    }
+
+    private static EntryRecord anEntry(Status status, JsonNode metadata) {
+        return ImmutableEntryRecord.builder()
+            .id(3L)
+            .publicId("entry-1")
+            .name("gtfs feed-1")
+            .format("gtfs")
+            .url("https://example.fi/v1/feeds?key=value")
+            .businessId("1234567-8")
+            .etag("\"old\"")
+            .metadata(metadata)
+            .status(status)
+            .build();
+    }
+
+    private static FeedRecord aFeed(String httpMethod) {
+        return ImmutableFeedRecord.of(
+            1L,
+            "feed-1",
+            2L,
+            ImmutableFeedUri.of("https://example.fi/v1/feeds", Map.of("key", "value"), httpMethod, ""),
+            TransitDataFormat.GTFS,
+            true);
+    }
+}
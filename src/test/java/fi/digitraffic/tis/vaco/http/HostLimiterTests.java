@@ -0,0 +1,98 @@
+package fi.digitraffic.tis.vaco.http;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.http.model.HostStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HostLimiterTests {
+
+    private HostLimiter hostLimiter;
+
+    @BeforeEach
+    void setUp() {
+        hostLimiter = new HostLimiter(TestObjects.vacoProperties());
+    }
+
+    @Test
+    void limitsConcurrentRequestsPerHost() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+
+        List<CompletableFuture<Void>> requests = IntStream.range(0, 20)
+            .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                try (HostLimiter.Permit permit = hostLimiter.acquire("https://example.fi/feeds/" + i + ".zip")) {
+                    maxSeen.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    permit.received(100, 400);
+                    running.decrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (TimeoutException e) {
+                    throw new IllegalStateException(e);
+                }
+            }))
+            .toList();
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+
+        assertThat(maxSeen.get(), lessThanOrEqualTo(2));
+        HostStatistics stats = hostLimiter.getStats().get("example.fi");
+        assertThat(stats.requests(), equalTo(20L));
+        assertThat(stats.bytes(), equalTo(2000L));
+        assertThat(stats.decodedBytes(), equalTo(8000L));
+        assertThat(stats.active(), equalTo(0));
+    }
+
+    @Test
+    void busyHostDoesNotBlockOtherHosts() throws Exception {
+        HostLimiter.Permit first = hostLimiter.acquire("https://busy.example.fi/a.zip");
+        HostLimiter.Permit second = hostLimiter.acquire("https://busy.example.fi/b.zip");
+
+        CompletableFuture<HostLimiter.Permit> other = CompletableFuture.supplyAsync(() -> {
+            try {
+                return hostLimiter.acquire("https://other.example.fi/c.zip");
+            } catch (InterruptedException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (HostLimiter.Permit permit = other.get(5, TimeUnit.SECONDS)) {
+            assertThat(hostLimiter.getStats().get("busy.example.fi").active(), equalTo(2));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    void busyHostGivesNoPermitWithoutWaiting() throws Exception {
+        try (HostLimiter.Permit first = hostLimiter.acquire("https://busy.example.fi/a.zip");
+             HostLimiter.Permit second = hostLimiter.acquire("https://busy.example.fi/b.zip")) {
+            assertThat(hostLimiter.tryAcquire("https://busy.example.fi/c.zip"), equalTo(Optional.empty()));
+            assertThrows(TimeoutException.class, () -> hostLimiter.acquire("https://busy.example.fi/c.zip"));
+        }
+
+        try (HostLimiter.Permit permit = hostLimiter.tryAcquire("https://busy.example.fi/c.zip").orElseThrow()) {
+            assertThat(hostLimiter.getStats().get("busy.example.fi").active(), equalTo(1));
+        }
+    }
+
+    @Test
+    void resolvesHostOfSchemelessUri() {
+        assertThat(HostLimiter.host("www.Example.fi/v1/feeds"), equalTo("www.example.fi"));
+        assertThat(HostLimiter.host("https://www.example.fi:8443/v1/feeds?x=y"), equalTo("www.example.fi"));
+    }
+}
@@ -8,8 +8,12 @@ import fi.digitraffic.tis.vaco.credentials.model.HttpBasicAuthenticationDetails;
 import fi.digitraffic.tis.vaco.credentials.model.ImmutableCredentials;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
+import fi.digitraffic.tis.vaco.http.model.CachedResponse;
 import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutableCachedResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutablePartialDownload;
 import fi.digitraffic.tis.vaco.http.model.NotificationResponse;
+import fi.digitraffic.tis.vaco.http.model.PartialDownload;
 import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,26 +22,37 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -57,6 +72,8 @@ class VacoHttpClientTests {
     private EntryService entryService;
     @Mock
     private FeatureFlagsService featureFlagsService;
+    @Mock
+    private ValidatorCache validatorCache;
     private Map<String, String> requestHeaders = new HashMap<>();
     private ImmutableCredentials credentials;
     private ImmutableEntry entry;
@@ -64,7 +81,7 @@ class VacoHttpClientTests {
     @BeforeEach
     void setUp() {
 
-        this.vacoClient = new VacoHttpClient(httpClient, credentialsService, entryService, featureFlagsService);
+        this.vacoClient = new VacoHttpClient(httpClient, credentialsService, entryService, featureFlagsService, validatorCache, TestObjects.vacoProperties(), new HostLimiter(TestObjects.vacoProperties()));
         credentials = ImmutableCredentials.copyOf(TestObjects.aCredentials().build());
         entry = ImmutableEntry.copyOf(TestObjects.anEntry().build());
 
@@ -131,6 +148,169 @@ class VacoHttpClientTests {
 
     }
 
+    @Test
+    void revalidatedResponseIsServedFromCache() throws IOException, ExecutionException, InterruptedException {
+        String uri = "https://example.org/gtfs.zip";
+        CachedResponse cached = ImmutableCachedResponse.builder()
+            .key("cache-key")
+            .uri(uri)
+            .etag("\"v1\"")
+            .lastModified("Sat, 17 Oct 2026 10:00:00 GMT")
+            .contentLength(6)
+            .sha256("unused")
+            .content("entry/task/gtfs.zip")
+            .downloaded(Instant.now())
+            .build();
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(false);
+        given(validatorCache.key(eq(uri), any(Map.class))).willReturn("cache-key");
+        given(validatorCache.find("cache-key")).willReturn(Optional.of(cached));
+        given(httpClient.get(uri, Map.of(
+            "Accept", "*/*",
+            "Accept-Encoding", "gzip, deflate",
+            "If-None-Match", "\"v1\"",
+            "If-Modified-Since", "Sat, 17 Oct 2026 10:00:00 GMT"))).willReturn(mockRequest);
+        given(httpClient.send(eq(mockRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(mockResponse));
+        given(mockResponse.statusCode()).willReturn(304);
+        given(mockResponse.headers()).willReturn(HttpHeaders.of(Map.of(), (k, v) -> true));
+        given(mockResponse.body()).willReturn(InputStream.nullInputStream());
+        given(validatorCache.restore(eq(cached), any(Path.class))).willAnswer(a -> {
+            Files.writeString(a.getArgument(1), "cached");
+            return true;
+        });
+
+        Path targetFilePath = Files.createTempDirectory(getClass().getSimpleName()).resolve("gtfs.zip");
+        DownloadResponse response = vacoClient.downloadFile(targetFilePath, uri, entry).get();
+
+        assertThat(response.result(), equalTo(DownloadResponse.Result.OK));
+        assertThat(response.etag(), equalTo(Optional.of("\"v1\"")));
+        assertThat(response.size(), equalTo(Optional.of(6L)));
+        assertThat(response.cacheKey(), equalTo(Optional.empty()));
+        assertThat(Files.readString(targetFilePath), equalTo("cached"));
+        assertThat(Files.exists(targetFilePath.resolveSibling("gtfs.zip.cached")), equalTo(false));
+    }
+
+    @Test
+    void interruptedDownloadIsResumedWithRangeRequest() throws IOException, ExecutionException, InterruptedException {
+        String uri = "https://example.org/netex.zip";
+        InputStream interrupted = new SequenceInputStream(
+            new ByteArrayInputStream("hello ".getBytes(StandardCharsets.UTF_8)),
+            new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("simulated connection reset");
+                }
+            });
+        HttpRequest resumeRequest = mock(HttpRequest.class);
+        HttpResponse<InputStream> resumeResponse = mock(HttpResponse.class);
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(false);
+        given(validatorCache.key(eq(uri), any(Map.class))).willReturn("cache-key");
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate"))).willReturn(mockRequest);
+        given(httpClient.send(eq(mockRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(mockResponse));
+        given(mockResponse.statusCode()).willReturn(200);
+        given(mockResponse.headers()).willReturn(HttpHeaders.of(Map.of("Accept-Ranges", List.of("bytes"), "ETag", List.of("\"v1\"")), (k, v) -> true));
+        given(mockResponse.body()).willReturn(interrupted);
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate", "Range", "bytes=6-", "If-Range", "\"v1\""))).willReturn(resumeRequest);
+        given(httpClient.send(eq(resumeRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(resumeResponse));
+        given(resumeResponse.statusCode()).willReturn(206);
+        given(resumeResponse.headers()).willReturn(HttpHeaders.of(Map.of("Content-Range", List.of("bytes 6-10/11")), (k, v) -> true));
+        given(resumeResponse.body()).willReturn(new ByteArrayInputStream("world".getBytes(StandardCharsets.UTF_8)));
+
+        Path targetFilePath = Files.createTempDirectory(getClass().getSimpleName()).resolve("netex.zip");
+        DownloadResponse response = vacoClient.downloadFile(targetFilePath, uri, entry).get();
+
+        assertThat(response.result(), equalTo(DownloadResponse.Result.OK));
+        assertThat(response.size(), equalTo(Optional.of(11L)));
+        assertThat(response.cacheKey(), equalTo(Optional.of("cache-key")));
+        assertThat(Files.readString(targetFilePath), equalTo("hello world"));
+    }
+
+    @Test
+    void downloadWhichCannotBeResumedIsStoredForNextAttempt() throws IOException {
+        String uri = "https://example.org/netex.zip";
+        InputStream interrupted = new SequenceInputStream(
+            new ByteArrayInputStream("hello ".getBytes(StandardCharsets.UTF_8)),
+            new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("simulated connection reset");
+                }
+            });
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(false);
+        given(validatorCache.key(eq(uri), any(Map.class))).willReturn("cache-key");
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate"))).willReturn(mockRequest);
+        given(httpClient.send(eq(mockRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(mockResponse));
+        given(mockResponse.statusCode()).willReturn(200);
+        given(mockResponse.headers()).willReturn(HttpHeaders.of(Map.of("Accept-Ranges", List.of("bytes"), "ETag", List.of("\"v1\"")), (k, v) -> true));
+        given(mockResponse.body()).willReturn(interrupted);
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate", "Range", "bytes=6-", "If-Range", "\"v1\"")))
+            .willThrow(new HttpClientException("simulated connection refused"));
+
+        Path targetFilePath = Files.createTempDirectory(getClass().getSimpleName()).resolve("netex.zip");
+        CompletableFuture<DownloadResponse> response = vacoClient.downloadFile(targetFilePath, uri, entry);
+
+        assertThrows(ExecutionException.class, response::get);
+        verify(validatorCache).storePartial("cache-key", uri, "\"v1\"", targetFilePath);
+        assertThat(Files.readString(targetFilePath), equalTo("hello "));
+    }
+
+    @Test
+    void downloadContinuesFromPartialDownloadOfEarlierAttempt() throws IOException, ExecutionException, InterruptedException {
+        String uri = "https://example.org/netex.zip";
+        PartialDownload partial = ImmutablePartialDownload.builder()
+            .key("cache-key")
+            .uri(uri)
+            .validator("\"v1\"")
+            .offset(6)
+            .interrupted(Instant.now())
+            .build();
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(false);
+        given(validatorCache.key(eq(uri), any(Map.class))).willReturn("cache-key");
+        given(validatorCache.findPartial("cache-key")).willReturn(Optional.of(partial));
+        given(validatorCache.restorePartial(eq(partial), any(Path.class))).willAnswer(a -> {
+            Files.writeString(a.getArgument(1), "hello ");
+            return true;
+        });
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate", "Range", "bytes=6-", "If-Range", "\"v1\""))).willReturn(mockRequest);
+        given(httpClient.send(eq(mockRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(mockResponse));
+        given(mockResponse.statusCode()).willReturn(206);
+        given(mockResponse.headers()).willReturn(HttpHeaders.of(Map.of("Content-Range", List.of("bytes 6-10/11"), "ETag", List.of("\"v1\"")), (k, v) -> true));
+        given(mockResponse.body()).willReturn(new ByteArrayInputStream("world".getBytes(StandardCharsets.UTF_8)));
+
+        Path targetFilePath = Files.createTempDirectory(getClass().getSimpleName()).resolve("netex.zip");
+        DownloadResponse response = vacoClient.downloadFile(targetFilePath, uri, entry).get();
+
+        assertThat(response.result(), equalTo(DownloadResponse.Result.OK));
+        assertThat(response.size(), equalTo(Optional.of(11L)));
+        assertThat(response.cacheKey(), equalTo(Optional.of("cache-key")));
+        assertThat(Files.readString(targetFilePath), equalTo("hello world"));
+        assertThat(Files.exists(targetFilePath.resolveSibling("netex.zip.partial")), equalTo(false));
+        verify(validatorCache).discardPartial("cache-key");
+    }
+
+    @Test
+    void compressedContentIsDecodedWhileDownloading() throws IOException, ExecutionException, InterruptedException {
+        String uri = "https://example.org/gbfs.json";
+        String content = "{\"data\":{\"feeds\":[]}}".repeat(100);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(false);
+        given(validatorCache.key(eq(uri), any(Map.class))).willReturn("cache-key");
+        given(httpClient.get(uri, Map.of("Accept", "*/*", "Accept-Encoding", "gzip, deflate"))).willReturn(mockRequest);
+        given(httpClient.send(eq(mockRequest), any(HttpResponse.BodyHandler.class))).willReturn(CompletableFuture.completedFuture(mockResponse));
+        given(mockResponse.statusCode()).willReturn(200);
+        given(mockResponse.headers()).willReturn(HttpHeaders.of(Map.of("Content-Encoding", List.of("gzip")), (k, v) -> true));
+        given(mockResponse.body()).willReturn(new ByteArrayInputStream(compressed.toByteArray()));
+
+        Path targetFilePath = Files.createTempDirectory(getClass().getSimpleName()).resolve("gbfs.json");
+        DownloadResponse response = vacoClient.downloadFile(targetFilePath, uri, entry).get();
+
+        assertThat(response.result(), equalTo(DownloadResponse.Result.OK));
+        assertThat(response.size(), equalTo(Optional.of((long) content.length())));
+        assertThat(Files.readString(targetFilePath), equalTo(content));
+    }
+
     private void stubResponse(int stubStatusCode, byte[] stubResponseBody) {
         when(mockResponse.statusCode()).thenReturn(stubStatusCode);
         when(mockResponse.body()).thenReturn(stubResponseBody);
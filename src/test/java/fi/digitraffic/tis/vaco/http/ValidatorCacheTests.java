@@ -0,0 +1,151 @@
+package fi.digitraffic.tis.vaco.http;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.caching.CachingService;
+import fi.digitraffic.tis.vaco.caching.mapper.CacheStatsMapper;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.http.model.CachedResponse;
+import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
+import fi.digitraffic.tis.vaco.http.model.ImmutableDownloadResponse;
+import fi.digitraffic.tis.vaco.http.model.PartialDownload;
+import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ValidatorCacheTests {
+
+    private static final String URI = "https://example.fi/gtfs.zip";
+    private static final String DIGEST = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private ValidatorCache validatorCache;
+    private VacoProperties vacoProperties;
+    private ObjectMapper objectMapper;
+    private S3Path packagePath;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Captor
+    private ArgumentCaptor<byte[]> validators;
+
+    @BeforeEach
+    void setUp() {
+        vacoProperties = TestObjects.vacoProperties();
+        objectMapper = JsonMapper.builder().build();
+        validatorCache = new ValidatorCache(
+            vacoProperties,
+            s3Client,
+            new CachingService(new CacheStatsMapper()),
+            objectMapper,
+            Clock.fixed(Instant.parse("2026-10-17T12:00:00Z"), ZoneOffset.UTC));
+        packagePath = S3Path.of("entry-1/task-1/gtfs.zip");
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(s3Client);
+    }
+
+    @Test
+    void storesOnlyValidatorsPointingToPackage() {
+        validatorCache.store(URI, aResponse(), packagePath);
+
+        verify(s3Client).putObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class), validators.capture());
+        CachedResponse stored = objectMapper.readValue(validators.getValue(), CachedResponse.class);
+        assertThat(stored.content(), equalTo(packagePath.toString()));
+        assertThat(stored.sha256(), equalTo(DIGEST));
+        assertThat(validatorCache.find("cache-key"), equalTo(Optional.of(stored)));
+    }
+
+    @Test
+    void responseWithoutCacheKeyIsNotStored() {
+        validatorCache.store(URI, ImmutableDownloadResponse.copyOf(aResponse()).withCacheKey(Optional.empty()), packagePath);
+    }
+
+    @Test
+    void restoresContentFromPackage() throws IOException {
+        validatorCache.store(URI, aResponse(), packagePath);
+        CachedResponse cached = validatorCache.find("cache-key").orElseThrow();
+        Path target = Files.createTempDirectory(getClass().getSimpleName()).resolve("gtfs.zip");
+        given(s3Client.objectTags(vacoProperties.s3PackagesBucket(), packagePath)).willReturn(Map.of(DownloadRule.CONTENT_DIGEST_TAG, DIGEST));
+        given(s3Client.downloadFile(vacoProperties.s3PackagesBucket(), packagePath, target)).willAnswer(a -> {
+            Files.writeString(target, "cached");
+            return 6L;
+        });
+
+        assertThat(validatorCache.restore(cached, target), equalTo(true));
+
+        verify(s3Client).putObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class), any(byte[].class));
+    }
+
+    @Test
+    void packageWithDifferentContentInvalidatesCachedResponse() throws IOException {
+        validatorCache.store(URI, aResponse(), packagePath);
+        CachedResponse cached = validatorCache.find("cache-key").orElseThrow();
+        given(s3Client.objectTags(vacoProperties.s3PackagesBucket(), packagePath)).willReturn(Map.of());
+
+        assertThat(validatorCache.restore(cached, Files.createTempFile(getClass().getSimpleName(), ".zip")), equalTo(false));
+
+        verify(s3Client).putObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class), any(byte[].class));
+        given(s3Client.getObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class))).willReturn(Optional.empty());
+        assertThat(validatorCache.find("cache-key"), equalTo(Optional.empty()));
+        verify(s3Client).getObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class));
+    }
+
+    @Test
+    void partialDownloadIsStoredForContinuing() throws IOException {
+        Path received = Files.createTempFile(getClass().getSimpleName(), ".partial");
+        Files.writeString(received, "hello ");
+        given(s3Client.uploadFile(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class), eq(received)))
+            .willReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        validatorCache.storePartial("cache-key", URI, "\"v1\"", received);
+
+        verify(s3Client).putObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class), validators.capture());
+        given(s3Client.getObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class))).willReturn(Optional.of(validators.getValue()));
+        PartialDownload partial = validatorCache.findPartial("cache-key").orElseThrow();
+        assertThat(partial.offset(), equalTo(6L));
+        assertThat(partial.validator(), equalTo("\"v1\""));
+        verify(s3Client).getObject(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class));
+    }
+
+    private static DownloadResponse aResponse() {
+        return ImmutableDownloadResponse.builder()
+            .result(DownloadResponse.Result.OK)
+            .etag("\"v1\"")
+            .sha256(DIGEST)
+            .size(6L)
+            .cacheKey("cache-key")
+            .build();
+    }
+}
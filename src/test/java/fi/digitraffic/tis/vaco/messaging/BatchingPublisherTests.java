@@ -0,0 +1,84 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.messaging.model.PublisherStatistics;
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingPublisherTests {
+
+    private static final String QUEUE = "test-queue";
+
+    @Mock
+    private SqsTemplate sqsTemplate;
+
+    private BatchingPublisher publisher;
+    private final List<List<Object>> sentBatches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        publisher = new BatchingPublisher(sqsTemplate, TestObjects.vacoProperties());
+        given(sqsTemplate.sendManyAsync(eq(QUEUE), anyCollection())).willAnswer(invocation -> {
+            Collection<Message<Object>> messages = invocation.getArgument(1);
+            sentBatches.add(messages.stream().map(Message::getPayload).toList());
+            return CompletableFuture.completedFuture(new SendResult.Batch<>(
+                messages.stream().map(m -> new SendResult<>(UUID.randomUUID(), QUEUE, m, Map.of())).toList(),
+                List.of()));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.close();
+    }
+
+    @Test
+    void coalescesMessagesWithSameKey() {
+        CompletableFuture<String> first = publisher.publish(QUEUE, "first", "entry-1");
+        CompletableFuture<String> second = publisher.publish(QUEUE, "second", "entry-1");
+        CompletableFuture<String> other = publisher.publish(QUEUE, "other", null);
+
+        CompletableFuture.allOf(first, second, other).join();
+
+        assertThat(first.join(), equalTo("first"));
+        assertThat(sentBatches, contains(List.of("second", "other")));
+        PublisherStatistics stats = publisher.getStats().get(QUEUE);
+        assertThat(stats.published(), equalTo(2L));
+        assertThat(stats.coalesced(), equalTo(1L));
+    }
+
+    @Test
+    void sendsAtMostTenMessagesPerBatch() {
+        List<CompletableFuture<Integer>> futures = IntStream.range(0, 25)
+            .mapToObj(i -> publisher.publish(QUEUE, i, null))
+            .toList();
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(sentBatches.stream().map(List::size).toList(), contains(10, 10, 5));
+        assertThat(publisher.getStats().get(QUEUE).batches(), equalTo(3L));
+    }
+}
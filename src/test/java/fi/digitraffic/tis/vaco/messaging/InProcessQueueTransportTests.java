@@ -0,0 +1,88 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.model.Message;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+class InProcessQueueTransportTests {
+
+    private static final String QUEUE = "test-queue";
+
+    private InProcessQueueTransport transport;
+    private VacoExecutors vacoExecutors;
+
+    @BeforeEach
+    void setUp() {
+        vacoExecutors = new VacoExecutors(TestObjects.vacoProperties());
+        transport = new InProcessQueueTransport(JsonMapper.builder().build(), TestObjects.vacoProperties(), vacoExecutors);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vacoExecutors.close();
+    }
+
+    @Test
+    void receivedMessageIsHiddenUntilDeleted() {
+        transport.send(QUEUE, "hello", (String) null).join();
+
+        List<Message> received = transport.receive(QUEUE, 10, Duration.ZERO);
+        assertThat(received, hasSize(1));
+        assertThat(received.getFirst().body(), equalTo("\"hello\""));
+        assertThat(transport.receive(QUEUE, 10, Duration.ZERO), empty());
+
+        transport.delete(QUEUE, received);
+        transport.changeVisibility(QUEUE, received, Duration.ZERO);
+        assertThat(transport.receive(QUEUE, 10, Duration.ZERO), empty());
+    }
+
+    @Test
+    void undeletedMessageIsRedeliveredAndEventuallyDeadLettered() {
+        transport.send(QUEUE, "poison", (String) null).join();
+
+        // test configuration allows three receives
+        for (int i = 0; i < 3; i++) {
+            List<Message> received = transport.receive(QUEUE, 10, Duration.ZERO);
+            assertThat(received, hasSize(1));
+            transport.changeVisibility(QUEUE, received, Duration.ZERO);
+        }
+
+        assertThat(transport.receive(QUEUE, 10, Duration.ZERO), empty());
+        List<Message> deadLettered = transport.receive(MessageQueue.DLQ.getQueueName(), 10, Duration.ofSeconds(1));
+        assertThat(deadLettered, hasSize(1));
+        assertThat(deadLettered.getFirst().body(), equalTo("\"poison\""));
+        // hand-off runs on the listeners executor instead of the common pool
+        assertThat(vacoExecutors.listeners().statistics().submitted(), equalTo(1L));
+    }
+
+    @Test
+    void delayedMessageBecomesVisibleAfterDelay() {
+        transport.send(QUEUE, "later", Duration.ofMillis(100)).join();
+
+        assertThat(transport.receive(QUEUE, 10, Duration.ZERO), empty());
+        assertThat(transport.receive(QUEUE, 10, Duration.ofSeconds(1)), hasSize(1));
+    }
+
+    @Test
+    void undeliveredMessagesWithSameKeyAreCoalesced() {
+        transport.send(QUEUE, "first", "entry-1").join();
+        transport.send(QUEUE, "second", "entry-1").join();
+
+        List<Message> received = transport.receive(QUEUE, 10, Duration.ZERO);
+        assertThat(received, hasSize(1));
+        assertThat(received.getFirst().body(), equalTo("\"second\""));
+    }
+}
@@ -0,0 +1,102 @@
+package fi.digitraffic.tis.vaco.messaging;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.messaging.model.MessageQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.sqs.model.Message;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class RoutingQueueTransportTests {
+
+    private InProcessQueueTransport inProcessQueueTransport;
+    private RoutingQueueTransport transport;
+    private VacoExecutors vacoExecutors;
+
+    @Mock
+    private SqsQueueTransport sqsQueueTransport;
+
+    @BeforeEach
+    void setUp() {
+        vacoExecutors = new VacoExecutors(TestObjects.vacoProperties());
+        inProcessQueueTransport = new InProcessQueueTransport(JsonMapper.builder().build(), TestObjects.vacoProperties(), vacoExecutors);
+        transport = new RoutingQueueTransport(inProcessQueueTransport, sqsQueueTransport);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vacoExecutors.close();
+        verifyNoMoreInteractions(sqsQueueTransport);
+    }
+
+    @Test
+    void jobQueuesStayInProcess() {
+        String jobs = MessageQueue.JOBS.getQueueName();
+        transport.send(jobs, "job", (String) null).join();
+
+        assertThat(inProcessQueueTransport.receive(jobs, 10, Duration.ZERO), hasSize(1));
+    }
+
+    @Test
+    void ruleProcessingQueuesUseSqsForExternalWorkers() {
+        String ruleQueue = MessageQueue.RULE_PROCESSING.munge("gtfs.canonical");
+        given(sqsQueueTransport.send(ruleQueue, "rule", (String) null)).willReturn(CompletableFuture.completedFuture("rule"));
+
+        transport.send(ruleQueue, "rule", (String) null).join();
+
+        verify(sqsQueueTransport).send(ruleQueue, "rule", (String) null);
+        assertThat(inProcessQueueTransport.receive(ruleQueue, 10, Duration.ZERO), empty());
+    }
+
+    @Test
+    void resultsFromExternalWorkersAreReceivedFromSqs() {
+        String results = MessageQueue.RULE_RESULTS_INGEST.getQueueName();
+        given(sqsQueueTransport.receive(results, 10, Duration.ZERO)).willReturn(List.of(Message.builder().body("{}").build()));
+
+        assertThat(transport.receive(results, 10, Duration.ZERO), hasSize(1));
+
+        verify(sqsQueueTransport).receive(results, 10, Duration.ZERO);
+    }
+
+    @Test
+    void inProcessDeadLettersAreForwardedToSqs() {
+        String jobs = MessageQueue.JOBS.getQueueName();
+        String dlq = MessageQueue.DLQ.getQueueName();
+        given(sqsQueueTransport.send(eq(dlq), any(JsonNode.class), isNull(String.class)))
+            .willAnswer(a -> CompletableFuture.completedFuture(a.getArgument(1)));
+        transport.send(jobs, "poison", (String) null).join();
+
+        // test configuration allows three receives
+        for (int i = 0; i < 3; i++) {
+            List<Message> received = transport.receive(jobs, 10, Duration.ZERO);
+            assertThat(received, hasSize(1));
+            transport.changeVisibility(jobs, received, Duration.ZERO);
+        }
+        assertThat(transport.receive(jobs, 10, Duration.ZERO), empty());
+
+        verify(sqsQueueTransport, timeout(1000)).send(eq(dlq), any(JsonNode.class), isNull(String.class));
+        assertThat(inProcessQueueTransport.receive(dlq, 10, Duration.ZERO), empty());
+    }
+}
@@ -0,0 +1,157 @@
+package fi.digitraffic.tis.vaco.packages;
+
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.configuration.PackageDownloads;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class PackageDownloadHandlerTests {
+
+    private Entry entry;
+    private Task task;
+
+    @Mock
+    private PackagesService packagesService;
+
+    @BeforeEach
+    void setUp() {
+        entry = TestObjects.anEntry("gtfs").build();
+        task = ImmutableTask.of("prepare.download", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(packagesService);
+    }
+
+    @Test
+    void streamsRequestedRangeOfPackage() throws IOException {
+        PackageDownloadHandler handler = new PackageDownloadHandler(packagesService, TestObjects.vacoProperties());
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=2-4");
+        given(packagesService.openPackage(entry, task, "result", "bytes=2-4", null))
+            .willReturn(Optional.of(content(GetObjectResponse.builder()
+                .eTag("\"abc\"")
+                .contentLength(3L)
+                .contentRange("bytes 2-4/10")
+                .build(), "cde")));
+
+        ResponseEntity<StreamingResponseBody> response = handler.download(entry, task, "result", request);
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.PARTIAL_CONTENT));
+        assertThat(response.getHeaders().getETag(), equalTo("\"abc\""));
+        assertThat(response.getHeaders().getContentLength(), equalTo(3L));
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE), equalTo("bytes 2-4/10"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        response.getBody().writeTo(body);
+        assertThat(body.toString(StandardCharsets.UTF_8), equalTo("cde"));
+    }
+
+    @Test
+    void servesMultipleRangesInFull() {
+        PackageDownloadHandler handler = new PackageDownloadHandler(packagesService, TestObjects.vacoProperties());
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=0-1,4-5");
+        given(packagesService.openPackage(eq(entry), eq(task), eq("result"), isNull(), isNull()))
+            .willReturn(Optional.of(content(GetObjectResponse.builder().contentLength(10L).build(), "abcdefghij")));
+
+        ResponseEntity<StreamingResponseBody> response = handler.download(entry, task, "result", request);
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getHeaders().getContentLength(), equalTo(10L));
+    }
+
+    @Test
+    void respondsNotModifiedWhenClientHasCurrentCopy() {
+        PackageDownloadHandler handler = new PackageDownloadHandler(packagesService, TestObjects.vacoProperties());
+        HttpHeaders request = new HttpHeaders();
+        request.setIfNoneMatch("\"abc\"");
+        given(packagesService.openPackage(entry, task, "result", null, "\"abc\""))
+            .willThrow(S3Exception.builder()
+                .statusCode(304)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                    .sdkHttpResponse(SdkHttpResponse.builder().statusCode(304).putHeader("ETag", "\"abc\"").build())
+                    .build())
+                .build());
+
+        ResponseEntity<StreamingResponseBody> response = handler.download(entry, task, "result", request);
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+        assertThat(response.getHeaders().getETag(), equalTo("\"abc\""));
+    }
+
+    @Test
+    void packageMissingFromS3IsNotFound() {
+        PackageDownloadHandler handler = new PackageDownloadHandler(packagesService, TestObjects.vacoProperties());
+        given(packagesService.openPackage(entry, task, "result", null, null))
+            .willThrow(NoSuchKeyException.builder().statusCode(404).build());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+            () -> handler.download(entry, task, "result", new HttpHeaders()));
+
+        assertThat(e.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void redirectsToPresignedUrlWhenEnabled() {
+        VacoProperties defaults = TestObjects.vacoProperties();
+        VacoProperties redirecting = new VacoProperties(
+            defaults.environment(), defaults.temporaryDirectory(), defaults.s3ProcessingBucket(), defaults.s3PackagesBucket(),
+            defaults.baseUrl(), defaults.contextUrl(), defaults.companyNameClaim(), defaults.aws(), defaults.azureAd(),
+            defaults.email(), defaults.cleanup(), defaults.msGraph(), defaults.encryptionKeys(), defaults.concurrency(),
+            defaults.sqsConsumer(), defaults.sqsPublisher(), defaults.inProcessQueues(), defaults.archiveVerification(),
+            defaults.validationMemoization(), defaults.feedPolling(), defaults.httpCaching(), defaults.downloadResumption(),
+            defaults.hostLimits(), defaults.gbfsSnapshots(), defaults.packaging(), new PackageDownloads(true, Duration.ofMinutes(1)),
+            defaults.ruleInputs(), defaults.taskClaims());
+        PackageDownloadHandler handler = new PackageDownloadHandler(packagesService, redirecting);
+        URI presigned = URI.create("https://packages.example.fi/result.zip?X-Amz-Signature=abc");
+        given(packagesService.presignPackage(eq(entry), eq(task), eq("result"), anyString())).willReturn(Optional.of(presigned));
+
+        ResponseEntity<StreamingResponseBody> response = handler.download(entry, task, "result", new HttpHeaders());
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.FOUND));
+        assertThat(response.getHeaders().getLocation(), equalTo(presigned));
+    }
+
+    private static ResponseInputStream<GetObjectResponse> content(GetObjectResponse response, String body) {
+        return new ResponseInputStream<>(response, AbortableInputStream.create(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+}
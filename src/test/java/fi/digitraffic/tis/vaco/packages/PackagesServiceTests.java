@@ -9,7 +9,9 @@ import fi.digitraffic.tis.vaco.db.model.ContextRecord;
 import fi.digitraffic.tis.vaco.db.model.CredentialsRecord;
 import fi.digitraffic.tis.vaco.db.model.EntryRecord;
 import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
+import fi.digitraffic.tis.vaco.db.repositories.PackageRepository;
 import fi.digitraffic.tis.vaco.db.repositories.TaskRepository;
+import fi.digitraffic.tis.vaco.packages.model.ImmutablePackage;
 import fi.digitraffic.tis.vaco.packages.model.Package;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
@@ -18,12 +20,16 @@ import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 
 class PackagesServiceTests extends SpringBootIntegrationTestBase {
@@ -38,7 +44,11 @@ class PackagesServiceTests extends SpringBootIntegrationTestBase {
     @Autowired
     private TaskRepository taskRepository;
     @Autowired
+    private PackageRepository packageRepository;
+    @Autowired
     private TaskService taskService;
+    @Autowired
+    private VacoProperties properties;
 
     @BeforeAll
     static void beforeAll(@Autowired VacoProperties vacoProperties) {
@@ -77,6 +87,52 @@ class PackagesServiceTests extends SpringBootIntegrationTestBase {
         assertThat(file.getFileName(), equalTo(Path.of("resulting.zip")));
     }
 
+    @Test
+    void packageAvailabilityIsReconciledAgainstS3() {
+        ImmutableEntry entry = TestObjects.anEntry("gtfs").build();
+        EntryRecord createdEntry = entryRepository.create(entry, Optional.empty(), Optional.empty()).get();
+        Task task = forceTaskCreation(createdEntry, ImmutableTask.of("FAKE_TASK", 1));
+        Package saved = packagesService.createPackage(recordMapper.toEntryBuilder(createdEntry, Optional.empty(), Optional.empty()).build(), task, "FAKE_RULE", ImmutableS3Path.of(createdEntry.publicId() + "/" + task.publicId()), "resulting.zip", p -> true);
+
+        assertThat(packagesService.findAvailablePackages(task), equalTo(List.of(saved)));
+
+        awsS3Client.deleteObject(DeleteObjectRequest.builder().bucket(properties.s3PackagesBucket()).key(saved.path()).build());
+        // existence is answered without asking S3 until reconciled
+        assertThat(packagesService.findAvailablePackages(task), equalTo(List.of(saved)));
+
+        packagesService.reconcilePackageAvailability();
+
+        assertThat(packagesService.findAvailablePackages(task), equalTo(List.of()));
+    }
+
+    @Test
+    void packagesUnknownToCacheAreAvailableUntilReconciled() {
+        EntryRecord first = entryRepository.create(TestObjects.anEntry("gtfs").build(), Optional.empty(), Optional.empty()).get();
+        EntryRecord second = entryRepository.create(TestObjects.anEntry("gtfs").build(), Optional.empty(), Optional.empty()).get();
+        Task firstTask = forceTaskCreation(first, ImmutableTask.of("FAKE_TASK", 1));
+        Task secondTask = forceTaskCreation(second, ImmutableTask.of("FAKE_TASK", 1));
+        // registered directly to database as if by another instance or before restart
+        Package stored = storeUncachedPackage(firstTask, "STORED", first.publicId() + "/" + firstTask.publicId() + "/stored.zip", true);
+        Package missing = storeUncachedPackage(firstTask, "MISSING", first.publicId() + "/" + firstTask.publicId() + "/missing.zip", false);
+        Package otherMissing = storeUncachedPackage(secondTask, "MISSING", second.publicId() + "/" + secondTask.publicId() + "/missing.zip", false);
+
+        // existence of registered packages is assumed without asking S3
+        assertThat(packagesService.findAvailablePackages(firstTask), containsInAnyOrder(stored, missing));
+        assertThat(packagesService.findAvailablePackages(secondTask), equalTo(List.of(otherMissing)));
+
+        packagesService.reconcilePackageAvailability();
+
+        assertThat(packagesService.findAvailablePackages(firstTask), equalTo(List.of(stored)));
+        assertThat(packagesService.findAvailablePackages(secondTask), equalTo(List.of()));
+    }
+
+    private Package storeUncachedPackage(Task task, String name, String path, boolean uploaded) {
+        if (uploaded) {
+            awsS3Client.putObject(PutObjectRequest.builder().bucket(properties.s3PackagesBucket()).key(path).build(), RequestBody.fromString(name));
+        }
+        return recordMapper.toPackage(task, packageRepository.upsertPackage(ImmutablePackage.of(task, name, path)));
+    }
+
     /**
      * XXX: This bypasses task dependency resolution and DOES NOT match with production code! This exists only to allow
      *     for testing of PackagesService more easily.
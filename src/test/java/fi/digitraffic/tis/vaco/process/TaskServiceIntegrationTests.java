@@ -2,9 +2,12 @@ package fi.digitraffic.tis.vaco.process;
 
 import fi.digitraffic.tis.Constants;
 import fi.digitraffic.tis.SpringBootIntegrationTestBase;
+import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
 import fi.digitraffic.tis.vaco.entries.EntryService;
+import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.process.model.TaskTransition;
 import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.db.model.EntryRecord;
@@ -14,12 +17,17 @@ import fi.digitraffic.tis.vaco.rules.RuleName;
 import fi.digitraffic.tis.vaco.rules.model.netex.ImmutableEnturNetexValidatorConfiguration;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertAll;
 
 class TaskServiceIntegrationTests extends SpringBootIntegrationTestBase {
@@ -36,6 +44,9 @@ class TaskServiceIntegrationTests extends SpringBootIntegrationTestBase {
     @Autowired
     private QueueHandlerService queueHandlerService;
 
+    @Autowired
+    private JdbcTemplate jdbc;
+
     @Test
     void doesNotAddUnnecessaryConversionTasksForNetexValidation() {
         Entry e = ImmutableEntry.builder()
@@ -62,6 +73,54 @@ class TaskServiceIntegrationTests extends SpringBootIntegrationTestBase {
         assertTask(t.get(2), "netex.entur", 200);
     }
 
+    @Test
+    void claimedTasksAreNotAvailableToOtherWorkersUntilReleased() {
+        Entry entry = entryService.create(TestObjects.anEntry("gtfs").build()).get();
+
+        List<Task> claimed = taskService.claimTasksToExecute(entry);
+
+        assertThat(claimed, not(empty()));
+        assertThat(taskService.claimTasksToExecute(entry), empty());
+
+        claimed.forEach(task -> taskService.releaseTask(entry, task));
+
+        assertThat(taskService.claimTasksToExecute(entry).stream().map(Task::id).toList(),
+            equalTo(claimed.stream().map(Task::id).toList()));
+    }
+
+    @Test
+    void abandonedClaimsCanBeClaimedAgainAfterLeaseExpires() {
+        Entry entry = entryService.create(TestObjects.anEntry("gtfs").build()).get();
+        List<Task> claimed = taskService.claimTasksToExecute(entry);
+        assertThat(claimed, not(empty()));
+        assertThat(taskService.findEntriesWithExpiredClaims(), not(hasItem(entry.publicId())));
+
+        // simulate the claiming node dying before the lease of one hour in tests
+        claimed.forEach(task -> jdbc.update(
+            "UPDATE task SET started = NOW() - INTERVAL '2 hours', updated = NOW() - INTERVAL '2 hours' WHERE id = ?",
+            task.id()));
+
+        assertThat(taskService.findEntriesWithExpiredClaims(), hasItem(entry.publicId()));
+        assertThat(taskService.claimTasksToExecute(entry).stream().map(Task::id).toList(),
+            equalTo(claimed.stream().map(Task::id).toList()));
+        assertThat(taskService.findEntriesWithExpiredClaims(), not(hasItem(entry.publicId())));
+    }
+
+    @Test
+    void cancelsMultipleTasksInOneTransition() {
+        Entry entry = entryService.create(TestObjects.anEntry("gtfs").build()).get();
+        List<Task> tasks = taskService.findTasks(entry);
+
+        List<Task> cancelled = taskService.transitionTasks(entry, tasks, TaskTransition.cancelled());
+
+        assertThat(cancelled.stream().map(Task::id).toList(), equalTo(tasks.stream().map(Task::id).toList()));
+        cancelled.forEach(task -> assertAll(
+            () -> assertThat(task.status(), equalTo(Status.CANCELLED)),
+            () -> assertThat(task.started(), notNullValue()),
+            () -> assertThat(task.completed(), notNullValue())
+        ));
+    }
+
     private void assertTask(Task task, String name, int priority) {
         assertAll(
             () -> assertThat(task.name(), equalTo(name)),
@@ -4,6 +4,7 @@ import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.Constants;
 import fi.digitraffic.tis.vaco.TestConstants;
+import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.caching.CachingService;
 import fi.digitraffic.tis.vaco.db.mapper.RecordMapper;
 import fi.digitraffic.tis.vaco.db.model.EntryRecord;
@@ -69,7 +70,7 @@ class TaskServiceTests {
     void setUp() {
         objectMapper = new ObjectMapper();
         recordMapper = new RecordMapper(objectMapper);
-        taskService = new TaskService(taskRepository, rulesetService, cachingService, recordMapper);
+        taskService = new TaskService(taskRepository, rulesetService, cachingService, recordMapper, packagesService, TestObjects.vacoProperties());
         entry = ImmutableEntryRecord.of(
                 1000000L,
                 NanoIdUtils.randomNanoId(),
@@ -7,8 +7,8 @@ import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.datatype.guava.GuavaModule;
 import fi.digitraffic.tis.Constants;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.db.model.FindingRecord;
 import fi.digitraffic.tis.vaco.db.model.ImmutableFindingRecord;
@@ -20,12 +20,12 @@ import fi.digitraffic.tis.vaco.findings.model.Finding;
 import fi.digitraffic.tis.vaco.findings.model.FindingSeverity;
 import fi.digitraffic.tis.vaco.findings.model.ImmutableFinding;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.DelegationJobMessage;
 import fi.digitraffic.tis.vaco.messaging.model.QueueNames;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
 import fi.digitraffic.tis.vaco.process.model.Task;
-import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
 import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
 import fi.digitraffic.tis.vaco.rules.model.ResultMessage;
@@ -54,12 +54,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.sqs.model.Message;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
-import java.util.stream.Stream;
 
 import static fi.digitraffic.tis.vaco.rules.ResultProcessorTestHelpers.asResultMessage;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -82,7 +82,6 @@ class RuleResultsListenerTests {
     private VacoProperties vacoProperties;
     @Mock private MessagingService messagingService;
     @Mock private FindingService findingService;
-    @Mock private QueueHandlerService queueHandlerService;
     @Mock private EntryService entryService;
     @Mock private TaskService taskService;
     @Mock private NetexEnturValidatorResultProcessor netexEnturProcessor;
@@ -105,7 +104,6 @@ class RuleResultsListenerTests {
             messagingService,
             findingService,
             objectMapper,
-            queueHandlerService,
             taskService,
             entryService,
             netexEnturProcessor,
@@ -117,7 +115,9 @@ class RuleResultsListenerTests {
             gtfsToNetexResultProcessor,
             netexToGtfsRuleResultProcessor,
             findingRepository,
-            rulesetService);
+            rulesetService,
+            new VacoExecutors(vacoProperties),
+            vacoProperties);
     }
 
     @AfterEach
@@ -125,7 +125,6 @@ class RuleResultsListenerTests {
         verifyNoMoreInteractions(
             messagingService,
             findingService,
-            queueHandlerService,
             entryService,
             taskService,
             netexEnturProcessor,
@@ -170,7 +169,6 @@ class RuleResultsListenerTests {
 
         JsonNode message = objectMapper.readValue(jsonString, JsonNode.class);
         Task task = ImmutableTask.of("gtfs.canonical", 100).withPublicId("abc2");
-        given(taskService.markStatus(task, Status.FAILED)).willReturn(task);
         given(taskService.findTask(task.publicId())).willReturn(Optional.of(task));
 
         ImmutableEntry.Builder entryBuilder = TestObjects.anEntry("gtfs");
@@ -214,7 +212,7 @@ class RuleResultsListenerTests {
         assertEquals(ruleset.afterDependencies(), Set.of("gtfs.canonical"));
 
         given(findingRepository.create(finding)).willReturn(findingRecord);
-        given(taskService.trackTask(entry, task, ProcessingState.COMPLETE)).willReturn(task);
+        given(taskService.completeTask(entry, task, Status.FAILED)).willReturn(task);
 
         assertThat(ruleResultsListener.handleDeadLetter(message).join(), equalTo(true));
 
@@ -246,15 +244,14 @@ class RuleResultsListenerTests {
 
         givenMatchingResultProcessorIsUsed(ruleName, entry, resultProcessor, gtfs2netexMessage);
         ruleResultsListener.handleRuleResultsIngestQueue();
-        then(messagingService).should().deleteMessage(QueueNames.VACO_RULES_RESULTS, gtfs2netexMessage);
-        assertThat(submittedProcessingJob.getValue().entry(), equalTo(entry));
+        then(messagingService).should().deleteMessages(QueueNames.VACO_RULES_RESULTS, List.of(gtfs2netexMessage));
+        assertThat(submittedProcessingJob.getValue().entry(), equalTo(EntryReference.of(entry)));
     }
 
     private void givenMatchingResultProcessorIsUsed(String ruleName, Entry entry, ResultProcessor resultProcessor, Message message) {
         givenResultPrerequisitesAreMet(ruleName, entry);
         givenMessageIsInQueue(QueueNames.VACO_RULES_RESULTS, message);
         givenResultProcessorCompletesWith(resultProcessor, true);
-        givenGetEntry(entry).willReturn(entry);
         givenResultProcessingResultsInNewProcessingJobSubmission();
     }
 
@@ -264,7 +261,7 @@ class RuleResultsListenerTests {
     }
 
     private void givenMessageIsInQueue(String queueName, Message gtfs2netexMessage) {
-        given(messagingService.readMessages(queueName)).willReturn(Stream.of(gtfs2netexMessage));
+        given(messagingService.receiveMessages(queueName, 10, vacoProperties.sqsConsumer().waitTime())).willReturn(List.of(gtfs2netexMessage));
     }
 
     /**
@@ -274,18 +271,13 @@ class RuleResultsListenerTests {
         givenFindEntry(entry).willReturn(Optional.of(entry));
         givenFindTask(ruleName, entry).willReturn(Optional.of(entry.tasks().get(0)));
         givenTaskProgressIsTracked();
-        givenTaskStatusIsTracked();
+        givenTaskIsCompleted();
     }
 
     private BDDMockito.BDDMyOngoingStubbing<Boolean> givenResultProcessorCompletesWith(ResultProcessor resultProcessor, boolean result) {
         return given(resultProcessor.processResults(any(), any(), any())).willReturn(result);
     }
 
-    @NotNull
-    private BDDMockito.BDDMyOngoingStubbing<Entry> givenGetEntry(Entry entry) {
-        return given(queueHandlerService.getEntry(entry.publicId()));
-    }
-
     @NotNull
     private BDDMockito.BDDMyOngoingStubbing<Optional<Entry>> givenFindEntry(Entry entry) {
         return given(entryService.findEntry(entry.publicId()));
@@ -307,8 +299,8 @@ class RuleResultsListenerTests {
         given(taskService.trackTask(any(), any(), any())).will(a -> a.getArgument(1));
     }
 
-    private void givenTaskStatusIsTracked() {
-        given(taskService.markStatus(any(), any(), any())).will(a -> a.getArgument(1));
+    private void givenTaskIsCompleted() {
+        given(taskService.completeTask(any(), any(), any())).will(a -> a.getArgument(1));
     }
 
     private static Entry entryWithTask(Function<Entry, Task> taskCreator) {
@@ -1,20 +1,28 @@
 package fi.digitraffic.tis.vaco.rules.internal;
 
 import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
+import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.datatype.guava.GuavaModule;
 import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.aws.s3.S3UploadStream;
 import fi.digitraffic.tis.utilities.Streams;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.archives.ArchiveVerifier;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.entries.model.Status;
 import fi.digitraffic.tis.vaco.featureflags.FeatureFlagsService;
 import fi.digitraffic.tis.vaco.findings.FindingService;
+import fi.digitraffic.tis.vaco.findings.model.Finding;
+import fi.digitraffic.tis.vaco.db.repositories.SummaryRepository;
+import fi.digitraffic.tis.vaco.http.StreamedResponse;
 import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.http.ValidatorCache;
 import fi.digitraffic.tis.vaco.http.model.DownloadResponse;
 import fi.digitraffic.tis.vaco.http.model.ImmutableDownloadResponse;
 import fi.digitraffic.tis.vaco.process.TaskService;
@@ -24,6 +32,7 @@ import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
 import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
 import fi.digitraffic.tis.vaco.rules.model.ResultMessage;
 import fi.digitraffic.tis.vaco.ruleset.model.TransitDataFormat;
+import fi.digitraffic.tis.vaco.summary.model.Summary;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -34,10 +43,12 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -47,6 +58,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -73,28 +85,34 @@ class DownloadRuleTests {
     private EntryService entryService;
     @Mock
     private FeatureFlagsService featureFlagsService;
+    @Mock
+    private S3UploadStream upload;
+    @Mock
+    private SummaryRepository summaryRepository;
+    @Mock
+    private ValidatorCache validatorCache;
 
     @Captor
     private ArgumentCaptor<Path> tempFilePath;
     @Captor
     private ArgumentCaptor<S3Path> targetPath;
-    @Captor
-    private ArgumentCaptor<Path> sourcePath;
 
     @BeforeEach
     void setUp() {
         objectMapper = JsonMapper.builder().addModule(new GuavaModule()).build();
         vacoProperties = TestObjects.vacoProperties();
-        rule = new DownloadRule(objectMapper, taskService, vacoProperties, httpClient, s3Client, findingService, entryService, featureFlagsService);
+        VacoExecutors vacoExecutors = new VacoExecutors(vacoProperties);
+        GbfsSnapshotAssembler gbfsSnapshotAssembler = new GbfsSnapshotAssembler(vacoProperties, httpClient, s3Client, summaryRepository, objectMapper, vacoExecutors);
+        rule = new DownloadRule(taskService, vacoProperties, httpClient, s3Client, findingService, entryService, featureFlagsService, vacoExecutors, new ArchiveVerifier(vacoProperties, vacoExecutors), gbfsSnapshotAssembler, validatorCache);
     }
 
     @AfterEach
     void tearDown() {
-        verifyNoMoreInteractions(taskService, httpClient, s3Client, findingService, entryService, featureFlagsService);
+        verifyNoMoreInteractions(taskService, httpClient, s3Client, findingService, entryService, featureFlagsService, summaryRepository, validatorCache);
     }
 
     @Test
-    void ruleExecutionForGtfs() throws URISyntaxException {
+    void ruleExecutionForGtfs() throws URISyntaxException, IOException {
         ImmutableEntry.Builder entryBuilder = TestObjects.anEntry(TransitDataFormat.GTFS.fieldName());
         Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
         Entry entry = entryBuilder.addTasks(dlTask).build();
@@ -104,23 +122,28 @@ class DownloadRuleTests {
         given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
         given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
         given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
-        given(httpClient.downloadFile(tempFilePath.capture(), eq(entry.url()), eq(entry))).willAnswer(a -> CompletableFuture.completedFuture(response));
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), targetPath.capture())).willReturn(upload);
+        given(httpClient.downloadArchive(tempFilePath.capture(), eq(entry.url()), eq(entry), eq(upload))).willAnswer(a -> CompletableFuture.completedFuture(response));
         given(taskService.trackTask(entry, dlTask, ProcessingState.UPDATE)).willReturn(dlTask);
-        given(s3Client.uploadFile(eq(vacoProperties.s3PackagesBucket()), targetPath.capture(), sourcePath.capture())).willReturn(CompletableFuture.completedFuture(null));
 
         ResultMessage result = rule.execute(entry).join();
 
         assertThat(result.ruleName(), equalTo(DownloadRule.PREPARE_DOWNLOAD_TASK));
+        verify(upload).complete();
+        verify(upload).close();
 
         assertThat(tempFilePath.getValue().toString(), endsWith("entries/" + entry.publicId() + "/tasks/prepare.download/gtfs.zip"));
         assertThat(targetPath.getValue().toString(), equalTo(entry.publicId() + "/" + dlTask.publicId() + "/gtfs.zip"));
+        verify(validatorCache).store(entry.url(), response, targetPath.getValue());
     }
 
     @Captor
-    private ArgumentCaptor<Path> feedFiles;
+    private ArgumentCaptor<String> feedUrls;
+    @Captor
+    private ArgumentCaptor<Summary> summary;
 
     @Test
-    void ruleExecutionForGbfs() throws URISyntaxException {
+    void ruleExecutionForGbfs() throws URISyntaxException, IOException {
         ImmutableEntry.Builder entryBuilder = TestObjects.anEntry(TransitDataFormat.GBFS.fieldName());
         Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
         Entry entry = entryBuilder.addTasks(dlTask).build();
@@ -135,34 +158,39 @@ class DownloadRuleTests {
         given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
         given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
         given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
-        given(httpClient.downloadFile(feedFiles.capture(), any(String.class), eq(entry)))
-            // 1) rule downloads the discovery file
-            .willAnswer(a -> CompletableFuture.completedFuture(response))
-            // 2) rule downloads all the other files as well
-            .willAnswer(a -> {
-                String path = a.getArgument(1).toString();
-                path = path.substring(path.lastIndexOf("/") + 1);
-
-                // overwrite assumed downloaded file with our test file to simulate "downloading" for discovered files
-                Files.copy(resolveTestFile("lahti_gbfs/" + path), (Path) a.getArgument(0));
-
-                return CompletableFuture.completedFuture(ImmutableDownloadResponse.builder().body((Path) a.getArgument(0)).result(DownloadResponse.Result.OK).build());
-            });
+        // 1) rule downloads the discovery file
+        given(httpClient.downloadFile(tempFilePath.capture(), eq(entry.url()), eq(entry))).willReturn(CompletableFuture.completedFuture(response));
+        // 2) rule streams all the discovered files into the archive
+        given(httpClient.openStream(feedUrls.capture(), eq(entry))).willAnswer(a -> {
+            String path = a.getArgument(0).toString();
+            path = path.substring(path.lastIndexOf("/") + 1);
+            StreamedResponse feed = mock(StreamedResponse.class);
+            given(feed.statusCode()).willReturn(200);
+            given(feed.body()).willReturn(Files.newInputStream(resolveTestFile("lahti_gbfs/" + path)));
+            return CompletableFuture.completedFuture(feed);
+        });
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), targetPath.capture())).willReturn(upload);
 
         given(entryService.updateEtag(entry, newEtag)).willReturn(ImmutableEntry.copyOf(entry).withEtag(newEtag));
         given(taskService.trackTask(entry, dlTask, ProcessingState.UPDATE)).willReturn(dlTask);
-        given(s3Client.uploadFile(eq(vacoProperties.s3PackagesBucket()), targetPath.capture() , sourcePath.capture())).willReturn(CompletableFuture.completedFuture(null));
 
         ResultMessage result = rule.execute(entry).join();
 
         assertThat(result.ruleName(), equalTo(DownloadRule.PREPARE_DOWNLOAD_TASK));
-
+        assertThat(tempFilePath.getValue().getFileName().toString(), equalTo("gbfs.json"));
         assertThat("Discovery downloaded all files",
-            Streams.collect(feedFiles.getAllValues(), f -> f.getFileName().toString()),
-            equalTo(List.of("gbfs.json", "system_information.json", "station_information.json", "vehicle_types.json", "station_status.json", "free_bike_status.json", "system_pricing_plans.json")));
+            Streams.collect(feedUrls.getAllValues(), f -> f.substring(f.lastIndexOf("/") + 1)),
+            equalTo(List.of("system_information.json", "station_information.json", "vehicle_types.json", "station_status.json", "free_bike_status.json", "system_pricing_plans.json")));
         assertThat(
             "Download of discovered GBFS files resulted in a single archive",
             targetPath.getValue().toString(), equalTo(entry.publicId() + "/" + dlTask.publicId() + "/gbfs.zip"));
+        verify(upload).complete();
+
+        verify(summaryRepository).create(summary.capture());
+        assertThat(summary.getValue().name(), equalTo(GbfsSnapshotAssembler.FEEDS_SUMMARY));
+        List<Map<String, String>> feeds = objectMapper.readValue(summary.getValue().raw(), new TypeReference<>() {});
+        assertThat(Streams.collect(feeds, f -> f.get("status")), equalTo(List.of("200", "200", "200", "200", "200", "200")));
+        assertThat(Streams.filter(feeds, f -> Long.parseLong(f.get("bytes")) > 0).toList().size(), equalTo(6));
     }
 
     @Test
@@ -186,7 +214,7 @@ class DownloadRuleTests {
     }
 
     @Test
-    void marksTaskFailedOnUnrecoverableException() {
+    void marksTaskFailedOnUnrecoverableException() throws IOException {
         ImmutableEntry.Builder entryBuilder = TestObjects.anEntry(TransitDataFormat.GTFS.fieldName());
         Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
         Entry entry = entryBuilder.addTasks(dlTask).build();
@@ -194,7 +222,8 @@ class DownloadRuleTests {
         given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
         given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
         given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
-        given(httpClient.downloadFile(any(Path.class), eq(entry.url()), eq(entry)))
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class))).willReturn(upload);
+        given(httpClient.downloadArchive(any(Path.class), eq(entry.url()), eq(entry), eq(upload)))
             .willReturn(CompletableFuture.failedFuture(new RuntimeException("connection refused")));
         given(taskService.markStatus(entry, dlTask, Status.FAILED)).willReturn(dlTask);
 
@@ -203,6 +232,105 @@ class DownloadRuleTests {
         assertThat(result.uploadedFiles().isEmpty(), equalTo(true));
         verify(taskService).markStatus(entry, dlTask, Status.FAILED);
         verify(taskService, never()).trackTask(entry, dlTask, ProcessingState.COMPLETE);
+        verify(upload, never()).complete();
+        verify(upload).close();
+    }
+
+    @Test
+    void reusesPreviousPackageInContextWhenContentIsUnchanged() throws URISyntaxException {
+        String executionContext = "scheduled";
+        String digest = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+        Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
+        Entry entry = TestObjects.anEntry(TransitDataFormat.GTFS.fieldName()).context(executionContext).addTasks(dlTask).build();
+        Task previousTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(4000000L).withPublicId(NanoIdUtils.randomNanoId());
+        Entry previousEntry = ImmutableEntry.copyOf(entry).withPublicId(NanoIdUtils.randomNanoId());
+        S3Path previousPath = S3Path.of(previousEntry.publicId() + "/" + previousTask.publicId() + "/gtfs.zip");
+        DownloadResponse response = ImmutableDownloadResponse.builder()
+            .body(resolveTestFile("padasjoen_kunta.zip"))
+            .result(DownloadResponse.Result.OK)
+            .sha256(digest)
+            .build();
+
+        given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
+        given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
+        given(entryService.findLatestEntryForContext(entry.businessId(), executionContext)).willReturn(Optional.of(previousEntry));
+        given(taskService.findTask(previousEntry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(previousTask));
+        given(s3Client.objectTags(vacoProperties.s3PackagesBucket(), previousPath)).willReturn(Map.of(DownloadRule.CONTENT_DIGEST_TAG, digest));
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class))).willReturn(upload);
+        given(httpClient.downloadArchive(any(Path.class), eq(entry.url()), eq(entry), eq(upload))).willReturn(CompletableFuture.completedFuture(response));
+        given(taskService.trackTask(entry, dlTask, ProcessingState.UPDATE)).willReturn(dlTask);
+        given(s3Client.copyFile(eq(vacoProperties.s3PackagesBucket()), eq(previousPath), eq(vacoProperties.s3PackagesBucket()), targetPath.capture()))
+            .willReturn(CompletableFuture.completedFuture(null));
+
+        ResultMessage result = rule.execute(entry).join();
+
+        assertThat(result.uploadedFiles().size(), equalTo(1));
+        assertThat(targetPath.getValue().toString(), equalTo(entry.publicId() + "/" + dlTask.publicId() + "/gtfs.zip"));
+        verify(findingService).reportFinding(any(Finding.class));
+        verify(validatorCache).store(entry.url(), response, previousPath);
+        verify(upload, never()).complete();
+        verify(upload).close();
+    }
+
+    @Test
+    void uploadsChangedContentAlthoughPreviousPackageInContextExists() throws URISyntaxException, IOException {
+        String executionContext = "scheduled";
+        String digest = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+        Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
+        Entry entry = TestObjects.anEntry(TransitDataFormat.GTFS.fieldName()).context(executionContext).addTasks(dlTask).build();
+        Task previousTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(4000000L).withPublicId(NanoIdUtils.randomNanoId());
+        Entry previousEntry = ImmutableEntry.copyOf(entry).withPublicId(NanoIdUtils.randomNanoId());
+        S3Path previousPath = S3Path.of(previousEntry.publicId() + "/" + previousTask.publicId() + "/gtfs.zip");
+        DownloadResponse response = ImmutableDownloadResponse.builder()
+            .body(resolveTestFile("padasjoen_kunta.zip"))
+            .result(DownloadResponse.Result.OK)
+            .sha256(digest)
+            .build();
+
+        given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
+        given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
+        given(entryService.findLatestEntryForContext(entry.businessId(), executionContext)).willReturn(Optional.of(previousEntry));
+        given(taskService.findTask(previousEntry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(previousTask));
+        given(s3Client.objectTags(vacoProperties.s3PackagesBucket(), previousPath)).willReturn(Map.of(DownloadRule.CONTENT_DIGEST_TAG, "0123456789abcdef"));
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), targetPath.capture())).willReturn(upload);
+        given(httpClient.downloadArchive(any(Path.class), eq(entry.url()), eq(entry), eq(upload))).willReturn(CompletableFuture.completedFuture(response));
+        given(taskService.trackTask(entry, dlTask, ProcessingState.UPDATE)).willReturn(dlTask);
+
+        ResultMessage result = rule.execute(entry).join();
+
+        assertThat(result.uploadedFiles().size(), equalTo(1));
+        verify(upload).complete();
+        verify(upload).close();
+        verify(s3Client).tagObject(vacoProperties.s3PackagesBucket(), targetPath.getValue(), Map.of(DownloadRule.CONTENT_DIGEST_TAG, digest));
+        verify(validatorCache).store(entry.url(), response, targetPath.getValue());
+    }
+
+    @Test
+    void discardsUploadOfInvalidArchive() throws IOException {
+        ImmutableEntry.Builder entryBuilder = TestObjects.anEntry(TransitDataFormat.GTFS.fieldName());
+        Task dlTask = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
+        Entry entry = entryBuilder.addTasks(dlTask).build();
+        DownloadResponse response = ImmutableDownloadResponse.builder()
+            .body(Path.of("gtfs.zip"))
+            .result(DownloadResponse.Result.OK)
+            .archiveError("zip END header not found")
+            .build();
+
+        given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
+        given(taskService.trackTask(entry, dlTask, ProcessingState.START)).willReturn(dlTask);
+        given(featureFlagsService.isFeatureFlagEnabled("tasks.prepareDownload.skipDownloadOnStaleETag")).willReturn(true);
+        given(s3Client.openUpload(eq(vacoProperties.s3PackagesBucket()), any(S3Path.class))).willReturn(upload);
+        given(httpClient.downloadArchive(any(Path.class), eq(entry.url()), eq(entry), eq(upload))).willReturn(CompletableFuture.completedFuture(response));
+        given(taskService.markStatus(entry, dlTask, Status.CANCELLED)).willReturn(dlTask);
+
+        ResultMessage result = rule.execute(entry).join();
+
+        assertThat(result.uploadedFiles().isEmpty(), equalTo(true));
+        verify(findingService).reportFinding(any(Finding.class));
+        verify(upload, never()).complete();
+        verify(upload).close();
     }
 
     @NotNull
@@ -0,0 +1,287 @@
+package fi.digitraffic.tis.vaco.rules.internal;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.aws.s3.S3UploadStream;
+import fi.digitraffic.tis.utilities.Streams;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
+import fi.digitraffic.tis.vaco.configuration.GbfsSnapshots;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.db.repositories.SummaryRepository;
+import fi.digitraffic.tis.vaco.http.HostLimiter;
+import fi.digitraffic.tis.vaco.http.StreamedResponse;
+import fi.digitraffic.tis.vaco.http.VacoHttpClient;
+import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
+import fi.digitraffic.tis.vaco.summary.model.Summary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class GbfsSnapshotAssemblerTests {
+
+    private static final String FEEDS_URL = "https://gbfs.example.fi/";
+
+    private GbfsSnapshotAssembler assembler;
+    private VacoProperties vacoProperties;
+    private ObjectMapper objectMapper;
+    private VacoExecutors vacoExecutors;
+    private Entry entry;
+    private Task task;
+    private S3Path target;
+
+    @Mock
+    private VacoHttpClient httpClient;
+    @Mock
+    private S3Client s3Client;
+    @Mock
+    private SummaryRepository summaryRepository;
+    @Mock
+    private S3UploadStream upload;
+
+    @Captor
+    private ArgumentCaptor<Summary> summary;
+
+    @BeforeEach
+    void setUp() {
+        VacoProperties defaults = TestObjects.vacoProperties();
+        vacoProperties = new VacoProperties(
+            defaults.environment(), defaults.temporaryDirectory(), defaults.s3ProcessingBucket(), defaults.s3PackagesBucket(),
+            defaults.baseUrl(), defaults.contextUrl(), defaults.companyNameClaim(), defaults.aws(), defaults.azureAd(),
+            defaults.email(), defaults.cleanup(), defaults.msGraph(), defaults.encryptionKeys(), defaults.concurrency(),
+            defaults.sqsConsumer(), defaults.sqsPublisher(), defaults.inProcessQueues(), defaults.archiveVerification(),
+            defaults.validationMemoization(), defaults.feedPolling(), defaults.httpCaching(), defaults.downloadResumption(),
+            defaults.hostLimits(), new GbfsSnapshots(2, Duration.ofMillis(300), 1), defaults.packaging(),
+            defaults.packageDownloads(), defaults.ruleInputs(), defaults.taskClaims());
+        objectMapper = JsonMapper.builder().build();
+        vacoExecutors = new VacoExecutors(vacoProperties);
+        assembler = new GbfsSnapshotAssembler(vacoProperties, httpClient, s3Client, summaryRepository, objectMapper, vacoExecutors);
+        entry = TestObjects.anEntry("gbfs").build();
+        task = ImmutableTask.of(DownloadRule.PREPARE_DOWNLOAD_TASK, -1).withId(5000000L);
+        target = S3Path.of(entry.publicId() + "/task/gbfs.zip");
+        given(s3Client.openUpload(vacoProperties.s3PackagesBucket(), target)).willReturn(upload);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vacoExecutors.close();
+    }
+
+    @Test
+    void feedsWithErrorStatusAreLeftOut() throws IOException {
+        StreamedResponse found = aResponse(200, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        StreamedResponse missing = aResponse(404, InputStream.nullInputStream());
+        givenResponses(Map.of(
+            "system_information", CompletableFuture.completedFuture(found),
+            "station_status", CompletableFuture.completedFuture(missing)));
+
+        assertThat(assembler.assemble(entry, task, discovery("system_information", "station_status"), target), equalTo(Optional.of(target)));
+
+        verify(upload).complete();
+        verify(missing).close();
+        List<Map<String, String>> feeds = feedSummary();
+        assertThat(Streams.collect(feeds, f -> f.get("status")), equalTo(List.of("200", "404")));
+        assertThat(Streams.collect(feeds, f -> f.get("bytes")), equalTo(List.of("2", "0")));
+    }
+
+    @Test
+    void stalledFeedBodyFailsSnapshotOnceTimeoutPasses() throws IOException {
+        StalledInputStream stalled = new StalledInputStream();
+        StreamedResponse response = aResponse(200, stalled);
+        givenResponses(Map.of("free_bike_status", CompletableFuture.completedFuture(response)));
+        Path discovery = discovery("free_bike_status");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+            () -> assertThrows(RuleExecutionException.class, () -> assembler.assemble(entry, task, discovery, target)));
+
+        assertThat(stalled.closed.getCount(), equalTo(0L));
+        verify(response).close();
+        verify(upload, never()).complete();
+        verify(summaryRepository).create(summary.capture());
+    }
+
+    @Test
+    void feedWithoutResponseWithinTimeoutIsLeftOut() throws IOException {
+        givenResponses(Map.of("vehicle_types", new CompletableFuture<>()));
+
+        assertThat(assembler.assemble(entry, task, discovery("vehicle_types"), target), equalTo(Optional.of(target)));
+
+        verify(upload).complete();
+        assertThat(Streams.collect(feedSummary(), f -> f.get("status")), equalTo(List.of("timeout")));
+    }
+
+    @Test
+    void feedsAreRequestedAtMostWindowAhead() throws IOException {
+        Map<String, CompletableFuture<StreamedResponse>> responses = new LinkedHashMap<>();
+        List<String> names = List.of("system_information", "station_information", "station_status");
+        names.forEach(name -> responses.put(name, new CompletableFuture<>()));
+        givenResponses(responses);
+        Path discovery = discovery(names.toArray(String[]::new));
+
+        CompletableFuture<Optional<S3Path>> assembled = CompletableFuture.supplyAsync(() -> assembler.assemble(entry, task, discovery, target));
+
+        // window is limited by both maxConcurrentFeeds and host limits, which are 2 in tests
+        verify(httpClient, timeout(1000)).openStream(anyString(), eq(entry));
+        verify(httpClient, timeout(1000)).tryOpenStream(anyString(), eq(entry));
+        verify(httpClient, after(100).times(1)).openStream(anyString(), eq(entry));
+        verify(httpClient, times(1)).tryOpenStream(anyString(), eq(entry));
+
+        responses.get("system_information").complete(aResponse(200, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+        verify(httpClient, timeout(1000).times(2)).tryOpenStream(anyString(), eq(entry));
+
+        responses.get("station_information").complete(aResponse(200, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+        responses.get("station_status").complete(aResponse(200, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+        assertThat(assembled.join(), equalTo(Optional.of(target)));
+        assertThat(Streams.collect(feedSummary(), f -> f.get("status")), equalTo(List.of("200", "200", "200")));
+    }
+
+    @Test
+    void concurrentSnapshotsOfSameHostDoNotWaitForEachOther() throws IOException {
+        HostLimiter hostLimiter = new HostLimiter(vacoProperties);
+        // both snapshots hold one of the host's two permits before either of their responses arrives
+        CountDownLatch bothRequested = new CountDownLatch(2);
+        given(httpClient.openStream(anyString(), eq(entry))).willAnswer(a -> {
+            HostLimiter.Permit permit = hostLimiter.acquire(a.getArgument(0));
+            bothRequested.countDown();
+            bothRequested.await(5, TimeUnit.SECONDS);
+            return CompletableFuture.completedFuture(permitted(permit));
+        });
+        given(httpClient.tryOpenStream(anyString(), eq(entry))).willAnswer(a -> hostLimiter.tryAcquire(a.getArgument(0))
+            .map(permit -> CompletableFuture.completedFuture(permitted(permit))));
+        Path discovery = discovery("system_information", "station_information", "station_status");
+
+        List<Optional<S3Path>> assembled = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> List.of(
+                CompletableFuture.supplyAsync(() -> assembler.assemble(entry, task, discovery, target)),
+                CompletableFuture.supplyAsync(() -> assembler.assemble(entry, task, discovery, target)))
+            .stream()
+            .map(CompletableFuture::join)
+            .toList());
+
+        assertThat(assembled, equalTo(List.of(Optional.of(target), Optional.of(target))));
+        verify(summaryRepository, times(2)).create(summary.capture());
+        for (Summary feeds : summary.getAllValues()) {
+            List<Map<String, String>> statistics = objectMapper.readValue(feeds.raw(), new TypeReference<>() {});
+            assertThat(Streams.collect(statistics, f -> f.get("status")), equalTo(List.of("200", "200", "200")));
+        }
+        assertThat(hostLimiter.getStats().get("gbfs.example.fi").active(), equalTo(0));
+    }
+
+    private void givenResponses(Map<String, CompletableFuture<StreamedResponse>> responses) {
+        given(httpClient.openStream(anyString(), eq(entry))).willAnswer(a -> responses.get(feedName(a.getArgument(0))));
+        lenient().when(httpClient.tryOpenStream(anyString(), eq(entry))).thenAnswer(a -> Optional.of(responses.get(feedName(a.getArgument(0)))));
+    }
+
+    private static String feedName(String url) {
+        return url.substring(FEEDS_URL.length(), url.length() - ".json".length());
+    }
+
+    /**
+     * Response which releases its host permit when closed, like the real one.
+     */
+    private static StreamedResponse permitted(HostLimiter.Permit permit) {
+        StreamedResponse response = aResponse(200, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        try {
+            willAnswer(a -> {
+                permit.close();
+                return null;
+            }).given(response).close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+
+    private static StreamedResponse aResponse(int statusCode, InputStream body) {
+        StreamedResponse response = mock(StreamedResponse.class);
+        given(response.statusCode()).willReturn(statusCode);
+        if (statusCode == 200) {
+            given(response.body()).willReturn(body);
+        }
+        return response;
+    }
+
+    private Path discovery(String... names) throws IOException {
+        List<Map<String, String>> feeds = Streams.collect(List.of(names), name -> Map.of("name", name, "url", FEEDS_URL + name + ".json"));
+        Map<String, Object> discovery = Map.of(
+            "last_updated", 1760000000L,
+            "ttl", 0,
+            "version", "2.3",
+            "data", Map.of("en", Map.of("feeds", feeds)));
+        Path file = Files.createTempFile(getClass().getSimpleName(), ".json");
+        Files.write(file, objectMapper.writeValueAsBytes(discovery));
+        return file;
+    }
+
+    private List<Map<String, String>> feedSummary() {
+        verify(summaryRepository).create(summary.capture());
+        assertThat(summary.getValue().name(), equalTo(GbfsSnapshotAssembler.FEEDS_SUMMARY));
+        return objectMapper.readValue(summary.getValue().raw(), new TypeReference<>() {});
+    }
+
+    /**
+     * Body of a connection which never delivers any data. Like the HTTP client's body, a blocked read returns once the
+     * stream is closed.
+     */
+    private static final class StalledInputStream extends InputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package fi.digitraffic.tis.vaco.rules.internal;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.rules.RuleExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ReferenceDatasetsTests {
+
+    private static final String RESOURCE = "private/static/emptyStopsAndQuays.zip";
+
+    private ReferenceDatasets referenceDatasets;
+    private VacoProperties vacoProperties;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Captor
+    private ArgumentCaptor<byte[]> content;
+
+    @BeforeEach
+    void setUp() {
+        vacoProperties = TestObjects.vacoProperties();
+        referenceDatasets = new ReferenceDatasets(s3Client, vacoProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(s3Client);
+    }
+
+    @Test
+    void storesDatasetOnceUnderContentAddressedKey() throws IOException, NoSuchAlgorithmException {
+        S3Path expected = S3Path.of("reference/stopsAndQuays/" + sha256(RESOURCE) + "/stopsAndQuays.zip");
+        given(s3Client.keyExists(vacoProperties.s3PackagesBucket(), expected.toString())).willReturn(false);
+
+        S3Path first = referenceDatasets.publish("stopsAndQuays", RESOURCE, "stopsAndQuays.zip");
+        S3Path second = referenceDatasets.publish("stopsAndQuays", RESOURCE, "stopsAndQuays.zip");
+
+        assertThat(first, equalTo(expected));
+        assertThat(second, equalTo(expected));
+        verify(s3Client).putObject(eq(vacoProperties.s3PackagesBucket()), eq(expected), content.capture());
+        assertThat(content.getValue().length, equalTo(read(RESOURCE).length));
+    }
+
+    @Test
+    void doesNotUploadAlreadyStoredDataset() throws IOException, NoSuchAlgorithmException {
+        S3Path expected = S3Path.of("reference/stopsAndQuays/" + sha256(RESOURCE) + "/stopsAndQuays.zip");
+        given(s3Client.keyExists(vacoProperties.s3PackagesBucket(), expected.toString())).willReturn(true);
+
+        assertThat(referenceDatasets.publish("stopsAndQuays", RESOURCE, "stopsAndQuays.zip"), equalTo(expected));
+
+        verify(s3Client, never()).putObject(anyString(), any(), any());
+    }
+
+    @Test
+    void failsOnMissingResource() {
+        assertThrows(RuleExecutionException.class,
+            () -> referenceDatasets.publish("stopsAndQuays", "private/static/doesNotExist.zip", "stopsAndQuays.zip"));
+    }
+
+    private static String sha256(String resource) throws IOException, NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(read(resource)));
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+}
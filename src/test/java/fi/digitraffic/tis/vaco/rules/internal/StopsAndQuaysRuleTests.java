@@ -1,10 +1,10 @@
 package fi.digitraffic.tis.vaco.rules.internal;
 
 import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
-import fi.digitraffic.tis.aws.s3.S3Client;
 import fi.digitraffic.tis.aws.s3.S3Path;
 import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.concurrency.VacoExecutors;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.process.TaskService;
 import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
@@ -16,18 +16,15 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -42,39 +39,36 @@ class StopsAndQuaysRuleTests {
     @Mock
     private TaskService taskService;
     @Mock
-    private S3Client s3Client;
+    private ReferenceDatasets referenceDatasets;
 
-    @Captor
-    private ArgumentCaptor<S3Path> targetPath;
-    @Captor
-    private ArgumentCaptor<Path> sourcePath;
+    private final S3Path datasetPath = S3Path.of("reference/stopsAndQuays/abc123/stopsAndQuays.zip");
 
     @BeforeEach
     void setUp() {
         vacoProperties = TestObjects.vacoProperties();
-        rule = new StopsAndQuaysRule(taskService, vacoProperties, s3Client);
+        rule = new StopsAndQuaysRule(taskService, vacoProperties, referenceDatasets, new VacoExecutors(vacoProperties));
     }
 
     @AfterEach
     void tearDown() {
-        verifyNoMoreInteractions(taskService, s3Client);
+        verifyNoMoreInteractions(taskService, referenceDatasets);
     }
 
     @Test
-    void copiesStaticFileToOutputs() {
+    void refersToSharedStaticFile() {
         ImmutableEntry.Builder entryBuilder = TestObjects.anEntry("gtfs");
         Task saqTask = ImmutableTask.of(StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK, -1).withId(5000000L).withPublicId(NanoIdUtils.randomNanoId());
         Entry entry = entryBuilder.addTasks(saqTask).build();
 
         given(taskService.findTask(entry.publicId(), StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK)).willReturn(Optional.of(saqTask));
         given(taskService.trackTask(entry, saqTask, ProcessingState.START)).willReturn(saqTask);
-        given(s3Client.uploadFile(eq(vacoProperties.s3PackagesBucket()), targetPath.capture(), sourcePath.capture())).willReturn(CompletableFuture.completedFuture(null));
+        given(referenceDatasets.publish(StopsAndQuaysRule.STOPS_AND_QUAYS_DATASET, StopsAndQuaysRule.STOPS_AND_QUAYS_RESOURCE, "stopsAndQuays.zip")).willReturn(datasetPath);
 
         ResultMessage result = rule.execute(entry).join();
 
         assertThat(result.ruleName(), equalTo(StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK));
 
-        assertThat(targetPath.getValue().toString(), equalTo( entry.publicId() + "/" + saqTask.publicId() + "/stopsAndQuays.zip"));
+        assertThat(result.uploadedFiles(), equalTo(Map.of(datasetPath.asUri(vacoProperties.s3PackagesBucket()), List.of("result"))));
     }
 
     @Test
@@ -85,7 +79,7 @@ class StopsAndQuaysRuleTests {
 
         given(taskService.findTask(entry.publicId(), StopsAndQuaysRule.PREPARE_STOPS_AND_QUAYS_TASK)).willReturn(Optional.of(saqTask));
         given(taskService.trackTask(entry, saqTask, ProcessingState.START)).willReturn(saqTask);
-        given(s3Client.uploadFile(eq(vacoProperties.s3PackagesBucket()), targetPath.capture(), sourcePath.capture())).willReturn(CompletableFuture.completedFuture(null));
+        given(referenceDatasets.publish(StopsAndQuaysRule.STOPS_AND_QUAYS_DATASET, StopsAndQuaysRule.STOPS_AND_QUAYS_RESOURCE, "stopsAndQuays.zip")).willReturn(datasetPath);
 
         rule.execute(entry).join();
 
@@ -5,7 +5,6 @@ import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.datatype.guava.GuavaModule;
 import fi.digitraffic.tis.aws.s3.S3Client;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -128,8 +127,7 @@ class GtfsCanonicalResultProcessorTests extends ResultProcessorTestBase {
         given(findingService.reportFindings(generatedFindings.capture())).willReturn(true);
         given(findingService.findFindingsByName(task, "thread_execution_error")).willReturn(List.of());
         given(findingService.summarizeFindingsSeverities(task)).willReturn(Map.of());
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, task, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, task, Status.SUCCESS);
 
         resultProcessor.processResults(resultMessage, entry, task);
 
@@ -154,8 +152,7 @@ class GtfsCanonicalResultProcessorTests extends ResultProcessorTestBase {
         given(findingService.reportFindings(generatedFindings.capture())).willReturn(true);
         given(findingService.findFindingsByName(task, "thread_execution_error")).willReturn(List.of());
         given(findingService.summarizeFindingsSeverities(task)).willReturn(Map.of());
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, task, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, task, Status.SUCCESS);
 
         resultProcessor.processResults(resultMessage, entry, task);
 
@@ -180,8 +177,7 @@ class GtfsCanonicalResultProcessorTests extends ResultProcessorTestBase {
         given(findingService.reportFindings(generatedFindings.capture())).willReturn(true);
         given(findingService.findFindingsByName(task, "thread_execution_error")).willReturn(List.of());
         given(findingService.summarizeFindingsSeverities(task)).willReturn(Map.of());
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, task, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, task, Status.SUCCESS);
 
         resultProcessor.processResults(resultMessage, entry, task);
 
@@ -2,7 +2,6 @@ package fi.digitraffic.tis.vaco.rules.results;
 
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.S3Client;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -71,8 +70,7 @@ class InternalRuleResultProcessorTests extends ResultProcessorTestBase {
     @Test
     void registersResultPackageAsIs() {
         givenPackageIsRegistered();
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, entry.tasks().get(0), ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, entry.tasks().get(0), Status.SUCCESS);
 
         resultProcessor.processResults(downloadMessage, entry, downloadTask);
 
@@ -90,25 +88,24 @@ class InternalRuleResultProcessorTests extends ResultProcessorTestBase {
         Task cancelledTask = ImmutableTask.copyOf(downloadTask).withStatus(Status.CANCELLED);
         ResultMessage emptyResult = asResultMessage(vacoProperties, DownloadRule.PREPARE_DOWNLOAD_TASK, entry, Map.of());
 
-        givenTaskProcessingStateIsMarkedAs(entry, cancelledTask, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, cancelledTask, null);
 
         boolean result = resultProcessor.processResults(emptyResult, entry, cancelledTask);
 
         assertThat(result, equalTo(false));
-        verify(taskService, never()).markStatus(entry, cancelledTask, Status.FAILED);
+        verify(taskService, never()).completeTask(entry, cancelledTask, Status.FAILED);
     }
 
     @Test
     void marksFailedWhenNoResultPackageAndStatusNotTerminal() {
         ResultMessage emptyResult = asResultMessage(vacoProperties, DownloadRule.PREPARE_DOWNLOAD_TASK, entry, Map.of());
 
-        givenTaskStatusIsMarkedAs(entry, Status.FAILED);
-        givenTaskProcessingStateIsMarkedAs(entry, downloadTask, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, downloadTask, Status.FAILED);
 
         boolean result = resultProcessor.processResults(emptyResult, entry, downloadTask);
 
         assertThat(result, equalTo(false));
-        verify(taskService).markStatus(entry, downloadTask, Status.FAILED);
+        verify(taskService).completeTask(entry, downloadTask, Status.FAILED);
     }
 
 }
@@ -5,7 +5,6 @@ import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.datatype.guava.GuavaModule;
 import fi.digitraffic.tis.aws.s3.S3Client;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -125,8 +124,7 @@ class NetexEnturValidatorResultProcessorTests extends ResultProcessorTestBase {
         given(rulesetService.findByName(RuleName.NETEX_ENTUR)).willReturn(Optional.of(netexEnturRuleset));
         given(findingService.reportFindings(generatedFindings.capture())).willReturn(true);
         given(findingService.summarizeFindingsSeverities(task)).willReturn(Map.of());
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, task, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, task, Status.SUCCESS);
 
         resultProcessor.processResults(resultMessage, entry, task);
 
@@ -145,8 +143,7 @@ class NetexEnturValidatorResultProcessorTests extends ResultProcessorTestBase {
         given(rulesetService.findByName(RuleName.NETEX_ENTUR)).willReturn(Optional.of(netexEnturRuleset));
         given(findingService.reportFindings(generatedFindings.capture())).willReturn(true);
         given(findingService.summarizeFindingsSeverities(task)).willReturn(Map.of());
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, task, ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, task, Status.SUCCESS);
 
         resultProcessor.processResults(resultMessage, entry, task);
         List<Finding> findings = generatedFindings.getValue();
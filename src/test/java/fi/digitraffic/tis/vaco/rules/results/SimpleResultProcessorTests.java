@@ -3,7 +3,6 @@ package fi.digitraffic.tis.vaco.rules.results;
 import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
 import tools.jackson.databind.ObjectMapper;
 import fi.digitraffic.tis.aws.s3.S3Client;
-import fi.digitraffic.tis.utilities.model.ProcessingState;
 import fi.digitraffic.tis.vaco.TestObjects;
 import fi.digitraffic.tis.vaco.configuration.VacoProperties;
 import fi.digitraffic.tis.vaco.entries.model.Status;
@@ -66,8 +65,7 @@ class SimpleResultProcessorTests extends ResultProcessorTestBase {
     void producesPackagesByDefault() {
         givenPackageIsCreated("all", entry, conversionTask).willReturn(ImmutablePackage.of(conversionTask, "all", IGNORED_PATH_VALUE));
         givenPackageIsCreated("debug", entry, conversionTask).willReturn(ImmutablePackage.of(conversionTask, "debug", IGNORED_PATH_VALUE));
-        givenTaskStatusIsMarkedAs(entry, Status.SUCCESS);
-        givenTaskProcessingStateIsMarkedAs(entry, entry.tasks().get(0), ProcessingState.COMPLETE);
+        givenTaskIsCompletedAs(entry, entry.tasks().get(0), Status.SUCCESS);
 
         assertThat(simpleResultProcessor.processResults(gtfs2netexMessage, entry, conversionTask), equalTo(true));
     }
@@ -19,6 +19,7 @@ import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableValidationInput;
 import fi.digitraffic.tis.vaco.rules.RuleName;
 import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
 import fi.digitraffic.tis.vaco.rules.model.ResultMessage;
+import fi.digitraffic.tis.vaco.rules.model.RuleInput;
 import fi.digitraffic.tis.vaco.rules.model.ValidationRuleJobMessage;
 import fi.digitraffic.tis.vaco.rules.results.InternalRuleResultProcessor;
 import fi.digitraffic.tis.vaco.ruleset.RulesetService;
@@ -39,14 +40,18 @@ import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
 import software.amazon.awssdk.services.sqs.model.CreateQueueResponse;
 import software.amazon.awssdk.services.sqs.model.Message;
 
+import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
@@ -116,8 +121,9 @@ class RulesetSubmissionServiceIntegrationTests extends SpringBootIntegrationTest
     @Test
     void delegatesRuleProcessingToRuleSpecificQueueBasedOnRuleName() {
         Entry entry = createEntryForTesting();
-        when(httpClient.downloadFile(filePath.capture(), entryUrl.capture(), eq(entry)))
-            .thenReturn(CompletableFuture.supplyAsync(() -> ImmutableDownloadResponse.builder().body(Optional.ofNullable(response)).build()));
+        String digest = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+        when(httpClient.downloadArchive(filePath.capture(), entryUrl.capture(), eq(entry), any(OutputStream.class)))
+            .thenReturn(CompletableFuture.supplyAsync(() -> ImmutableDownloadResponse.builder().body(Optional.ofNullable(response)).sha256(digest).build()));
 
 
         String testQueueName = createSqsQueue(MessageQueue.RULE_PROCESSING.munge(RuleName.GTFS_CANONICAL));
@@ -157,12 +163,20 @@ class RulesetSubmissionServiceIntegrationTests extends SpringBootIntegrationTest
         assertThat(message.inputs(), equalTo("s3://digitraffic-tis-processing-itest/entries/" + entry.publicId() + "/tasks/" + RuleName.GTFS_CANONICAL + "/rules/" + RuleName.GTFS_CANONICAL + "/input"));
         assertThat(message.outputs(), equalTo("s3://digitraffic-tis-processing-itest/entries/" + entry.publicId() + "/tasks/" + RuleName.GTFS_CANONICAL + "/rules/" + RuleName.GTFS_CANONICAL + "/output"));
         assertThat(message.source(), equalTo(RuleName.GTFS_CANONICAL));
+        // results of completed tasks are listed with their current object metadata
+        assertThat(message.manifest().size(), equalTo(1));
+        RuleInput download = message.manifest().get(0);
+        assertThat(download.task(), equalTo(DownloadRule.PREPARE_DOWNLOAD_TASK));
+        assertThat(download.uri().startsWith("s3://"), equalTo(true));
+        assertThat(download.uri().contains(entry.publicId()), equalTo(true));
+        assertThat(download.eTag() != null, equalTo(true));
+        assertThat(download.checksumSha256(), equalTo(Base64.getEncoder().encodeToString(HexFormat.of().parseHex(digest))));
     }
 
     @Test
     void sendsMessageToJobQueueForTaskWithFailedDependencies() throws InterruptedException {
         Entry entry = createEntryForTesting();
-        when(httpClient.downloadFile(filePath.capture(), entryUrl.capture(), eq(entry)))
+        when(httpClient.downloadArchive(filePath.capture(), entryUrl.capture(), eq(entry), any(OutputStream.class)))
             .thenReturn(CompletableFuture.supplyAsync(() -> ImmutableDownloadResponse.builder().body(Optional.empty()).result(DownloadResponse.Result.OK).build()));
 
         String testQueueName = createSqsQueue(MessageQueue.RULE_PROCESSING.munge(RuleName.GTFS_CANONICAL));
@@ -0,0 +1,101 @@
+package fi.digitraffic.tis.vaco.validation;
+
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.caching.CachingService;
+import fi.digitraffic.tis.vaco.caching.mapper.CacheStatsMapper;
+import fi.digitraffic.tis.vaco.messaging.MessagingService;
+import fi.digitraffic.tis.vaco.messaging.model.DelegationJobMessage;
+import fi.digitraffic.tis.vaco.packages.PackagesService;
+import fi.digitraffic.tis.vaco.process.TaskService;
+import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.QueueHandlerService;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.ruleset.RulesetService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class RulesetSubmissionServiceTests {
+
+    private RulesetSubmissionService service;
+
+    private Entry entry;
+    private Task task;
+
+    @Mock
+    private TaskService taskService;
+    @Mock
+    private S3Client s3Client;
+    @Mock
+    private MessagingService messagingService;
+    @Mock
+    private RulesetService rulesetService;
+    @Mock
+    private PackagesService packagesService;
+    @Mock
+    private QueueHandlerService queueHandlerService;
+    @Mock
+    private ValidationMemoizer validationMemoizer;
+
+    @BeforeEach
+    void setUp() {
+        service = new RulesetSubmissionService(
+            taskService,
+            s3Client,
+            TestObjects.vacoProperties(),
+            messagingService,
+            rulesetService,
+            packagesService,
+            queueHandlerService,
+            validationMemoizer,
+            new CachingService(new CacheStatsMapper()));
+        entry = TestObjects.anEntry("gtfs").build();
+        task = ImmutableTask.of("gtfs.canonical", 200).withId(2L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(taskService, messagingService);
+    }
+
+    @Test
+    void parkingReleasesTaskAndSchedulesSingleFallbackPerEntry() {
+        given(messagingService.submitProcessingJob(any(DelegationJobMessage.class), any(Duration.class)))
+            .willAnswer(a -> CompletableFuture.completedFuture(a.getArgument(0)));
+
+        service.park(entry, task);
+        service.park(entry, task);
+
+        verify(taskService, times(2)).releaseTask(entry, task);
+        verify(messagingService).submitProcessingJob(any(DelegationJobMessage.class), any(Duration.class));
+    }
+
+    @Test
+    void failedFallbackSchedulingIsRetriedOnNextPark() {
+        given(messagingService.submitProcessingJob(any(DelegationJobMessage.class), any(Duration.class)))
+            .willReturn(CompletableFuture.failedFuture(new IllegalStateException("queue unavailable")))
+            .willAnswer(a -> CompletableFuture.completedFuture(a.getArgument(0)));
+
+        assertThrows(RuntimeException.class, () -> service.park(entry, task));
+        service.park(entry, task);
+
+        verify(taskService, times(2)).releaseTask(entry, task);
+        verify(messagingService, times(2)).submitProcessingJob(any(DelegationJobMessage.class), any(Duration.class));
+    }
+}
@@ -0,0 +1,173 @@
+package fi.digitraffic.tis.vaco.validation;
+
+import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
+import fi.digitraffic.tis.aws.s3.S3Client;
+import fi.digitraffic.tis.aws.s3.S3Path;
+import fi.digitraffic.tis.utilities.model.ProcessingState;
+import fi.digitraffic.tis.vaco.TestObjects;
+import fi.digitraffic.tis.vaco.configuration.VacoProperties;
+import fi.digitraffic.tis.vaco.db.repositories.EntryRepository;
+import fi.digitraffic.tis.vaco.db.repositories.SummaryRepository;
+import fi.digitraffic.tis.vaco.entries.EntryService;
+import fi.digitraffic.tis.vaco.entries.model.Status;
+import fi.digitraffic.tis.vaco.findings.FindingService;
+import fi.digitraffic.tis.vaco.findings.model.Finding;
+import fi.digitraffic.tis.vaco.packages.PackagesService;
+import fi.digitraffic.tis.vaco.packages.model.ImmutablePackage;
+import fi.digitraffic.tis.vaco.process.TaskService;
+import fi.digitraffic.tis.vaco.process.model.ImmutableTask;
+import fi.digitraffic.tis.vaco.process.model.Task;
+import fi.digitraffic.tis.vaco.queuehandler.model.Entry;
+import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
+import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableValidationInput;
+import fi.digitraffic.tis.vaco.rules.RuleConfiguration;
+import fi.digitraffic.tis.vaco.rules.RuleName;
+import fi.digitraffic.tis.vaco.rules.internal.DownloadRule;
+import fi.digitraffic.tis.vaco.rules.model.netex.ImmutableEnturNetexValidatorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ValidationMemoizerTests {
+
+    private ValidationMemoizer memoizer;
+
+    private VacoProperties vacoProperties;
+
+    @Mock
+    private EntryRepository entryRepository;
+    @Mock
+    private SummaryRepository summaryRepository;
+    @Mock
+    private EntryService entryService;
+    @Mock
+    private TaskService taskService;
+    @Mock
+    private FindingService findingService;
+    @Mock
+    private PackagesService packagesService;
+    @Mock
+    private S3Client s3Client;
+
+    @Captor
+    private ArgumentCaptor<Finding> finding;
+
+    private Entry previous;
+    private Task previousTask;
+    private Entry entry;
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        vacoProperties = TestObjects.vacoProperties();
+        memoizer = new ValidationMemoizer(vacoProperties, entryRepository, summaryRepository, entryService, taskService, findingService, packagesService, s3Client);
+
+        previous = TestObjects.anEntry("netex").context("nightly").build();
+        previousTask = aTask(RuleName.NETEX_ENTUR).withStatus(Status.WARNINGS);
+        entry = TestObjects.anEntry("netex").context("nightly").build();
+        task = aTask(RuleName.NETEX_ENTUR);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(entryRepository, summaryRepository, entryService, findingService, packagesService, s3Client);
+    }
+
+    @Test
+    void copiesResultsOfEarlierRunWithSameContent() {
+        givenDownloadDigest(entry, "abc123");
+        givenDownloadDigest(previous, "abc123");
+        given(entryRepository.findMemoizationCandidates(entry, task.name(), ValidationMemoizer.MEMOIZED, Duration.ofDays(7), 5)).willReturn(List.of(previous.publicId()));
+        given(entryService.findEntry(previous.publicId())).willReturn(Optional.of(previous));
+        given(taskService.findTask(previous.publicId(), task.name())).willReturn(Optional.of(previousTask));
+        given(taskService.trackTask(entry, task, ProcessingState.START)).willReturn(task);
+        given(findingService.copyFindings(previousTask, task)).willReturn(1234);
+        given(summaryRepository.copySummaries(previousTask.id(), task.id())).willReturn(2);
+        given(packagesService.copyPackages(previous, previousTask, entry, task)).willReturn(List.of());
+
+        assertThat(memoizer.reuseEarlierResults(entry, task, Optional.empty()), equalTo(true));
+
+        verify(findingService).reportFinding(finding.capture());
+        assertThat(finding.getValue().message(), equalTo(ValidationMemoizer.MEMOIZED));
+        assertThat(finding.getValue().taskId(), equalTo(task.id()));
+        verify(taskService).completeTask(entry, task, Status.WARNINGS);
+    }
+
+    @Test
+    void runsRuleWhenContentHasChanged() {
+        givenDownloadDigest(entry, "abc123");
+        givenDownloadDigest(previous, "def456");
+        given(entryRepository.findMemoizationCandidates(entry, task.name(), ValidationMemoizer.MEMOIZED, Duration.ofDays(7), 5)).willReturn(List.of(previous.publicId()));
+        given(entryService.findEntry(previous.publicId())).willReturn(Optional.of(previous));
+
+        assertThat(memoizer.reuseEarlierResults(entry, task, Optional.empty()), equalTo(false));
+
+        verify(taskService, never()).completeTask(any(), any(), any());
+    }
+
+    @Test
+    void runsRuleWhenEarlierRunHadDifferentConfiguration() {
+        RuleConfiguration configuration = ImmutableEnturNetexValidatorConfiguration.builder()
+            .codespace("FIN")
+            .maximumErrors(500)
+            .build();
+        previous = ImmutableEntry.copyOf(previous)
+            .withValidations(ImmutableValidationInput.of(task.name()).withConfig(ImmutableEnturNetexValidatorConfiguration.builder()
+                .codespace("FSR")
+                .maximumErrors(500)
+                .build()));
+        entry = ImmutableEntry.copyOf(entry)
+            .withValidations(ImmutableValidationInput.of(task.name()).withConfig(configuration));
+        givenDownloadDigest(entry, "abc123");
+        given(entryRepository.findMemoizationCandidates(entry, task.name(), ValidationMemoizer.MEMOIZED, Duration.ofDays(7), 5)).willReturn(List.of(previous.publicId()));
+        given(entryService.findEntry(previous.publicId())).willReturn(Optional.of(previous));
+
+        assertThat(memoizer.reuseEarlierResults(entry, task, Optional.of(configuration)), equalTo(false));
+
+        verify(taskService, never()).findTask(previous.publicId(), task.name());
+        verify(taskService, never()).completeTask(any(), any(), any());
+    }
+
+    @Test
+    void runsRuleWhenContentDigestIsUnknown() {
+        Task dlTask = aTask(DownloadRule.PREPARE_DOWNLOAD_TASK);
+        given(taskService.findTask(entry.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
+        given(packagesService.findPackage(dlTask, "result")).willReturn(Optional.empty());
+
+        assertThat(memoizer.reuseEarlierResults(entry, task, Optional.empty()), equalTo(false));
+    }
+
+    private void givenDownloadDigest(Entry e, String digest) {
+        Task dlTask = aTask(DownloadRule.PREPARE_DOWNLOAD_TASK);
+        String path = e.publicId() + "/" + dlTask.publicId() + "/netex.zip";
+        given(taskService.findTask(e.publicId(), DownloadRule.PREPARE_DOWNLOAD_TASK)).willReturn(Optional.of(dlTask));
+        given(packagesService.findPackage(dlTask, "result")).willReturn(Optional.of(ImmutablePackage.of(dlTask, "result", path)));
+        given(s3Client.objectTags(vacoProperties.s3PackagesBucket(), S3Path.of(path))).willReturn(Map.of(DownloadRule.CONTENT_DIGEST_TAG, digest));
+    }
+
+    private static Task aTask(String name) {
+        return ImmutableTask.of(name, 100)
+            .withId(new Random().nextLong())
+            .withPublicId(NanoIdUtils.randomNanoId());
+    }
+}
@@ -3,9 +3,9 @@ package fi.digitraffic.tis.vaco.validation;
 import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
 import fi.digitraffic.tis.Constants;
 import fi.digitraffic.tis.vaco.TestConstants;
-import fi.digitraffic.tis.vaco.entries.EntryService;
 import fi.digitraffic.tis.vaco.messaging.MessagingService;
 import fi.digitraffic.tis.vaco.messaging.model.DelegationJobMessage;
+import fi.digitraffic.tis.vaco.messaging.model.EntryReference;
 import fi.digitraffic.tis.vaco.messaging.model.ImmutableRetryStatistics;
 import fi.digitraffic.tis.vaco.messaging.model.RetryStatistics;
 import fi.digitraffic.tis.vaco.queuehandler.model.ImmutableEntry;
@@ -22,9 +22,10 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ValidationQueueSqsListenerTests {
@@ -41,14 +42,12 @@ class ValidationQueueSqsListenerTests {
     private MessagingService messagingService;
     @Mock
     private RulesetSubmissionService rulesetSubmissionService;
-    @Mock
-    private EntryService entryService;
     @Captor
     private ArgumentCaptor<DelegationJobMessage> delegationJobMessage;
 
     @BeforeEach
     void setUp() {
-        listener = new ValidationQueueSqsListener(messagingService, rulesetSubmissionService, entryService);
+        listener = new ValidationQueueSqsListener(messagingService, rulesetSubmissionService);
 
         entry = ImmutableEntry.of(
             NanoIdUtils.randomNanoId(),
@@ -60,7 +59,7 @@ class ValidationQueueSqsListenerTests {
         );
         RetryStatistics retryStatistics = ImmutableRetryStatistics.of(1);
         message = ImmutableValidationJobMessage.builder()
-            .entry(entry)
+            .entry(EntryReference.of(entry))
             .retryStatistics(retryStatistics)
             .configuration(ImmutableRulesetSubmissionConfiguration.of(RulesetType.VALIDATION_SYNTAX, "nullish"))
             .build();
@@ -73,12 +72,11 @@ class ValidationQueueSqsListenerTests {
 
     @Test
     void submitsItselfBackToDelegationQueueAndAcknowledgesOriginalMessageOnCompletion() {
-        when(entryService.reload(entry)).thenReturn(entry);
-
         listener.listen(message, acknowledgement);
 
         verify(rulesetSubmissionService).submit(message);
         verify(messagingService).submitProcessingJob(delegationJobMessage.capture());
+        assertThat(delegationJobMessage.getValue().entry(), equalTo(EntryReference.of(entry)));
         verify(acknowledgement).acknowledge();
     }
 